@@ -18,4 +18,8 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# AppearanceManager builds its string tables from the fields of R.string and R.array
+-keepclassmembers class zen.zone.R$string { public static final int *; }
+-keepclassmembers class zen.zone.R$array { public static final int *; }
@@ -1,46 +1,40 @@
 package zen.zone;
 
-import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.Intent;
 import android.content.res.Configuration;
-import android.content.res.Resources;
 import android.os.Bundle;
 import android.view.View;
-import android.widget.Toast;
+import android.view.ViewTreeObserver;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.appcompat.app.AppCompatDelegate;
 import androidx.navigation.NavController;
+import androidx.navigation.NavDestination;
+import androidx.navigation.NavGraph;
 import androidx.navigation.Navigation;
 import androidx.navigation.ui.AppBarConfiguration;
 import androidx.navigation.ui.NavigationUI;
 
-import java.time.LocalDate;
-import java.time.ZoneOffset;
-import java.util.Locale;
-
+import zen.zone.appearance.AppearanceManager;
 import zen.zone.databinding.ActivityMainBinding;
+import zen.zone.history.SessionHistory;
+import zen.zone.metrics.MetricsOverlay;
+import zen.zone.session.MeditationService;
+import zen.zone.session.SessionTimeline;
+import zen.zone.startup.StartupTrace;
 
 /**
  * This is the main activity class for the Zen Zone application. This class handles UI interactions
  * and maintains state for the application.
+ *
+ * While a session is running, launching the app or tapping the session notification shows its
+ * timer screen rather than the tab the user was on.
  */
 public class MainActivity extends AppCompatActivity {
 
-    private SharedPreferences sharedPrefs;
-    private static int currentDayStreak;
-    private static int longestStreak;
     private ActivityMainBinding binding;
 
-    /**
-     * This method gets the current and longest day streaks.
-     *
-     * @return an integer array with the current and longest streaks respectively.
-     */
-    public static int[] getDaysStreaks() {
-        return new int[]{currentDayStreak, longestStreak};
-    }
-
     /**
      * The onCreate method is called when the Activity is being created with
      * savedInstanceState. It is where most initialization should go.
@@ -51,105 +45,90 @@ public class MainActivity extends AppCompatActivity {
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        setAppLanguage();
-        setAppTheme();
+        // Theme and locale were already applied by ZenZoneApplication, the rest of the
+        // startup work runs in the background when first needed
+        ZenZoneApplication application = ZenZoneApplication.from(this);
+        StartupTrace startupTrace = application.getStartupTrace();
+        long start = startupTrace.now();
         super.onCreate(savedInstanceState);
+        long phaseStart = startupTrace.now();
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
+        startupTrace.end("activity.inflate", phaseStart);
 
         // Passing each menu ID as a set of Ids because each
         // menu should be considered as top level destinations.
+        phaseStart = startupTrace.now();
         AppBarConfiguration appBarConfiguration = new AppBarConfiguration.Builder(
                 R.id.navigation_meditation, R.id.navigation_stats, R.id.navigation_preferences)
                 .build();
         NavController navController = Navigation.findNavController(this, R.id.nav_host_fragment_activity_main);
         NavigationUI.setupActionBarWithNavController(this, navController, appBarConfiguration);
         NavigationUI.setupWithNavController(binding.navView, navController);
-
-        this.dayStreak();
-    }
-
-    /**
-     * This method sets the language of the application based on the user's preference.
-     */
-    private void setAppLanguage() {
-        SharedPreferences sharedPref = getSharedPreferences("LanguagePref", Context.MODE_PRIVATE);
-
-        // Read the saved language choice
-        String savedLanguage = sharedPref.getString("language", "en"); // default is English
-
-        Locale locale = new Locale(savedLanguage);
-        Resources resources = getResources();
-        Configuration configuration = resources.getConfiguration();
-        configuration.setLocale(locale);
-        resources.updateConfiguration(configuration, resources.getDisplayMetrics());
+        startupTrace.end("activity.navigation", phaseStart);
+        showRunningSession(navController);
+
+        // Language and theme changes are applied in place, see android:configChanges
+        AppearanceManager appearanceManager = AppearanceManager.getInstance(this);
+        appearanceManager.onActivityCreated(this);
+        appearanceManager.addListener(this, change -> {
+            if (change.isLocaleChanged()) {
+                translateLabels(navController.getGraph(), change);
+                ActionBar actionBar = getSupportActionBar();
+                if (actionBar != null) {
+                    actionBar.setTitle(change.translate(actionBar.getTitle()));
+                }
+            }
+        });
+
+        startupTrace.end("activity.onCreate", start);
+        if (BuildConfig.DEBUG) {
+            MetricsOverlay.attach(this, application.getMetrics());
+        }
+        View root = binding.getRoot();
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                application.onFirstFrame();
+                return true;
+            }
+        });
     }
 
     /**
-     * This method sets the theme of the application based on the user's preference.
+     * Called when the activity is launched again while it is on top, e.g. from the session
+     * notification.
+     *
+     * @param intent The new intent.
      */
-    private void setAppTheme() {
-        SharedPreferences sharedPref = getSharedPreferences("ThemePref", Context.MODE_PRIVATE);
-
-        // Read the saved theme choice
-        String savedTheme = sharedPref.getString("theme", "light"); // default is light theme
-
-        // Set the theme at startup
-        if (savedTheme.equals("light")) {
-            AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
-        } else if (savedTheme.equals("dark")) {
-            AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_YES);
-        }
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        showRunningSession(Navigation.findNavController(this, R.id.nav_host_fragment_activity_main));
     }
 
     /**
-     * This method maintains the day streak of the user. It checks if the user opened
-     * the app today, if not, it resets the streak.
+     * Called instead of recreating the activity when the language or the night mode changes.
+     *
+     * @param newConfig The new configuration.
      */
-    private void dayStreak() {
-        // Get current date (from 0:00) in ms
-        long todayInMs = LocalDate.now().atStartOfDay().toEpochSecond(ZoneOffset.UTC) * 1000;
-
-        // Get the stored date (in ms) from SharedPreferences
-        sharedPrefs = getSharedPreferences("streak", MODE_PRIVATE);
-        long storedTime = sharedPrefs.getLong("lastOpenedApp", -1);
-        currentDayStreak = sharedPrefs.getInt("streakCounter", 0);
-
-        long dayDifference = todayInMs - storedTime;
-
-        // Check whether today is at least one day from y-day
-        if (dayDifference == 86400000) {
-            currentDayStreak++;
-            Toast.makeText(this.getApplicationContext(),
-                    currentDayStreak + " days streak.\nYou are doing great!",
-                    Toast.LENGTH_SHORT).show();
-        } else {
-            currentDayStreak = 1;
-        }
-
-        sharedPrefs.edit()
-                .putInt("streakCounter", currentDayStreak)
-                .putLong("lastOpenedApp", todayInMs)
-                .apply();
-
-        checkLongestStreak(currentDayStreak);
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        AppearanceManager.getInstance(this).onConfigurationChanged(this);
     }
 
     /**
-     * This method checks the longest streak and updates it if the current streak is longer.
-     *
-     * @param streakNow The current streak.
+     * Called when the activity is no longer visible to the user. Pending session history
+     * appends are synced to disk here, as the app may not come back to the foreground, and
+     * the metrics are dumped.
      */
-    private void checkLongestStreak(int streakNow) {
-        sharedPrefs = getSharedPreferences("streak", MODE_PRIVATE);
-        longestStreak = sharedPrefs.getInt("longestStreak", 0);
-
-        if (streakNow > longestStreak) {
-            longestStreak = streakNow;
-            sharedPrefs.edit()
-                    .putInt("longestStreak", longestStreak)
-                    .apply();
-        }
+    @Override
+    protected void onStop() {
+        super.onStop();
+        SessionHistory.getInstance(this).flush();
+        ZenZoneApplication.from(this).dumpMetrics();
     }
 
     /**
@@ -165,5 +144,35 @@ public class MainActivity extends AppCompatActivity {
     public void showBottomNav() {
         binding.navView.setVisibility(View.VISIBLE);
     }
-}
 
+    /**
+     * This method shows the timer screen of the running session, if there is one and it is not
+     * shown already.
+     */
+    private static void showRunningSession(NavController navController) {
+        SessionTimeline timeline = MeditationService.getRunningTimeline();
+        NavDestination destination = navController.getCurrentDestination();
+        if (timeline == null || (destination != null && destination.getId() == R.id.timerFragment)) {
+            return;
+        }
+        Bundle args = new Bundle();
+        args.putByteArray(MeditationService.EXTRA_TIMELINE, timeline.toByteArray());
+        navController.navigate(R.id.timerFragment, args);
+    }
+
+    /**
+     * This method translates the labels of the destinations of a navigation graph, which are
+     * shown as the title of the action bar.
+     */
+    private static void translateLabels(NavGraph graph, AppearanceManager.Change change) {
+        for (NavDestination destination : graph) {
+            CharSequence label = destination.getLabel();
+            if (label != null) {
+                destination.setLabel(change.translate(label));
+            }
+            if (destination instanceof NavGraph) {
+                translateLabels((NavGraph) destination, change);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package zen.zone;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import zen.zone.history.SessionHistory;
+import zen.zone.session.MeditationService;
+import zen.zone.settings.SettingsRepository;
+import zen.zone.ui.meditation.MeditationTimerFragment;
+import zen.zone.widget.QuickStart;
+
+/**
+ * The QuickStartActivity class is the fast path into a session from the home screen widget.
+ * Unlike {@link MainActivity} it inflates no layout, navigation graph or bottom navigation: it
+ * builds the session of the tapped preset and shows the timer screen right away, as the only
+ * content of the window. The session ending, or the stop button, closes it.
+ *
+ * The time from creating the activity to its first frame is measured in the
+ * "quickstart.first_frame_ms" histogram.
+ */
+public class QuickStartActivity extends AppCompatActivity {
+
+    /**
+     * Intent extra holding the length of the session in minutes, one of QuickStart.PRESET_MINUTES.
+     */
+    public static final String EXTRA_MINUTES = "minutes";
+
+    private static final String TAG = QuickStartActivity.class.getName();
+
+    /**
+     * Starts the session of the preset, unless the activity is being recreated and its timer
+     * screen already restored.
+     *
+     * @param savedInstanceState The saved state, null on the first creation.
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        ZenZoneApplication application = ZenZoneApplication.from(this);
+        long start = application.getStartupTrace().now();
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            return;
+        }
+        int minutes = getIntent().getIntExtra(EXTRA_MINUTES, 0);
+        if (!QuickStart.isPreset(minutes)) {
+            Log.w(TAG, "Not a quick start preset: " + minutes);
+            finish();
+            return;
+        }
+
+        Bundle args = new Bundle();
+        args.putByteArray(MeditationService.EXTRA_TIMELINE,
+                QuickStart.timeline(minutes, SettingsRepository.getInstance(this).get()).toByteArray());
+        MeditationTimerFragment fragment = new MeditationTimerFragment();
+        fragment.setArguments(args);
+        getSupportFragmentManager().beginTransaction()
+                .replace(android.R.id.content, fragment)
+                .commitNow();
+
+        View root = findViewById(android.R.id.content);
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                application.getMetrics().histogram("quickstart.first_frame_ms")
+                        .record((application.getStartupTrace().now() - start) / 1_000_000);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Called when the activity is no longer visible to the user. Pending session history
+     * appends are synced to disk here, as in {@link MainActivity#onStop()}.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        SessionHistory.getInstance(this).flush();
+        ZenZoneApplication.from(this).dumpMetrics();
+    }
+}
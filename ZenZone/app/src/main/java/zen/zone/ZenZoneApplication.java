@@ -0,0 +1,199 @@
+package zen.zone;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.firebase.FirebaseApp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import zen.zone.ads.AdProvider;
+import zen.zone.ads.AdsManager;
+import zen.zone.ads.GoogleAdProvider;
+import zen.zone.appearance.AppearanceManager;
+import zen.zone.metrics.MetricsRegistry;
+import zen.zone.sound.FirebasePackSource;
+import zen.zone.sound.PackSource;
+import zen.zone.startup.StartupTasks;
+import zen.zone.startup.StartupTrace;
+import zen.zone.streak.StreakTracker;
+
+/**
+ * The ZenZoneApplication class runs the application startup. Only the work needed for the
+ * first frame (theme and locale, see {@link AppearanceManager}) runs on the main thread;
+ * everything else is registered in a {@link StartupTasks} and runs in the background the first
+ * time it is needed.
+ */
+public class ZenZoneApplication extends Application {
+
+    /**
+     * Startup task loading the streak state.
+     */
+    public static final String TASK_STREAK = "streak";
+
+    /**
+     * Startup task initializing Firebase (its auto-initialization is disabled in the manifest).
+     */
+    public static final String TASK_FIREBASE = "firebase";
+
+    /**
+     * Startup task initializing the ads SDK, started once the first frame is drawn.
+     */
+    public static final String TASK_ADS = "ads";
+
+    /**
+     * Startup task building the string tables and palettes used to switch the language and
+     * the theme in place, started once the app is idle after the first frame.
+     */
+    public static final String TASK_APPEARANCE = "appearance";
+
+    private static final String TAG = ZenZoneApplication.class.getName();
+    private static final int KEPT_METRICS_DUMPS = 10;
+
+    private final StartupTrace startupTrace = new StartupTrace(SystemClock::elapsedRealtimeNanos);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final ExecutorService metricsExecutor = Executors.newSingleThreadExecutor();
+    private final long processStartMillis = System.currentTimeMillis() - (SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime());
+    private StartupTasks startupTasks;
+    private AppearanceManager appearanceManager;
+    private boolean firstFrameRecorded;
+
+    /**
+     * Returns the application object of the given context.
+     *
+     * @param context Any context of the application.
+     * @return The application object.
+     */
+    public static ZenZoneApplication from(Context context) {
+        return (ZenZoneApplication) context.getApplicationContext();
+    }
+
+    /**
+     * Called when the application is starting, before any activity has been created.
+     */
+    @Override
+    public void onCreate() {
+        long start = startupTrace.now();
+        super.onCreate();
+
+        // Loads the settings, which the appearance applied below needs
+        appearanceManager = AppearanceManager.getInstance(this);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        startupTasks = new StartupTasks(executor, startupTrace);
+        startupTasks.add(TASK_STREAK, () -> StreakTracker.getInstance(this));
+        startupTasks.add(TASK_FIREBASE, () -> FirebaseApp.initializeApp(this));
+        startupTasks.add(TASK_ADS, () -> AdsManager.getInstance(this).initializeSdk());
+        startupTasks.add(TASK_APPEARANCE, appearanceManager::prewarm);
+
+        appearanceManager.applySavedAppearance();
+
+        startupTrace.end("application.onCreate", start);
+    }
+
+    /**
+     * @return The deferred startup tasks.
+     */
+    public StartupTasks getStartupTasks() {
+        return startupTasks;
+    }
+
+    /**
+     * @return The trace holding the duration of every startup phase.
+     */
+    public StartupTrace getStartupTrace() {
+        return startupTrace;
+    }
+
+    /**
+     * @return The counters and histograms of the hot paths of the app.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes the metrics of this process to files/metrics/metrics-(process start).txt in the
+     * background, replacing the previous dump of the process. The dumps of the last few
+     * processes are kept, e.g. to compare a reminder woken process with a normal session.
+     */
+    public void dumpMetrics() {
+        metricsExecutor.execute(() -> {
+            File directory = new File(getFilesDir(), "metrics");
+            try {
+                metrics.dumpTo(new File(directory, "metrics-" + processStartMillis + ".txt"), System.currentTimeMillis());
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot dump the metrics", e);
+                return;
+            }
+            File[] dumps = directory.listFiles((dir, name) -> name.endsWith(".txt"));
+            if (dumps != null && dumps.length > KEPT_METRICS_DUMPS) {
+                Arrays.sort(dumps, Comparator.comparingLong(File::lastModified));
+                for (int i = 0; i < dumps.length - KEPT_METRICS_DUMPS; i++) {
+                    dumps[i].delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Records the time from process start to the first frame of the first activity, logs
+     * all phases timed so far and lets the ads and the appearance tables start once the app
+     * is idle. Only the first call has any effect.
+     */
+    public void onFirstFrame() {
+        if (firstFrameRecorded) {
+            return;
+        }
+        firstFrameRecorded = true;
+        long processStartNanos = Process.getStartElapsedRealtime() * 1_000_000L;
+        startupTrace.record("coldStart.firstFrame", processStartNanos, startupTrace.now());
+        Log.i(TAG, "Startup phases: " + startupTrace.summary());
+        for (StartupTrace.Phase phase : startupTrace.getPhases()) {
+            metrics.histogram("startup." + phase.getName() + "_ms").record(phase.getDurationNanos() / 1_000_000);
+        }
+        AdsManager.getInstance(this).startWhenIdle();
+        Looper.myQueue().addIdleHandler(() -> {
+            startupTasks.start(TASK_APPEARANCE);
+            return false;
+        });
+    }
+
+    /**
+     * Creates the provider of the ads shown in the app. Test applications can override this
+     * to serve local ads, see zen.zone.ads.LocalAdProvider.
+     *
+     * @return The ad provider.
+     */
+    public AdProvider createAdProvider() {
+        return new GoogleAdProvider();
+    }
+
+    /**
+     * Creates the source the sound packs are downloaded from. Test applications can override
+     * this to serve local packs, see zen.zone.sound.LocalPackSource.
+     *
+     * @return The pack source.
+     */
+    public PackSource createPackSource() {
+        return new FirebasePackSource();
+    }
+}
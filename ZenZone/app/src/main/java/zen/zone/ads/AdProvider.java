@@ -0,0 +1,74 @@
+package zen.zone.ads;
+
+import android.content.Context;
+import android.view.View;
+
+/**
+ * The AdProvider interface hides the ads SDK from the rest of the application, so tests and
+ * debug builds can replace it with a local stand-in, see {@link LocalAdProvider}.
+ */
+public interface AdProvider {
+
+    /**
+     * A banner ad, loaded or still loading.
+     */
+    interface Banner {
+
+        /**
+         * @return The view showing the banner.
+         */
+        View getView();
+
+        /**
+         * Pauses the banner, e.g. its refreshing, while it is not visible.
+         */
+        void pause();
+
+        /**
+         * Resumes the banner after {@link #pause()}.
+         */
+        void resume();
+
+        /**
+         * Frees the banner for good.
+         */
+        void destroy();
+    }
+
+    /**
+     * Receives the outcome of loading a banner, on the main thread.
+     */
+    interface BannerListener {
+
+        /**
+         * Called when the banner has an ad to show.
+         *
+         * @param banner The banner.
+         */
+        void onLoaded(Banner banner);
+
+        /**
+         * Called when no ad could be loaded.
+         *
+         * @param banner The banner, which can be destroyed.
+         * @param reason A description of the failure.
+         */
+        void onFailed(Banner banner, String reason);
+    }
+
+    /**
+     * Initializes the SDK. Called once, on a background thread; may block.
+     *
+     * @param context The application context.
+     */
+    void initialize(Context context);
+
+    /**
+     * Starts loading a banner. Called on the main thread, after {@link #initialize(Context)}.
+     *
+     * @param context  The application context.
+     * @param listener The listener receiving the outcome.
+     * @return The banner being loaded.
+     */
+    Banner loadBanner(Context context, BannerListener listener);
+}
@@ -0,0 +1,184 @@
+package zen.zone.ads;
+
+import android.content.Context;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import zen.zone.ZenZoneApplication;
+import zen.zone.startup.StartupTasks;
+
+/**
+ * The AdsManager class initializes the ads SDK once per process and keeps a preloaded banner,
+ * so screens showing ads attach an ad that is already there instead of loading one every time
+ * they are created. Initialization starts once the main thread is idle after the first frame,
+ * so it never competes with the startup of the app.
+ *
+ * The banner outlives the screens: it is paused and resumed with the screen it is attached to,
+ * and only detached from it when the screen goes away. All methods must be called on the main
+ * thread, except {@link #initializeSdk()}.
+ */
+public class AdsManager {
+
+    private static final String TAG = AdsManager.class.getName();
+
+    private static AdsManager instance;
+
+    private final Context context;
+    private final AdProvider provider;
+    private final StartupTasks startupTasks;
+    private boolean started;
+    private AdProvider.Banner banner;
+    private boolean loaded;
+    private ViewGroup container;
+    private boolean containerResumed;
+
+    private final AdProvider.BannerListener bannerListener = new AdProvider.BannerListener() {
+        @Override
+        public void onLoaded(AdProvider.Banner loadedBanner) {
+            if (loadedBanner != banner) {
+                return;
+            }
+            loaded = true;
+            show();
+        }
+
+        @Override
+        public void onFailed(AdProvider.Banner failedBanner, String reason) {
+            Log.w(TAG, "No banner: " + reason);
+            failedBanner.destroy();
+            if (failedBanner == banner) {
+                // Loading is tried again the next time a screen wants the banner
+                banner = null;
+                loaded = false;
+            }
+        }
+    };
+
+    private AdsManager(ZenZoneApplication application, AdProvider provider) {
+        this.context = application;
+        this.provider = provider;
+        this.startupTasks = application.getStartupTasks();
+    }
+
+    /**
+     * Returns the shared ads manager of the application, using the ad provider of
+     * {@link ZenZoneApplication#createAdProvider()}.
+     *
+     * @param context Any context of the application.
+     * @return The shared ads manager.
+     */
+    public static synchronized AdsManager getInstance(Context context) {
+        if (instance == null) {
+            ZenZoneApplication application = ZenZoneApplication.from(context);
+            instance = new AdsManager(application, application.createAdProvider());
+        }
+        return instance;
+    }
+
+    /**
+     * Initializes the SDK. Run by the startup task ZenZoneApplication.TASK_ADS, so exactly once
+     * and in the background.
+     */
+    public void initializeSdk() {
+        provider.initialize(context);
+    }
+
+    /**
+     * Starts initializing and preloading once the main thread has nothing else to do. Meant to
+     * be called right after the first frame.
+     */
+    public void startWhenIdle() {
+        Looper.myQueue().addIdleHandler(() -> {
+            start();
+            return false;
+        });
+    }
+
+    /**
+     * Starts initializing the SDK in the background, then preloads a banner. Does nothing
+     * after the first call.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        startupTasks.whenReady(ZenZoneApplication.TASK_ADS, context.getMainExecutor(), this::preload);
+    }
+
+    /**
+     * Shows the banner in the given container as soon as it is loaded, right away if it was
+     * preloaded. The banner follows the lifecycle of the owner: it is paused and resumed with
+     * it and removed from the container when the owner is destroyed.
+     *
+     * @param container The container of the banner, sized for it so the layout never shifts.
+     * @param owner     The lifecycle of the container, e.g. the view lifecycle of a fragment.
+     */
+    public void attach(ViewGroup container, LifecycleOwner owner) {
+        this.container = container;
+        containerResumed = false;
+        owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+            if (this.container != container) {
+                return;
+            }
+            if (event == Lifecycle.Event.ON_RESUME) {
+                containerResumed = true;
+                if (loaded) {
+                    banner.resume();
+                }
+            } else if (event == Lifecycle.Event.ON_PAUSE) {
+                containerResumed = false;
+                if (loaded) {
+                    banner.pause();
+                }
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                if (banner != null) {
+                    container.removeView(banner.getView());
+                }
+                this.container = null;
+            }
+        });
+
+        start();
+        if (startupTasks.isDone(ZenZoneApplication.TASK_ADS)) {
+            preload();
+        }
+        show();
+    }
+
+    /**
+     * This method starts loading a banner, unless one is loaded or loading.
+     */
+    private void preload() {
+        if (banner == null) {
+            banner = provider.loadBanner(context, bannerListener);
+        }
+    }
+
+    /**
+     * This method moves the loaded banner into the current container.
+     */
+    private void show() {
+        if (!loaded || container == null) {
+            return;
+        }
+        View view = banner.getView();
+        if (view.getParent() != container) {
+            if (view.getParent() instanceof ViewGroup) {
+                ((ViewGroup) view.getParent()).removeView(view);
+            }
+            container.addView(view, ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+        }
+        if (containerResumed) {
+            banner.resume();
+        } else {
+            banner.pause();
+        }
+    }
+}
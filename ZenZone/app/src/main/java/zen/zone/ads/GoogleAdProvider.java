@@ -0,0 +1,75 @@
+package zen.zone.ads;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.ads.AdListener;
+import com.google.android.gms.ads.AdRequest;
+import com.google.android.gms.ads.AdSize;
+import com.google.android.gms.ads.AdView;
+import com.google.android.gms.ads.LoadAdError;
+import com.google.android.gms.ads.MobileAds;
+import com.google.android.gms.ads.RequestConfiguration;
+
+import java.util.Collections;
+
+/**
+ * The GoogleAdProvider class serves banners with the Google Mobile Ads SDK.
+ */
+public class GoogleAdProvider implements AdProvider {
+
+    private static final String BANNER_AD_UNIT_ID = "ca-app-pub-2965614181564887/6715373899";
+    private static final String TEST_DEVICE_ID = "FEE379885695322A91C7073603A68825";
+
+    @Override
+    public void initialize(Context context) {
+        // The configuration applies to every request, so it is set before the first one
+        MobileAds.setRequestConfiguration(new RequestConfiguration.Builder()
+                .setTestDeviceIds(Collections.singletonList(TEST_DEVICE_ID))
+                .build());
+        MobileAds.initialize(context);
+    }
+
+    @Override
+    public Banner loadBanner(Context context, BannerListener listener) {
+        AdView adView = new AdView(context);
+        adView.setAdSize(AdSize.BANNER);
+        adView.setAdUnitId(BANNER_AD_UNIT_ID);
+        Banner banner = new Banner() {
+            @Override
+            public View getView() {
+                return adView;
+            }
+
+            @Override
+            public void pause() {
+                adView.pause();
+            }
+
+            @Override
+            public void resume() {
+                adView.resume();
+            }
+
+            @Override
+            public void destroy() {
+                adView.destroy();
+            }
+        };
+        adView.setAdListener(new AdListener() {
+            @Override
+            public void onAdLoaded() {
+                listener.onLoaded(banner);
+            }
+
+            @Override
+            public void onAdFailedToLoad(@NonNull LoadAdError error) {
+                listener.onFailed(banner, error.getMessage());
+            }
+        });
+        adView.loadAd(new AdRequest.Builder().build());
+        return banner;
+    }
+}
@@ -0,0 +1,68 @@
+package zen.zone.ads;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * The LocalAdProvider class stands in for the ads SDK in tests and debug builds: it needs no
+ * network and every banner is a plain label, loaded right away.
+ */
+public class LocalAdProvider implements AdProvider {
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int initializeCount;
+    private int loadCount;
+
+    @Override
+    public synchronized void initialize(Context context) {
+        initializeCount++;
+    }
+
+    @Override
+    public Banner loadBanner(Context context, BannerListener listener) {
+        loadCount++;
+        TextView label = new TextView(context);
+        label.setText("Ad");
+        label.setGravity(Gravity.CENTER);
+        label.setBackgroundColor(Color.LTGRAY);
+        Banner banner = new Banner() {
+            @Override
+            public View getView() {
+                return label;
+            }
+
+            @Override
+            public void pause() {
+            }
+
+            @Override
+            public void resume() {
+            }
+
+            @Override
+            public void destroy() {
+            }
+        };
+        mainHandler.post(() -> listener.onLoaded(banner));
+        return banner;
+    }
+
+    /**
+     * @return The number of times the SDK was initialized.
+     */
+    public synchronized int getInitializeCount() {
+        return initializeCount;
+    }
+
+    /**
+     * @return The number of banners loaded.
+     */
+    public int getLoadCount() {
+        return loadCount;
+    }
+}
@@ -0,0 +1,484 @@
+package zen.zone.appearance;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.LocaleList;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.Window;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.CompoundButton;
+import android.widget.EditText;
+import android.widget.ImageView;
+import android.widget.Spinner;
+import android.widget.SpinnerAdapter;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatDelegate;
+import androidx.appcompat.view.ContextThemeWrapper;
+import androidx.core.os.LocaleListCompat;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.material.navigation.NavigationBarView;
+import com.google.android.material.shape.MaterialShapeDrawable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import zen.zone.R;
+import zen.zone.settings.Settings;
+import zen.zone.settings.SettingsRepository;
+
+/**
+ * The AppearanceManager class switches the language and the night mode of the app while it
+ * runs, without recreating the activity: the activity handles both configuration changes itself
+ * and this class updates its live views. Texts are translated through {@link StringTable}s,
+ * colours taken from the theme are mapped through the {@link ThemePalette} of each mode, and
+ * views are only touched when their text or colour actually changes. The back stack, the
+ * fragments and a running session are left alone.
+ *
+ * Texts which are not app strings (e.g. numbers) and custom drawing are rebound by the screens
+ * themselves, see {@link #addListener(LifecycleOwner, Listener)} and
+ * View.onConfigurationChanged().
+ */
+public class AppearanceManager {
+
+    public static final String LANGUAGE_ENGLISH = Settings.LANGUAGE_ENGLISH;
+    public static final String LANGUAGE_POLISH = Settings.LANGUAGE_POLISH;
+    public static final String THEME_LIGHT = Settings.THEME_LIGHT;
+    public static final String THEME_DARK = Settings.THEME_DARK;
+
+    /**
+     * Receives the appearance changes, on the main thread, after the views were rebound.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the language or the night mode changed.
+         *
+         * @param change The change.
+         */
+        void onAppearanceChanged(Change change);
+    }
+
+    /**
+     * A change of the language and/or the night mode.
+     */
+    public static final class Change {
+        private final StringTable fromStrings;
+        private final StringTable toStrings;
+        private final ThemePalette fromPalette;
+        private final ThemePalette toPalette;
+
+        Change(StringTable fromStrings, StringTable toStrings, ThemePalette fromPalette, ThemePalette toPalette) {
+            this.fromStrings = fromStrings;
+            this.toStrings = toStrings;
+            this.fromPalette = fromPalette;
+            this.toPalette = toPalette;
+        }
+
+        /**
+         * @return true if the language changed.
+         */
+        public boolean isLocaleChanged() {
+            return fromStrings != null;
+        }
+
+        /**
+         * @return true if the night mode changed.
+         */
+        public boolean isNightModeChanged() {
+            return fromPalette != null;
+        }
+
+        /**
+         * Translates a text shown in the old language.
+         *
+         * @param text The text.
+         * @return The translation, or the text itself if it is not an app string or the
+         * language did not change.
+         */
+        public CharSequence translate(CharSequence text) {
+            String translation = fromStrings != null ? fromStrings.translate(text, toStrings) : null;
+            return translation != null ? translation : text;
+        }
+
+        String[] translate(List<String> items) {
+            return fromStrings != null ? fromStrings.translate(items, toStrings) : null;
+        }
+
+        /**
+         * Maps a colour taken from the theme in the old night mode to the new one.
+         *
+         * @return The new colours, or null if they are not theme colours or did not change.
+         */
+        ColorStateList remap(ColorStateList colors) {
+            if (fromPalette == null || colors == null) {
+                return null;
+            }
+            int index = fromPalette.indexOf(colors.getDefaultColor());
+            ColorStateList remapped = index >= 0 ? toPalette.get(index) : null;
+            return remapped != null && remapped.getDefaultColor() != colors.getDefaultColor() ? remapped : null;
+        }
+
+        int remap(int color) {
+            ColorStateList remapped = remap(ColorStateList.valueOf(color));
+            return remapped != null ? remapped.getDefaultColor() : color;
+        }
+    }
+
+    private static final String[] SUPPORTED_LANGUAGES = {LANGUAGE_ENGLISH, LANGUAGE_POLISH};
+
+    private static AppearanceManager instance;
+
+    private final Context context;
+    private final SettingsRepository settingsRepository;
+    private final Map<String, StringTable> stringTables = new ConcurrentHashMap<>();
+    private final ThemePalette[] palettes = new ThemePalette[2];
+    private final List<Listener> listeners = new ArrayList<>();
+    private String appliedLanguage;
+    private boolean appliedNight;
+
+    private AppearanceManager(Context context) {
+        this.context = context;
+        settingsRepository = SettingsRepository.getInstance(context);
+    }
+
+    /**
+     * Returns the shared appearance manager of the application.
+     *
+     * @param context Any context of the application.
+     * @return The shared appearance manager.
+     */
+    public static synchronized AppearanceManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppearanceManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Applies the saved language and theme. Called once at startup, before the first activity
+     * is created.
+     *
+     * From API 33 the system keeps the language of the app, and the user can change it in the
+     * system settings. A language found there wins: it is saved rather than overwritten. The
+     * saved language is only applied when the system has none for the app, i.e. before API 33,
+     * where AppCompat keeps it in memory only.
+     */
+    public void applySavedAppearance() {
+        LocaleListCompat applied = AppCompatDelegate.getApplicationLocales();
+        String language = getLanguage();
+        if (applied.isEmpty()) {
+            AppCompatDelegate.setApplicationLocales(LocaleListCompat.forLanguageTags(language));
+        } else {
+            String systemLanguage = applied.get(0).getLanguage();
+            if (!systemLanguage.equals(language) && isSupported(systemLanguage)) {
+                settingsRepository.update(settings -> settings.withLanguage(systemLanguage));
+            }
+        }
+        AppCompatDelegate.setDefaultNightMode(nightModeOf(getTheme()));
+    }
+
+    /**
+     * Builds the string tables of all languages and the palettes of both night modes, so a
+     * later switch only looks them up. Runs in the background.
+     */
+    public void prewarm() {
+        for (String language : SUPPORTED_LANGUAGES) {
+            getStringTable(language);
+        }
+        getPalette(false);
+        getPalette(true);
+    }
+
+    /**
+     * @return The saved language, LANGUAGE_ENGLISH by default.
+     */
+    public String getLanguage() {
+        return settingsRepository.get().getLanguage();
+    }
+
+    /**
+     * @return The saved theme, THEME_LIGHT by default.
+     */
+    public String getTheme() {
+        return settingsRepository.get().getTheme();
+    }
+
+    /**
+     * Saves and applies the language. The live activity is updated in place.
+     *
+     * @param language LANGUAGE_ENGLISH or LANGUAGE_POLISH.
+     */
+    public void setLanguage(String language) {
+        settingsRepository.update(settings -> settings.withLanguage(language));
+        AppCompatDelegate.setApplicationLocales(LocaleListCompat.forLanguageTags(language));
+    }
+
+    /**
+     * Saves and applies the theme. The live activity is updated in place.
+     *
+     * @param theme THEME_LIGHT or THEME_DARK.
+     */
+    public void setTheme(String theme) {
+        settingsRepository.update(settings -> settings.withTheme(theme));
+        AppCompatDelegate.setDefaultNightMode(nightModeOf(theme));
+    }
+
+    /**
+     * Registers a listener for as long as the owner is not destroyed.
+     *
+     * @param owner    The lifecycle of the listener.
+     * @param listener The listener.
+     */
+    public void addListener(LifecycleOwner owner, Listener listener) {
+        listeners.add(listener);
+        owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                listeners.remove(listener);
+            }
+        });
+    }
+
+    /**
+     * Remembers the appearance the activity was created with. Called from Activity.onCreate().
+     *
+     * @param activity The activity.
+     */
+    public void onActivityCreated(Activity activity) {
+        Configuration configuration = activity.getResources().getConfiguration();
+        appliedLanguage = languageOf(configuration);
+        appliedNight = isNight(configuration);
+    }
+
+    /**
+     * Rebinds the views of the activity to its new configuration. Called from
+     * Activity.onConfigurationChanged(), after the resources were updated.
+     *
+     * @param activity The activity.
+     */
+    public void onConfigurationChanged(Activity activity) {
+        Configuration configuration = activity.getResources().getConfiguration();
+        String language = languageOf(configuration);
+        boolean night = isNight(configuration);
+        boolean localeChanged = !language.equals(appliedLanguage);
+        boolean nightChanged = night != appliedNight;
+        if (!localeChanged && !nightChanged) {
+            return;
+        }
+        Change change = new Change(
+                localeChanged ? getStringTable(appliedLanguage) : null, getStringTable(language),
+                nightChanged ? getPalette(appliedNight) : null, getPalette(night));
+        appliedLanguage = language;
+        appliedNight = night;
+
+        activity.setTitle(change.translate(activity.getTitle()));
+        Window window = activity.getWindow();
+        if (nightChanged) {
+            window.setStatusBarColor(change.remap(window.getStatusBarColor()));
+            window.setNavigationBarColor(change.remap(window.getNavigationBarColor()));
+        }
+        rebind(window.getDecorView(), change);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onAppearanceChanged(change);
+        }
+    }
+
+    /**
+     * This method updates the texts and colours of a view and its children.
+     */
+    private void rebind(View view, Change change) {
+        rebindBackground(view, change);
+        if (view instanceof TextView) {
+            TextView textView = (TextView) view;
+            // What the user typed is never translated, only the hint
+            if (!(view instanceof EditText)) {
+                CharSequence text = textView.getText();
+                CharSequence translation = change.translate(text);
+                if (translation != text) {
+                    textView.setText(translation);
+                }
+            }
+            CharSequence hint = textView.getHint();
+            if (hint != null) {
+                CharSequence translation = change.translate(hint);
+                if (translation != hint) {
+                    textView.setHint(translation);
+                }
+            }
+            ColorStateList textColors = change.remap(textView.getTextColors());
+            if (textColors != null) {
+                textView.setTextColor(textColors);
+            }
+            ColorStateList hintColors = change.remap(textView.getHintTextColors());
+            if (hintColors != null) {
+                textView.setHintTextColor(hintColors);
+            }
+        }
+        if (view instanceof CompoundButton) {
+            CompoundButton button = (CompoundButton) view;
+            ColorStateList tint = change.remap(button.getButtonTintList());
+            if (tint != null) {
+                button.setButtonTintList(tint);
+            }
+        }
+        if (view instanceof ImageView) {
+            ImageView imageView = (ImageView) view;
+            ColorStateList tint = change.remap(imageView.getImageTintList());
+            if (tint != null) {
+                imageView.setImageTintList(tint);
+            }
+        }
+        if (view instanceof NavigationBarView) {
+            rebindNavigationBar((NavigationBarView) view, change);
+        }
+        if (view instanceof Spinner) {
+            // The shown item is a child made by the adapter, translating the adapter is enough
+            rebindSpinner((Spinner) view, change);
+            return;
+        }
+        if (view instanceof ViewGroup && !(view instanceof AdapterView)) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                rebind(group.getChildAt(i), change);
+            }
+        }
+    }
+
+    private void rebindBackground(View view, Change change) {
+        Drawable background = view.getBackground();
+        if (background instanceof ColorDrawable) {
+            int color = ((ColorDrawable) background).getColor();
+            int remapped = change.remap(color);
+            if (remapped != color) {
+                view.setBackground(new ColorDrawable(remapped));
+            }
+        } else if (background instanceof MaterialShapeDrawable) {
+            MaterialShapeDrawable shape = (MaterialShapeDrawable) background;
+            ColorStateList fill = change.remap(shape.getFillColor());
+            if (fill != null) {
+                shape.setFillColor(fill);
+            }
+        }
+        ColorStateList backgroundTint = change.remap(view.getBackgroundTintList());
+        if (backgroundTint != null) {
+            view.setBackgroundTintList(backgroundTint);
+        }
+    }
+
+    private void rebindNavigationBar(NavigationBarView navigationBar, Change change) {
+        Menu menu = navigationBar.getMenu();
+        for (int i = 0; i < menu.size(); i++) {
+            MenuItem item = menu.getItem(i);
+            CharSequence title = item.getTitle();
+            CharSequence translation = change.translate(title);
+            if (translation != title) {
+                item.setTitle(translation);
+            }
+        }
+        if (change.isNightModeChanged()) {
+            // The default item colours of Material are built in code, not taken from an attribute
+            ColorStateList colors = checkedColors(change.toPalette);
+            if (colors != null) {
+                navigationBar.setItemIconTintList(colors);
+                navigationBar.setItemTextColor(colors);
+            }
+        }
+    }
+
+    private void rebindSpinner(Spinner spinner, Change change) {
+        SpinnerAdapter adapter = spinner.getAdapter();
+        if (!change.isLocaleChanged() || !(adapter instanceof ArrayAdapter)) {
+            return;
+        }
+        List<String> items = new ArrayList<>(adapter.getCount());
+        for (int i = 0; i < adapter.getCount(); i++) {
+            items.add(String.valueOf(adapter.getItem(i)));
+        }
+        String[] translation = change.translate(items);
+        if (translation == null) {
+            return;
+        }
+        // The same adapter as the one created for android:entries
+        int position = spinner.getSelectedItemPosition();
+        ArrayAdapter<CharSequence> translated = new ArrayAdapter<>(spinner.getContext(),
+                android.R.layout.simple_spinner_item, translation);
+        translated.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(translated);
+        spinner.setSelection(position, false);
+    }
+
+    private ColorStateList checkedColors(ThemePalette palette) {
+        ColorStateList primary = palette.get(indexOfAttr(R.attr.colorPrimary));
+        ColorStateList secondary = palette.get(indexOfAttr(android.R.attr.textColorSecondary));
+        if (primary == null || secondary == null) {
+            return null;
+        }
+        return new ColorStateList(
+                new int[][]{{-android.R.attr.state_enabled}, {android.R.attr.state_checked}, {}},
+                new int[]{secondary.getColorForState(new int[]{-android.R.attr.state_enabled}, secondary.getDefaultColor()),
+                        primary.getDefaultColor(), secondary.getDefaultColor()});
+    }
+
+    private StringTable getStringTable(String language) {
+        return stringTables.computeIfAbsent(language, tag -> {
+            Configuration configuration = new Configuration(context.getResources().getConfiguration());
+            configuration.setLocales(LocaleList.forLanguageTags(tag));
+            return new StringTable(context.createConfigurationContext(configuration).getResources());
+        });
+    }
+
+    private synchronized ThemePalette getPalette(boolean night) {
+        int index = night ? 1 : 0;
+        if (palettes[index] == null) {
+            Configuration configuration = new Configuration(context.getResources().getConfiguration());
+            configuration.uiMode = (configuration.uiMode & ~Configuration.UI_MODE_NIGHT_MASK)
+                    | (night ? Configuration.UI_MODE_NIGHT_YES : Configuration.UI_MODE_NIGHT_NO);
+            Context themed = new ContextThemeWrapper(context.createConfigurationContext(configuration), R.style.Theme_ZenZone);
+            palettes[index] = new ThemePalette(themed);
+        }
+        return palettes[index];
+    }
+
+    private static int indexOfAttr(int attr) {
+        for (int i = 0; i < ThemePalette.ATTRS.length; i++) {
+            if (ThemePalette.ATTRS[i] == attr) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a palette attribute: " + attr);
+    }
+
+    private static boolean isSupported(String language) {
+        for (String supported : SUPPORTED_LANGUAGES) {
+            if (supported.equals(language)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String languageOf(Configuration configuration) {
+        return configuration.getLocales().get(0).getLanguage();
+    }
+
+    private static boolean isNight(Configuration configuration) {
+        return (configuration.uiMode & Configuration.UI_MODE_NIGHT_MASK) == Configuration.UI_MODE_NIGHT_YES;
+    }
+
+    private static int nightModeOf(String theme) {
+        return THEME_DARK.equals(theme) ? AppCompatDelegate.MODE_NIGHT_YES : AppCompatDelegate.MODE_NIGHT_NO;
+    }
+}
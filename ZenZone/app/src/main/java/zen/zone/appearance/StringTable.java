@@ -0,0 +1,95 @@
+package zen.zone.appearance;
+
+import android.content.res.Resources;
+import android.util.SparseArray;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import zen.zone.R;
+
+/**
+ * The StringTable class holds every string and string array of the app in one language, indexed
+ * both by resource id and by value. Looking a shown text up in the table of the old language
+ * gives its resource id, and the table of the new language gives its translation, so texts can
+ * be translated in place without knowing where they came from.
+ *
+ * Tables are immutable and built once per language, in the background.
+ */
+final class StringTable {
+
+    private final SparseArray<String> strings = new SparseArray<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final SparseArray<String[]> arrays = new SparseArray<>();
+    private final Map<List<String>, Integer> arrayIds = new HashMap<>();
+
+    /**
+     * Reads all strings and string arrays of the app.
+     *
+     * @param resources The resources of the language.
+     */
+    StringTable(Resources resources) {
+        for (int id : resourceIds(R.string.class)) {
+            String value = resources.getString(id);
+            strings.put(id, value);
+            // On duplicates the first id wins, both give the same text in this language anyway
+            stringIds.putIfAbsent(value, id);
+        }
+        for (int id : resourceIds(R.array.class)) {
+            String[] values;
+            try {
+                values = resources.getStringArray(id);
+            } catch (Resources.NotFoundException e) {
+                // Not an array of strings
+                continue;
+            }
+            arrays.put(id, values);
+            arrayIds.putIfAbsent(Arrays.asList(values), id);
+        }
+    }
+
+    /**
+     * Translates a text of this table into another table.
+     *
+     * @param text   A text shown in the language of this table.
+     * @param target The table of the new language.
+     * @return The translation, or null if the text is not a string of the app.
+     */
+    String translate(CharSequence text, StringTable target) {
+        Integer id = text != null ? stringIds.get(text.toString()) : null;
+        return id != null ? target.strings.get(id) : null;
+    }
+
+    /**
+     * Translates the items of a string array of this table into another table.
+     *
+     * @param items  The items shown in the language of this table.
+     * @param target The table of the new language.
+     * @return The translated items, or null if they are not a string array of the app.
+     */
+    String[] translate(List<String> items, StringTable target) {
+        Integer id = arrayIds.get(items);
+        return id != null ? target.arrays.get(id) : null;
+    }
+
+    private static int[] resourceIds(Class<?> resourceClass) {
+        Field[] fields = resourceClass.getFields();
+        int[] ids = new int[fields.length];
+        int count = 0;
+        for (Field field : fields) {
+            if (field.getType() == int.class && Modifier.isStatic(field.getModifiers())) {
+                try {
+                    int id = field.getInt(null);
+                    ids[count++] = id;
+                } catch (IllegalAccessException e) {
+                    // Public fields of R are always accessible
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+}
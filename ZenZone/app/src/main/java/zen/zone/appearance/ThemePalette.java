@@ -0,0 +1,85 @@
+package zen.zone.appearance;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.util.TypedValue;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.content.res.AppCompatResources;
+
+import zen.zone.R;
+
+/**
+ * The ThemePalette class holds the colours the app theme gives to a fixed set of attributes in
+ * one night mode. Comparing the palettes of both modes tells which colours a view got from the
+ * theme and what they become in the other mode.
+ */
+final class ThemePalette {
+
+    /**
+     * The theme attributes views take their colours from.
+     */
+    static final int[] ATTRS = {
+            android.R.attr.textColorPrimary,
+            android.R.attr.textColorSecondary,
+            android.R.attr.textColorTertiary,
+            android.R.attr.textColorHint,
+            android.R.attr.colorBackground,
+            android.R.attr.windowBackground,
+            R.attr.colorPrimary,
+            R.attr.colorPrimaryDark,
+            R.attr.colorAccent,
+            R.attr.colorSurface,
+            R.attr.colorOnSurface,
+            R.attr.colorOnPrimary,
+    };
+
+    private final ColorStateList[] colors = new ColorStateList[ATTRS.length];
+
+    /**
+     * Resolves the palette.
+     *
+     * @param themedContext A context with the app theme, in the night mode of the palette.
+     */
+    ThemePalette(Context themedContext) {
+        TypedValue value = new TypedValue();
+        for (int i = 0; i < ATTRS.length; i++) {
+            if (!themedContext.getTheme().resolveAttribute(ATTRS[i], value, true)) {
+                continue;
+            }
+            if (value.type >= TypedValue.TYPE_FIRST_COLOR_INT && value.type <= TypedValue.TYPE_LAST_COLOR_INT) {
+                colors[i] = ColorStateList.valueOf(value.data);
+            } else if (value.resourceId != 0) {
+                try {
+                    colors[i] = AppCompatResources.getColorStateList(themedContext, value.resourceId);
+                } catch (RuntimeException e) {
+                    // A drawable, e.g. a window background image, not a colour
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the attribute a colour of this palette belongs to.
+     *
+     * @param color The colour shown by a view.
+     * @return The index of the attribute in ATTRS, or -1 if the colour is not a theme colour.
+     */
+    int indexOf(int color) {
+        for (int i = 0; i < colors.length; i++) {
+            if (colors[i] != null && colors[i].getDefaultColor() == color) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index The index of the attribute in ATTRS.
+     * @return The colours of the attribute, or null if the theme does not define it as a colour.
+     */
+    @Nullable
+    ColorStateList get(int index) {
+        return colors[index];
+    }
+}
@@ -0,0 +1,345 @@
+package zen.zone.audio;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import zen.zone.ZenZoneApplication;
+import zen.zone.metrics.Counter;
+import zen.zone.metrics.Histogram;
+
+/**
+ * The AmbientMixer class plays up to SOUND_LAYER_COUNT looping background sounds at once, and
+ * the narration of a guided meditation on top of them, each with its own volume, through a
+ * single streaming AudioTrack. Two threads do the work: a decoder thread streams every layer
+ * from its file into a {@link PcmRingBuffer}, and a dedicated audio thread mixes the ring buffers
+ * with a {@link MixerCore} and writes the result to the track. Neither waits for the other, and
+ * the calls of this class only hand values over, so moving a volume slider never blocks or
+ * glitches playback.
+ *
+ * The narration is kept in step with the session by {@link #syncNarration(long)}, which seeks
+ * only when the narration drifted noticeably, so it is cheap to call on every tick.
+ *
+ * Layers start from a decoder prepared by {@link PreparedSounds} when there is one.
+ *
+ * A mixer plays one session: it is created paused, and cannot be used after {@link #release()}.
+ * The time to open a layer is measured in the "ambient.layer_open_ms" histogram, the underruns
+ * of the layers in the "ambient.underruns" counter and the seeks of the narration in the
+ * "ambient.narration_seeks" counter.
+ */
+public class AmbientMixer {
+
+    /**
+     * The number of layers of background sound.
+     */
+    public static final int SOUND_LAYER_COUNT = MixerCore.LAYER_COUNT - 1;
+
+    /**
+     * The layer of the narration, after the background sounds.
+     */
+    public static final int NARRATION_LAYER = MixerCore.LAYER_COUNT - 1;
+
+    /**
+     * How far the layers are decoded ahead of playback.
+     */
+    static final int DECODE_AHEAD_MILLIS = 1000;
+
+    private static final String TAG = AmbientMixer.class.getName();
+    private static final int BUFFER_MILLIS = 20;
+    private static final long DECODE_INTERVAL_MILLIS = 100;
+    // Less than a syllable, and more than the audio buffered in the track
+    private static final long MAX_DRIFT_MILLIS = 250;
+
+    private final Context context;
+    private final MixerCore core;
+    private final AudioTrack track;
+    private final short[] buffer;
+    private final Thread audioThread;
+    private final HandlerThread decoderThread = new HandlerThread("ambient-decoder");
+    private final Handler decoderHandler;
+    // Owned by the decoder thread
+    private final StreamDecoder[] decoders = new StreamDecoder[MixerCore.LAYER_COUNT];
+    private final Runnable decodeTask = this::decode;
+    private final Histogram openHistogram;
+    private final Counter underrunCounter;
+    private final Counter seekCounter;
+    private volatile boolean paused = true;
+    private volatile boolean released;
+
+    /**
+     * Creates a paused mixer with silent layers, at the native output rate of the device.
+     *
+     * @param context Any context of the application.
+     */
+    public AmbientMixer(Context context) {
+        this.context = context.getApplicationContext();
+        openHistogram = ZenZoneApplication.from(context).getMetrics().histogram("ambient.layer_open_ms");
+        underrunCounter = ZenZoneApplication.from(context).getMetrics().counter("ambient.underruns");
+        seekCounter = ZenZoneApplication.from(context).getMetrics().counter("ambient.narration_seeks");
+        int sampleRate = AudioTrack.getNativeOutputSampleRate(AudioManager.STREAM_MUSIC);
+        core = new MixerCore(sampleRate, sampleRate * BUFFER_MILLIS / 1000);
+        buffer = new short[core.getFramesPerBuffer() * MixerCore.CHANNEL_COUNT];
+        int minBytes = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_STEREO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        track = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setSampleRate(sampleRate)
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .setChannelMask(AudioFormat.CHANNEL_OUT_STEREO)
+                        .build())
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                // Room for a few buffers, so a late wake-up of the audio thread is not heard
+                .setBufferSizeInBytes(Math.max(minBytes, buffer.length * 2 * 4))
+                .build();
+
+        decoderThread.start();
+        decoderHandler = new Handler(decoderThread.getLooper());
+        audioThread = new Thread(this::play, "ambient-mixer");
+        audioThread.start();
+    }
+
+    /**
+     * Plays a raw resource in a layer, replacing its current sound.
+     *
+     * @param layer The layer, from 0 to SOUND_LAYER_COUNT - 1.
+     * @param resId The raw resource.
+     */
+    public void setLayer(int layer, int resId) {
+        decoderHandler.post(() -> {
+            try {
+                long start = SystemClock.elapsedRealtime();
+                StreamDecoder decoder = PreparedSounds.getInstance(context).take(resId);
+                replaceDecoder(layer, decoder != null ? decoder
+                        : StreamDecoder.open(context, resId, DECODE_AHEAD_MILLIS, true));
+                openHistogram.record(SystemClock.elapsedRealtime() - start);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot play resource " + resId, e);
+            }
+        });
+    }
+
+    /**
+     * Plays a sound file in a layer, replacing its current sound.
+     *
+     * @param layer The layer, from 0 to SOUND_LAYER_COUNT - 1.
+     * @param file  The sound file.
+     */
+    public void setLayer(int layer, File file) {
+        decoderHandler.post(() -> {
+            try {
+                long start = SystemClock.elapsedRealtime();
+                StreamDecoder decoder = PreparedSounds.getInstance(context).take(file);
+                replaceDecoder(layer, decoder != null ? decoder
+                        : StreamDecoder.open(file, DECODE_AHEAD_MILLIS, true));
+                openHistogram.record(SystemClock.elapsedRealtime() - start);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot play " + file, e);
+            }
+        });
+    }
+
+    /**
+     * Plays a narration once, from the given position, replacing the current one. Only the
+     * next second of it is ever decoded, however long the narration is.
+     *
+     * @param file           The narration file.
+     * @param positionMillis The position to start at, in milliseconds.
+     */
+    public void setNarration(File file, long positionMillis) {
+        decoderHandler.post(() -> {
+            try {
+                long start = SystemClock.elapsedRealtime();
+                StreamDecoder decoder = StreamDecoder.open(file, DECODE_AHEAD_MILLIS, false);
+                decoder.seekTo(positionMillis);
+                replaceDecoder(NARRATION_LAYER, decoder);
+                openHistogram.record(SystemClock.elapsedRealtime() - start);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot play " + file, e);
+            }
+        });
+    }
+
+    /**
+     * Brings the narration to where the session is, if it drifted by more than a fraction of a
+     * second, e.g. after the decoder fell behind or the timer was corrected. Never waits.
+     *
+     * @param positionMillis The position the narration should be at, in milliseconds.
+     */
+    public void syncNarration(long positionMillis) {
+        decoderHandler.post(() -> {
+            StreamDecoder decoder = decoders[NARRATION_LAYER];
+            if (decoder == null || Math.abs(decoder.getPositionMillis() - positionMillis) <= MAX_DRIFT_MILLIS) {
+                return;
+            }
+            // The stale frames fade out while the decoder refills from the new position
+            core.setSource(NARRATION_LAYER, null);
+            decoder.seekTo(positionMillis);
+            seekCounter.increment();
+            decode();
+        });
+    }
+
+    /**
+     * Silences a layer.
+     *
+     * @param layer The layer, from 0 to LAYER_COUNT - 1, e.g. NARRATION_LAYER.
+     */
+    public void clearLayer(int layer) {
+        decoderHandler.post(() -> replaceDecoder(layer, null));
+    }
+
+    /**
+     * Sets the volume of a layer, from any thread, without waiting.
+     *
+     * @param layer  The layer, from 0 to LAYER_COUNT - 1.
+     * @param volume The linear gain, from 0 to 1.
+     */
+    public void setVolume(int layer, float volume) {
+        core.setVolume(layer, volume);
+    }
+
+    /**
+     * @param layer The layer, from 0 to LAYER_COUNT - 1.
+     * @return The volume of the layer.
+     */
+    public float getVolume(int layer) {
+        return core.getVolume(layer);
+    }
+
+    /**
+     * Starts or continues playing.
+     */
+    public void resume() {
+        if (released || !paused) {
+            return;
+        }
+        paused = false;
+        track.play();
+        LockSupport.unpark(audioThread);
+    }
+
+    /**
+     * Pauses playing. The layers stay where they are.
+     */
+    public void pause() {
+        if (released || paused) {
+            return;
+        }
+        paused = true;
+        track.pause();
+    }
+
+    /**
+     * Stops playing and releases the track and the decoders.
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        paused = true;
+        // Unblocks a pending write of the audio thread
+        track.pause();
+        track.flush();
+        LockSupport.unpark(audioThread);
+        try {
+            audioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        track.release();
+        underrunCounter.add(core.getUnderrunCount());
+        decoderHandler.post(() -> {
+            for (int layer = 0; layer < decoders.length; layer++) {
+                replaceDecoder(layer, null);
+            }
+            decoderThread.quit();
+        });
+    }
+
+    /**
+     * This method is the loop of the audio thread: mix a buffer, write it, repeat. The write
+     * blocks until the track has room, which paces the loop.
+     */
+    private void play() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        while (!released) {
+            if (paused) {
+                LockSupport.park(this);
+                continue;
+            }
+            core.render(buffer);
+            int written = track.write(buffer, 0, buffer.length);
+            if (written < 0) {
+                Log.e(TAG, "Cannot write to the track: " + written);
+                return;
+            }
+        }
+    }
+
+    /**
+     * This method keeps the ring buffers of the layers filled, on the decoder thread. A new ring
+     * buffer, at the start or after a seek, is handed to the mixer once it holds frames, and a
+     * narration which was played to its end leaves the mix.
+     */
+    private void decode() {
+        boolean active = false;
+        for (int layer = 0; layer < decoders.length; layer++) {
+            StreamDecoder decoder = decoders[layer];
+            if (decoder == null) {
+                continue;
+            }
+            if (decoder.isDrained()) {
+                replaceDecoder(layer, null);
+                continue;
+            }
+            active = true;
+            try {
+                PcmRingBuffer ring = decoder.getRing();
+                decoder.fill();
+                if (decoder.getRing() != ring) {
+                    core.setSource(layer, decoder.getRing());
+                }
+            } catch (RuntimeException e) {
+                // The codec failed or the format is not supported, the other layers go on
+                Log.e(TAG, "Cannot decode layer " + layer, e);
+                replaceDecoder(layer, null);
+            }
+        }
+        decoderHandler.removeCallbacks(decodeTask);
+        if (active) {
+            decoderHandler.postDelayed(decodeTask, DECODE_INTERVAL_MILLIS);
+        }
+    }
+
+    private void replaceDecoder(int layer, StreamDecoder decoder) {
+        if (released && decoder != null) {
+            decoder.release();
+            return;
+        }
+        // A prepared decoder brings a filled ring buffer, which plays right away
+        core.setSource(layer, decoder != null ? decoder.getRing() : null);
+        if (decoders[layer] != null) {
+            decoders[layer].release();
+        }
+        decoders[layer] = decoder;
+        if (decoder != null) {
+            decode();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package zen.zone.audio;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import zen.zone.R;
+import zen.zone.ZenZoneApplication;
+import zen.zone.metrics.Histogram;
+
+/**
+ * The BellPlayer class plays the meditation bell with minimal latency. The bell is decoded
+ * once, in the background, into a static low-latency AudioTrack; ringing it afterwards is a
+ * single non-blocking call. The delay between the moment a bell was due and the moment it
+ * was started is measured for every ring, in the "bell.latency_ms" histogram.
+ */
+public class BellPlayer {
+
+    private static final String TAG = BellPlayer.class.getName();
+    private static final long NOT_PENDING = -1;
+
+    private static BellPlayer instance;
+
+    private final Context context;
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor();
+    private final Histogram latencyHistogram;
+    private AudioTrack track;
+    private boolean preparing;
+    private long pendingScheduledAt = NOT_PENDING;
+    private volatile long lastLatencyMillis = -1;
+    private volatile long maxLatencyMillis = -1;
+
+    private BellPlayer(Context context) {
+        this.context = context;
+        latencyHistogram = ZenZoneApplication.from(context).getMetrics().histogram("bell.latency_ms");
+    }
+
+    /**
+     * Returns the shared bell player of the application.
+     *
+     * @param context Any context of the application.
+     * @return The shared bell player.
+     */
+    public static synchronized BellPlayer getInstance(Context context) {
+        if (instance == null) {
+            instance = new BellPlayer(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Decodes the bell in the background, unless this was already done. Should be called
+     * when a session starts, or earlier.
+     */
+    public synchronized void prepare() {
+        if (track != null || preparing) {
+            return;
+        }
+        preparing = true;
+        decoder.execute(this::load);
+    }
+
+    /**
+     * Rings the bell. If the bell is still being decoded, it rings as soon as it is ready.
+     *
+     * @param scheduledAtMillis The moment the bell was due, on SystemClock.elapsedRealtime().
+     */
+    public synchronized void ring(long scheduledAtMillis) {
+        if (track == null) {
+            pendingScheduledAt = scheduledAtMillis;
+            prepare();
+            return;
+        }
+        play(scheduledAtMillis);
+    }
+
+    /**
+     * @return The delay of the last ring in milliseconds, or -1 if the bell never rang.
+     */
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    /**
+     * @return The largest delay of a ring in milliseconds, or -1 if the bell never rang.
+     */
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    private void load() {
+        AudioTrack loadedTrack = null;
+        try {
+            PcmClip clip = PcmDecoder.decode(context, R.raw.bell);
+            loadedTrack = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_MEDIA)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .setSampleRate(clip.getSampleRate())
+                            .setChannelMask(clip.getChannelCount() == 1
+                                    ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO)
+                            .build())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(clip.getLength() * 2)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .build();
+            loadedTrack.write(clip.getSamples(), 0, clip.getLength());
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not prepare the bell: " + e.getMessage());
+            if (loadedTrack != null) {
+                loadedTrack.release();
+                loadedTrack = null;
+            }
+        }
+
+        synchronized (this) {
+            preparing = false;
+            track = loadedTrack;
+            if (track != null && pendingScheduledAt != NOT_PENDING) {
+                play(pendingScheduledAt);
+            }
+            pendingScheduledAt = NOT_PENDING;
+        }
+    }
+
+    private void play(long scheduledAtMillis) {
+        // A static track has to be stopped and rewound before it can be played again
+        track.stop();
+        track.reloadStaticData();
+        track.play();
+
+        long latency = SystemClock.elapsedRealtime() - scheduledAtMillis;
+        latencyHistogram.record(latency);
+        lastLatencyMillis = latency;
+        if (latency > maxLatencyMillis) {
+            maxLatencyMillis = latency;
+        }
+        Log.d(TAG, "Bell rang " + latency + " ms after it was due");
+    }
+}
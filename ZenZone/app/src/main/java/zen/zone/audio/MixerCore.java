@@ -0,0 +1,230 @@
+package zen.zone.audio;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The MixerCore class mixes a few sound layers into one stream of interleaved stereo
+ * 16-bit samples. It is the platform independent part of {@link AmbientMixer}: the audio thread
+ * calls {@link #render(short[])} for every buffer, while any other thread may replace the
+ * sources of the layers or change their volumes at the same time.
+ *
+ * Rendering never allocates and never takes a lock. Sources and volumes are handed over through
+ * atomic slots which the audio thread reads once per buffer. A new volume is reached with a ramp
+ * over one buffer, and a replaced source fades out before the new one fades in, so neither
+ * clicks. Sources may have any sample rate up to MAX_RATE_RATIO times the output rate and one
+ * or two channels; they are converted with linear interpolation.
+ */
+public class MixerCore {
+
+    /**
+     * A sound feeding one layer of the mixer. Only the audio thread reads it.
+     */
+    public interface Source {
+
+        /**
+         * @return The sample rate of the source in Hz.
+         */
+        int getSampleRate();
+
+        /**
+         * @return The number of interleaved channels, 1 or 2.
+         */
+        int getChannelCount();
+
+        /**
+         * Copies the next frames of the source. Must not block.
+         *
+         * @param buffer The destination of the interleaved samples.
+         * @param offset The index of the first sample to write.
+         * @param frames The maximum number of frames to copy.
+         * @return The number of frames copied, fewer if the source has nothing more right now.
+         */
+        int read(short[] buffer, int offset, int frames);
+    }
+
+    /**
+     * The number of layers: the background sounds of a session and its narration.
+     */
+    public static final int LAYER_COUNT = 4;
+
+    /**
+     * The number of interleaved channels of the output.
+     */
+    public static final int CHANNEL_COUNT = 2;
+
+    /**
+     * The highest supported ratio between the sample rate of a source and of the output.
+     */
+    public static final int MAX_RATE_RATIO = 4;
+
+    private final int sampleRate;
+    private final int framesPerBuffer;
+    private final AtomicReferenceArray<Source> sources = new AtomicReferenceArray<>(LAYER_COUNT);
+    // Float bits of the target volume of every layer
+    private final AtomicIntegerArray volumes = new AtomicIntegerArray(LAYER_COUNT);
+
+    // Owned by the audio thread
+    private final Source[] playing = new Source[LAYER_COUNT];
+    private final float[] gains = new float[LAYER_COUNT];
+    private final double[] phases = new double[LAYER_COUNT];
+    private final float[][] lastFrames = new float[LAYER_COUNT][CHANNEL_COUNT];
+    private final short[] input;
+    private final float[] mix;
+    private volatile long underruns;
+
+    /**
+     * Creates a mixer with silent, empty layers.
+     *
+     * @param sampleRate      The sample rate of the output in Hz.
+     * @param framesPerBuffer The number of frames of every rendered buffer.
+     */
+    public MixerCore(int sampleRate, int framesPerBuffer) {
+        if (sampleRate <= 0 || framesPerBuffer <= 0) {
+            throw new IllegalArgumentException("Invalid format: " + sampleRate + " Hz, " + framesPerBuffer + " frames");
+        }
+        this.sampleRate = sampleRate;
+        this.framesPerBuffer = framesPerBuffer;
+        input = new short[(framesPerBuffer * MAX_RATE_RATIO + 1) * CHANNEL_COUNT];
+        mix = new float[framesPerBuffer * CHANNEL_COUNT];
+    }
+
+    /**
+     * @return The sample rate of the output in Hz.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return The number of frames of every rendered buffer.
+     */
+    public int getFramesPerBuffer() {
+        return framesPerBuffer;
+    }
+
+    /**
+     * @return The number of times a layer had fewer frames ready than a buffer needed.
+     */
+    public long getUnderrunCount() {
+        return underruns;
+    }
+
+    /**
+     * Replaces the source of a layer, from any thread. The new source fades in with the next
+     * buffers, after the previous one faded out.
+     *
+     * @param layer  The layer, from 0 to LAYER_COUNT - 1.
+     * @param source The new source, or null to silence the layer.
+     * @throws IllegalArgumentException If the format of the source is not supported.
+     */
+    public void setSource(int layer, Source source) {
+        if (source != null && (source.getChannelCount() < 1 || source.getChannelCount() > CHANNEL_COUNT
+                || source.getSampleRate() <= 0 || source.getSampleRate() > (long) sampleRate * MAX_RATE_RATIO)) {
+            throw new IllegalArgumentException("Unsupported format: " + source.getSampleRate() + " Hz, "
+                    + source.getChannelCount() + " channels");
+        }
+        sources.set(layer, source);
+    }
+
+    /**
+     * Sets the volume of a layer, from any thread. Takes effect with the next buffer.
+     *
+     * @param layer  The layer, from 0 to LAYER_COUNT - 1.
+     * @param volume The linear gain, from 0 (silent) to 1 (unchanged).
+     */
+    public void setVolume(int layer, float volume) {
+        volumes.set(layer, Float.floatToIntBits(Math.max(0f, Math.min(1f, volume))));
+    }
+
+    /**
+     * @param layer The layer, from 0 to LAYER_COUNT - 1.
+     * @return The volume set last.
+     */
+    public float getVolume(int layer) {
+        return Float.intBitsToFloat(volumes.get(layer));
+    }
+
+    /**
+     * Renders the next buffer. Only called by the audio thread.
+     *
+     * @param out Receives framesPerBuffer interleaved stereo frames.
+     */
+    public void render(short[] out) {
+        Arrays.fill(mix, 0f);
+        for (int layer = 0; layer < LAYER_COUNT; layer++) {
+            Source wanted = sources.get(layer);
+            if (wanted != playing[layer]) {
+                if (playing[layer] != null && gains[layer] > 0) {
+                    // The new source starts with the next buffer, from silence
+                    mixLayer(layer, 0f);
+                    gains[layer] = 0f;
+                    playing[layer] = null;
+                    continue;
+                }
+                playing[layer] = wanted;
+                gains[layer] = 0f;
+                phases[layer] = 0;
+                Arrays.fill(lastFrames[layer], 0f);
+            }
+            if (playing[layer] != null) {
+                mixLayer(layer, Float.intBitsToFloat(volumes.get(layer)));
+            }
+        }
+        for (int i = 0; i < mix.length; i++) {
+            int sample = Math.round(mix[i]);
+            out[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+        }
+    }
+
+    /**
+     * This method adds one buffer of a layer to the mix, resampled to the output rate, while
+     * its gain moves linearly to the target. Frame -1 of the input is the last frame of the
+     * previous buffer, so interpolation continues seamlessly from buffer to buffer.
+     */
+    private void mixLayer(int layer, float target) {
+        Source source = playing[layer];
+        int channels = source.getChannelCount();
+        double step = (double) source.getSampleRate() / sampleRate;
+        double phase = phases[layer];
+        int needed = (int) (phase + framesPerBuffer * step);
+
+        int read = 0;
+        while (read < needed) {
+            int count = source.read(input, read * channels, needed - read);
+            if (count <= 0) {
+                break;
+            }
+            read += count;
+        }
+        // An underrun plays silence rather than waiting for the source
+        if (read < needed) {
+            underruns++;
+        }
+        Arrays.fill(input, read * channels, needed * channels, (short) 0);
+
+        float[] last = lastFrames[layer];
+        float gain = gains[layer];
+        float delta = (target - gain) / framesPerBuffer;
+        for (int i = 0; i < framesPerBuffer; i++) {
+            double position = phase + i * step;
+            int index = (int) position;
+            float fraction = (float) (position - index);
+            gain += delta;
+            for (int c = 0; c < CHANNEL_COUNT; c++) {
+                int channel = channels == 1 ? 0 : c;
+                float a = index == 0 ? last[c] : input[(index - 1) * channels + channel];
+                float b = index < needed ? input[index * channels + channel] : a;
+                mix[i * CHANNEL_COUNT + c] += (a + (b - a) * fraction) * gain;
+            }
+        }
+        if (needed > 0) {
+            for (int c = 0; c < CHANNEL_COUNT; c++) {
+                last[c] = input[(needed - 1) * channels + (channels == 1 ? 0 : c)];
+            }
+        }
+        phases[layer] = phase + framesPerBuffer * step - needed;
+        gains[layer] = target;
+    }
+}
@@ -0,0 +1,55 @@
+package zen.zone.audio;
+
+/**
+ * The PcmClip class holds a fully decoded sound as 16-bit PCM samples.
+ */
+public class PcmClip {
+
+    private final short[] samples;
+    private final int length;
+    private final int sampleRate;
+    private final int channelCount;
+
+    /**
+     * Creates a clip.
+     *
+     * @param samples      The interleaved samples, possibly followed by unused space.
+     * @param length       The number of valid samples.
+     * @param sampleRate   The sample rate in Hz.
+     * @param channelCount The number of interleaved channels.
+     */
+    public PcmClip(short[] samples, int length, int sampleRate, int channelCount) {
+        this.samples = samples;
+        this.length = length;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+    }
+
+    /**
+     * @return The interleaved samples. Only the first {@link #getLength()} are valid.
+     */
+    public short[] getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return The number of valid samples (all channels together).
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return The sample rate in Hz.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return The number of interleaved channels.
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+}
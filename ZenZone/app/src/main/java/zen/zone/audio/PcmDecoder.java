@@ -0,0 +1,111 @@
+package zen.zone.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * The PcmDecoder class decodes a compressed sound resource (e.g. mp3) into 16-bit PCM
+ * samples in memory. It is meant for short sounds which have to start without any delay,
+ * and must not be called on the main thread.
+ */
+public class PcmDecoder {
+
+    private static final long TIMEOUT_US = 10_000;
+
+    /**
+     * Decodes a raw resource.
+     *
+     * @param context Any context of the application.
+     * @param resId   The raw resource to decode.
+     * @return The decoded clip.
+     * @throws IOException If the resource cannot be read or holds no audio track.
+     */
+    public static PcmClip decode(Context context, int resId) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try (AssetFileDescriptor fd = context.getResources().openRawResourceFd(resId)) {
+            extractor.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+        }
+        MediaCodec codec = null;
+        try {
+            MediaFormat format = selectAudioTrack(extractor);
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            return drain(extractor, codec, format);
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor) throws IOException {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IOException("No audio track found");
+    }
+
+    private static PcmClip drain(MediaExtractor extractor, MediaCodec codec, MediaFormat format) {
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        // Start with room for ten seconds, grown as needed
+        short[] samples = new short[sampleRate * channelCount * 10];
+        int length = 0;
+
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean inputDone = false;
+        boolean outputDone = false;
+        while (!outputDone) {
+            if (!inputDone) {
+                int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                if (inputIndex >= 0) {
+                    ByteBuffer input = codec.getInputBuffer(inputIndex);
+                    int size = extractor.readSampleData(input, 0);
+                    if (size < 0) {
+                        codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                MediaFormat outputFormat = codec.getOutputFormat();
+                sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            } else if (outputIndex >= 0) {
+                ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                output.position(info.offset).limit(info.offset + info.size);
+                ShortBuffer pcm = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                int count = pcm.remaining();
+                if (length + count > samples.length) {
+                    samples = Arrays.copyOf(samples, Math.max(samples.length * 2, length + count));
+                }
+                pcm.get(samples, length, count);
+                length += count;
+                codec.releaseOutputBuffer(outputIndex, false);
+                outputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+            }
+        }
+        return new PcmClip(samples, length, sampleRate, channelCount);
+    }
+}
@@ -0,0 +1,118 @@
+package zen.zone.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The PcmRingBuffer class hands decoded 16-bit PCM frames from one producer thread (a decoder)
+ * to one consumer thread (the audio thread). Both sides only publish their own position, so
+ * neither ever waits for the other: a full buffer accepts fewer frames, an empty one returns
+ * fewer frames.
+ */
+public class PcmRingBuffer implements MixerCore.Source {
+
+    private final short[] samples;
+    private final int capacityFrames;
+    private final int sampleRate;
+    private final int channelCount;
+    // Total frames written and read since creation, only ever increased by their own side
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong read = new AtomicLong();
+
+    /**
+     * Creates an empty ring buffer.
+     *
+     * @param capacityFrames The number of frames it holds.
+     * @param sampleRate     The sample rate of the frames in Hz.
+     * @param channelCount   The number of interleaved channels.
+     */
+    public PcmRingBuffer(int capacityFrames, int sampleRate, int channelCount) {
+        if (capacityFrames <= 0 || channelCount <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacityFrames + " frames of " + channelCount);
+        }
+        this.capacityFrames = capacityFrames;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        samples = new short[capacityFrames * channelCount];
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * @return The number of frames the producer can write now.
+     */
+    public int getFreeFrames() {
+        return capacityFrames - (int) (written.get() - read.get());
+    }
+
+    /**
+     * @return The number of frames the consumer can read now.
+     */
+    public int getAvailableFrames() {
+        return (int) (written.get() - read.get());
+    }
+
+    /**
+     * @return The number of frames the consumer read since the buffer was created.
+     */
+    public long getReadFrames() {
+        return read.get();
+    }
+
+    /**
+     * Appends frames. Only called by the producer.
+     *
+     * @param buffer The interleaved samples.
+     * @param offset The index of the first sample to copy.
+     * @param frames The number of frames to copy.
+     * @return The number of frames copied, fewer if the buffer is full.
+     */
+    public int write(short[] buffer, int offset, int frames) {
+        long position = written.get();
+        int count = Math.min(frames, capacityFrames - (int) (position - read.get()));
+        copy(buffer, offset, position, count, true);
+        written.lazySet(position + count);
+        return count;
+    }
+
+    /**
+     * Takes the oldest frames. Only called by the consumer.
+     */
+    @Override
+    public int read(short[] buffer, int offset, int frames) {
+        long position = read.get();
+        int count = Math.min(frames, (int) (written.get() - position));
+        copy(buffer, offset, position, count, false);
+        read.lazySet(position + count);
+        return count;
+    }
+
+    /**
+     * This method copies frames between a buffer and the ring, in at most two parts when the
+     * frames wrap around the end of the ring.
+     */
+    private void copy(short[] buffer, int offset, long position, int frames, boolean toRing) {
+        int start = (int) (position % capacityFrames);
+        int first = Math.min(frames, capacityFrames - start);
+        copyPart(buffer, offset, start, first, toRing);
+        copyPart(buffer, offset + first * channelCount, 0, frames - first, toRing);
+    }
+
+    private void copyPart(short[] buffer, int offset, int frame, int frames, boolean toRing) {
+        if (frames <= 0) {
+            return;
+        }
+        if (toRing) {
+            System.arraycopy(buffer, offset, samples, frame * channelCount, frames * channelCount);
+        } else {
+            System.arraycopy(samples, frame * channelCount, buffer, offset, frames * channelCount);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package zen.zone.audio;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The PreparedSounds class opens the background sounds the user selects before the session
+ * starts, and decodes their first second. When the session then plays one of them, the
+ * {@link AmbientMixer} takes over the prepared decoder with its ring buffer already filled, so
+ * the sound is heard with the first buffer instead of after the codec was created.
+ *
+ * At most SOUND_LAYER_COUNT sounds are kept prepared, the most recently selected ones, as codecs
+ * are a scarce resource; prepared sounds nobody plays are released after EXPIRY_MILLIS.
+ */
+public class PreparedSounds {
+
+    private static final String TAG = PreparedSounds.class.getName();
+    private static final int MAX_PREPARED = AmbientMixer.SOUND_LAYER_COUNT;
+    private static final long EXPIRY_MILLIS = 5 * 60_000;
+    private static final long FILL_INTERVAL_MILLIS = 20;
+    private static final int MAX_FILL_ATTEMPTS = 50;
+
+    private static PreparedSounds instance;
+
+    private final Context context;
+    private final Handler handler;
+    // Guarded by this, the most recently prepared last
+    private final LinkedHashMap<String, StreamDecoder> decoders = new LinkedHashMap<>();
+    private final Runnable expireTask = this::releaseAll;
+
+    /**
+     * The Opener interface opens the decoder of a sound.
+     */
+    private interface Opener {
+        StreamDecoder open() throws IOException;
+    }
+
+    private PreparedSounds(Context context) {
+        this.context = context.getApplicationContext();
+        HandlerThread thread = new HandlerThread("sound-preparer", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * @param context Any context of the application.
+     * @return The single instance.
+     */
+    public static synchronized PreparedSounds getInstance(Context context) {
+        if (instance == null) {
+            instance = new PreparedSounds(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Prepares a raw resource in the background.
+     *
+     * @param resId The raw resource.
+     */
+    public void prepare(int resId) {
+        prepare(key(resId), () -> StreamDecoder.open(context, resId, AmbientMixer.DECODE_AHEAD_MILLIS, true));
+    }
+
+    /**
+     * Prepares a sound file in the background.
+     *
+     * @param file The sound file.
+     */
+    public void prepare(File file) {
+        prepare(key(file), () -> StreamDecoder.open(file, AmbientMixer.DECODE_AHEAD_MILLIS, true));
+    }
+
+    /**
+     * Hands a prepared raw resource over to the caller, who owns it from then on.
+     *
+     * @param resId The raw resource.
+     * @return The prepared decoder, or null if the resource is not prepared.
+     */
+    synchronized StreamDecoder take(int resId) {
+        return decoders.remove(key(resId));
+    }
+
+    /**
+     * Hands a prepared sound file over to the caller, who owns it from then on.
+     *
+     * @param file The sound file.
+     * @return The prepared decoder, or null if the file is not prepared.
+     */
+    synchronized StreamDecoder take(File file) {
+        return decoders.remove(key(file));
+    }
+
+    private void prepare(String key, Opener opener) {
+        handler.post(() -> {
+            handler.removeCallbacks(expireTask);
+            handler.postDelayed(expireTask, EXPIRY_MILLIS);
+            synchronized (this) {
+                StreamDecoder decoder = decoders.remove(key);
+                if (decoder != null) {
+                    // Selected again, it becomes the most recent
+                    decoders.put(key, decoder);
+                    return;
+                }
+            }
+            StreamDecoder decoder;
+            try {
+                decoder = opener.open();
+            } catch (IOException e) {
+                // The mixer then opens the sound itself, and reports the error
+                Log.w(TAG, "Cannot prepare " + key, e);
+                return;
+            }
+            synchronized (this) {
+                decoders.put(key, decoder);
+                Iterator<StreamDecoder> iterator = decoders.values().iterator();
+                while (decoders.size() > MAX_PREPARED) {
+                    iterator.next().release();
+                    iterator.remove();
+                }
+            }
+            fill(key, 0);
+        });
+    }
+
+    /**
+     * This method decodes the start of a prepared sound until its ring buffer is full. The codec
+     * delivers its first output only after a few input buffers, hence the repeated attempts.
+     */
+    private void fill(String key, int attempts) {
+        synchronized (this) {
+            StreamDecoder decoder = decoders.get(key);
+            if (decoder == null) {
+                // Taken by the mixer, or released
+                return;
+            }
+            try {
+                decoder.fill();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Cannot prepare " + key, e);
+                decoders.remove(key).release();
+                return;
+            }
+            PcmRingBuffer ring = decoder.getRing();
+            if ((ring != null && ring.getFreeFrames() == 0) || attempts >= MAX_FILL_ATTEMPTS) {
+                return;
+            }
+        }
+        handler.postDelayed(() -> fill(key, attempts + 1), FILL_INTERVAL_MILLIS);
+    }
+
+    private synchronized void releaseAll() {
+        for (StreamDecoder decoder : decoders.values()) {
+            decoder.release();
+        }
+        decoders.clear();
+    }
+
+    private static String key(int resId) {
+        return "res:" + resId;
+    }
+
+    private static String key(File file) {
+        return file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,278 @@
+package zen.zone.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * The StreamDecoder class streams a compressed sound into a {@link PcmRingBuffer}, a little
+ * ahead of playback, so long sounds never have to be decoded into memory as a whole: memory use
+ * is the same for a short loop and an hour of narration. It never blocks: {@link #fill()}
+ * decodes what fits into the ring buffer right now and returns. Used by one thread at a time:
+ * the decoder thread of {@link AmbientMixer}, after {@link PreparedSounds} handed it over.
+ *
+ * An ambient sound loops endlessly. A narration plays once, and can be moved to any position
+ * with {@link #seekTo(long)}: the extractor jumps to the closest sync sample before it and the
+ * decoded frames up to the position are dropped, so the seek is both fast and exact.
+ */
+class StreamDecoder {
+
+    private final MediaExtractor extractor;
+    private final MediaCodec codec;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private final int bufferMillis;
+    private final boolean looping;
+    // Read by other threads to tell the position
+    private volatile PcmRingBuffer ring;
+    private volatile long ringStartMillis;
+    private long skipUntilUs;
+    private boolean inputStarted;
+    private boolean ended;
+    private short[] chunk = new short[0];
+    private ShortBuffer pending;
+    private int pendingIndex;
+    private boolean pendingEnd;
+    private boolean inputDone;
+
+    private StreamDecoder(MediaExtractor extractor, int bufferMillis, boolean looping) throws IOException {
+        this.extractor = extractor;
+        this.bufferMillis = bufferMillis;
+        this.looping = looping;
+        MediaCodec created = null;
+        try {
+            MediaFormat format = selectAudioTrack(extractor);
+            created = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            created.configure(format, null, null, 0);
+            created.start();
+        } catch (IOException | RuntimeException e) {
+            if (created != null) {
+                created.release();
+            }
+            extractor.release();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        codec = created;
+    }
+
+    /**
+     * Opens a raw resource.
+     *
+     * @param context      Any context of the application.
+     * @param resId        The raw resource.
+     * @param bufferMillis How far ahead of playback to decode.
+     * @param looping      true to start over at the end.
+     * @return The decoder, which has to be released.
+     * @throws IOException If the resource cannot be read or holds no audio track.
+     */
+    static StreamDecoder open(Context context, int resId, int bufferMillis, boolean looping) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try (AssetFileDescriptor fd = context.getResources().openRawResourceFd(resId)) {
+            extractor.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+        } catch (IOException e) {
+            extractor.release();
+            throw e;
+        }
+        return new StreamDecoder(extractor, bufferMillis, looping);
+    }
+
+    /**
+     * Opens a file.
+     *
+     * @param file         The sound file.
+     * @param bufferMillis How far ahead of playback to decode.
+     * @param looping      true to start over at the end.
+     * @return The decoder, which has to be released.
+     * @throws IOException If the file cannot be read or holds no audio track.
+     */
+    static StreamDecoder open(File file, int bufferMillis, boolean looping) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(file.getPath());
+        } catch (IOException e) {
+            extractor.release();
+            throw e;
+        }
+        return new StreamDecoder(extractor, bufferMillis, looping);
+    }
+
+    /**
+     * @return The decoded frames, or null until the format of the output is known and after a
+     * seek until the first frames at the new position are decoded.
+     */
+    PcmRingBuffer getRing() {
+        return ring;
+    }
+
+    /**
+     * Returns the position of playback, i.e. of the next frame the mixer takes from the ring
+     * buffer. Safe to call from any thread.
+     *
+     * @return The position in milliseconds from the start of the sound.
+     */
+    long getPositionMillis() {
+        PcmRingBuffer current = ring;
+        long startMillis = ringStartMillis;
+        if (current == null) {
+            return startMillis;
+        }
+        return startMillis + current.getReadFrames() * 1000 / current.getSampleRate();
+    }
+
+    /**
+     * @return true once a sound which does not loop was decoded and played to its end.
+     */
+    boolean isDrained() {
+        PcmRingBuffer current = ring;
+        return ended && (current == null || current.getAvailableFrames() == 0);
+    }
+
+    /**
+     * Moves playback to another position. The frames decoded ahead are dropped along with the
+     * ring buffer holding them; the next {@link #fill()} creates a new one, starting exactly at
+     * the position.
+     *
+     * @param positionMillis The position in milliseconds from the start of the sound.
+     */
+    void seekTo(long positionMillis) {
+        if (inputStarted) {
+            // Returns every buffer to the codec, the pending output too
+            codec.flush();
+        }
+        pending = null;
+        inputDone = false;
+        ended = false;
+        skipUntilUs = positionMillis * 1000;
+        extractor.seekTo(skipUntilUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        ringStartMillis = positionMillis;
+        ring = null;
+    }
+
+    /**
+     * Decodes until the ring buffer is full or the codec has no more output right now.
+     *
+     * @return true if anything was decoded.
+     */
+    boolean fill() {
+        if (ended) {
+            return false;
+        }
+        boolean progress = false;
+        while (!inputDone) {
+            int index = codec.dequeueInputBuffer(0);
+            if (index < 0) {
+                break;
+            }
+            int size = extractor.readSampleData(codec.getInputBuffer(index), 0);
+            if (size < 0) {
+                codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                inputDone = true;
+            } else {
+                codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+                extractor.advance();
+            }
+            inputStarted = true;
+        }
+
+        while (true) {
+            if (pending == null) {
+                int index = codec.dequeueOutputBuffer(info, 0);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    createRing(codec.getOutputFormat());
+                    continue;
+                }
+                if (index < 0) {
+                    return progress;
+                }
+                ByteBuffer output = codec.getOutputBuffer(index);
+                output.position(info.offset).limit(info.offset + info.size);
+                pending = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                pendingIndex = index;
+                pendingEnd = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                if (ring == null) {
+                    createRing(codec.getOutputFormat());
+                }
+                skipToTarget();
+            }
+
+            int channels = ring.getChannelCount();
+            int frames = Math.min(pending.remaining() / channels, ring.getFreeFrames());
+            if (frames > 0) {
+                if (chunk.length < frames * channels) {
+                    chunk = new short[frames * channels];
+                }
+                pending.get(chunk, 0, frames * channels);
+                ring.write(chunk, 0, frames);
+                progress = true;
+            }
+            if (pending.remaining() >= channels) {
+                // The ring buffer is full
+                return progress;
+            }
+            codec.releaseOutputBuffer(pendingIndex, false);
+            pending = null;
+            if (pendingEnd) {
+                if (!looping) {
+                    ended = true;
+                    return progress;
+                }
+                // Start over, the codec keeps its configuration
+                codec.flush();
+                extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+                inputDone = false;
+                skipUntilUs = 0;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases the codec. The ring buffer stays readable.
+     */
+    void release() {
+        codec.release();
+        extractor.release();
+    }
+
+    /**
+     * This method drops the frames of the pending output which come before the target of the
+     * last seek, as the extractor can only seek to sync samples.
+     */
+    private void skipToTarget() {
+        if (info.presentationTimeUs >= skipUntilUs) {
+            return;
+        }
+        int channels = ring.getChannelCount();
+        long frames = (skipUntilUs - info.presentationTimeUs) * ring.getSampleRate() / 1_000_000;
+        int skipped = (int) Math.min(frames, pending.remaining() / channels);
+        pending.position(pending.position() + skipped * channels);
+    }
+
+    private void createRing(MediaFormat format) {
+        if (ring != null) {
+            return;
+        }
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        ring = new PcmRingBuffer(sampleRate * bufferMillis / 1000, sampleRate, channelCount);
+    }
+
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor) throws IOException {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IOException("No audio track found");
+    }
+}
@@ -0,0 +1,123 @@
+package zen.zone.history;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import zen.zone.streak.StreakEngine;
+
+/**
+ * The DailyMinutesIndex class holds the minutes spent meditating on every day with at least one
+ * session, as two parallel arrays sorted by day. It is built with a single pass over the session
+ * history, after which the minutes of any range of days are found with a binary search, so a
+ * screen showing a few weeks of a long history never walks through all of it.
+ *
+ * The index is immutable and can be read from any thread.
+ */
+public final class DailyMinutesIndex {
+
+    /**
+     * An index without sessions.
+     */
+    public static final DailyMinutesIndex EMPTY = new DailyMinutesIndex(new long[0], new int[0]);
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    private final long[] days;
+    private final int[] minutes;
+
+    private DailyMinutesIndex(long[] days, int[] minutes) {
+        this.days = days;
+        this.minutes = minutes;
+    }
+
+    /**
+     * Builds the index of the whole session history.
+     *
+     * @param store The session history.
+     * @param zone  The time zone of the user.
+     * @return The index.
+     */
+    public static DailyMinutesIndex fromHistory(SessionHistoryStore store, ZoneId zone) {
+        int size = store.size();
+        long[] sessionDays = new long[size];
+        long[] sessionMillis = new long[size];
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            sessionDays[i] = StreakEngine.toLocalEpochDay(store.getStartTime(i), zone);
+            sessionMillis[i] = store.getActualDuration(i);
+            sorted &= i == 0 || sessionDays[i] >= sessionDays[i - 1];
+        }
+        if (!sorted) {
+            // Sessions are appended in time order, unless the clock or the zone changed;
+            // sort (day, index) pairs packed into longs
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = sessionDays[i] << 32 | i;
+            }
+            Arrays.sort(keys);
+            long[] millis = sessionMillis.clone();
+            for (int i = 0; i < size; i++) {
+                sessionDays[i] = keys[i] >> 32;
+                sessionMillis[i] = millis[(int) keys[i]];
+            }
+        }
+
+        long[] days = new long[size];
+        long[] millisByDay = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (count == 0 || days[count - 1] != sessionDays[i]) {
+                days[count++] = sessionDays[i];
+            }
+            millisByDay[count - 1] += sessionMillis[i];
+        }
+        int[] minutes = new int[count];
+        for (int i = 0; i < count; i++) {
+            minutes[i] = (int) ((millisByDay[i] + MILLIS_PER_MINUTE / 2) / MILLIS_PER_MINUTE);
+        }
+        return count == 0 ? EMPTY : new DailyMinutesIndex(Arrays.copyOf(days, count), minutes);
+    }
+
+    /**
+     * @return The local epoch day of the first session, or StreakEngine.NO_DAY if there is none.
+     */
+    public long getFirstDay() {
+        return days.length == 0 ? StreakEngine.NO_DAY : days[0];
+    }
+
+    /**
+     * @return The number of days with at least one session.
+     */
+    public int getDayCount() {
+        return days.length;
+    }
+
+    /**
+     * Returns the minutes of a single day.
+     *
+     * @param day The local epoch day.
+     * @return The minutes spent meditating on that day.
+     */
+    public int getMinutes(long day) {
+        int index = Arrays.binarySearch(days, day);
+        return index >= 0 ? minutes[index] : 0;
+    }
+
+    /**
+     * Fills the minutes of a range of consecutive days. Runs in O(log n + range).
+     *
+     * @param fromDay The local epoch day of the first day of the range.
+     * @param out     The array receiving the minutes; its length is the length of the range.
+     */
+    public void getMinutes(long fromDay, int[] out) {
+        Arrays.fill(out, 0);
+        int index = Arrays.binarySearch(days, fromDay);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        long toDay = fromDay + out.length;
+        for (; index < days.length && days[index] < toDay; index++) {
+            out[(int) (days[index] - fromDay)] = minutes[index];
+        }
+    }
+}
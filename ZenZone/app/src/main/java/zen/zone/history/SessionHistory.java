@@ -0,0 +1,98 @@
+package zen.zone.history;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The SessionHistory class gives the application a single, shared {@link SessionHistoryStore}
+ * kept in the app's private files directory. Opening the store, appending to it and syncing it
+ * to disk are all done on a background thread, so recording a session never blocks the UI or
+ * the service on disk I/O.
+ */
+public class SessionHistory {
+
+    private static final String TAG = SessionHistory.class.getName();
+    private static final String FILE_NAME = "sessions.zzh";
+
+    private static SessionHistory instance;
+
+    private final File path;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private SessionHistoryStore store;
+
+    private SessionHistory(File path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the shared session history of the application.
+     *
+     * @param context Any context of the application.
+     * @return The shared session history.
+     */
+    public static synchronized SessionHistory getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionHistory(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the underlying store, opening it on first use. Opening maps the file, so this is
+     * only called on background threads.
+     *
+     * @return The opened store.
+     * @throws IOException If the store cannot be opened.
+     */
+    public synchronized SessionHistoryStore getStore() throws IOException {
+        if (store == null) {
+            // Syncing is driven from here, so that it never runs on the caller's thread
+            store = SessionHistoryStore.open(path, Integer.MAX_VALUE);
+        }
+        return store;
+    }
+
+    /**
+     * Appends a finished (completed or aborted) session to the history in the background.
+     * Once enough appends are pending, the store is synced to disk there too.
+     *
+     * @param record The session to record. It is copied, so the caller can reuse it at once.
+     */
+    public void record(SessionRecord record) {
+        SessionRecord copy = new SessionRecord();
+        copy.copyFrom(record);
+        ioExecutor.execute(() -> {
+            SessionHistoryStore historyStore;
+            try {
+                historyStore = getStore();
+                historyStore.append(copy);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not record session: " + e.getMessage());
+                return;
+            }
+            if (historyStore.getUnsyncedAppends() >= SessionHistoryStore.DEFAULT_SYNC_BATCH) {
+                historyStore.sync();
+            }
+        });
+    }
+
+    /**
+     * Syncs all pending appends to disk in the background. Appends already survive the
+     * process being killed, since they live in the page cache, so this only has to be
+     * called when the app goes to the background.
+     */
+    public void flush() {
+        SessionHistoryStore historyStore;
+        synchronized (this) {
+            historyStore = store;
+        }
+        if (historyStore != null) {
+            ioExecutor.execute(historyStore::sync);
+        }
+    }
+}
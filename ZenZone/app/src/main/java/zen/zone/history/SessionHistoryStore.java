@@ -0,0 +1,253 @@
+package zen.zone.history;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The SessionHistoryStore class keeps every meditation session in an append-only file
+ * of fixed-width records. The file is memory-mapped, so appending a session is a handful
+ * of writes into the mapping and reading a session does not copy the file into the heap.
+ * Changes are forced to disk in batches rather than after every single append.
+ */
+public class SessionHistoryStore implements Closeable {
+
+    /**
+     * Number of appends after which the mapping is forced to disk automatically.
+     */
+    public static final int DEFAULT_SYNC_BATCH = 8;
+
+    private static final int MAGIC = 0x5A5A5348; // "ZZSH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_RECORD_SIZE = 8;
+    private static final int OFFSET_COUNT = 12;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int syncBatch;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private int unsyncedAppends;
+
+    private SessionHistoryStore(RandomAccessFile file, int syncBatch) throws IOException {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.syncBatch = syncBatch;
+
+        if (file.length() < HEADER_SIZE) {
+            map(INITIAL_CAPACITY);
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+            buffer.putInt(OFFSET_VERSION, VERSION);
+            buffer.putInt(OFFSET_RECORD_SIZE, SessionRecord.SIZE);
+            buffer.putInt(OFFSET_COUNT, 0);
+            buffer.force();
+        } else {
+            int storedCapacity = (int) ((file.length() - HEADER_SIZE) / SessionRecord.SIZE);
+            map(Math.max(storedCapacity, INITIAL_CAPACITY));
+            if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_RECORD_SIZE) != SessionRecord.SIZE) {
+                throw new IOException("Not a session history file");
+            }
+            // Only one version exists so far; a newer one is left untouched rather than misread
+            int version = buffer.getInt(OFFSET_VERSION);
+            if (version != VERSION) {
+                throw new IOException("Unsupported session history version " + version);
+            }
+            // Never trust a count pointing past the end of the file
+            count = Math.min(buffer.getInt(OFFSET_COUNT), storedCapacity);
+        }
+    }
+
+    /**
+     * Opens the store kept in the given file, creating it if it does not exist yet.
+     *
+     * @param path The file holding the session history.
+     * @return The opened store.
+     * @throws IOException If the file cannot be opened, is not a session history file or has
+     *                     an unsupported version.
+     */
+    public static SessionHistoryStore open(File path) throws IOException {
+        return open(path, DEFAULT_SYNC_BATCH);
+    }
+
+    /**
+     * Opens the store kept in the given file, creating it if it does not exist yet.
+     *
+     * @param path      The file holding the session history.
+     * @param syncBatch Number of appends after which the mapping is forced to disk.
+     * @return The opened store.
+     * @throws IOException If the file cannot be opened, is not a session history file or has
+     *                     an unsupported version.
+     */
+    public static SessionHistoryStore open(File path, int syncBatch) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            return new SessionHistoryStore(file, Math.max(1, syncBatch));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a session to the end of the history. The record is copied into the mapping,
+     * so it can be cleared and reused by the caller right after this method returns.
+     *
+     * @param record The session to append.
+     * @return The index of the appended session.
+     * @throws IOException If the file has to grow and this fails.
+     */
+    public synchronized int append(SessionRecord record) throws IOException {
+        if (count == capacity) {
+            map(capacity * 2);
+        }
+        int base = offsetOf(count);
+        buffer.putLong(base + SessionRecord.OFFSET_START_TIME, record.startTimeMillis);
+        buffer.putLong(base + SessionRecord.OFFSET_PLANNED_DURATION, record.plannedDurationMillis);
+        buffer.putLong(base + SessionRecord.OFFSET_ACTUAL_DURATION, record.actualDurationMillis);
+        buffer.putLong(base + SessionRecord.OFFSET_PAUSED_DURATION, record.pausedDurationMillis);
+        buffer.putInt(base + SessionRecord.OFFSET_PAUSE_COUNT, record.pauseCount);
+        buffer.putInt(base + SessionRecord.OFFSET_SOUND_ID, record.soundId);
+        buffer.putInt(base + SessionRecord.OFFSET_BELL_COUNT, record.bellCount);
+        buffer.putInt(base + SessionRecord.OFFSET_FLAGS, record.flags);
+
+        // The count is published last, so a torn append is simply not visible after a crash
+        count++;
+        buffer.putInt(OFFSET_COUNT, count);
+
+        if (++unsyncedAppends >= syncBatch) {
+            sync();
+        }
+        return count - 1;
+    }
+
+    /**
+     * Forces all appends made so far to disk.
+     */
+    public synchronized void sync() {
+        if (unsyncedAppends > 0) {
+            buffer.force();
+            unsyncedAppends = 0;
+        }
+    }
+
+    /**
+     * Returns the number of appends that were not forced to disk yet.
+     *
+     * @return The number of pending appends.
+     */
+    public synchronized int getUnsyncedAppends() {
+        return unsyncedAppends;
+    }
+
+    /**
+     * Returns the number of sessions in the history.
+     *
+     * @return The number of stored sessions.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Returns the start time of the session at the given index.
+     *
+     * @param index The index of the session.
+     * @return The wall-clock start time (epoch ms).
+     */
+    public synchronized long getStartTime(int index) {
+        return buffer.getLong(offsetOf(checkIndex(index)) + SessionRecord.OFFSET_START_TIME);
+    }
+
+    /**
+     * Returns the planned duration of the session at the given index.
+     *
+     * @param index The index of the session.
+     * @return The planned duration in milliseconds.
+     */
+    public synchronized long getPlannedDuration(int index) {
+        return buffer.getLong(offsetOf(checkIndex(index)) + SessionRecord.OFFSET_PLANNED_DURATION);
+    }
+
+    /**
+     * Returns the time actually spent meditating in the session at the given index.
+     *
+     * @param index The index of the session.
+     * @return The actual duration in milliseconds.
+     */
+    public synchronized long getActualDuration(int index) {
+        return buffer.getLong(offsetOf(checkIndex(index)) + SessionRecord.OFFSET_ACTUAL_DURATION);
+    }
+
+    /**
+     * Returns the flags of the session at the given index.
+     *
+     * @param index The index of the session.
+     * @return The bit set of SessionRecord.FLAG_* values.
+     */
+    public synchronized int getFlags(int index) {
+        return buffer.getInt(offsetOf(checkIndex(index)) + SessionRecord.OFFSET_FLAGS);
+    }
+
+    /**
+     * Reads the session at the given index into a caller-owned record.
+     *
+     * @param index  The index of the session.
+     * @param record The record to fill.
+     */
+    public synchronized void read(int index, SessionRecord record) {
+        int base = offsetOf(checkIndex(index));
+        record.startTimeMillis = buffer.getLong(base + SessionRecord.OFFSET_START_TIME);
+        record.plannedDurationMillis = buffer.getLong(base + SessionRecord.OFFSET_PLANNED_DURATION);
+        record.actualDurationMillis = buffer.getLong(base + SessionRecord.OFFSET_ACTUAL_DURATION);
+        record.pausedDurationMillis = buffer.getLong(base + SessionRecord.OFFSET_PAUSED_DURATION);
+        record.pauseCount = buffer.getInt(base + SessionRecord.OFFSET_PAUSE_COUNT);
+        record.soundId = buffer.getInt(base + SessionRecord.OFFSET_SOUND_ID);
+        record.bellCount = buffer.getInt(base + SessionRecord.OFFSET_BELL_COUNT);
+        record.flags = buffer.getInt(base + SessionRecord.OFFSET_FLAGS);
+    }
+
+    /**
+     * Forces pending appends to disk and closes the file.
+     *
+     * @throws IOException If closing the file fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * This method (re)maps the file so that it can hold the given number of records.
+     */
+    private void map(int newCapacity) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            unsyncedAppends = 0;
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * SessionRecord.SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = newCapacity;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + count);
+        }
+        return index;
+    }
+
+    private static int offsetOf(int index) {
+        return HEADER_SIZE + index * SessionRecord.SIZE;
+    }
+}
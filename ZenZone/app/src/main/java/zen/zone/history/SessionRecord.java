@@ -0,0 +1,108 @@
+package zen.zone.history;
+
+/**
+ * The SessionRecord class is a mutable holder for a single meditation session.
+ * It is meant to be allocated once and reused, so that appending sessions to the
+ * {@link SessionHistoryStore} does not allocate anything.
+ */
+public class SessionRecord {
+
+    /**
+     * Flag set when the session ran until the end of the planned duration.
+     */
+    public static final int FLAG_COMPLETED = 1;
+
+    /**
+     * Size of one record on disk, in bytes.
+     */
+    static final int SIZE = 48;
+
+    // Offsets of the fields inside one record
+    static final int OFFSET_START_TIME = 0;
+    static final int OFFSET_PLANNED_DURATION = 8;
+    static final int OFFSET_ACTUAL_DURATION = 16;
+    static final int OFFSET_PAUSED_DURATION = 24;
+    static final int OFFSET_PAUSE_COUNT = 32;
+    static final int OFFSET_SOUND_ID = 36;
+    static final int OFFSET_BELL_COUNT = 40;
+    static final int OFFSET_FLAGS = 44;
+
+    /**
+     * Wall-clock time (epoch ms) at which the session started.
+     */
+    public long startTimeMillis;
+
+    /**
+     * Duration selected by the user, in milliseconds.
+     */
+    public long plannedDurationMillis;
+
+    /**
+     * Time actually spent meditating (pauses excluded), in milliseconds.
+     */
+    public long actualDurationMillis;
+
+    /**
+     * Total time the session spent paused, in milliseconds.
+     */
+    public long pausedDurationMillis;
+
+    /**
+     * Number of times the session was paused.
+     */
+    public int pauseCount;
+
+    /**
+     * Identifier of the background sound played during the session.
+     */
+    public int soundId;
+
+    /**
+     * Number of bells rung during the session.
+     */
+    public int bellCount;
+
+    /**
+     * Bit set of FLAG_* values.
+     */
+    public int flags;
+
+    /**
+     * Copies all fields of another record into this one.
+     *
+     * @param other The record to copy.
+     */
+    public void copyFrom(SessionRecord other) {
+        startTimeMillis = other.startTimeMillis;
+        plannedDurationMillis = other.plannedDurationMillis;
+        actualDurationMillis = other.actualDurationMillis;
+        pausedDurationMillis = other.pausedDurationMillis;
+        pauseCount = other.pauseCount;
+        soundId = other.soundId;
+        bellCount = other.bellCount;
+        flags = other.flags;
+    }
+
+    /**
+     * Resets all fields, so the record can be reused for the next session.
+     */
+    public void clear() {
+        startTimeMillis = 0;
+        plannedDurationMillis = 0;
+        actualDurationMillis = 0;
+        pausedDurationMillis = 0;
+        pauseCount = 0;
+        soundId = 0;
+        bellCount = 0;
+        flags = 0;
+    }
+
+    /**
+     * Checks if the session ran until the end of the planned duration.
+     *
+     * @return true if the session was completed, false if it was aborted.
+     */
+    public boolean isCompleted() {
+        return (flags & FLAG_COMPLETED) != 0;
+    }
+}
@@ -0,0 +1,47 @@
+package zen.zone.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Counter class counts occurrences, e.g. underruns of the audio output. Counting is a
+ * single atomic add, from any thread.
+ */
+public final class Counter {
+
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the counter.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    /**
+     * Adds a number of occurrences.
+     *
+     * @param delta The number to add.
+     */
+    public void add(long delta) {
+        value.addAndGet(delta);
+    }
+
+    /**
+     * @return The count so far.
+     */
+    public long get() {
+        return value.get();
+    }
+}
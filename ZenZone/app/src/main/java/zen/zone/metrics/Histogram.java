@@ -0,0 +1,144 @@
+package zen.zone.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Histogram class counts measured values, e.g. latencies in milliseconds, in fixed buckets
+ * and keeps the most recent values in a ring buffer. Everything is allocated when the histogram
+ * is created: recording a value is a binary search and a few atomic updates, from any thread,
+ * without locks, so it can be called on hot paths such as the timer tick or the audio thread.
+ *
+ * Percentiles are estimated from the buckets, as the upper bound of the bucket holding the
+ * percentile, so they are never lower than the true value.
+ */
+public final class Histogram {
+
+    /**
+     * The number of most recent values kept.
+     */
+    public static final int RECENT_CAPACITY = 32;
+
+    private final String name;
+    private final long[] bounds;
+    // One bucket per bound, values up to and including the bound, plus one for larger values
+    private final AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLongArray recent = new AtomicLongArray(RECENT_CAPACITY);
+    private final AtomicLong recentCursor = new AtomicLong();
+
+    Histogram(String name, long[] bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds of " + name + " are not ascending");
+            }
+        }
+        this.name = name;
+        this.bounds = bounds.clone();
+        buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * @return The name of the histogram.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value The measured value.
+     */
+    public void record(long value) {
+        int bucket = Arrays.binarySearch(bounds, value);
+        buckets.incrementAndGet(bucket >= 0 ? bucket : -bucket - 1);
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Another thread raised the maximum, try again
+        }
+        recent.set((int) (recentCursor.getAndIncrement() % RECENT_CAPACITY), value);
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The sum of the recorded values.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * @return The largest recorded value, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return count.get() > 0 ? max.get() : 0;
+    }
+
+    /**
+     * Estimates a percentile.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket holding the percentile (the maximum for the
+     * last bucket), or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bounds[i], getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return The most recent values, oldest first, at most RECENT_CAPACITY.
+     */
+    public long[] getRecent() {
+        long end = recentCursor.get();
+        long start = Math.max(0, end - RECENT_CAPACITY);
+        long[] values = new long[(int) (end - start)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = recent.get((int) ((start + i) % RECENT_CAPACITY));
+        }
+        return values;
+    }
+
+    /**
+     * @return The upper bounds of the buckets, ascending.
+     */
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @param bucket The bucket, from 0 to the number of bounds (the values above the last bound).
+     * @return The number of values in the bucket.
+     */
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+}
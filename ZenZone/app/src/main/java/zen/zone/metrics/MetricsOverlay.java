@@ -0,0 +1,75 @@
+package zen.zone.metrics;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.appcompat.widget.AppCompatTextView;
+
+/**
+ * The MetricsOverlay class shows the {@link MetricsRegistry#summary()} of the app on top of an
+ * activity, refreshed once per second while it is attached to a window. Meant for debug builds
+ * only. Tapping it collapses it to a small tab and back, so it never hides the screen for good.
+ */
+public class MetricsOverlay extends AppCompatTextView {
+
+    private static final long REFRESH_MILLIS = 1000;
+
+    private final MetricsRegistry registry;
+    private final Runnable refresh = this::refresh;
+    private boolean collapsed;
+
+    private MetricsOverlay(Activity activity, MetricsRegistry registry) {
+        super(activity);
+        this.registry = registry;
+        setTypeface(Typeface.MONOSPACE);
+        setTextSize(9);
+        setTextColor(Color.WHITE);
+        setBackgroundColor(0x99000000);
+        int padding = Math.round(4 * getResources().getDisplayMetrics().density);
+        setPadding(padding, padding, padding, padding);
+        setOnClickListener(v -> {
+            collapsed = !collapsed;
+            refresh();
+        });
+    }
+
+    /**
+     * Adds an overlay to the content of an activity.
+     *
+     * @param activity The activity, after setContentView().
+     * @param registry The registry to show.
+     */
+    public static void attach(Activity activity, MetricsRegistry registry) {
+        ViewGroup content = activity.findViewById(android.R.id.content);
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.END);
+        content.addView(new MetricsOverlay(activity, registry), params);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        refresh();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(refresh);
+        super.onDetachedFromWindow();
+    }
+
+    private void refresh() {
+        removeCallbacks(refresh);
+        if (collapsed) {
+            setText("metrics");
+            return;
+        }
+        String summary = registry.summary();
+        setText(summary.isEmpty() ? "no metrics yet" : summary.trim());
+        postDelayed(refresh, REFRESH_MILLIS);
+    }
+}
@@ -0,0 +1,150 @@
+package zen.zone.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The MetricsRegistry class holds the counters and histograms measuring the hot paths of the
+ * app, so that their behaviour in the field can be read without attaching a profiler: live in
+ * the debug overlay, or from a compact text dump.
+ *
+ * Metrics are created by name on first use and live as long as the registry. Callers look a
+ * metric up once and keep it; recording then never touches the registry. The dump has one line
+ * per metric, sorted by name, after a header with the format version and the time:
+ *
+ * <pre>
+ * metrics 1 1700000000000
+ * c ambient.underruns 3
+ * h bell.latency_ms 12 340 95 | 5:3 10:7 100:2
+ * </pre>
+ *
+ * A histogram line holds the count, sum and maximum, then the non-empty buckets as upper
+ * bound:count, "inf" standing for the values above the last bound.
+ */
+public class MetricsRegistry {
+
+    /**
+     * Bucket bounds suited to latencies and durations in milliseconds.
+     */
+    public static final long[] LATENCY_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10_000, 60_000};
+
+    private static final int DUMP_VERSION = 1;
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a counter, creating it on first use.
+     *
+     * @param name The name of the counter, e.g. "ambient.underruns".
+     * @return The counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Returns a histogram of milliseconds, creating it on first use.
+     *
+     * @param name The name of the histogram, by convention ending with its unit, e.g. "bell.latency_ms".
+     * @return The histogram.
+     */
+    public Histogram histogram(String name) {
+        return histogram(name, LATENCY_BOUNDS_MS);
+    }
+
+    /**
+     * Returns a histogram, creating it on first use with the given buckets.
+     *
+     * @param name   The name of the histogram.
+     * @param bounds The ascending upper bounds of the buckets, used if the histogram is new.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name, long[] bounds) {
+        return histograms.computeIfAbsent(name, key -> new Histogram(key, bounds));
+    }
+
+    /**
+     * Returns a short description of every metric, one per line, e.g. for the debug overlay.
+     *
+     * @return The summary, e.g. "bell.latency_ms n=12 p50=10 p95=100 max=95".
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder();
+        for (Counter counter : new TreeMap<>(counters).values()) {
+            builder.append(counter.getName()).append(' ').append(counter.get()).append('\n');
+        }
+        for (Histogram histogram : new TreeMap<>(histograms).values()) {
+            builder.append(histogram.getName())
+                    .append(" n=").append(histogram.getCount())
+                    .append(" p50=").append(histogram.getPercentile(50))
+                    .append(" p95=").append(histogram.getPercentile(95))
+                    .append(" max=").append(histogram.getMax())
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes every metric in the dump format.
+     *
+     * @param out       The destination.
+     * @param nowMillis The current time in epoch milliseconds, written to the header.
+     * @throws IOException If writing fails.
+     */
+    public void dump(Writer out, long nowMillis) throws IOException {
+        out.write(String.format(Locale.US, "metrics %d %d\n", DUMP_VERSION, nowMillis));
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            out.write("c " + entry.getKey() + " " + entry.getValue().get() + "\n");
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            StringBuilder line = new StringBuilder("h ").append(entry.getKey())
+                    .append(' ').append(histogram.getCount())
+                    .append(' ').append(histogram.getSum())
+                    .append(' ').append(histogram.getMax())
+                    .append(" |");
+            long[] bounds = histogram.getBounds();
+            for (int i = 0; i <= bounds.length; i++) {
+                long bucketCount = histogram.getBucketCount(i);
+                if (bucketCount > 0) {
+                    line.append(' ').append(i < bounds.length ? String.valueOf(bounds[i]) : "inf")
+                            .append(':').append(bucketCount);
+                }
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * Replaces a file with a dump. The file is replaced atomically, so a reader never sees a
+     * partial dump.
+     *
+     * @param file      The dump file.
+     * @param nowMillis The current time in epoch milliseconds.
+     * @throws IOException If the file cannot be written.
+     */
+    public void dumpTo(File file, long nowMillis) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            dump(out, nowMillis);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+}
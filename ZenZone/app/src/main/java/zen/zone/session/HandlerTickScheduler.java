@@ -0,0 +1,31 @@
+package zen.zone.session;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * The HandlerTickScheduler class runs the timer's delayed work on a {@link Handler}.
+ */
+public class HandlerTickScheduler implements TickScheduler {
+
+    private final Handler handler;
+
+    /**
+     * Creates a scheduler running tasks on the given looper.
+     *
+     * @param looper The looper of the thread running the tasks, e.g. the main looper.
+     */
+    public HandlerTickScheduler(Looper looper) {
+        this.handler = new Handler(looper);
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+}
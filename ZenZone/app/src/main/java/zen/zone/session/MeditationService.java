@@ -0,0 +1,692 @@
+package zen.zone.session;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import zen.zone.MainActivity;
+import zen.zone.R;
+import zen.zone.audio.AmbientMixer;
+import zen.zone.audio.BellPlayer;
+import zen.zone.history.SessionHistory;
+import zen.zone.history.SessionRecord;
+import zen.zone.settings.SettingsRepository;
+import zen.zone.sound.Sound;
+import zen.zone.sound.SoundLibrary;
+import zen.zone.streak.StreakTracker;
+import zen.zone.widget.QuickStartWidget;
+
+/**
+ * The MeditationService class runs a meditation session in the foreground: the timer, the
+ * background sounds, the narration of a guided meditation, the bells and the do-not-disturb
+ * mode. The session goes on when the screen is turned off or the user leaves the app; the timer
+ * screen only binds to the service to show the remaining time.
+ *
+ * While an observer is attached the timer ticks once per displayed second. Without observers
+ * nothing runs until the next bell or the end of the session, for which an exact alarm wakes
+ * the device up.
+ *
+ * The narration follows the timer, never the other way round: it is started at the position of
+ * the session and brought back in step on every tick, wake-up and resume. Its position is saved
+ * as a resume point while it plays and when the session is paused or stopped, so an interrupted
+ * guided meditation can continue where it was left; a completed one is forgotten.
+ */
+public class MeditationService extends Service {
+
+    /**
+     * Receives the updates of the running session, on the main thread.
+     */
+    public interface Observer {
+
+        /**
+         * Called whenever the displayed second changes.
+         *
+         * @param remainingMillis The exact remaining time, in milliseconds.
+         */
+        void onTick(long remainingMillis);
+
+        /**
+         * Called when a stage of the session starts.
+         *
+         * @param stage One of the SessionTimeline.STAGE_ constants.
+         */
+        void onStageChanged(int stage);
+
+        /**
+         * Called once, when the session was completed or stopped.
+         */
+        void onSessionEnded();
+    }
+
+    /**
+     * The binder handed to the timer screen.
+     */
+    public class LocalBinder extends Binder {
+
+        /**
+         * @return The service running the session.
+         */
+        public MeditationService getService() {
+            return MeditationService.this;
+        }
+    }
+
+    /**
+     * Intent extra holding the session, as serialized by {@link SessionTimeline#toByteArray()}.
+     */
+    public static final String EXTRA_TIMELINE = "timeline";
+
+    /**
+     * Stage reported before the first stage of the session starts, or if it has none.
+     */
+    public static final int NO_STAGE = -1;
+
+    private static final String TAG = MeditationService.class.getName();
+    private static final String CHANNEL_ID = "meditation_channel";
+    private static final int NOTIFICATION_ID = 2;
+    private static final String ACTION_WAKE = "zen.zone.session.action.WAKE";
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 15_000;
+    // Continuing a little before the interruption repeats the last words
+    private static final long RESUME_REWIND_MILLIS = 5_000;
+
+    // The session running in this process, read by the screens on the main thread
+    private static SessionTimeline runningTimeline;
+
+    private final LocalBinder binder = new LocalBinder();
+    private final List<Observer> observers = new ArrayList<>();
+    private final SessionRecord sessionRecord = new SessionRecord();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable checkpointTask = this::checkpoint;
+    private final BroadcastReceiver wakeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onWake();
+        }
+    };
+
+    private NotificationManager notificationManager;
+    private AlarmManager alarmManager;
+    private PendingIntent wakeIntent;
+    private MeditationTimer meditationTimer;
+    private AmbientMixer ambientMixer;
+    private BellPlayer bellPlayer;
+    private SessionTimeline timeline;
+    private int currentStage = NO_STAGE;
+    private boolean forceNoDisturb;
+    private boolean noDisturbActive;
+    private int savedInterruptionMode;
+    private long pausedAtMillis;
+    private boolean active;
+
+    /**
+     * Android system calls this when creating the service. Sets up the notification channel
+     * and the receiver of the wake-up alarms.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        notificationManager = getSystemService(NotificationManager.class);
+        alarmManager = getSystemService(AlarmManager.class);
+        createNotificationChannel();
+
+        Intent intent = new Intent(ACTION_WAKE).setPackage(getPackageName());
+        wakeIntent = PendingIntent.getBroadcast(this, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+        ContextCompat.registerReceiver(this, wakeReceiver, new IntentFilter(ACTION_WAKE),
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    /**
+     * Starts the session described by the intent extras. While a session is running, another
+     * one is rejected: the screens show the running session instead, see
+     * {@link #getRunningTimeline()}.
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        byte[] timelineBytes = intent != null ? intent.getByteArrayExtra(EXTRA_TIMELINE) : null;
+        if (active) {
+            if (timelineBytes != null && !Arrays.equals(timelineBytes, timeline.toByteArray())) {
+                Log.w(TAG, "A session is already running, the new one is rejected");
+            }
+            return START_NOT_STICKY;
+        }
+        if (timelineBytes == null) {
+            // Sessions are not restored after the process was killed
+            stopSelf(startId);
+            return START_NOT_STICKY;
+        }
+        startSession(SessionTimeline.fromByteArray(timelineBytes));
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Returns the binder the timer screen uses to observe and control the session.
+     */
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    /**
+     * Called when the service is destroyed. Makes sure nothing of the session is left behind.
+     */
+    @Override
+    public void onDestroy() {
+        if (active) {
+            endSession();
+        }
+        unregisterReceiver(wakeReceiver);
+        super.onDestroy();
+    }
+
+    /**
+     * Attaches an observer. While at least one observer is attached the timer ticks once per
+     * displayed second.
+     *
+     * @param observer The observer.
+     */
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+        if (meditationTimer != null) {
+            meditationTimer.setTicking(true);
+        }
+    }
+
+    /**
+     * Detaches an observer. Once the last one is gone, the timer stops ticking.
+     *
+     * @param observer The observer.
+     */
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+        if (observers.isEmpty() && meditationTimer != null) {
+            meditationTimer.setTicking(false);
+        }
+    }
+
+    /**
+     * Returns the session running in this process, so a screen can show it instead of
+     * starting another one. Called on the main thread.
+     *
+     * @return The running or paused session, or null if there is none.
+     */
+    @Nullable
+    public static SessionTimeline getRunningTimeline() {
+        return runningTimeline;
+    }
+
+    /**
+     * @return true while a session is running or paused.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @return true if the session is paused.
+     */
+    public boolean isPaused() {
+        return active && !meditationTimer.isRunning();
+    }
+
+    /**
+     * @return The current stage, or NO_STAGE.
+     */
+    public int getCurrentStage() {
+        return currentStage;
+    }
+
+    /**
+     * @return The remaining time of the session in milliseconds.
+     */
+    public long getRemainingMillis() {
+        return meditationTimer != null ? meditationTimer.getRemainingMillis() : 0;
+    }
+
+    /**
+     * @return The number of background sounds of the session.
+     */
+    public int getSoundLayerCount() {
+        return timeline != null ? timeline.getSoundLayerCount() : 0;
+    }
+
+    /**
+     * @param layer The index of the background sound.
+     * @return The current volume of the sound, from 0 to 100.
+     */
+    public int getLayerVolume(int layer) {
+        return ambientMixer != null ? Math.round((float) Math.sqrt(ambientMixer.getVolume(layer)) * 100) : 0;
+    }
+
+    /**
+     * Changes the volume of a background sound while it plays. Never waits for the audio thread,
+     * so it can follow a slider.
+     *
+     * @param layer         The index of the background sound.
+     * @param volumePercent The volume, from 0 to 100.
+     */
+    public void setLayerVolume(int layer, int volumePercent) {
+        if (ambientMixer != null) {
+            ambientMixer.setVolume(layer, toGain(volumePercent));
+        }
+    }
+
+    /**
+     * Pauses the session, its background sounds and its alarms.
+     */
+    public void pause() {
+        if (!active || !meditationTimer.isRunning()) {
+            return;
+        }
+        meditationTimer.pause();
+        alarmManager.cancel(wakeIntent);
+        sessionRecord.pauseCount++;
+        pausedAtMillis = SystemClock.elapsedRealtime();
+        if (ambientMixer != null) {
+            ambientMixer.pause();
+        }
+        handler.removeCallbacks(checkpointTask);
+        if (timeline.hasNarration()) {
+            saveResumePoint(getNarrationPosition() - RESUME_REWIND_MILLIS);
+        }
+        notificationManager.notify(NOTIFICATION_ID, buildNotification());
+    }
+
+    /**
+     * Resumes a paused session.
+     */
+    public void resume() {
+        if (!active || meditationTimer.isRunning()) {
+            return;
+        }
+        sessionRecord.pausedDurationMillis += SystemClock.elapsedRealtime() - pausedAtMillis;
+        meditationTimer.start();
+        if (ambientMixer != null) {
+            ambientMixer.resume();
+        }
+        syncNarration();
+        scheduleCheckpoint();
+        scheduleWakeUp();
+        notificationManager.notify(NOTIFICATION_ID, buildNotification());
+    }
+
+    /**
+     * Stops the session before its end. It is still recorded in the history, as aborted.
+     */
+    public void stop() {
+        if (active) {
+            endSession();
+        }
+    }
+
+    /**
+     * This method starts a new session and puts the service in the foreground.
+     */
+    private void startSession(SessionTimeline timeline) {
+        active = true;
+        this.timeline = timeline;
+        runningTimeline = timeline;
+        currentStage = NO_STAGE;
+        forceNoDisturb = !(timeline.hasBells() || timeline.getSoundLayerCount() > 0 || timeline.hasNarration());
+
+        sessionRecord.clear();
+        sessionRecord.startTimeMillis = System.currentTimeMillis();
+        sessionRecord.plannedDurationMillis = timeline.getDurationMillis();
+        sessionRecord.soundId = timeline.getSoundId();
+        rememberLastSound();
+
+        if (timeline.hasBells()) {
+            // Decode the bell now, so that it rings without delay when it is due
+            bellPlayer = BellPlayer.getInstance(this);
+            bellPlayer.prepare();
+        }
+
+        meditationTimer = new MeditationTimer(timeline, SystemClock::elapsedRealtime,
+                new HandlerTickScheduler(Looper.getMainLooper()), new MeditationTimer.Listener() {
+            @Override
+            public void onTick(long remainingMillis) {
+                syncNarration();
+                for (Observer observer : new ArrayList<>(observers)) {
+                    observer.onTick(remainingMillis);
+                }
+            }
+
+            @Override
+            public void onEvent(int index) {
+                syncNarration();
+                dispatchEvent(index);
+            }
+
+            @Override
+            public void onFinish() {
+                sessionRecord.flags |= SessionRecord.FLAG_COMPLETED;
+                endSession();
+            }
+        });
+        meditationTimer.setTicking(!observers.isEmpty());
+
+        if (forceNoDisturb) startNoDisturbMode();
+        handleBackgroundSounds();
+        meditationTimer.start();
+        startForeground(NOTIFICATION_ID, buildNotification());
+        scheduleCheckpoint();
+        scheduleWakeUp();
+    }
+
+    /**
+     * This method handles a due event of the timeline: rings the bell or starts a stage.
+     */
+    private void dispatchEvent(int index) {
+        switch (timeline.getEventKind(index)) {
+            case SessionTimeline.EVENT_BELL:
+                sessionRecord.bellCount++;
+                // The moment the bell was due, which the wake-up may have missed slightly
+                long elapsedMillis = timeline.getDurationMillis() - meditationTimer.getRemainingMillis();
+                bellPlayer.ring(SystemClock.elapsedRealtime() - (elapsedMillis - timeline.getEventOffset(index)));
+                break;
+            case SessionTimeline.EVENT_STAGE:
+                currentStage = timeline.getEventArgument(index);
+                for (Observer observer : new ArrayList<>(observers)) {
+                    observer.onStageChanged(currentStage);
+                }
+                break;
+            default:
+                Log.w(TAG, "Unknown event kind: " + timeline.getEventKind(index));
+        }
+    }
+
+    /**
+     * This method is called by the wake-up alarm: it evaluates the timer, which dispatches
+     * due events or ends the session, and arms the next alarm.
+     */
+    private void onWake() {
+        if (!active) {
+            return;
+        }
+        meditationTimer.update();
+        if (active) {
+            scheduleWakeUp();
+        }
+    }
+
+    /**
+     * This method arms an exact alarm for the next moment the session needs the CPU: the
+     * next event of the timeline, or else the end of the session.
+     */
+    private void scheduleWakeUp() {
+        long delayMillis = meditationTimer.getMillisToNextWakeUp();
+        if (delayMillis < 0) {
+            return;
+        }
+        long triggerAtMillis = SystemClock.elapsedRealtime() + delayMillis;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtMillis, wakeIntent);
+        } else {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtMillis, wakeIntent);
+        }
+    }
+
+    /**
+     * This method ends the session: records it, releases the sound, restores the previous
+     * interruption mode, leaves the foreground and tells the observers.
+     */
+    private void endSession() {
+        active = false;
+        runningTimeline = null;
+        long remainingMillis = meditationTimer.getRemainingMillis();
+        meditationTimer.cancel();
+        alarmManager.cancel(wakeIntent);
+        handler.removeCallbacks(checkpointTask);
+        if (timeline.hasNarration()) {
+            saveResumePoint(sessionRecord.isCompleted() ? 0 : getNarrationPosition() - RESUME_REWIND_MILLIS);
+        }
+        recordSession(remainingMillis);
+        // The streak may have grown
+        QuickStartWidget.update(this);
+        if (noDisturbActive) stopNoDisturbMode();
+        if (ambientMixer != null) {
+            ambientMixer.release();
+            ambientMixer = null;
+        }
+        stopForeground(STOP_FOREGROUND_REMOVE);
+        stopSelf();
+
+        for (Observer observer : new ArrayList<>(observers)) {
+            observer.onSessionEnded();
+        }
+    }
+
+    /**
+     * Records the session in the session history, whether it was completed or aborted.
+     * Completed sessions also extend the streak.
+     */
+    private void recordSession(long remainingMillis) {
+        sessionRecord.actualDurationMillis = timeline.getDurationMillis() - remainingMillis;
+        SessionHistory.getInstance(this).record(sessionRecord);
+
+        if (sessionRecord.isCompleted()) {
+            StreakTracker streakTracker = StreakTracker.getInstance(this);
+            if (streakTracker.onSessionCompleted(System.currentTimeMillis())) {
+                Toast.makeText(getApplicationContext(),
+                        streakTracker.getSnapshot().getCurrentStreak() + " days streak.\nYou are doing great!",
+                        Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /**
+     * This method remembers the first background sound of the session, which the quick starts
+     * of the widget play.
+     */
+    private void rememberLastSound() {
+        int soundId = timeline.getSoundLayerCount() > 0 ? timeline.getLayerSoundId(0) : 0;
+        int volumePercent = timeline.getSoundLayerCount() > 0 ? timeline.getLayerVolume(0) : 100;
+        SettingsRepository.getInstance(this).update(settings -> settings.withLastSound(soundId, volumePercent));
+    }
+
+    /**
+     * This method starts the background sounds and the narration of the session, mixed into one
+     * stream. A pack sound which is not downloaded yet joins the mix as soon as it is.
+     */
+    private void handleBackgroundSounds() {
+        if (timeline.getSoundLayerCount() == 0 && !timeline.hasNarration()) {
+            return;
+        }
+        AmbientMixer mixer = new AmbientMixer(this);
+        ambientMixer = mixer;
+        SoundLibrary soundLibrary = SoundLibrary.getInstance(this);
+        for (int layer = 0; layer < timeline.getSoundLayerCount(); layer++) {
+            mixer.setVolume(layer, toGain(timeline.getLayerVolume(layer)));
+            Sound sound = soundLibrary.getCatalog().get(timeline.getLayerSoundId(layer));
+            if (sound == null || sound.isNone()) {
+                continue;
+            }
+            if (sound.isBundled()) {
+                int soundResId = soundLibrary.getRawResource(sound);
+                if (soundResId != 0) {
+                    mixer.setLayer(layer, soundResId);
+                }
+                continue;
+            }
+            File file = soundLibrary.getCachedFile(sound);
+            if (file != null) {
+                mixer.setLayer(layer, file);
+            } else {
+                // Usually fetched when the sound was selected; the layer starts silent meanwhile
+                int fetchedLayer = layer;
+                soundLibrary.fetch(sound, fetched -> {
+                    if (fetched != null && ambientMixer == mixer) {
+                        mixer.setLayer(fetchedLayer, fetched);
+                    }
+                });
+            }
+        }
+        if (timeline.hasNarration()) {
+            handleNarration(mixer, soundLibrary);
+        }
+        mixer.resume();
+    }
+
+    /**
+     * This method starts the narration of a guided session at the position of the session. It
+     * streams from the downloaded file, so memory use does not depend on the length of the
+     * meditation; one which is not downloaded yet starts, in step, as soon as it is.
+     */
+    private void handleNarration(AmbientMixer mixer, SoundLibrary soundLibrary) {
+        mixer.setVolume(AmbientMixer.NARRATION_LAYER, 1f);
+        Sound sound = soundLibrary.getCatalog().get(timeline.getNarrationId());
+        if (sound == null || !sound.isGuided()) {
+            Log.w(TAG, "Unknown guided meditation: " + timeline.getNarrationId());
+            return;
+        }
+        File file = soundLibrary.getCachedFile(sound);
+        if (file != null) {
+            mixer.setNarration(file, getNarrationPosition());
+            return;
+        }
+        soundLibrary.fetch(sound, fetched -> {
+            if (fetched != null && ambientMixer == mixer) {
+                mixer.setNarration(fetched, getNarrationPosition());
+            }
+        });
+    }
+
+    /**
+     * @return The position in the guided meditation where the session is now.
+     */
+    private long getNarrationPosition() {
+        return timeline.getNarrationPosition(timeline.getDurationMillis() - meditationTimer.getRemainingMillis());
+    }
+
+    /**
+     * This method brings the narration back in step with the timer, if the session has one.
+     */
+    private void syncNarration() {
+        if (ambientMixer != null && timeline.hasNarration() && meditationTimer.isRunning()) {
+            ambientMixer.syncNarration(getNarrationPosition());
+        }
+    }
+
+    /**
+     * This method saves the resume point of a narrated session every CHECKPOINT_INTERVAL_MILLIS
+     * while it runs, so even a session whose process was killed continues close to where it was.
+     */
+    private void checkpoint() {
+        if (!active || !meditationTimer.isRunning()) {
+            return;
+        }
+        saveResumePoint(getNarrationPosition() - RESUME_REWIND_MILLIS);
+        scheduleCheckpoint();
+    }
+
+    private void scheduleCheckpoint() {
+        if (timeline.hasNarration()) {
+            handler.removeCallbacks(checkpointTask);
+            handler.postDelayed(checkpointTask, CHECKPOINT_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * This method remembers where to continue the guided meditation of the session.
+     *
+     * @param positionMillis The position, 0 or less to start over next time.
+     */
+    private void saveResumePoint(long positionMillis) {
+        int soundId = timeline.getNarrationId();
+        long position = Math.max(0, positionMillis);
+        SettingsRepository.getInstance(this).update(settings ->
+                settings.withResumePoints(settings.getResumePoints().with(soundId, position)));
+    }
+
+    /**
+     * This method maps a volume in percent to a gain. The curve is quadratic, so the slider
+     * feels even to the ear rather than jumping at its low end.
+     */
+    private static float toGain(int volumePercent) {
+        float volume = volumePercent / 100f;
+        return volume * volume;
+    }
+
+    /**
+     * This method builds the ongoing notification of the session. The remaining time is
+     * rendered by the system as a countdown chronometer, so the service never has to update it.
+     * Tapping it brings the user back to the timer screen, see MainActivity.
+     */
+    private Notification buildNotification() {
+        Intent intent = new Intent(this, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notifications_black_24dp)
+                .setContentTitle(getString(R.string.meditation_in_progress))
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .setSilent(true)
+                .setCategory(NotificationCompat.CATEGORY_SERVICE);
+        if (meditationTimer.isRunning()) {
+            builder.setWhen(System.currentTimeMillis() + meditationTimer.getRemainingMillis())
+                    .setUsesChronometer(true)
+                    .setChronometerCountDown(true);
+        } else {
+            builder.setContentText(getString(R.string.meditation_paused)).setShowWhen(false);
+        }
+        return builder.build();
+    }
+
+    /**
+     * This method creates the notification channel of the session notification.
+     */
+    private void createNotificationChannel() {
+        NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID,
+                getString(R.string.meditation_channel),
+                NotificationManager.IMPORTANCE_LOW
+        );
+        notificationManager.createNotificationChannel(channel);
+    }
+
+    private void startNoDisturbMode() {
+        if (!SettingsRepository.getInstance(this).get().isSilentSession()) {
+            return;
+        }
+        if (!notificationManager.isNotificationPolicyAccessGranted()) {
+            Log.w(TAG, "No access to the notification policy, do-not-disturb mode not set");
+            return;
+        }
+        // Saved only once per session, so the user's own mode is what gets restored
+        savedInterruptionMode = notificationManager.getCurrentInterruptionFilter();
+        notificationManager.setInterruptionFilter(NotificationManager.INTERRUPTION_FILTER_NONE);
+        noDisturbActive = true;
+    }
+
+    private void stopNoDisturbMode() {
+        if (notificationManager.isNotificationPolicyAccessGranted()) {
+            notificationManager.setInterruptionFilter(savedInterruptionMode);
+        }
+        noDisturbActive = false;
+    }
+}
@@ -0,0 +1,241 @@
+package zen.zone.session;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The MeditationTimer class counts a meditation session down against a deadline on a monotonic
+ * clock (SystemClock.elapsedRealtime() in the app). The remaining time is always derived from
+ * the deadline instead of from the number of ticks, so late ticks never make the session drift
+ * and pausing/resuming keeps the remaining time to the millisecond.
+ *
+ * Ticks are aligned to the moments the displayed (rounded up) second changes, so the timer wakes
+ * up exactly once per displayed second and reaches zero when the session ends. The events of
+ * the {@link SessionTimeline} are dispatched from the same wakeups: the timer always sleeps until
+ * the next displayed second or the next event, whichever comes first.
+ *
+ * When nobody shows the remaining time, ticking can be turned off and the timer only wakes up
+ * for events and the deadline. While the device sleeps those wakeups may be late, so the owner
+ * should also call {@link #update()} from an alarm set {@link #getMillisToNextWakeUp()} ahead.
+ */
+public class MeditationTimer {
+
+    /**
+     * Receives the updates of the timer.
+     */
+    public interface Listener {
+
+        /**
+         * Called whenever the displayed second changes.
+         *
+         * @param remainingMillis The exact remaining time, in milliseconds.
+         */
+        void onTick(long remainingMillis);
+
+        /**
+         * Called when an event of the timeline is due, before the tick of the same moment.
+         *
+         * @param index The index of the event in the timeline.
+         */
+        void onEvent(int index);
+
+        /**
+         * Called once, when the deadline is reached.
+         */
+        void onFinish();
+    }
+
+    private final SessionTimeline timeline;
+    private final LongSupplier clock;
+    private final TickScheduler scheduler;
+    private final Listener listener;
+    private final Runnable tickTask = this::tick;
+
+    private long remainingMillis;
+    private long deadlineMillis;
+    private boolean running;
+    private boolean finished;
+    private boolean ticking = true;
+    private int nextEvent;
+
+    /**
+     * Creates a stopped timer of a session without events.
+     *
+     * @param durationMillis The length of the session, in milliseconds.
+     * @param clock          A monotonic clock returning milliseconds.
+     * @param scheduler      The scheduler running the ticks.
+     * @param listener       The listener receiving the ticks.
+     */
+    public MeditationTimer(long durationMillis, LongSupplier clock, TickScheduler scheduler, Listener listener) {
+        this(new SessionTimeline.Builder(durationMillis).build(), clock, scheduler, listener);
+    }
+
+    /**
+     * Creates a stopped timer of a session.
+     *
+     * @param timeline  The session, with the events to dispatch.
+     * @param clock     A monotonic clock returning milliseconds.
+     * @param scheduler The scheduler running the ticks.
+     * @param listener  The listener receiving the ticks and events.
+     */
+    public MeditationTimer(SessionTimeline timeline, LongSupplier clock, TickScheduler scheduler, Listener listener) {
+        this.timeline = timeline;
+        this.remainingMillis = timeline.getDurationMillis();
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the timer, or resumes it after {@link #pause()}. Does nothing if the timer is
+     * already running or has finished.
+     */
+    public void start() {
+        if (running || finished) {
+            return;
+        }
+        running = true;
+        deadlineMillis = clock.getAsLong() + remainingMillis;
+        tick();
+    }
+
+    /**
+     * Pauses the timer, keeping the exact remaining time.
+     */
+    public void pause() {
+        if (!running) {
+            return;
+        }
+        remainingMillis = Math.max(0, deadlineMillis - clock.getAsLong());
+        running = false;
+        scheduler.cancel(tickTask);
+    }
+
+    /**
+     * Stops the timer for good, without calling {@link Listener#onFinish()}.
+     */
+    public void cancel() {
+        pause();
+        finished = true;
+    }
+
+    /**
+     * Turns the per-second ticks on or off. Without ticks the timer only wakes up for the
+     * events and the deadline.
+     *
+     * @param ticking true to tick once per displayed second.
+     */
+    public void setTicking(boolean ticking) {
+        if (this.ticking == ticking) {
+            return;
+        }
+        this.ticking = ticking;
+        update();
+    }
+
+    /**
+     * Evaluates the timer right now: dispatches the due events, then calls
+     * {@link Listener#onFinish()} if the deadline has passed, {@link Listener#onTick(long)}
+     * otherwise. Does nothing if the timer is not running.
+     */
+    public void update() {
+        if (!running) {
+            return;
+        }
+        scheduler.cancel(tickTask);
+        tick();
+    }
+
+    /**
+     * Returns the remaining time, computed from the deadline.
+     *
+     * @return The remaining time in milliseconds.
+     */
+    public long getRemainingMillis() {
+        return running ? Math.max(0, deadlineMillis - clock.getAsLong()) : remainingMillis;
+    }
+
+    /**
+     * Returns the time until the timer needs to run again without ticks: the next event or
+     * the deadline.
+     *
+     * @return The delay in milliseconds, or -1 if the timer is not running.
+     */
+    public long getMillisToNextWakeUp() {
+        if (!running) {
+            return -1;
+        }
+        long remaining = Math.max(0, deadlineMillis - clock.getAsLong());
+        return Math.min(remaining, millisToNextEvent(remaining));
+    }
+
+    /**
+     * @return true if the timer is counting down.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return true if the timer reached its deadline or was cancelled.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Rounds the remaining time up to a whole second, which is what the display shows: the
+     * full duration at the start and 00:00 only when the session is over.
+     *
+     * @param remainingMillis The remaining time in milliseconds.
+     * @return The remaining time rounded up to a whole second, in milliseconds.
+     */
+    public static long roundUpToSecond(long remainingMillis) {
+        return (remainingMillis + 999) / 1000 * 1000;
+    }
+
+    /**
+     * Returns the delay until the displayed second changes.
+     *
+     * @param remainingMillis The remaining time in milliseconds, greater than 0.
+     * @return The delay in milliseconds, between 1 and 1000.
+     */
+    static long delayToNextSecond(long remainingMillis) {
+        return (remainingMillis - 1) % 1000 + 1;
+    }
+
+    private void tick() {
+        if (!running) {
+            return;
+        }
+        long remaining = deadlineMillis - clock.getAsLong();
+        long elapsed = timeline.getDurationMillis() - remaining;
+        while (nextEvent < timeline.getEventCount() && timeline.getEventOffset(nextEvent) <= elapsed) {
+            listener.onEvent(nextEvent++);
+            // The listener may have paused or cancelled the timer
+            if (!running) {
+                return;
+            }
+        }
+        if (remaining <= 0) {
+            remainingMillis = 0;
+            running = false;
+            finished = true;
+            listener.onFinish();
+            return;
+        }
+        listener.onTick(remaining);
+        // The listener may have paused or cancelled the timer
+        if (running) {
+            long delay = ticking ? delayToNextSecond(remaining) : remaining;
+            scheduler.schedule(tickTask, Math.min(delay, millisToNextEvent(remaining)));
+        }
+    }
+
+    private long millisToNextEvent(long remaining) {
+        if (nextEvent >= timeline.getEventCount()) {
+            return Long.MAX_VALUE;
+        }
+        long elapsed = timeline.getDurationMillis() - remaining;
+        return Math.max(0, timeline.getEventOffset(nextEvent) - elapsed);
+    }
+}
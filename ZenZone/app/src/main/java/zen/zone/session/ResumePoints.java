@@ -0,0 +1,135 @@
+package zen.zone.session;
+
+/**
+ * The ResumePoints class remembers where the user left off in guided meditations, so an
+ * interrupted one continues at the right offset. It keeps the last position of the
+ * MAX_ENTRIES most recently played meditations, most recent first; older ones are forgotten.
+ *
+ * Resume points are immutable and are stored as a short string, see {@link #encode()}.
+ */
+public final class ResumePoints {
+
+    /**
+     * The number of meditations remembered.
+     */
+    public static final int MAX_ENTRIES = 8;
+
+    /**
+     * No resume points.
+     */
+    public static final ResumePoints EMPTY = new ResumePoints(new int[0], new long[0]);
+
+    private final int[] soundIds;
+    private final long[] positions;
+
+    private ResumePoints(int[] soundIds, long[] positions) {
+        this.soundIds = soundIds;
+        this.positions = positions;
+    }
+
+    /**
+     * @param soundId The stable identifier of a guided meditation.
+     * @return The position to continue from in milliseconds, or 0 to start from the beginning.
+     */
+    public long get(int soundId) {
+        int index = indexOf(soundId);
+        return index >= 0 ? positions[index] : 0;
+    }
+
+    /**
+     * Remembers a position, as the most recent entry.
+     *
+     * @param soundId        The stable identifier of a guided meditation.
+     * @param positionMillis The position to continue from; 0 forgets the meditation.
+     * @return The changed resume points, or these if nothing changed.
+     */
+    public ResumePoints with(int soundId, long positionMillis) {
+        int index = indexOf(soundId);
+        if (positionMillis <= 0) {
+            return index < 0 ? this : remove(index);
+        }
+        if (index == 0 && positions[0] == positionMillis) {
+            return this;
+        }
+        ResumePoints rest = index >= 0 ? remove(index) : this;
+        int count = Math.min(rest.soundIds.length + 1, MAX_ENTRIES);
+        int[] ids = new int[count];
+        long[] values = new long[count];
+        ids[0] = soundId;
+        values[0] = positionMillis;
+        System.arraycopy(rest.soundIds, 0, ids, 1, count - 1);
+        System.arraycopy(rest.positions, 0, values, 1, count - 1);
+        return new ResumePoints(ids, values);
+    }
+
+    /**
+     * @return true if no position is remembered.
+     */
+    public boolean isEmpty() {
+        return soundIds.length == 0;
+    }
+
+    /**
+     * Encodes the resume points for storage, as comma-separated soundId:positionMillis pairs.
+     *
+     * @return The encoded resume points, empty if there are none.
+     */
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < soundIds.length; i++) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(soundIds[i]).append(':').append(positions[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Restores resume points stored by {@link #encode()}.
+     *
+     * @param encoded The stored resume points.
+     * @return The resume points, empty if the string is empty or not valid.
+     */
+    public static ResumePoints decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return EMPTY;
+        }
+        String[] parts = encoded.split(",");
+        int count = Math.min(parts.length, MAX_ENTRIES);
+        int[] ids = new int[count];
+        long[] values = new long[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                int separator = parts[i].indexOf(':');
+                ids[i] = Integer.parseInt(parts[i].substring(0, separator));
+                values[i] = Long.parseLong(parts[i].substring(separator + 1));
+                if (values[i] <= 0) {
+                    return EMPTY;
+                }
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            return EMPTY;
+        }
+        return new ResumePoints(ids, values);
+    }
+
+    private int indexOf(int soundId) {
+        for (int i = 0; i < soundIds.length; i++) {
+            if (soundIds[i] == soundId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private ResumePoints remove(int index) {
+        int[] ids = new int[soundIds.length - 1];
+        long[] values = new long[positions.length - 1];
+        System.arraycopy(soundIds, 0, ids, 0, index);
+        System.arraycopy(positions, 0, values, 0, index);
+        System.arraycopy(soundIds, index + 1, ids, index, ids.length - index);
+        System.arraycopy(positions, index + 1, values, index, values.length - index);
+        return new ResumePoints(ids, values);
+    }
+}
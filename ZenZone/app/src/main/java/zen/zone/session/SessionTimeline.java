@@ -0,0 +1,446 @@
+package zen.zone.session;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The SessionTimeline class describes a meditation session: its length, its layers of background
+ * sound, its narration if it is guided, and the events happening during it (bells and named
+ * stages). The events are compiled once, when the timeline is built, into parallel arrays sorted
+ * by time, so the timer finds the next event with a cursor instead of checking every event on
+ * every tick.
+ *
+ * A timeline is immutable and is passed between screens and the service in a compact binary
+ * form, see {@link #toByteArray()}.
+ */
+public class SessionTimeline {
+
+    /**
+     * Event ringing the bell.
+     */
+    public static final int EVENT_BELL = 0;
+
+    /**
+     * Event starting a stage. The argument of the event is the stage.
+     */
+    public static final int EVENT_STAGE = 1;
+
+    public static final int STAGE_SETTLE = 0;
+    public static final int STAGE_BREATH = 1;
+    public static final int STAGE_SILENCE = 2;
+    public static final int STAGE_CLOSING = 3;
+
+    /**
+     * The maximum number of background sounds played together.
+     */
+    public static final int MAX_SOUND_LAYERS = 3;
+
+    private static final byte FORMAT_VERSION = 3;
+    private static final int HEADER_SIZE = 1 + 8 + 1 + 4 + 1 + 4;
+    private static final int LAYER_SIZE = 1 + 1;
+    private static final int EVENT_SIZE = 4 + 1 + 1;
+
+    /**
+     * Builds a timeline. Events can be added in any order; events at the same moment with the
+     * same kind and argument are merged.
+     */
+    public static class Builder {
+
+        private final long durationMillis;
+        private final int[] layerSounds = new int[MAX_SOUND_LAYERS];
+        private final byte[] layerVolumes = new byte[MAX_SOUND_LAYERS];
+        private int layerCount;
+        private int narrationId;
+        private long narrationStartMillis;
+        private long[] keys = new long[8];
+        private int count;
+
+        /**
+         * Creates a builder of a session with no events.
+         *
+         * @param durationMillis The length of the session, in milliseconds.
+         */
+        public Builder(long durationMillis) {
+            if (durationMillis <= 0 || durationMillis > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid duration: " + durationMillis);
+            }
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * Adds a background sound at full volume.
+         *
+         * @param soundId The stable identifier of the sound, see zen.zone.sound.SoundCatalog.
+         * @return This builder.
+         */
+        public Builder backgroundSound(int soundId) {
+            return soundLayer(soundId, 100);
+        }
+
+        /**
+         * Adds a background sound, played together with the ones added before. The "no sound"
+         * entry of the catalog (0) adds nothing.
+         *
+         * @param soundId       The stable identifier of the sound, see zen.zone.sound.SoundCatalog.
+         * @param volumePercent The volume of the sound, from 0 to 100.
+         * @return This builder.
+         * @throws IllegalArgumentException If MAX_SOUND_LAYERS sounds were already added.
+         */
+        public Builder soundLayer(int soundId, int volumePercent) {
+            if (soundId == 0) {
+                return this;
+            }
+            if (layerCount == MAX_SOUND_LAYERS) {
+                throw new IllegalArgumentException("More than " + MAX_SOUND_LAYERS + " sounds");
+            }
+            if (soundId < 0 || soundId > 0xFF || volumePercent < 0 || volumePercent > 100) {
+                throw new IllegalArgumentException("Invalid sound layer: " + soundId + " at " + volumePercent + "%");
+            }
+            layerSounds[layerCount] = soundId;
+            layerVolumes[layerCount] = (byte) volumePercent;
+            layerCount++;
+            return this;
+        }
+
+        /**
+         * Narrates the session with a guided meditation. The narration runs alongside the
+         * timer: at every moment of the session it plays the track at the start position plus
+         * the elapsed time, which lets an interrupted meditation continue where it was left.
+         *
+         * @param soundId     The stable identifier of the guided meditation, see zen.zone.sound.SoundCatalog.
+         * @param startMillis The position in the track at which the session starts.
+         * @return This builder.
+         */
+        public Builder narration(int soundId, long startMillis) {
+            if (soundId <= 0 || soundId > 0xFF || startMillis < 0 || startMillis > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid narration: " + soundId + " from " + startMillis);
+            }
+            narrationId = soundId;
+            narrationStartMillis = startMillis;
+            return this;
+        }
+
+        /**
+         * Rings the bell at the given moment. Moments outside the session are ignored.
+         *
+         * @param offsetMillis The time from the start of the session, in milliseconds.
+         * @return This builder.
+         */
+        public Builder bellAt(long offsetMillis) {
+            return add(offsetMillis, EVENT_BELL, 0);
+        }
+
+        /**
+         * Rings the bell at half-time.
+         *
+         * @return This builder.
+         */
+        public Builder halfTimeBell() {
+            return bellAt(durationMillis / 2);
+        }
+
+        /**
+         * Rings the bell every given interval, not counting the start and the end.
+         *
+         * @param intervalMillis The interval between the bells, in milliseconds.
+         * @return This builder.
+         */
+        public Builder intervalBells(long intervalMillis) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Invalid interval: " + intervalMillis);
+            }
+            for (long offset = intervalMillis; offset < durationMillis; offset += intervalMillis) {
+                bellAt(offset);
+            }
+            return this;
+        }
+
+        /**
+         * Starts a stage at the given moment.
+         *
+         * @param stage        One of the STAGE_ constants.
+         * @param offsetMillis The time from the start of the session, in milliseconds.
+         * @return This builder.
+         */
+        public Builder stage(int stage, long offsetMillis) {
+            return add(offsetMillis, EVENT_STAGE, stage);
+        }
+
+        /**
+         * Splits the session into the standard stages: settle, breath (from 10%), silence
+         * (from 30%) and closing (the last 10%). Stages start on whole seconds.
+         *
+         * @return This builder.
+         */
+        public Builder standardStages() {
+            stage(STAGE_SETTLE, 0);
+            stage(STAGE_BREATH, durationMillis / 10 / 1000 * 1000);
+            stage(STAGE_SILENCE, durationMillis * 3 / 10 / 1000 * 1000);
+            stage(STAGE_CLOSING, durationMillis * 9 / 10 / 1000 * 1000);
+            return this;
+        }
+
+        /**
+         * Compiles the events into a timeline.
+         *
+         * @return The timeline.
+         */
+        public SessionTimeline build() {
+            // Every event is packed into one long (time, kind, argument), so sorting the
+            // keys sorts the events by time and puts identical events next to each other
+            long[] sorted = Arrays.copyOf(keys, count);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            int[] offsets = new int[unique];
+            byte[] kinds = new byte[unique];
+            byte[] arguments = new byte[unique];
+            for (int i = 0; i < unique; i++) {
+                offsets[i] = (int) (sorted[i] >>> 16);
+                kinds[i] = (byte) (sorted[i] >>> 8);
+                arguments[i] = (byte) sorted[i];
+            }
+            return new SessionTimeline(durationMillis, narrationId, (int) narrationStartMillis,
+                    Arrays.copyOf(layerSounds, layerCount), Arrays.copyOf(layerVolumes, layerCount),
+                    offsets, kinds, arguments);
+        }
+
+        private Builder add(long offsetMillis, int kind, int argument) {
+            if (offsetMillis < 0 || offsetMillis >= durationMillis) {
+                return this;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+            }
+            keys[count++] = offsetMillis << 16 | (kind & 0xFF) << 8 | (argument & 0xFF);
+            return this;
+        }
+    }
+
+    private final long durationMillis;
+    private final int narrationId;
+    private final int narrationStartMillis;
+    private final int[] layerSounds;
+    private final byte[] layerVolumes;
+    private final int[] offsets;
+    private final byte[] kinds;
+    private final byte[] arguments;
+
+    private SessionTimeline(long durationMillis, int narrationId, int narrationStartMillis,
+                            int[] layerSounds, byte[] layerVolumes, int[] offsets, byte[] kinds, byte[] arguments) {
+        this.durationMillis = durationMillis;
+        this.narrationId = narrationId;
+        this.narrationStartMillis = narrationStartMillis;
+        this.layerSounds = layerSounds;
+        this.layerVolumes = layerVolumes;
+        this.offsets = offsets;
+        this.kinds = kinds;
+        this.arguments = arguments;
+    }
+
+    /**
+     * @return The length of the session, in milliseconds.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return true if the session is narrated by a guided meditation.
+     */
+    public boolean hasNarration() {
+        return narrationId != 0;
+    }
+
+    /**
+     * @return The stable identifier of the guided meditation, or 0 if there is none.
+     */
+    public int getNarrationId() {
+        return narrationId;
+    }
+
+    /**
+     * @return The position in the guided meditation at which the session starts, in milliseconds.
+     */
+    public long getNarrationStartMillis() {
+        return narrationStartMillis;
+    }
+
+    /**
+     * Returns where the narration should be at a moment of the session.
+     *
+     * @param elapsedMillis The time from the start of the session, in milliseconds.
+     * @return The position in the guided meditation, in milliseconds.
+     */
+    public long getNarrationPosition(long elapsedMillis) {
+        return narrationStartMillis + elapsedMillis;
+    }
+
+    /**
+     * @return The stable identifier of the first background sound, or 0 if there is none.
+     */
+    public int getSoundId() {
+        return layerSounds.length > 0 ? layerSounds[0] : 0;
+    }
+
+    /**
+     * @return The number of background sounds played together.
+     */
+    public int getSoundLayerCount() {
+        return layerSounds.length;
+    }
+
+    /**
+     * @param layer The index of the background sound.
+     * @return The stable identifier of the sound.
+     */
+    public int getLayerSoundId(int layer) {
+        return layerSounds[layer];
+    }
+
+    /**
+     * @param layer The index of the background sound.
+     * @return The initial volume of the sound, from 0 to 100.
+     */
+    public int getLayerVolume(int layer) {
+        return layerVolumes[layer];
+    }
+
+    /**
+     * @return The number of events.
+     */
+    public int getEventCount() {
+        return offsets.length;
+    }
+
+    /**
+     * @param index The index of the event, events are sorted by time.
+     * @return The time of the event from the start of the session, in milliseconds.
+     */
+    public long getEventOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @param index The index of the event.
+     * @return The kind of the event, EVENT_BELL or EVENT_STAGE.
+     */
+    public int getEventKind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * @param index The index of the event.
+     * @return The argument of the event, e.g. the stage of an EVENT_STAGE.
+     */
+    public int getEventArgument(int index) {
+        return arguments[index];
+    }
+
+    /**
+     * Checks whether any bell rings during the session.
+     *
+     * @return true if the timeline has at least one bell.
+     */
+    public boolean hasBells() {
+        for (byte kind : kinds) {
+            if (kind == EVENT_BELL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the first event after the given moment, e.g. to continue a session
+     * which was restored. Runs in O(log n).
+     *
+     * @param elapsedMillis The time from the start of the session, in milliseconds.
+     * @return The index of the first event strictly after the moment, or the event count.
+     */
+    public int firstEventAfter(long elapsedMillis) {
+        int low = 0;
+        int high = offsets.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle] <= elapsedMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Serializes the timeline, e.g. to pass it in a Bundle or an Intent.
+     *
+     * @return The serialized timeline, 19 bytes plus 2 bytes per sound and 6 bytes per event.
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + layerSounds.length * LAYER_SIZE + offsets.length * EVENT_SIZE);
+        buffer.put(FORMAT_VERSION).putLong(durationMillis).put((byte) narrationId).putInt(narrationStartMillis)
+                .put((byte) layerSounds.length);
+        for (int i = 0; i < layerSounds.length; i++) {
+            buffer.put((byte) layerSounds[i]).put(layerVolumes[i]);
+        }
+        buffer.putInt(offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            buffer.putInt(offsets[i]).put(kinds[i]).put(arguments[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Restores a timeline serialized by {@link #toByteArray()}.
+     *
+     * @param bytes The serialized timeline.
+     * @return The timeline.
+     * @throws IllegalArgumentException If the bytes are not a valid timeline.
+     */
+    public static SessionTimeline fromByteArray(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.get() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown timeline format");
+            }
+            long durationMillis = buffer.getLong();
+            int narrationId = buffer.get() & 0xFF;
+            int narrationStartMillis = buffer.getInt();
+            if (narrationStartMillis < 0) {
+                throw new IllegalArgumentException("Invalid narration start: " + narrationStartMillis);
+            }
+            int layerCount = buffer.get();
+            if (layerCount < 0 || layerCount > MAX_SOUND_LAYERS) {
+                throw new IllegalArgumentException("Invalid sound count: " + layerCount);
+            }
+            int[] layerSounds = new int[layerCount];
+            byte[] layerVolumes = new byte[layerCount];
+            for (int i = 0; i < layerCount; i++) {
+                layerSounds[i] = buffer.get() & 0xFF;
+                layerVolumes[i] = buffer.get();
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / EVENT_SIZE) {
+                throw new IllegalArgumentException("Invalid event count: " + count);
+            }
+            int[] offsets = new int[count];
+            byte[] kinds = new byte[count];
+            byte[] arguments = new byte[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = buffer.getInt();
+                kinds[i] = buffer.get();
+                arguments[i] = buffer.get();
+            }
+            return new SessionTimeline(durationMillis, narrationId, narrationStartMillis,
+                    layerSounds, layerVolumes, offsets, kinds, arguments);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated timeline", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package zen.zone.session;
+
+/**
+ * The TickScheduler interface runs delayed work for the {@link MeditationTimer}. It allows the
+ * timer to be driven by a Handler in the app and by a fake, manually advanced clock in tests.
+ */
+public interface TickScheduler {
+
+    /**
+     * Runs the task once, after the given delay.
+     *
+     * @param task        The task to run.
+     * @param delayMillis The delay in milliseconds.
+     */
+    void schedule(Runnable task, long delayMillis);
+
+    /**
+     * Cancels all pending runs of the task.
+     *
+     * @param task The task to cancel.
+     */
+    void cancel(Runnable task);
+}
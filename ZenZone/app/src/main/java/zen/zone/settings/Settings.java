@@ -0,0 +1,197 @@
+package zen.zone.settings;
+
+import zen.zone.session.ResumePoints;
+import zen.zone.streak.StreakEngine;
+import zen.zone.ui.preferences.ReminderPlan;
+
+/**
+ * The Settings class is an immutable snapshot of everything the app stores about the user:
+ * appearance, reminders, the streak state, the resume points of guided meditations, the sound
+ * of the last session, which quick starts reuse, and whether sessions silence notifications.
+ * Values are kept parsed, so readers never decode anything. A change creates a new snapshot,
+ * see the with* methods and {@link SettingsStore#update(java.util.function.UnaryOperator)}.
+ */
+public final class Settings {
+
+    public static final String LANGUAGE_ENGLISH = "en";
+    public static final String LANGUAGE_POLISH = "pl";
+    public static final String THEME_LIGHT = "light";
+    public static final String THEME_DARK = "dark";
+
+    /**
+     * The settings of a new installation.
+     */
+    public static final Settings DEFAULT = new Settings(LANGUAGE_ENGLISH, THEME_LIGHT, ReminderPlan.EMPTY,
+            StreakEngine.NO_DAY, 0, 0, ResumePoints.EMPTY, 0, 100, true);
+
+    private final String language;
+    private final String theme;
+    private final ReminderPlan reminderPlan;
+    private final long lastMeditationDay;
+    private final int currentStreak;
+    private final int longestStreak;
+    private final ResumePoints resumePoints;
+    private final int lastSoundId;
+    private final int lastSoundVolume;
+    private final boolean silentSession;
+
+    Settings(String language, String theme, ReminderPlan reminderPlan,
+             long lastMeditationDay, int currentStreak, int longestStreak, ResumePoints resumePoints,
+             int lastSoundId, int lastSoundVolume, boolean silentSession) {
+        this.language = language;
+        this.theme = theme;
+        this.reminderPlan = reminderPlan;
+        this.lastMeditationDay = lastMeditationDay;
+        this.currentStreak = currentStreak;
+        this.longestStreak = longestStreak;
+        this.resumePoints = resumePoints;
+        this.lastSoundId = lastSoundId;
+        this.lastSoundVolume = lastSoundVolume;
+        this.silentSession = silentSession;
+    }
+
+    /**
+     * @return The language tag of the app, LANGUAGE_ENGLISH or LANGUAGE_POLISH.
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * @return The theme of the app, THEME_LIGHT or THEME_DARK.
+     */
+    public String getTheme() {
+        return theme;
+    }
+
+    /**
+     * @return The reminders of the user, empty if none are set.
+     */
+    public ReminderPlan getReminderPlan() {
+        return reminderPlan;
+    }
+
+    /**
+     * @return The local epoch day of the last completed session, or StreakEngine.NO_DAY.
+     */
+    public long getLastMeditationDay() {
+        return lastMeditationDay;
+    }
+
+    /**
+     * @return The current streak as of the last completed session.
+     */
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    /**
+     * @return The longest streak ever reached.
+     */
+    public int getLongestStreak() {
+        return longestStreak;
+    }
+
+    /**
+     * @return Where the user left off in guided meditations.
+     */
+    public ResumePoints getResumePoints() {
+        return resumePoints;
+    }
+
+    /**
+     * @return The stable identifier of the first background sound of the last session, 0 if it had none.
+     */
+    public int getLastSoundId() {
+        return lastSoundId;
+    }
+
+    /**
+     * @return The volume of the last background sound, from 0 to 100.
+     */
+    public int getLastSoundVolume() {
+        return lastSoundVolume;
+    }
+
+    /**
+     * @return true if sessions turn on do not disturb mode, given the access to it was granted.
+     */
+    public boolean isSilentSession() {
+        return silentSession;
+    }
+
+    /**
+     * @return A snapshot with the given language, or this snapshot if it already has it.
+     */
+    public Settings withLanguage(String language) {
+        if (language.equals(this.language)) {
+            return this;
+        }
+        return new Settings(language, theme, reminderPlan, lastMeditationDay, currentStreak, longestStreak, resumePoints,
+                lastSoundId, lastSoundVolume, silentSession);
+    }
+
+    /**
+     * @return A snapshot with the given theme, or this snapshot if it already has it.
+     */
+    public Settings withTheme(String theme) {
+        if (theme.equals(this.theme)) {
+            return this;
+        }
+        return new Settings(language, theme, reminderPlan, lastMeditationDay, currentStreak, longestStreak, resumePoints,
+                lastSoundId, lastSoundVolume, silentSession);
+    }
+
+    /**
+     * @return A snapshot with the given reminders.
+     */
+    public Settings withReminderPlan(ReminderPlan reminderPlan) {
+        return new Settings(language, theme, reminderPlan, lastMeditationDay, currentStreak, longestStreak, resumePoints,
+                lastSoundId, lastSoundVolume, silentSession);
+    }
+
+    /**
+     * @return A snapshot with the given streak state, or this snapshot if it already has it.
+     */
+    public Settings withStreak(long lastMeditationDay, int currentStreak, int longestStreak) {
+        if (lastMeditationDay == this.lastMeditationDay && currentStreak == this.currentStreak
+                && longestStreak == this.longestStreak) {
+            return this;
+        }
+        return new Settings(language, theme, reminderPlan, lastMeditationDay, currentStreak, longestStreak, resumePoints,
+                lastSoundId, lastSoundVolume, silentSession);
+    }
+
+    /**
+     * @return A snapshot with the given resume points, or this snapshot if it already has them.
+     */
+    public Settings withResumePoints(ResumePoints resumePoints) {
+        if (resumePoints == this.resumePoints) {
+            return this;
+        }
+        return new Settings(language, theme, reminderPlan, lastMeditationDay, currentStreak, longestStreak, resumePoints,
+                lastSoundId, lastSoundVolume, silentSession);
+    }
+
+    /**
+     * @return A snapshot with the given sound of the last session, or this snapshot if it already has it.
+     */
+    public Settings withLastSound(int soundId, int volumePercent) {
+        if (soundId == lastSoundId && volumePercent == lastSoundVolume) {
+            return this;
+        }
+        return new Settings(language, theme, reminderPlan, lastMeditationDay, currentStreak, longestStreak, resumePoints,
+                soundId, volumePercent, silentSession);
+    }
+
+    /**
+     * @return A snapshot with the given silencing of sessions, or this snapshot if it already has it.
+     */
+    public Settings withSilentSession(boolean silentSession) {
+        if (silentSession == this.silentSession) {
+            return this;
+        }
+        return new Settings(language, theme, reminderPlan, lastMeditationDay, currentStreak, longestStreak, resumePoints,
+                lastSoundId, lastSoundVolume, silentSession);
+    }
+}
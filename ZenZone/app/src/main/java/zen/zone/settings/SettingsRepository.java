@@ -0,0 +1,162 @@
+package zen.zone.settings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+import zen.zone.streak.StreakEngine;
+import zen.zone.ui.preferences.ReminderPlan;
+
+/**
+ * The SettingsRepository class gives the application a single, shared {@link SettingsStore}.
+ * The settings are loaded once, on purpose synchronously, when the repository is created from
+ * Application.onCreate(): the theme and the language have to be known before the first activity
+ * is drawn, and the file is a few hundred bytes, so reading it costs less than handing the load
+ * to a thread and waiting for it. Reads never block afterwards. Changes are written on a
+ * background thread and published through {@link #getLiveData()}.
+ *
+ * The first load after an update migrates the SharedPreferences files of older versions
+ * ("LanguagePref", "ThemePref", "ReminderPrefs" and "streak"); they are deleted in the
+ * background once the migrated settings were written.
+ */
+public class SettingsRepository {
+
+    private static final String TAG = SettingsRepository.class.getName();
+    private static final String FILE_NAME = "settings.properties";
+
+    private static final String LEGACY_LANGUAGE_PREFS = "LanguagePref";
+    private static final String LEGACY_THEME_PREFS = "ThemePref";
+    private static final String LEGACY_REMINDER_PREFS = "ReminderPrefs";
+    private static final String LEGACY_STREAK_PREFS = "streak";
+
+    private static SettingsRepository instance;
+
+    private final Context context;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final SettingsStore store;
+    private final MutableLiveData<Settings> liveData = new MutableLiveData<>();
+
+    private SettingsRepository(Context context) {
+        this.context = context;
+        store = new SettingsStore(new File(context.getFilesDir(), FILE_NAME), ioExecutor);
+        load();
+    }
+
+    /**
+     * Returns the shared settings repository of the application, and loads the settings the
+     * first time it is called.
+     *
+     * @param context Any context of the application.
+     * @return The shared settings repository.
+     */
+    public static synchronized SettingsRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new SettingsRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the current settings. Safe to call from any thread, never blocks.
+     *
+     * @return The current settings.
+     */
+    public Settings get() {
+        return store.get();
+    }
+
+    /**
+     * Changes the settings. The new settings are visible to every reader at once and are
+     * written in the background, together with any other change made in the meantime.
+     *
+     * @param change Creates the new settings from the current ones.
+     * @return The new settings.
+     */
+    public Settings update(UnaryOperator<Settings> change) {
+        Settings previous = store.get();
+        Settings updated = store.update(change);
+        if (updated != previous) {
+            liveData.postValue(updated);
+        }
+        return updated;
+    }
+
+    /**
+     * @return The settings, updated on the main thread after every change.
+     */
+    public LiveData<Settings> getLiveData() {
+        return liveData;
+    }
+
+    private void load() {
+        try {
+            if (store.exists()) {
+                store.load();
+            } else {
+                migrateLegacyPreferences();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot load the settings, using the defaults", e);
+        }
+        liveData.postValue(store.get());
+    }
+
+    /**
+     * This method moves the settings of older versions into the store. The old files are
+     * only deleted once the store was written.
+     */
+    private void migrateLegacyPreferences() {
+        SharedPreferences languagePrefs = context.getSharedPreferences(LEGACY_LANGUAGE_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences themePrefs = context.getSharedPreferences(LEGACY_THEME_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences reminderPrefs = context.getSharedPreferences(LEGACY_REMINDER_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences streakPrefs = context.getSharedPreferences(LEGACY_STREAK_PREFS, Context.MODE_PRIVATE);
+
+        ReminderPlan plan;
+        if (reminderPrefs.contains("plan")) {
+            plan = ReminderPlan.decode(reminderPrefs.getString("plan", ""));
+        } else if (reminderPrefs.contains("selectedDays")) {
+            plan = ReminderPlan.fromLegacy(reminderPrefs.getString("selectedDays", ""),
+                    reminderPrefs.getString("selectedTime", ""));
+        } else {
+            plan = ReminderPlan.EMPTY;
+        }
+
+        long lastDay = streakPrefs.getLong("lastMeditationDay", StreakEngine.NO_DAY);
+        if (lastDay == StreakEngine.NO_DAY && streakPrefs.contains("lastOpenedApp")) {
+            // The app-open based streak stored the local date at UTC midnight
+            long lastOpened = streakPrefs.getLong("lastOpenedApp", -1);
+            lastDay = lastOpened >= 0 ? lastOpened / 86_400_000L : StreakEngine.NO_DAY;
+        }
+
+        Settings defaults = Settings.DEFAULT;
+        Settings migrated = defaults
+                .withLanguage(languagePrefs.getString("language", defaults.getLanguage()))
+                .withTheme(themePrefs.getString("theme", defaults.getTheme()))
+                .withReminderPlan(plan)
+                .withStreak(lastDay, streakPrefs.getInt("streakCounter", 0), streakPrefs.getInt("longestStreak", 0));
+        store.update(settings -> migrated);
+
+        // The write and the deletion stay off the startup path
+        ioExecutor.execute(() -> {
+            try {
+                store.flush();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot write the migrated settings, migrating again next time", e);
+                return;
+            }
+            for (String name : new String[]{LEGACY_LANGUAGE_PREFS, LEGACY_THEME_PREFS, LEGACY_REMINDER_PREFS, LEGACY_STREAK_PREFS}) {
+                context.deleteSharedPreferences(name);
+            }
+            Log.i(TAG, "Migrated the settings of an older version");
+        });
+    }
+}
@@ -0,0 +1,208 @@
+package zen.zone.settings;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
+
+import zen.zone.session.ResumePoints;
+import zen.zone.streak.StreakEngine;
+import zen.zone.ui.preferences.ReminderPlan;
+
+/**
+ * The SettingsStore class keeps the current {@link Settings} snapshot in memory and persists it
+ * in a single properties file.
+ *
+ * Readers get the snapshot without locking. Writers replace it with {@link #update(UnaryOperator)},
+ * which queues a write on the writer executor only if none is queued yet: every update made
+ * before the queued write runs is saved by that one write. A write replaces the file atomically
+ * (temporary file, sync, rename), so a crash leaves either the old or the new settings.
+ */
+public class SettingsStore {
+
+    /**
+     * The version of the file format, incremented when keys change meaning.
+     */
+    static final int VERSION = 1;
+
+    private static final String TAG = SettingsStore.class.getName();
+
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_LANGUAGE = "language";
+    private static final String KEY_THEME = "theme";
+    private static final String KEY_REMINDERS = "reminders";
+    private static final String KEY_LAST_DAY = "lastMeditationDay";
+    private static final String KEY_CURRENT = "currentStreak";
+    private static final String KEY_LONGEST = "longestStreak";
+    private static final String KEY_RESUME_POINTS = "resumePoints";
+    private static final String KEY_LAST_SOUND = "lastSoundId";
+    private static final String KEY_LAST_SOUND_VOLUME = "lastSoundVolume";
+    private static final String KEY_SILENT_SESSION = "silentSession";
+
+    private final File file;
+    private final Executor writer;
+    private final Object lock = new Object();
+    private final Object fileLock = new Object();
+    private volatile Settings settings = Settings.DEFAULT;
+    // Guarded by lock
+    private long revision;
+    private boolean writeQueued;
+    // Guarded by fileLock
+    private long writtenRevision;
+
+    /**
+     * Creates a store holding the default settings until {@link #load()} is called.
+     *
+     * @param file   The settings file.
+     * @param writer The executor running the writes, usually a single background thread.
+     */
+    public SettingsStore(File file, Executor writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    /**
+     * @return true if the settings file exists.
+     */
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Reads the settings file into memory. A missing file loads the default settings.
+     *
+     * @return The loaded settings.
+     * @throws IOException If the file cannot be read or is not valid.
+     */
+    public Settings load() throws IOException {
+        if (!file.exists()) {
+            settings = Settings.DEFAULT;
+            return settings;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            int version = Integer.parseInt(properties.getProperty(KEY_VERSION, "0"));
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported settings version " + version);
+            }
+            Settings defaults = Settings.DEFAULT;
+            settings = new Settings(
+                    properties.getProperty(KEY_LANGUAGE, defaults.getLanguage()),
+                    properties.getProperty(KEY_THEME, defaults.getTheme()),
+                    ReminderPlan.decode(properties.getProperty(KEY_REMINDERS, "")),
+                    Long.parseLong(properties.getProperty(KEY_LAST_DAY, String.valueOf(StreakEngine.NO_DAY))),
+                    Integer.parseInt(properties.getProperty(KEY_CURRENT, "0")),
+                    Integer.parseInt(properties.getProperty(KEY_LONGEST, "0")),
+                    ResumePoints.decode(properties.getProperty(KEY_RESUME_POINTS, "")),
+                    Integer.parseInt(properties.getProperty(KEY_LAST_SOUND, "0")),
+                    Integer.parseInt(properties.getProperty(KEY_LAST_SOUND_VOLUME, "100")),
+                    Boolean.parseBoolean(properties.getProperty(KEY_SILENT_SESSION, "true")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid settings file", e);
+        }
+        return settings;
+    }
+
+    /**
+     * @return The current settings. Never blocks.
+     */
+    public Settings get() {
+        return settings;
+    }
+
+    /**
+     * Replaces the settings and queues their write, unless a write is already queued.
+     *
+     * @param change Creates the new settings from the current ones. Called under a lock, so
+     *               concurrent updates never lose each other's changes.
+     * @return The new settings.
+     */
+    public Settings update(UnaryOperator<Settings> change) {
+        synchronized (lock) {
+            Settings updated = change.apply(settings);
+            if (updated == settings) {
+                return updated;
+            }
+            settings = updated;
+            revision++;
+            if (!writeQueued) {
+                writeQueued = true;
+                writer.execute(this::writeLatest);
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Writes the current settings on the calling thread, if they were not written yet.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void flush() throws IOException {
+        Settings snapshot;
+        long snapshotRevision;
+        synchronized (lock) {
+            snapshot = settings;
+            snapshotRevision = revision;
+        }
+        write(snapshot, snapshotRevision);
+    }
+
+    private void writeLatest() {
+        Settings snapshot;
+        long snapshotRevision;
+        synchronized (lock) {
+            writeQueued = false;
+            snapshot = settings;
+            snapshotRevision = revision;
+        }
+        try {
+            write(snapshot, snapshotRevision);
+        } catch (IOException e) {
+            // Kept in memory; the next update or flush tries again
+            Log.w(TAG, "Cannot write the settings", e);
+        }
+    }
+
+    /**
+     * This method replaces the settings file, unless a newer revision was already written.
+     */
+    private void write(Settings snapshot, long snapshotRevision) throws IOException {
+        synchronized (fileLock) {
+            if (snapshotRevision <= writtenRevision && file.exists()) {
+                return;
+            }
+            Properties properties = new Properties();
+            properties.setProperty(KEY_VERSION, String.valueOf(VERSION));
+            properties.setProperty(KEY_LANGUAGE, snapshot.getLanguage());
+            properties.setProperty(KEY_THEME, snapshot.getTheme());
+            properties.setProperty(KEY_REMINDERS, snapshot.getReminderPlan().encode());
+            properties.setProperty(KEY_LAST_DAY, String.valueOf(snapshot.getLastMeditationDay()));
+            properties.setProperty(KEY_CURRENT, String.valueOf(snapshot.getCurrentStreak()));
+            properties.setProperty(KEY_LONGEST, String.valueOf(snapshot.getLongestStreak()));
+            properties.setProperty(KEY_RESUME_POINTS, snapshot.getResumePoints().encode());
+            properties.setProperty(KEY_LAST_SOUND, String.valueOf(snapshot.getLastSoundId()));
+            properties.setProperty(KEY_LAST_SOUND_VOLUME, String.valueOf(snapshot.getLastSoundVolume()));
+            properties.setProperty(KEY_SILENT_SESSION, String.valueOf(snapshot.isSilentSession()));
+
+            File temp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                properties.store(out, null);
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+            writtenRevision = snapshotRevision;
+        }
+    }
+}
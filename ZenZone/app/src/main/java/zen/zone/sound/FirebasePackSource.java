@@ -0,0 +1,34 @@
+package zen.zone.sound;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FileDownloadTask;
+import com.google.firebase.storage.FirebaseStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The FirebasePackSource class downloads sound packs from the "sounds" folder of Firebase
+ * Storage. The file is streamed to disk by the Firebase SDK. Firebase has to be initialized
+ * before the first download.
+ */
+public class FirebasePackSource implements PackSource {
+
+    private static final String ROOT = "sounds";
+
+    @Override
+    public void download(String path, File destination) throws IOException {
+        FileDownloadTask task = FirebaseStorage.getInstance().getReference()
+                .child(ROOT).child(path).getFile(destination);
+        try {
+            Tasks.await(task);
+        } catch (ExecutionException e) {
+            throw new IOException("Download of " + path + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            task.cancel();
+            Thread.currentThread().interrupt();
+            throw new IOException("Download of " + path + " interrupted", e);
+        }
+    }
+}
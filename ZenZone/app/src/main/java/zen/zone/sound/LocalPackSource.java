@@ -0,0 +1,44 @@
+package zen.zone.sound;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The LocalPackSource class serves sound packs from a local directory. It stands in for the
+ * remote storage in tests and debug builds.
+ */
+public class LocalPackSource implements PackSource {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final File root;
+
+    /**
+     * Creates a source serving the packs below the given directory.
+     *
+     * @param root The directory holding one directory per pack.
+     */
+    public LocalPackSource(File root) {
+        this.root = root;
+    }
+
+    @Override
+    public void download(String path, File destination) throws IOException {
+        File source = new File(root, path);
+        if (!source.isFile()) {
+            throw new IOException("No pack file " + path);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new FileOutputStream(destination)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
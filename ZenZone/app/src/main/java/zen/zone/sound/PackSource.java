@@ -0,0 +1,22 @@
+package zen.zone.sound;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The PackSource interface hides the remote storage of the sound packs from the
+ * {@link SoundLibrary}. Every pack is a directory holding a "manifest.properties" catalog (see
+ * {@link SoundCatalog}) and the sound files it lists. Implementations are called on a
+ * background thread and may block.
+ */
+public interface PackSource {
+
+    /**
+     * Downloads a file of a pack, blocking until it is written.
+     *
+     * @param path        The path of the file, e.g. "nature/manifest.properties".
+     * @param destination The local file receiving the content; it is overwritten.
+     * @throws IOException If the download failed; it can be retried later.
+     */
+    void download(String path, File destination) throws IOException;
+}
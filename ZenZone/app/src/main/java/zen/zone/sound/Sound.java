@@ -0,0 +1,137 @@
+package zen.zone.sound;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The Sound class describes one background sound of the {@link SoundCatalog}. A sound is
+ * identified by a stable numeric ID, which is what sessions and the history store; its display
+ * labels are metadata, one per language. A sound is either bundled with the app as a raw
+ * resource, or a file of a sound pack which is downloaded into the {@link SoundCache}.
+ *
+ * A guided meditation is a sound too: a narrated track of a pack with a known duration, which
+ * is played once instead of in a loop and sets the length of the session.
+ */
+public final class Sound {
+
+    private final int id;
+    private final String key;
+    private final Map<String, String> labels;
+    private final String rawName;
+    private final String packId;
+    private final String fileName;
+    private final long size;
+    private final String sha256;
+    private final long durationMillis;
+
+    Sound(int id, String key, Map<String, String> labels, String rawName,
+          String packId, String fileName, long size, String sha256, long durationMillis) {
+        this.id = id;
+        this.key = key;
+        this.labels = Collections.unmodifiableMap(labels);
+        this.rawName = rawName;
+        this.packId = packId;
+        this.fileName = fileName;
+        this.size = size;
+        this.sha256 = sha256;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return The stable identifier of the sound.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The stable name of the sound in its catalog, e.g. "birds".
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the label shown to the user.
+     *
+     * @param language The language tag, e.g. "pl".
+     * @return The label in that language, else in English, else the key of the sound.
+     */
+    public String getLabel(String language) {
+        String label = labels.get(language);
+        if (label == null) {
+            label = labels.get("en");
+        }
+        return label != null ? label : key;
+    }
+
+    /**
+     * @return true for the "no sound" entry.
+     */
+    public boolean isNone() {
+        return id == SoundCatalog.SOUND_NONE;
+    }
+
+    /**
+     * @return true if the sound is a raw resource of the app.
+     */
+    public boolean isBundled() {
+        return rawName != null;
+    }
+
+    /**
+     * @return The name of the raw resource of a bundled sound, or null.
+     */
+    public String getRawName() {
+        return rawName;
+    }
+
+    /**
+     * @return The pack of a downloadable sound, or null.
+     */
+    public String getPackId() {
+        return packId;
+    }
+
+    /**
+     * @return The path of a downloadable sound in the pack storage, or null.
+     */
+    public String getPath() {
+        return packId != null ? packId + "/" + fileName : null;
+    }
+
+    /**
+     * @return The file name of a downloadable sound in its pack, or null.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return The size of a downloadable sound in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The lowercase hexadecimal SHA-256 of a downloadable sound, or null.
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * @return true if the sound is a guided meditation rather than a background sound.
+     */
+    public boolean isGuided() {
+        return durationMillis > 0;
+    }
+
+    /**
+     * @return The length of a guided meditation in milliseconds, or 0 for a background sound.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,201 @@
+package zen.zone.sound;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * The SoundCache class keeps downloaded sound files on disk, within a fixed number of bytes.
+ * When a new file does not fit, the least recently used files are deleted. The order of use
+ * survives restarts, as every use touches the modification time of the file.
+ *
+ * A file only enters the cache after its size and SHA-256 were checked against the catalog,
+ * and a cached file whose size no longer matches is dropped, so a truncated or tampered file is
+ * never played. A file being played may be evicted: it stays readable through its open
+ * descriptor until it is closed.
+ */
+public class SoundCache {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final File dir;
+    private final long maxBytes;
+    private final LongSupplier clock;
+    // File name to size when cached, in access order, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Opens the cache, deleting the leftovers of interrupted downloads.
+     *
+     * @param dir      The directory of the cache.
+     * @param maxBytes The maximum total size of the cached files.
+     * @param clock    The current time in epoch milliseconds.
+     * @throws IOException If the directory cannot be created.
+     */
+    public SoundCache(File dir, long maxBytes, LongSupplier clock) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().endsWith(PART_SUFFIX)) {
+                file.delete();
+            } else if (file.isFile()) {
+                entries.put(file.getName(), file.length());
+                totalBytes += file.length();
+            }
+        }
+    }
+
+    /**
+     * Returns a cached sound and marks it as recently used.
+     *
+     * @param sound A downloadable sound.
+     * @return The file, or null if it is not cached.
+     */
+    public synchronized File get(Sound sound) {
+        String name = fileName(sound);
+        if (entries.get(name) == null) {
+            return null;
+        }
+        File file = new File(dir, name);
+        if (file.length() != sound.getSize()) {
+            remove(name);
+            return null;
+        }
+        file.setLastModified(clock.getAsLong());
+        return file;
+    }
+
+    /**
+     * Creates the file a download is written to before it is added with {@link #put(Sound, File)}.
+     *
+     * @param sound The sound being downloaded.
+     * @return A file in the cache directory, deleted when the cache is opened again.
+     */
+    public File newDownloadFile(Sound sound) {
+        return new File(dir, fileName(sound) + "." + Thread.currentThread().getId() + PART_SUFFIX);
+    }
+
+    /**
+     * Checks a downloaded file and adds it to the cache, evicting the least recently used
+     * files if needed. The downloaded file is moved or deleted.
+     *
+     * @param sound      The sound that was downloaded.
+     * @param downloaded The downloaded file, see {@link #newDownloadFile(Sound)}.
+     * @return The cached file.
+     * @throws IOException If the file does not match the catalog or cannot be moved.
+     */
+    public File put(Sound sound, File downloaded) throws IOException {
+        try {
+            if (downloaded.length() != sound.getSize()) {
+                throw new IOException("Size of " + sound.getKey() + " is " + downloaded.length()
+                        + ", expected " + sound.getSize());
+            }
+            String sha256 = sha256(downloaded);
+            if (!sha256.equals(sound.getSha256())) {
+                throw new IOException("Checksum of " + sound.getKey() + " does not match");
+            }
+        } catch (IOException e) {
+            downloaded.delete();
+            throw e;
+        }
+
+        synchronized (this) {
+            String name = fileName(sound);
+            remove(name);
+            File file = new File(dir, name);
+            if (!downloaded.renameTo(file)) {
+                downloaded.delete();
+                throw new IOException("Cannot move " + downloaded + " into the cache");
+            }
+            file.setLastModified(clock.getAsLong());
+            entries.put(name, file.length());
+            totalBytes += file.length();
+            evict(name);
+            return file;
+        }
+    }
+
+    /**
+     * @return The total size of the cached files in bytes.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * This method deletes least recently used files until the cache fits, keeping the given one.
+     */
+    private void evict(String keep) {
+        List<String> victims = new ArrayList<>();
+        long bytes = totalBytes;
+        for (Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator(); it.hasNext() && bytes > maxBytes; ) {
+            Map.Entry<String, Long> entry = it.next();
+            if (!entry.getKey().equals(keep)) {
+                victims.add(entry.getKey());
+                bytes -= entry.getValue();
+            }
+        }
+        for (String victim : victims) {
+            remove(victim);
+        }
+    }
+
+    private void remove(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+            new File(dir, name).delete();
+        }
+    }
+
+    /**
+     * This method names the cached file of a sound. The name includes the start of the
+     * checksum, so a new version of a sound never reads the old file.
+     */
+    private static String fileName(Sound sound) {
+        return sound.getPackId() + "-" + sound.getSha256().substring(0, 16) + "-" + sound.getFileName();
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit(b >> 4 & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
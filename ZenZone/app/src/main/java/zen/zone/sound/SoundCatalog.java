@@ -0,0 +1,217 @@
+package zen.zone.sound;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The SoundCatalog class lists the background sounds and guided meditations the user can
+ * choose from, in display order. Catalogs are read from properties files: the app bundles one
+ * with its own sounds and the names of the packs offering more, and every pack has a manifest
+ * in the same format:
+ *
+ * <pre>
+ * packs=nature
+ * sounds=birds,rain
+ * birds.id=1
+ * birds.file=birds.ogg
+ * birds.size=1843200
+ * birds.sha256=9f86d0...
+ * birds.label.en=Birds
+ * birds.label.pl=Ptaki
+ * </pre>
+ *
+ * A bundled sound has a raw=name entry instead of file, size and sha256. A guided meditation is
+ * a pack sound with a duration=seconds entry. Catalogs are immutable.
+ */
+public final class SoundCatalog {
+
+    /**
+     * The identifier of the "no sound" entry.
+     */
+    public static final int SOUND_NONE = 0;
+
+    /**
+     * The highest identifier of a sound, as sessions store them in one byte, see
+     * zen.zone.session.SessionTimeline.
+     */
+    public static final int MAX_SOUND_ID = 0xFF;
+
+    /**
+     * A catalog without sounds.
+     */
+    public static final SoundCatalog EMPTY = new SoundCatalog(Collections.emptyList(), Collections.emptyList());
+
+    private final List<Sound> sounds;
+    private final List<String> packs;
+
+    private SoundCatalog(List<Sound> sounds, List<String> packs) {
+        this.sounds = Collections.unmodifiableList(sounds);
+        this.packs = Collections.unmodifiableList(packs);
+    }
+
+    /**
+     * Reads a catalog.
+     *
+     * @param reader The properties file.
+     * @param packId The pack the catalog belongs to, or null for the bundled catalog.
+     * @return The catalog.
+     * @throws IOException If the file cannot be read or describes an invalid sound.
+     */
+    public static SoundCatalog parse(Reader reader, String packId) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        List<Sound> sounds = new ArrayList<>();
+        for (String key : split(properties.getProperty("sounds"))) {
+            sounds.add(parseSound(properties, key, packId));
+        }
+        return new SoundCatalog(sounds, split(properties.getProperty("packs")));
+    }
+
+    /**
+     * Appends the sounds of another catalog, e.g. of a pack. Sounds whose identifier is
+     * already taken are skipped, so a pack can never replace a sound of the app.
+     *
+     * @param other The other catalog.
+     * @return The merged catalog.
+     */
+    public SoundCatalog merge(SoundCatalog other) {
+        List<Sound> merged = new ArrayList<>(sounds);
+        for (Sound sound : other.sounds) {
+            if (get(sound.getId()) == null) {
+                merged.add(sound);
+            }
+        }
+        return new SoundCatalog(merged, packs);
+    }
+
+    /**
+     * @param id The stable identifier of a sound.
+     * @return The sound, or null if the catalog has no such sound.
+     */
+    public Sound get(int id) {
+        for (Sound sound : sounds) {
+            if (sound.getId() == id) {
+                return sound;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The sounds, in display order.
+     */
+    public List<Sound> getSounds() {
+        return sounds;
+    }
+
+    /**
+     * @return The background sounds, after the "no sound" entry.
+     */
+    public SoundCatalog backgroundSounds() {
+        return filter(false);
+    }
+
+    /**
+     * @return The guided meditations, after the "no sound" entry.
+     */
+    public SoundCatalog guidedMeditations() {
+        return filter(true);
+    }
+
+    /**
+     * @return The identifiers of the packs offering more sounds.
+     */
+    public List<String> getPacks() {
+        return packs;
+    }
+
+    /**
+     * @param language The language tag, e.g. "pl".
+     * @return The labels of the sounds, in display order.
+     */
+    public String[] getLabels(String language) {
+        String[] labels = new String[sounds.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = sounds.get(i).getLabel(language);
+        }
+        return labels;
+    }
+
+    private SoundCatalog filter(boolean guided) {
+        List<Sound> filtered = new ArrayList<>();
+        for (Sound sound : sounds) {
+            if (sound.isNone() || sound.isGuided() == guided) {
+                filtered.add(sound);
+            }
+        }
+        return new SoundCatalog(filtered, packs);
+    }
+
+    private static Sound parseSound(Properties properties, String key, String packId) throws IOException {
+        String prefix = key + ".";
+        Map<String, String> labels = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(prefix + "label.")) {
+                labels.put(name.substring(prefix.length() + "label.".length()), properties.getProperty(name));
+            }
+        }
+        try {
+            int id = Integer.parseInt(required(properties, prefix + "id"));
+            if (id < 0 || id > MAX_SOUND_ID) {
+                throw new IOException("Invalid id of sound " + key);
+            }
+            String rawName = properties.getProperty(prefix + "raw");
+            if (id == SOUND_NONE || rawName != null) {
+                if (packId != null) {
+                    throw new IOException("Pack " + packId + " cannot declare bundled sound " + key);
+                }
+                return new Sound(id, key, labels, rawName, null, null, 0, null, 0);
+            }
+            if (packId == null) {
+                throw new IOException("Bundled sound " + key + " has no raw resource");
+            }
+            String fileName = required(properties, prefix + "file");
+            if (fileName.contains("/") || fileName.startsWith(".")) {
+                throw new IOException("Invalid file of sound " + key);
+            }
+            long size = Long.parseLong(required(properties, prefix + "size"));
+            String sha256 = required(properties, prefix + "sha256").toLowerCase();
+            if (size <= 0 || !sha256.matches("[0-9a-f]{64}")) {
+                throw new IOException("Invalid size or checksum of sound " + key);
+            }
+            long durationSeconds = Long.parseLong(properties.getProperty(prefix + "duration", "0").trim());
+            if (durationSeconds < 0 || durationSeconds > Integer.MAX_VALUE / 1000) {
+                throw new IOException("Invalid duration of sound " + key);
+            }
+            return new Sound(id, key, labels, null, packId, fileName, size, sha256, durationSeconds * 1000);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in sound " + key, e);
+        }
+    }
+
+    private static String required(Properties properties, String name) throws IOException {
+        String value = properties.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IOException("Missing " + name);
+        }
+        return value.trim();
+    }
+
+    private static List<String> split(String list) {
+        List<String> items = new ArrayList<>();
+        if (list != null) {
+            for (String item : list.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    items.add(item.trim());
+                }
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,236 @@
+package zen.zone.sound;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import zen.zone.ZenZoneApplication;
+
+/**
+ * The SoundLibrary class gives the application its {@link SoundCatalog}: the sounds bundled with
+ * the app (assets/sounds/catalog.properties) followed by the sounds of the packs it lists. Pack
+ * manifests are downloaded from the {@link PackSource} of the application and kept, so the
+ * catalog is complete offline. Pack sounds are downloaded on demand into a {@link SoundCache}
+ * and played from disk, so the APK does not grow with the sound library.
+ */
+public class SoundLibrary {
+
+    /**
+     * Receives a downloaded sound, on the main thread.
+     */
+    public interface Callback {
+
+        /**
+         * Called when a download finished.
+         *
+         * @param file The cached file, or null if the sound could not be downloaded.
+         */
+        void onFetched(File file);
+    }
+
+    private static final String TAG = SoundLibrary.class.getName();
+    private static final String CATALOG_ASSET = "sounds/catalog.properties";
+    private static final String MANIFEST = "manifest.properties";
+    // Room for a few guided meditations, which are tens of megabytes each
+    private static final long CACHE_BYTES = 192L * 1024 * 1024;
+
+    private static SoundLibrary instance;
+
+    private final Context context;
+    private final PackSource packSource;
+    private final File manifestDir;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<SoundCatalog> liveData;
+    private final SoundCatalog bundled;
+    private volatile SoundCatalog catalog;
+    private SoundCache cache;
+    private boolean packsRefreshed;
+
+    private SoundLibrary(Context context) {
+        this.context = context;
+        packSource = ZenZoneApplication.from(context).createPackSource();
+        manifestDir = new File(context.getFilesDir(), "sounds");
+        bundled = readBundledCatalog();
+        catalog = withSavedPacks();
+        liveData = new MutableLiveData<>(catalog);
+    }
+
+    /**
+     * Returns the shared sound library of the application. Called on the main thread.
+     *
+     * @param context Any context of the application.
+     * @return The shared sound library.
+     */
+    public static synchronized SoundLibrary getInstance(Context context) {
+        if (instance == null) {
+            instance = new SoundLibrary(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @return The current catalog.
+     */
+    public SoundCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return The catalog, updated on the main thread when pack manifests were downloaded.
+     */
+    public LiveData<SoundCatalog> getLiveData() {
+        return liveData;
+    }
+
+    /**
+     * Downloads the manifests of the packs in the background, once per process.
+     */
+    public synchronized void refreshPacks() {
+        if (packsRefreshed) {
+            return;
+        }
+        packsRefreshed = true;
+        ioExecutor.execute(() -> {
+            try {
+                ZenZoneApplication.from(context).getStartupTasks().await(ZenZoneApplication.TASK_FIREBASE);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!manifestDir.isDirectory() && !manifestDir.mkdirs()) {
+                Log.e(TAG, "Cannot create " + manifestDir);
+                return;
+            }
+            for (String pack : bundled.getPacks()) {
+                File temp = new File(manifestDir, pack + ".tmp");
+                try {
+                    packSource.download(pack + "/" + MANIFEST, temp);
+                    // Only a valid manifest replaces the saved one
+                    readCatalog(temp, pack);
+                    if (!temp.renameTo(new File(manifestDir, pack + ".properties"))) {
+                        throw new IOException("Cannot save the manifest of " + pack);
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot refresh sound pack " + pack, e);
+                    temp.delete();
+                }
+            }
+            catalog = withSavedPacks();
+            liveData.postValue(catalog);
+        });
+    }
+
+    /**
+     * Returns the resource of a bundled sound.
+     *
+     * @param sound A bundled sound.
+     * @return The raw resource, or 0 if the app has no such resource.
+     */
+    public int getRawResource(Sound sound) {
+        return context.getResources().getIdentifier(sound.getRawName(), "raw", context.getPackageName());
+    }
+
+    /**
+     * Returns the file of a pack sound, if it was downloaded.
+     *
+     * @param sound A pack sound.
+     * @return The cached file, or null.
+     */
+    public File getCachedFile(Sound sound) {
+        SoundCache soundCache = getCache();
+        return soundCache != null ? soundCache.get(sound) : null;
+    }
+
+    /**
+     * Downloads a pack sound into the cache in the background, unless it is already cached.
+     *
+     * @param sound    A pack sound.
+     * @param callback Receives the file on the main thread, may be null.
+     */
+    public void fetch(Sound sound, Callback callback) {
+        ioExecutor.execute(() -> {
+            File file = null;
+            SoundCache soundCache = getCache();
+            if (soundCache != null) {
+                file = soundCache.get(sound);
+                if (file == null) {
+                    file = download(soundCache, sound);
+                }
+            }
+            if (callback != null) {
+                File result = file;
+                mainHandler.post(() -> callback.onFetched(result));
+            }
+        });
+    }
+
+    private File download(SoundCache soundCache, Sound sound) {
+        try {
+            ZenZoneApplication.from(context).getStartupTasks().await(ZenZoneApplication.TASK_FIREBASE);
+            File part = soundCache.newDownloadFile(sound);
+            packSource.download(sound.getPath(), part);
+            return soundCache.put(sound, part);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot download sound " + sound.getKey(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private synchronized SoundCache getCache() {
+        if (cache == null) {
+            try {
+                cache = new SoundCache(new File(context.getCacheDir(), "sounds"), CACHE_BYTES, System::currentTimeMillis);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot open the sound cache", e);
+            }
+        }
+        return cache;
+    }
+
+    private SoundCatalog readBundledCatalog() {
+        try (Reader reader = new InputStreamReader(context.getAssets().open(CATALOG_ASSET), StandardCharsets.UTF_8)) {
+            return SoundCatalog.parse(reader, null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid bundled sound catalog", e);
+        }
+    }
+
+    /**
+     * This method merges the saved manifests of the packs into the bundled catalog.
+     */
+    private SoundCatalog withSavedPacks() {
+        SoundCatalog merged = bundled;
+        for (String pack : bundled.getPacks()) {
+            File manifest = new File(manifestDir, pack + ".properties");
+            if (manifest.isFile()) {
+                try {
+                    merged = merged.merge(readCatalog(manifest, pack));
+                } catch (IOException e) {
+                    Log.w(TAG, "Ignoring the manifest of sound pack " + pack, e);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static SoundCatalog readCatalog(File file, String pack) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return SoundCatalog.parse(reader, pack);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package zen.zone.startup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * The StartupTasks class runs the deferred parts of the application startup as named tasks.
+ * Nothing runs until a task is first needed: the first call starting, awaiting or waiting for a
+ * task hands it to the background executor, and it runs exactly once. Every task run is timed
+ * in the {@link StartupTrace}.
+ *
+ * The tasks are independent of each other: what they share, e.g. the settings, is ready
+ * before the first of them can start.
+ */
+public class StartupTasks {
+
+    private enum State {IDLE, RUNNING, DONE}
+
+    private static final class Task {
+        final String name;
+        final Runnable work;
+        final List<Runnable> callbacks = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        State state = State.IDLE;
+        RuntimeException error;
+
+        Task(String name, Runnable work) {
+            this.name = name;
+            this.work = work;
+        }
+    }
+
+    private final Map<String, Task> tasks = new HashMap<>();
+    private final Executor executor;
+    private final StartupTrace trace;
+
+    /**
+     * Creates an empty set of tasks.
+     *
+     * @param executor The executor running the tasks, normally a background pool.
+     * @param trace    The trace receiving the duration of every task.
+     */
+    public StartupTasks(Executor executor, StartupTrace trace) {
+        this.executor = executor;
+        this.trace = trace;
+    }
+
+    /**
+     * Adds a task.
+     *
+     * @param name The unique name of the task.
+     * @param work The work of the task.
+     */
+    public synchronized void add(String name, Runnable work) {
+        if (tasks.containsKey(name)) {
+            throw new IllegalArgumentException("Task already added: " + name);
+        }
+        tasks.put(name, new Task(name, work));
+    }
+
+    /**
+     * Starts the task unless it was already started.
+     *
+     * @param name The name of the task.
+     */
+    public void start(String name) {
+        Task task;
+        synchronized (this) {
+            task = task(name);
+            if (task.state != State.IDLE) {
+                return;
+            }
+            task.state = State.RUNNING;
+        }
+        executor.execute(() -> run(task));
+    }
+
+    /**
+     * Starts the task if needed and runs the callback once it is done. If the task is already
+     * done, the callback is handed to the callback executor right away.
+     *
+     * @param name             The name of the task.
+     * @param callbackExecutor The executor running the callback, e.g. the main thread.
+     * @param callback         The callback.
+     */
+    public void whenReady(String name, Executor callbackExecutor, Runnable callback) {
+        Runnable dispatch = () -> callbackExecutor.execute(callback);
+        boolean runNow;
+        synchronized (this) {
+            Task task = task(name);
+            runNow = task.state == State.DONE;
+            if (!runNow) {
+                task.callbacks.add(dispatch);
+            }
+        }
+        if (runNow) {
+            dispatch.run();
+        } else {
+            start(name);
+        }
+    }
+
+    /**
+     * Starts the task if needed and blocks until it is done.
+     *
+     * @param name The name of the task.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public void await(String name) throws InterruptedException {
+        Task task;
+        synchronized (this) {
+            task = task(name);
+        }
+        start(name);
+        long waitStart = trace.now();
+        task.done.await();
+        trace.end("await." + name, waitStart);
+    }
+
+    /**
+     * Checks whether the task has finished, successfully or not.
+     *
+     * @param name The name of the task.
+     * @return true if the task is done.
+     */
+    public synchronized boolean isDone(String name) {
+        return task(name).state == State.DONE;
+    }
+
+    /**
+     * Returns the exception thrown by the task, if any.
+     *
+     * @param name The name of the task.
+     * @return The exception, or null if the task did not fail (or did not run yet).
+     */
+    public synchronized RuntimeException getError(String name) {
+        return task(name).error;
+    }
+
+    private void run(Task task) {
+        long start = trace.now();
+        RuntimeException error = null;
+        try {
+            task.work.run();
+        } catch (RuntimeException e) {
+            // A failing task must not leave its waiters hanging
+            error = e;
+        }
+        trace.end(task.name, start);
+
+        List<Runnable> callbacks;
+        synchronized (this) {
+            task.error = error;
+            task.state = State.DONE;
+            callbacks = new ArrayList<>(task.callbacks);
+            task.callbacks.clear();
+        }
+        task.done.countDown();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    private Task task(String name) {
+        Task task = tasks.get(name);
+        if (task == null) {
+            throw new IllegalArgumentException("Unknown task: " + name);
+        }
+        return task;
+    }
+}
@@ -0,0 +1,150 @@
+package zen.zone.startup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * The StartupTrace class collects the duration of every startup phase, so that a cold-start
+ * regression shows up as a number. Phases can be recorded from any thread.
+ */
+public class StartupTrace {
+
+    /**
+     * A single timed startup phase.
+     */
+    public static final class Phase {
+        private final String name;
+        private final long startNanos;
+        private final long durationNanos;
+        private final String threadName;
+
+        Phase(String name, long startNanos, long durationNanos, String threadName) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.threadName = threadName;
+        }
+
+        /**
+         * @return The name of the phase.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The moment the phase started, as read from the trace clock.
+         */
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        /**
+         * @return The duration of the phase, in nanoseconds.
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * @return The name of the thread the phase finished on.
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Creates a trace reading time from System.nanoTime().
+     */
+    public StartupTrace() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * Creates a trace reading time from the given monotonic clock.
+     *
+     * @param clock A monotonic clock returning nanoseconds.
+     */
+    public StartupTrace(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the current time of the trace clock, to be passed to {@link #end}.
+     *
+     * @return The current time in nanoseconds.
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Records a phase which started at the given moment and ends now.
+     *
+     * @param name       The name of the phase.
+     * @param startNanos The moment the phase started, as returned by {@link #now()}.
+     */
+    public void end(String name, long startNanos) {
+        record(name, startNanos, now());
+    }
+
+    /**
+     * Records a phase with explicit start and end.
+     *
+     * @param name       The name of the phase.
+     * @param startNanos The moment the phase started.
+     * @param endNanos   The moment the phase ended.
+     */
+    public synchronized void record(String name, long startNanos, long endNanos) {
+        phases.add(new Phase(name, startNanos, endNanos - startNanos, Thread.currentThread().getName()));
+    }
+
+    /**
+     * Returns all phases recorded so far, in the order they finished.
+     *
+     * @return An unmodifiable copy of the recorded phases.
+     */
+    public synchronized List<Phase> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<>(phases));
+    }
+
+    /**
+     * Returns the duration of the most recently recorded phase with the given name.
+     *
+     * @param name The name of the phase.
+     * @return The duration in nanoseconds, or -1 if the phase was not recorded.
+     */
+    public synchronized long getDurationNanos(String name) {
+        for (int i = phases.size() - 1; i >= 0; i--) {
+            if (phases.get(i).name.equals(name)) {
+                return phases.get(i).durationNanos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a one-line summary of all phases, suitable for logging.
+     *
+     * @return The summary, e.g. "application.onCreate=4.2ms[main] streak=1.3ms[startup-1]".
+     */
+    public synchronized String summary() {
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : phases) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(phase.name).append('=')
+                    .append(String.format(Locale.US, "%.1f", phase.durationNanos / 1_000_000.0))
+                    .append("ms[").append(phase.threadName).append(']');
+        }
+        return builder.toString();
+    }
+}
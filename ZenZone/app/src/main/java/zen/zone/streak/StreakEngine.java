@@ -0,0 +1,125 @@
+package zen.zone.streak;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * The StreakEngine class keeps the user's current and longest streak of meditation days.
+ * It is fed with completed sessions one at a time and updates its state in constant time,
+ * without ever looking at the session history again.
+ *
+ * Days are local calendar days in the time zone the session was completed in, so a streak
+ * is neither broken nor extended by UTC midnight or by a DST transition.
+ */
+public class StreakEngine {
+
+    /**
+     * Marker of "no session completed yet".
+     */
+    public static final long NO_DAY = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private long lastDay;
+    private int currentStreak;
+    private int longestStreak;
+
+    /**
+     * Creates an engine for a user who never completed a session.
+     */
+    public StreakEngine() {
+        this(NO_DAY, 0, 0);
+    }
+
+    /**
+     * Creates an engine restored from a previously saved state.
+     *
+     * @param lastDay       The local epoch day of the last completed session, or NO_DAY.
+     * @param currentStreak The streak ending on lastDay.
+     * @param longestStreak The longest streak ever reached.
+     */
+    public StreakEngine(long lastDay, int currentStreak, int longestStreak) {
+        this.lastDay = lastDay;
+        this.currentStreak = lastDay == NO_DAY ? 0 : Math.max(1, currentStreak);
+        this.longestStreak = Math.max(longestStreak, this.currentStreak);
+    }
+
+    /**
+     * Converts a point in time into the local epoch day (days since 1970-01-01) in the given zone.
+     *
+     * @param epochMillis The point in time (epoch ms).
+     * @param zone        The time zone of the user.
+     * @return The local epoch day.
+     */
+    public static long toLocalEpochDay(long epochMillis, ZoneId zone) {
+        long offsetMillis = zone.getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+        return Math.floorDiv(epochMillis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Registers a completed session.
+     *
+     * @param epochMillis The moment the session was completed (epoch ms).
+     * @param zone        The time zone of the user at that moment.
+     * @return true if the current streak grew, false otherwise.
+     */
+    public boolean onSessionCompleted(long epochMillis, ZoneId zone) {
+        return onSessionCompleted(toLocalEpochDay(epochMillis, zone));
+    }
+
+    /**
+     * Registers a completed session.
+     *
+     * @param day The local epoch day on which the session was completed.
+     * @return true if the current streak grew, false otherwise.
+     */
+    public boolean onSessionCompleted(long day) {
+        if (lastDay != NO_DAY && day <= lastDay) {
+            // Another session on the same day, or a clock/zone change moving us backwards
+            return false;
+        }
+        if (lastDay != NO_DAY && day == lastDay + 1) {
+            currentStreak++;
+        } else {
+            currentStreak = 1;
+        }
+        lastDay = day;
+        if (currentStreak > longestStreak) {
+            longestStreak = currentStreak;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the streaks as seen on the given day. The current streak is still alive on the
+     * day after the last session, as the user can meditate later that day; afterwards it is 0.
+     *
+     * @param today The local epoch day of today.
+     * @return The snapshot of the streaks.
+     */
+    public StreakSnapshot snapshot(long today) {
+        boolean alive = lastDay != NO_DAY && today - lastDay <= 1;
+        return new StreakSnapshot(alive ? currentStreak : 0, longestStreak, lastDay);
+    }
+
+    /**
+     * @return The local epoch day of the last completed session, or NO_DAY.
+     */
+    public long getLastDay() {
+        return lastDay;
+    }
+
+    /**
+     * @return The streak ending on the day of the last completed session.
+     */
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    /**
+     * @return The longest streak ever reached.
+     */
+    public int getLongestStreak() {
+        return longestStreak;
+    }
+}
@@ -0,0 +1,51 @@
+package zen.zone.streak;
+
+/**
+ * The StreakSnapshot class is an immutable view of the user's streaks at a given moment.
+ * It is cheap to read from any thread, so screens can show it without touching storage.
+ */
+public final class StreakSnapshot {
+
+    /**
+     * Snapshot of a user who never completed a session.
+     */
+    public static final StreakSnapshot EMPTY = new StreakSnapshot(0, 0, StreakEngine.NO_DAY);
+
+    private final int currentStreak;
+    private final int longestStreak;
+    private final long lastMeditationDay;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param currentStreak     The number of consecutive days with a session, up to today or yesterday.
+     * @param longestStreak     The longest streak ever reached.
+     * @param lastMeditationDay The local epoch day of the last completed session.
+     */
+    public StreakSnapshot(int currentStreak, int longestStreak, long lastMeditationDay) {
+        this.currentStreak = currentStreak;
+        this.longestStreak = longestStreak;
+        this.lastMeditationDay = lastMeditationDay;
+    }
+
+    /**
+     * @return The number of consecutive days with a completed session.
+     */
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    /**
+     * @return The longest streak ever reached.
+     */
+    public int getLongestStreak() {
+        return longestStreak;
+    }
+
+    /**
+     * @return The local epoch day of the last completed session, or StreakEngine.NO_DAY.
+     */
+    public long getLastMeditationDay() {
+        return lastMeditationDay;
+    }
+}
@@ -0,0 +1,88 @@
+package zen.zone.streak;
+
+import android.content.Context;
+
+import java.time.ZoneId;
+
+import zen.zone.settings.Settings;
+import zen.zone.settings.SettingsRepository;
+
+/**
+ * The StreakTracker class owns the application's {@link StreakEngine}. It persists the engine
+ * state in the {@link SettingsRepository} and keeps a cached {@link StreakSnapshot}, so the
+ * stats screen never has to read or recompute anything.
+ */
+public class StreakTracker {
+
+    private static StreakTracker instance;
+
+    private final SettingsRepository settingsRepository;
+    private final StreakEngine engine;
+    private volatile StreakSnapshot snapshot;
+    private volatile long snapshotDay;
+
+    private StreakTracker(Context context) {
+        settingsRepository = SettingsRepository.getInstance(context);
+        Settings settings = settingsRepository.get();
+        engine = new StreakEngine(settings.getLastMeditationDay(), settings.getCurrentStreak(),
+                settings.getLongestStreak());
+        refreshSnapshot(today());
+    }
+
+    /**
+     * Returns the shared streak tracker of the application.
+     *
+     * @param context Any context of the application.
+     * @return The shared streak tracker.
+     */
+    public static synchronized StreakTracker getInstance(Context context) {
+        if (instance == null) {
+            instance = new StreakTracker(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached streaks. The snapshot is only rebuilt when the day has changed
+     * since it was last taken.
+     *
+     * @return The current streak snapshot.
+     */
+    public StreakSnapshot getSnapshot() {
+        long today = today();
+        if (today != snapshotDay) {
+            synchronized (this) {
+                refreshSnapshot(today);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Registers a completed session and persists the updated streaks.
+     *
+     * @param epochMillis The moment the session was completed (epoch ms).
+     * @return true if the current streak grew, false otherwise.
+     */
+    public synchronized boolean onSessionCompleted(long epochMillis) {
+        ZoneId zone = ZoneId.systemDefault();
+        boolean grew = engine.onSessionCompleted(epochMillis, zone);
+        if (grew) {
+            long lastDay = engine.getLastDay();
+            int current = engine.getCurrentStreak();
+            int longest = engine.getLongestStreak();
+            settingsRepository.update(settings -> settings.withStreak(lastDay, current, longest));
+        }
+        refreshSnapshot(StreakEngine.toLocalEpochDay(System.currentTimeMillis(), zone));
+        return grew;
+    }
+
+    private void refreshSnapshot(long today) {
+        snapshot = engine.snapshot(today);
+        snapshotDay = today;
+    }
+
+    private static long today() {
+        return StreakEngine.toLocalEpochDay(System.currentTimeMillis(), ZoneId.systemDefault());
+    }
+}
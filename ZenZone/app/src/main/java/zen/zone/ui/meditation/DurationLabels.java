@@ -0,0 +1,38 @@
+package zen.zone.ui.meditation;
+
+import java.util.Locale;
+
+/**
+ * The DurationLabels class precomputes the labels of the meditation duration slider
+ * ("1 min" ... "60 min") for the current locale, so dragging the slider only looks up
+ * a ready string instead of formatting one on every progress event.
+ */
+public class DurationLabels {
+
+    private static Locale cachedLocale;
+    private static String cachedUnit;
+    private static String[] cachedLabels;
+
+    /**
+     * Returns the labels for 1 to maxMinutes minutes. The table is built once per locale
+     * and unit, and reused as long as they do not change.
+     *
+     * @param locale     The locale used to format the numbers.
+     * @param unit       The localized minutes unit, e.g. "min".
+     * @param maxMinutes The highest duration on the slider, in minutes.
+     * @return The labels, where index i holds the label of i + 1 minutes.
+     */
+    public static synchronized String[] forLocale(Locale locale, String unit, int maxMinutes) {
+        if (cachedLabels == null || cachedLabels.length < maxMinutes
+                || !locale.equals(cachedLocale) || !unit.equals(cachedUnit)) {
+            String[] labels = new String[maxMinutes];
+            for (int i = 0; i < maxMinutes; i++) {
+                labels[i] = String.format(locale, "%d %s", i + 1, unit);
+            }
+            cachedLocale = locale;
+            cachedUnit = unit;
+            cachedLabels = labels;
+        }
+        return cachedLabels;
+    }
+}
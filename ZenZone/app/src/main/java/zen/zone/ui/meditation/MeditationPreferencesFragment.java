@@ -1,10 +1,14 @@
 package zen.zone.ui.meditation;
 
+import android.app.NotificationManager;
+import android.content.Intent;
 import android.os.Bundle;
+import android.provider.Settings;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -13,12 +17,24 @@ import android.widget.Spinner;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.fragment.NavHostFragment;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 import zen.zone.R;
+import zen.zone.appearance.AppearanceManager;
+import zen.zone.audio.PreparedSounds;
+import zen.zone.session.MeditationService;
+import zen.zone.session.SessionTimeline;
+import zen.zone.settings.SettingsRepository;
+import zen.zone.sound.Sound;
+import zen.zone.sound.SoundCatalog;
+import zen.zone.sound.SoundLibrary;
 
 /**
  * A simple {@link Fragment} subclass representing the Meditation settings screen.
@@ -32,6 +48,21 @@ public class MeditationPreferencesFragment extends Fragment {
      */
     private static final String TAG = MeditationPreferencesFragment.class.getName();
 
+    /**
+     * The interval of the interval bell for each entry of the interval spinner, 0 is off.
+     */
+    private static final int[] INTERVAL_BELL_MINUTES = {0, 1, 2, 5, 10, 15};
+
+    /**
+     * The background sound spinners and their volume sliders, one pair per layer of the mix.
+     */
+    private static final int[] SOUND_SPINNER_IDS = {R.id.sp_background_sound, R.id.sp_background_sound_2, R.id.sp_background_sound_3};
+    private static final int[] VOLUME_SEEKBAR_IDS = {R.id.sb_background_volume, R.id.sb_background_volume_2, R.id.sb_background_volume_3};
+
+    private String[] durationLabels;
+    private List<Sound> sounds = Collections.emptyList();
+    private List<Sound> guidedMeditations = Collections.emptyList();
+
     /**
      * Default constructor.
      */
@@ -75,13 +106,85 @@ public class MeditationPreferencesFragment extends Fragment {
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_meditation_preferences, container, false);
+        // The timer screen is inflated while the user chooses, so Start shows it at once
+        TimerLayoutPrewarmer.prewarm(inflater, container, requireActivity());
 
         SeekBar sbMeditationDuration = view.findViewById(R.id.seekBar_meditation_length);
         final TextView tvMeditationDurationValue = view.findViewById(R.id.tv_meditation_length_value);
+        // Labels are formatted once per locale, dragging the slider only looks them up
+        durationLabels = DurationLabels.forLocale(Locale.getDefault(),
+                getString(R.string.minutes), sbMeditationDuration.getMax() + 1);
+        Spinner[] spBackgroundSounds = new Spinner[SOUND_SPINNER_IDS.length];
+        for (int i = 0; i < spBackgroundSounds.length; i++) {
+            spBackgroundSounds[i] = view.findViewById(SOUND_SPINNER_IDS[i]);
+        }
+        Spinner spGuidedMeditation = view.findViewById(R.id.sp_guided_meditation);
+        SoundLibrary soundLibrary = SoundLibrary.getInstance(requireContext());
+        PreparedSounds preparedSounds = PreparedSounds.getInstance(requireContext());
+        AppearanceManager.getInstance(requireContext()).addListener(getViewLifecycleOwner(), change -> {
+            if (change.isLocaleChanged()) {
+                durationLabels = DurationLabels.forLocale(Locale.getDefault(),
+                        getString(R.string.minutes), sbMeditationDuration.getMax() + 1);
+                tvMeditationDurationValue.setText(durationLabels[sbMeditationDuration.getProgress()]);
+                showSounds(spBackgroundSounds, spGuidedMeditation, soundLibrary.getCatalog());
+                showGuidedMeditation(view);
+            }
+        });
+        soundLibrary.getLiveData().observe(getViewLifecycleOwner(),
+                catalog -> showSounds(spBackgroundSounds, spGuidedMeditation, catalog));
+        soundLibrary.refreshPacks();
+        AdapterView.OnItemSelectedListener soundSelectedListener = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View itemView, int position, long id) {
+                // Prepare the sound now, downloading a pack sound first, so it plays at once
+                Sound sound = sounds.get(position);
+                if (sound.isNone()) {
+                    return;
+                }
+                if (sound.isBundled()) {
+                    int resId = soundLibrary.getRawResource(sound);
+                    if (resId != 0) {
+                        preparedSounds.prepare(resId);
+                    }
+                    return;
+                }
+                File file = soundLibrary.getCachedFile(sound);
+                if (file != null) {
+                    preparedSounds.prepare(file);
+                } else {
+                    soundLibrary.fetch(sound, fetched -> {
+                        if (fetched != null) {
+                            preparedSounds.prepare(fetched);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        };
+        for (Spinner spinner : spBackgroundSounds) {
+            spinner.setOnItemSelectedListener(soundSelectedListener);
+        }
+        spGuidedMeditation.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View itemView, int position, long id) {
+                Sound guidedMeditation = guidedMeditations.get(position);
+                if (!guidedMeditation.isNone() && soundLibrary.getCachedFile(guidedMeditation) == null) {
+                    soundLibrary.fetch(guidedMeditation, null);
+                }
+                showGuidedMeditation(view);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
         sbMeditationDuration.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                tvMeditationDurationValue.setText(String.format(Locale.getDefault(), "%d %s", progress + 1, getString(R.string.minutes)));
+                tvMeditationDurationValue.setText(durationLabels[progress]);
             }
 
             @Override
@@ -93,28 +196,74 @@ public class MeditationPreferencesFragment extends Fragment {
             }
         });
 
+        // Looked up once, so the click only reads them
+        CheckBox continueCheckBox = view.findViewById(R.id.cb_continue_guided);
+        CheckBox halfTimeNotificationCheckBox = view.findViewById(R.id.cb_half_time_notification);
+        Spinner intervalBellSpinner = view.findViewById(R.id.sp_interval_bell);
+        CheckBox guidedStagesCheckBox = view.findViewById(R.id.cb_guided_stages);
+        CheckBox silentSessionCheckBox = view.findViewById(R.id.cb_silent_session);
+        // A click, unlike a checked change, is always the user's
+        silentSessionCheckBox.setOnClickListener(v -> setSilentSession(silentSessionCheckBox));
+        SeekBar[] volumeSeekBars = new SeekBar[VOLUME_SEEKBAR_IDS.length];
+        for (int i = 0; i < volumeSeekBars.length; i++) {
+            volumeSeekBars[i] = view.findViewById(VOLUME_SEEKBAR_IDS[i]);
+        }
         Button startMeditationButton = view.findViewById(R.id.btn_start_meditation);
         startMeditationButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 // Get values from UI elements
-                SeekBar meditationDurationSeekBar = view.findViewById(R.id.seekBar_meditation_length);
-                long meditationDurationMillis = (long) (meditationDurationSeekBar.getProgress() + 1) * 60 * 1000;
+                long meditationDurationMillis = (long) (sbMeditationDuration.getProgress() + 1) * 60 * 1000;
+
+                // A guided meditation sets the length of the session, from where it continues
+                Sound guidedMeditation = getSelectedGuidedMeditation();
+                long narrationStartMillis = 0;
+                if (guidedMeditation != null) {
+                    if (continueCheckBox.getVisibility() == View.VISIBLE && continueCheckBox.isChecked()) {
+                        narrationStartMillis = getResumePoint(guidedMeditation);
+                    }
+                    meditationDurationMillis = guidedMeditation.getDurationMillis() - narrationStartMillis;
+                }
 
-                CheckBox halfTimeNotificationCheckBox = view.findViewById(R.id.cb_half_time_notification);
                 boolean halfTimeNotification = halfTimeNotificationCheckBox.isChecked();
 
-                Spinner backgroundSoundSpinner = view.findViewById(R.id.sp_background_sound);
-                String backgroundSound = backgroundSoundSpinner.getSelectedItem() != null ? backgroundSoundSpinner.getSelectedItem().toString() : "None";
+                int intervalMinutes = INTERVAL_BELL_MINUTES[intervalBellSpinner.getSelectedItemPosition()];
+
+                boolean guidedStages = guidedStagesCheckBox.isChecked();
+
+                // Compile the session into a timeline, with the selected sounds as its layers
+                SessionTimeline.Builder timeline = new SessionTimeline.Builder(meditationDurationMillis);
+                if (guidedMeditation != null) {
+                    timeline.narration(guidedMeditation.getId(), narrationStartMillis);
+                    Log.i(TAG, "guidedMeditation = " + guidedMeditation.getId() + " from " + narrationStartMillis);
+                }
+                for (int i = 0; i < spBackgroundSounds.length; i++) {
+                    int position = spBackgroundSounds[i].getSelectedItemPosition();
+                    Sound backgroundSound = position >= 0 ? sounds.get(position) : null;
+                    int soundId = backgroundSound != null ? backgroundSound.getId() : SoundCatalog.SOUND_NONE;
+                    SeekBar volumeSeekBar = volumeSeekBars[i];
+                    timeline.soundLayer(soundId, volumeSeekBar.getProgress());
+                    Log.i(TAG, "backgroundSound[" + i + "] = " + soundId + " at " + volumeSeekBar.getProgress() + "%");
+                }
 
                 Log.i(TAG, "meditationDurationMillis = " + meditationDurationMillis);
                 Log.i(TAG, "halfTimeNotification = " + halfTimeNotification);
-                Log.i(TAG, "backgroundSound = " + backgroundSound);
-                // Pass the meditation settings as arguments to the TimerFragment
+                Log.i(TAG, "intervalMinutes = " + intervalMinutes);
+                Log.i(TAG, "guidedStages = " + guidedStages);
+
+                if (halfTimeNotification) {
+                    timeline.halfTimeBell();
+                }
+                if (intervalMinutes > 0) {
+                    timeline.intervalBells(intervalMinutes * 60 * 1000L);
+                }
+                if (guidedStages) {
+                    timeline.standardStages();
+                }
+
+                // Pass the session as an argument to the TimerFragment
                 Bundle args = new Bundle();
-                args.putLong("meditationDurationMillis", meditationDurationMillis);
-                args.putBoolean("halfTimeNotification", halfTimeNotification);
-                args.putString("backgroundSound", backgroundSound);
+                args.putByteArray(MeditationService.EXTRA_TIMELINE, timeline.build().toByteArray());
 
                 // Navigate to TimerFragment with the meditation settings as arguments
                 NavHostFragment.findNavController(MeditationPreferencesFragment.this)
@@ -123,4 +272,128 @@ public class MeditationPreferencesFragment extends Fragment {
         });
         return view;
     }
+
+    /**
+     * Called when the fragment is visible to the user, e.g. back from the system settings. The
+     * silent session check box shows whether sessions will actually be silenced, which takes
+     * do not disturb access; it is only checked here, never asked for.
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        CheckBox silentSessionCheckBox = requireView().findViewById(R.id.cb_silent_session);
+        silentSessionCheckBox.setChecked(SettingsRepository.getInstance(requireContext()).get().isSilentSession()
+                && isNotificationPolicyAccessGranted());
+    }
+
+    /**
+     * This method saves the choice of the user to silence sessions. Turning it on without do not
+     * disturb access explains why the access is needed before opening the system settings, and
+     * turns it off again if the user declines.
+     */
+    private void setSilentSession(CheckBox checkBox) {
+        boolean silent = checkBox.isChecked();
+        SettingsRepository.getInstance(requireContext()).update(settings -> settings.withSilentSession(silent));
+        if (!silent || isNotificationPolicyAccessGranted()) {
+            return;
+        }
+        Runnable decline = () -> {
+            checkBox.setChecked(false);
+            SettingsRepository.getInstance(requireContext()).update(settings -> settings.withSilentSession(false));
+        };
+        new AlertDialog.Builder(requireContext())
+                .setMessage(R.string.silent_session_access)
+                .setPositiveButton(R.string.open_settings,
+                        (dialog, which) -> startActivity(new Intent(Settings.ACTION_NOTIFICATION_POLICY_ACCESS_SETTINGS)))
+                .setNegativeButton(R.string.not_now, (dialog, which) -> decline.run())
+                .setOnCancelListener(dialog -> decline.run())
+                .show();
+    }
+
+    private boolean isNotificationPolicyAccessGranted() {
+        return requireContext().getSystemService(NotificationManager.class).isNotificationPolicyAccessGranted();
+    }
+
+    /**
+     * This method adapts the screen to the selected guided meditation: its length replaces the
+     * duration slider, and its resume point, if it was interrupted before, is offered.
+     */
+    private void showGuidedMeditation(View view) {
+        SeekBar sbMeditationDuration = view.findViewById(R.id.seekBar_meditation_length);
+        TextView tvMeditationDurationValue = view.findViewById(R.id.tv_meditation_length_value);
+        CheckBox cbContinue = view.findViewById(R.id.cb_continue_guided);
+        Sound guidedMeditation = getSelectedGuidedMeditation();
+        sbMeditationDuration.setEnabled(guidedMeditation == null);
+        if (guidedMeditation == null) {
+            tvMeditationDurationValue.setText(durationLabels[sbMeditationDuration.getProgress()]);
+            cbContinue.setVisibility(View.GONE);
+            return;
+        }
+        tvMeditationDurationValue.setText(TimeFormatter.formatMinutesSeconds(guidedMeditation.getDurationMillis()));
+        long resumePoint = getResumePoint(guidedMeditation);
+        cbContinue.setVisibility(resumePoint > 0 ? View.VISIBLE : View.GONE);
+        cbContinue.setText(getString(R.string.continue_guided, TimeFormatter.formatMinutesSeconds(resumePoint)));
+    }
+
+    /**
+     * @return The selected guided meditation, or null if the session is not guided.
+     */
+    private Sound getSelectedGuidedMeditation() {
+        Spinner spinner = getView() != null ? getView().findViewById(R.id.sp_guided_meditation) : null;
+        int position = spinner != null ? spinner.getSelectedItemPosition() : -1;
+        if (position < 0 || position >= guidedMeditations.size() || guidedMeditations.get(position).isNone()) {
+            return null;
+        }
+        return guidedMeditations.get(position);
+    }
+
+    /**
+     * @return Where the guided meditation was left, or 0 to start it from the beginning.
+     */
+    private long getResumePoint(Sound guidedMeditation) {
+        long position = SettingsRepository.getInstance(requireContext()).get().getResumePoints().get(guidedMeditation.getId());
+        return position < guidedMeditation.getDurationMillis() ? position : 0;
+    }
+
+    /**
+     * This method fills the background sound spinners and the guided meditation spinner with
+     * the sounds of the catalog, labelled in the current language, and keeps the selected
+     * sounds selected.
+     */
+    private void showSounds(Spinner[] spinners, Spinner guidedSpinner, SoundCatalog catalog) {
+        int[] selectedIds = new int[spinners.length];
+        for (int i = 0; i < spinners.length; i++) {
+            selectedIds[i] = getSelectedId(spinners[i], sounds);
+        }
+        int selectedGuidedId = getSelectedId(guidedSpinner, guidedMeditations);
+        String language = getResources().getConfiguration().getLocales().get(0).getLanguage();
+        SoundCatalog backgroundSounds = catalog.backgroundSounds();
+        SoundCatalog guided = catalog.guidedMeditations();
+
+        sounds = backgroundSounds.getSounds();
+        guidedMeditations = guided.getSounds();
+        String[] labels = backgroundSounds.getLabels(language);
+        for (int i = 0; i < spinners.length; i++) {
+            setSounds(spinners[i], labels, sounds, selectedIds[i]);
+        }
+        setSounds(guidedSpinner, guided.getLabels(language), guidedMeditations, selectedGuidedId);
+    }
+
+    private static int getSelectedId(Spinner spinner, List<Sound> shown) {
+        int position = spinner.getSelectedItemPosition();
+        return position >= 0 && position < shown.size() ? shown.get(position).getId() : SoundCatalog.SOUND_NONE;
+    }
+
+    private static void setSounds(Spinner spinner, String[] labels, List<Sound> shown, int selectedId) {
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(spinner.getContext(),
+                android.R.layout.simple_spinner_item, labels);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(adapter);
+        for (int j = 0; j < shown.size(); j++) {
+            if (shown.get(j).getId() == selectedId) {
+                spinner.setSelection(j, false);
+                break;
+            }
+        }
+    }
 }
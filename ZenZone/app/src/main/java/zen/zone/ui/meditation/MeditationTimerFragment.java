@@ -1,51 +1,144 @@
 package zen.zone.ui.meditation;
 
-import android.app.NotificationManager;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.media.MediaPlayer;
+import android.content.ServiceConnection;
+import android.hardware.display.DisplayManager;
 import android.os.Bundle;
-import android.os.CountDownTimer;
-import android.provider.Settings;
-import android.util.Log;
+import android.os.IBinder;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.LayoutInflater;
-import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.LinearLayout;
+import android.widget.SeekBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.navigation.NavOptions;
 import androidx.navigation.Navigation;
 
-import java.util.Locale;
-
 import zen.zone.MainActivity;
 import zen.zone.R;
+import zen.zone.ZenZoneApplication;
+import zen.zone.metrics.Histogram;
+import zen.zone.session.MeditationService;
+import zen.zone.session.MeditationTimer;
+import zen.zone.session.SessionTimeline;
+import zen.zone.sound.Sound;
+import zen.zone.sound.SoundLibrary;
 
 /**
  * A fragment that represents the meditation timer screen.
- * This fragment is responsible for managing the meditation timer
- * and controlling the user's interaction with the timer.
+ * The session itself runs in {@link MeditationService}; this fragment starts it, binds to it
+ * while visible to show the remaining time, and forwards the user's pause, play and stop, and
+ * the volumes of the background sounds.
+ *
+ * The screen only renders while it can be seen, see {@link RenderGate}: when the display turns
+ * off or the window loses the focus, it stops observing the session, so the timer stops ticking
+ * and the main thread is left alone until the next bell. When it can be seen again, the screen
+ * catches up from the remaining time of the session. Ticks only request a frame; the time is
+ * read and drawn on the next vsync, through the Choreographer.
+ *
+ * Only one session runs at a time: if one is already running when the screen is created, it
+ * shows that session instead of starting its own. Back asks whether to stop the session, as
+ * leaving the screen would leave the session running out of sight.
  */
 public class MeditationTimerFragment extends Fragment {
 
-    private TextView tvTimeRemaining;
+    private TimerDisplayView tvTimeRemaining;
+    private TextView tvStage;
     private Button btnPause;
     private LinearLayout llPausedControls;
-    private CountDownTimer meditationTimer;
-    private long timeLeftInMillis;
-    private long totalTimeInMillis;
-    private boolean hasHalftimePassed = false;
-    private MediaPlayer mediaPlayer;
-    private NotificationManager notificationManager;
-    private int currentInterruptionMode;
-    private boolean forceNoDisturb;
+    private LinearLayout llSoundVolumes;
+    private MeditationService meditationService;
+    private boolean bound;
+    private Histogram tickJitter;
+    private boolean tickAligned;
+    private DisplayManager displayManager;
+    private boolean framePending;
+    private boolean leaving;
+
+    private final RenderGate renderGate = new RenderGate(this::onRenderGateChanged);
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> renderFrame();
+    private final OnBackPressedCallback backCallback = new OnBackPressedCallback(true) {
+        @Override
+        public void handleOnBackPressed() {
+            confirmStop();
+        }
+    };
+    private final ViewTreeObserver.OnWindowFocusChangeListener focusListener =
+            hasFocus -> renderGate.set(RenderGate.WINDOW_FOCUSED, hasFocus);
+
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            updateDisplayState();
+        }
+    };
+
+    private final MeditationService.Observer sessionObserver = new MeditationService.Observer() {
+        @Override
+        public void onTick(long remainingMillis) {
+            // Ticks are due when the displayed second changes; the first tick after observing is not
+            if (tickAligned) {
+                tickJitter.record(MeditationTimer.roundUpToSecond(remainingMillis) - remainingMillis);
+            }
+            tickAligned = true;
+            requestFrame();
+        }
+
+        @Override
+        public void onStageChanged(int stage) {
+            showStage(stage);
+        }
+
+        @Override
+        public void onSessionEnded() {
+            // Notify the user that the meditation has ended
+            // Return to the meditation settings screen (SettingsFragment)
+            returnToSettings();
+        }
+    };
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            meditationService = ((MeditationService.LocalBinder) service).getService();
+            if (!meditationService.isActive()) {
+                // The session ended while the screen was not visible
+                returnToSettings();
+                return;
+            }
+            showSoundVolumes();
+            renderGate.set(RenderGate.BOUND, true);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            renderGate.set(RenderGate.BOUND, false);
+            meditationService = null;
+        }
+    };
 
     /**
      * Called when the fragment is being created, or when a retained
@@ -54,15 +147,23 @@ public class MeditationTimerFragment extends Fragment {
      */
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        // Do not disturb access is asked for on the settings screen, so the session starts at once
+        super.onCreate(savedInstanceState);
+        tickJitter = ZenZoneApplication.from(requireContext()).getMetrics().histogram("timer.tick_jitter_ms");
+        displayManager = requireContext().getSystemService(DisplayManager.class);
 
-        // Check if we can force no disturb mode during meditation
-        notificationManager = (NotificationManager) getActivity().getSystemService(Context.NOTIFICATION_SERVICE);
+        requireActivity().getOnBackPressedDispatcher().addCallback(this, backCallback);
 
-        if (!notificationManager.isNotificationPolicyAccessGranted()) {
-            Intent intent = new Intent(Settings.ACTION_NOTIFICATION_POLICY_ACCESS_SETTINGS);
-            startActivity(intent);
+        assert getArguments() != null;
+        SessionTimeline running = MeditationService.getRunningTimeline();
+        if (running != null) {
+            // Show the session which is already running rather than the one of the arguments
+            getArguments().putByteArray(MeditationService.EXTRA_TIMELINE, running.toByteArray());
+        } else if (savedInstanceState == null) {
+            // The session runs in the service, so that it goes on with the screen off
+            Intent intent = new Intent(requireContext(), MeditationService.class).putExtras(getArguments());
+            ContextCompat.startForegroundService(requireContext(), intent);
         }
-        super.onCreate(savedInstanceState);
     }
 
     /**
@@ -77,42 +178,47 @@ public class MeditationTimerFragment extends Fragment {
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
-        View view = inflater.inflate(R.layout.fragment_meditation_timer, container, false);
+        // Usually inflated in the background while the user was on the settings screen
+        View view = TimerLayoutPrewarmer.take(inflater);
+        if (view == null) {
+            view = inflater.inflate(R.layout.fragment_meditation_timer, container, false);
+        }
 
         tvTimeRemaining = view.findViewById(R.id.tv_time_remaining);
+        tvStage = view.findViewById(R.id.tv_stage);
         btnPause = view.findViewById(R.id.btn_pause);
         llPausedControls = view.findViewById(R.id.ll_paused_controls);
+        llSoundVolumes = view.findViewById(R.id.ll_sound_volumes);
         Button btnPlay = view.findViewById(R.id.btn_play);
         Button btnStop = view.findViewById(R.id.btn_stop);
 
         assert getArguments() != null;
-        timeLeftInMillis = getArguments().getLong("meditationDurationMillis", 1 * 60 * 1000);
-        totalTimeInMillis = timeLeftInMillis;
-        boolean halfTimeNotification = getArguments().getBoolean("halfTimeNotification");
-        String backgroundSound = getArguments().getString("backgroundSound");
-        forceNoDisturb = !(halfTimeNotification || (!backgroundSound.equals("None") && !backgroundSound.equals("Brak")));
-        startMeditationTimer(timeLeftInMillis, halfTimeNotification);
-        handleBackgroundSound(backgroundSound);
+        SessionTimeline timeline = SessionTimeline.fromByteArray(getArguments().getByteArray(MeditationService.EXTRA_TIMELINE));
+        tvTimeRemaining.setRemainingMillis(timeline.getDurationMillis());
 
         btnPause.setOnClickListener(v -> {
-            meditationTimer.cancel();
-            btnPause.setVisibility(View.GONE);
-            llPausedControls.setVisibility(View.VISIBLE);
-            if (mediaPlayer != null) {
-                mediaPlayer.pause();
+            if (meditationService != null) {
+                meditationService.pause();
+                showPaused(true);
             }
         });
 
         btnPlay.setOnClickListener(v -> {
-            startMeditationTimer(timeLeftInMillis, halfTimeNotification);
-            btnPause.setVisibility(View.VISIBLE);
-            llPausedControls.setVisibility(View.GONE);
-            if (mediaPlayer != null) {
-                mediaPlayer.start();
+            if (meditationService != null) {
+                meditationService.resume();
+                showPaused(false);
             }
         });
 
-        btnStop.setOnClickListener(v -> stopMeditationAndReturnToSettings());
+        btnStop.setOnClickListener(v -> {
+            if (meditationService != null) {
+                meditationService.stop();
+            } else {
+                returnToSettings();
+            }
+        });
+
+        view.getViewTreeObserver().addOnWindowFocusChangeListener(focusListener);
 
         // Hide ActionBar and NavBar
         if (getActivity() != null) {
@@ -120,112 +226,233 @@ public class MeditationTimerFragment extends Fragment {
             if (actionBar != null) {
                 actionBar.hide();
             }
-            ((MainActivity) getActivity()).hideBottomNav();
+            if (getActivity() instanceof MainActivity) {
+                ((MainActivity) getActivity()).hideBottomNav();
+            }
         }
 
         return view;
     }
 
     /**
-     * Starts the meditation timer, which counts down and updates the UI each second.
-     *
-     * @param millisUntilFinished The amount of time (in milliseconds) until the timer should finish.
-     * @param halfTimeNotification Indicates whether the user wants to be notified when the timer is halfway finished.
+     * Binds to the session while the screen is visible, and starts following the display
+     * state and the window focus.
      */
-    private void startMeditationTimer(long millisUntilFinished, boolean halfTimeNotification) {
-        if (forceNoDisturb) startNoDisturbMode();
-        meditationTimer = new CountDownTimer(millisUntilFinished, 1000) {
-            @Override
-            public void onTick(long millisUntilFinished) {
-                timeLeftInMillis = millisUntilFinished;
-                int minutes = (int) (millisUntilFinished / 1000) / 60;
-                int seconds = (int) (millisUntilFinished / 1000) % 60;
-                String timeRemaining = String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds);
-                tvTimeRemaining.setText(timeRemaining);
-
-                if (!hasHalftimePassed && halfTimeNotification && (millisUntilFinished <= totalTimeInMillis / 2)) {
-                    playBellSound();
-                    hasHalftimePassed = true;
-                }
-            }
+    @Override
+    public void onStart() {
+        super.onStart();
+        // If the session already ended, this creates an idle service which only tells the
+        // screen to go back, and which is destroyed again when unbinding
+        bound = requireContext().bindService(new Intent(requireContext(), MeditationService.class),
+                serviceConnection, Context.BIND_AUTO_CREATE);
+        displayManager.registerDisplayListener(displayListener, null);
+        updateDisplayState();
+        renderGate.set(RenderGate.WINDOW_FOCUSED, requireView().hasWindowFocus());
+        renderGate.set(RenderGate.STARTED, true);
+    }
 
-            @Override
-            public void onFinish() {
-                // Notify the user that the meditation has ended
-                // Return to the meditation settings screen (SettingsFragment)
-                stopMeditationAndReturnToSettings();
-            }
-        }.start();
+    /**
+     * Unbinds from the session. The session goes on, without per-second ticks.
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        renderGate.set(RenderGate.STARTED, false);
+        displayManager.unregisterDisplayListener(displayListener);
+        renderGate.set(RenderGate.BOUND, false);
+        meditationService = null;
+        if (bound) {
+            requireContext().unbindService(serviceConnection);
+            bound = false;
+        }
+    }
+
+    /**
+     * Stops following the window focus.
+     */
+    @Override
+    public void onDestroyView() {
+        requireView().getViewTreeObserver().removeOnWindowFocusChangeListener(focusListener);
+        super.onDestroyView();
     }
 
     /**
-     * Stops the meditation and navigates the user back to the settings screen.
+     * This method starts or stops rendering. When the screen can be seen again, it catches up
+     * with everything that happened meanwhile, then observes the session, which ticks at once.
      */
-    public void stopMeditationAndReturnToSettings() {
-        if (forceNoDisturb) stopNoDisturbMode();
-        if (meditationTimer != null) {
-            meditationTimer.cancel();
+    private void onRenderGateChanged(boolean open) {
+        if (meditationService == null) {
+            return;
         }
-        if (mediaPlayer != null) {
-            mediaPlayer.release();
+        if (!open) {
+            meditationService.removeObserver(sessionObserver);
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            framePending = false;
+            return;
         }
-        Navigation.findNavController(getView()).navigate(R.id.navigation_meditation);
+        if (!meditationService.isActive()) {
+            returnToSettings();
+            return;
+        }
+        showPaused(meditationService.isPaused());
+        showStage(meditationService.getCurrentStage());
+        tickAligned = false;
+        meditationService.addObserver(sessionObserver);
+        requestFrame();
+    }
 
-        // Show ActionBar and NavBar
-        if (getActivity() != null) {
-            ActionBar actionBar = ((AppCompatActivity) getActivity()).getSupportActionBar();
-            if (actionBar != null) {
-                actionBar.show();
-            }
-            ((MainActivity) getActivity()).showBottomNav();
+    /**
+     * This method reads the state of the display showing the screen: only a display which is
+     * fully on counts, not one which is off, dozing or showing an always-on display.
+     */
+    private void updateDisplayState() {
+        Display display = getView() != null ? getView().getDisplay() : null;
+        if (display == null) {
+            display = displayManager.getDisplay(Display.DEFAULT_DISPLAY);
         }
+        renderGate.set(RenderGate.DISPLAY_ON, display != null && display.getState() == Display.STATE_ON);
     }
 
-    @Override
-    public void onStop() {
-        super.onStop();
-        stopMeditationAndReturnToSettings();
+    /**
+     * This method asks for the remaining time to be drawn on the next frame, once however many
+     * ticks arrive before it.
+     */
+    private void requestFrame() {
+        if (!framePending) {
+            framePending = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
     }
 
-    private void handleBackgroundSound(String backgroundSound) {
-        // Determine the resource id of the selected background sound
-        int soundResId = SoundResources.getSoundResource(backgroundSound);
-        if (soundResId != 0) {
-            // Play the selected background sound
-            playBackgroundSound(soundResId);
+    /**
+     * This method draws the remaining time as it is at the frame, read from the session.
+     */
+    private void renderFrame() {
+        framePending = false;
+        if (meditationService != null && renderGate.isOpen()) {
+            tvTimeRemaining.setRemainingMillis(MeditationTimer.roundUpToSecond(meditationService.getRemainingMillis()));
         }
     }
 
+    /**
+     * This method shows either the pause button or the play and stop buttons.
+     */
+    private void showPaused(boolean paused) {
+        btnPause.setVisibility(paused ? View.GONE : View.VISIBLE);
+        llPausedControls.setVisibility(paused ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * This method shows a volume slider for every background sound of the session. The sliders
+     * change the mix while the sound plays.
+     */
+    private void showSoundVolumes() {
+        llSoundVolumes.removeAllViews();
+        assert getArguments() != null;
+        SessionTimeline timeline = SessionTimeline.fromByteArray(getArguments().getByteArray(MeditationService.EXTRA_TIMELINE));
+        String language = getResources().getConfiguration().getLocales().get(0).getLanguage();
+        for (int layer = 0; layer < meditationService.getSoundLayerCount(); layer++) {
+            Sound sound = SoundLibrary.getInstance(requireContext()).getCatalog().get(timeline.getLayerSoundId(layer));
+            TextView label = new TextView(requireContext());
+            label.setText(sound != null ? sound.getLabel(language) : getString(R.string.sound_volume));
+            llSoundVolumes.addView(label);
+
+            SeekBar volume = new SeekBar(requireContext());
+            volume.setMax(100);
+            volume.setProgress(meditationService.getLayerVolume(layer));
+            volume.setContentDescription(getString(R.string.sound_volume));
+            int soundLayer = layer;
+            volume.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+                @Override
+                public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                    if (fromUser && meditationService != null) {
+                        meditationService.setLayerVolume(soundLayer, progress);
+                    }
+                }
 
-    private void playBackgroundSound(int soundResId) {
-        // Release any resources from previous MediaPlayer
-        if (mediaPlayer != null) {
-            mediaPlayer.release();
+                @Override
+                public void onStartTrackingTouch(SeekBar seekBar) {
+                }
+
+                @Override
+                public void onStopTrackingTouch(SeekBar seekBar) {
+                }
+            });
+            llSoundVolumes.addView(volume);
         }
-        // Create a new MediaPlayer to play this sound
-        mediaPlayer = MediaPlayer.create(this.getActivity(), soundResId);
-        mediaPlayer.setLooping(true); // Set looping
-        mediaPlayer.start();
     }
 
-    private void playBellSound() {
-        // Create a MediaPlayer and set its resource to gong sound
-        MediaPlayer bellSound = MediaPlayer.create(getContext(), R.raw.bell);
-        bellSound.start();
-        bellSound.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
-            @Override
-            public void onCompletion(MediaPlayer mediaPlayer) {
-                mediaPlayer.release();
-            }
-        });
+    /**
+     * This method asks the user whether to stop the session, as Back would otherwise leave it
+     * running without its screen. A session which already ended just returns.
+     */
+    private void confirmStop() {
+        if (meditationService == null || !meditationService.isActive()) {
+            returnToSettings();
+            return;
+        }
+        new AlertDialog.Builder(requireContext())
+                .setMessage(R.string.stop_session_question)
+                .setPositiveButton(R.string.stop, (dialog, which) -> {
+                    if (meditationService != null) {
+                        meditationService.stop();
+                    }
+                    returnToSettings();
+                })
+                .setNegativeButton(R.string.keep_meditating, null)
+                .show();
     }
 
-    private void startNoDisturbMode() {
-        currentInterruptionMode = notificationManager.getCurrentInterruptionFilter();
-        notificationManager.setInterruptionFilter(NotificationManager.INTERRUPTION_FILTER_NONE);
+    /**
+     * This method shows the name of the current stage, if the session has stages.
+     */
+    private void showStage(int stage) {
+        int nameResId;
+        switch (stage) {
+            case SessionTimeline.STAGE_SETTLE:
+                nameResId = R.string.stage_settle;
+                break;
+            case SessionTimeline.STAGE_BREATH:
+                nameResId = R.string.stage_breath;
+                break;
+            case SessionTimeline.STAGE_SILENCE:
+                nameResId = R.string.stage_silence;
+                break;
+            case SessionTimeline.STAGE_CLOSING:
+                nameResId = R.string.stage_closing;
+                break;
+            default:
+                tvStage.setVisibility(View.INVISIBLE);
+                return;
+        }
+        tvStage.setText(nameResId);
+        tvStage.setVisibility(View.VISIBLE);
     }
 
-    private void stopNoDisturbMode() {
-        notificationManager.setInterruptionFilter(currentInterruptionMode);
+    /**
+     * Navigates the user back to the settings screen, once, taking the timer screen off the back
+     * stack. A quick start, which has no settings screen, is closed instead.
+     */
+    private void returnToSettings() {
+        if (getView() == null || leaving) {
+            return;
+        }
+        leaving = true;
+        backCallback.setEnabled(false);
+        if (!(getActivity() instanceof MainActivity)) {
+            requireActivity().finish();
+            return;
+        }
+        Navigation.findNavController(getView()).navigate(R.id.navigation_meditation, null,
+                new NavOptions.Builder().setPopUpTo(R.id.timerFragment, true).setLaunchSingleTop(true).build());
+
+        // Show ActionBar and NavBar
+        if (getActivity() != null) {
+            ActionBar actionBar = ((AppCompatActivity) getActivity()).getSupportActionBar();
+            if (actionBar != null) {
+                actionBar.show();
+            }
+            ((MainActivity) getActivity()).showBottomNav();
+        }
     }
 }
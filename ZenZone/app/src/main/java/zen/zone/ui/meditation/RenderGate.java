@@ -0,0 +1,63 @@
+package zen.zone.ui.meditation;
+
+/**
+ * The RenderGate class decides whether the timer screen is worth rendering: only while the
+ * screen is started, its window has the focus, the display is on and the session is bound.
+ * Each condition is reported separately as it changes, and the listener hears only when the
+ * gate as a whole opens or closes.
+ */
+class RenderGate {
+
+    /**
+     * Receives the changes of the gate.
+     */
+    interface Listener {
+
+        /**
+         * Called when the gate opens or closes.
+         *
+         * @param open true if all conditions are now met.
+         */
+        void onGateChanged(boolean open);
+    }
+
+    static final int STARTED = 1;
+    static final int WINDOW_FOCUSED = 1 << 1;
+    static final int DISPLAY_ON = 1 << 2;
+    static final int BOUND = 1 << 3;
+
+    private static final int ALL = STARTED | WINDOW_FOCUSED | DISPLAY_ON | BOUND;
+
+    private final Listener listener;
+    private int conditions;
+
+    /**
+     * Creates a closed gate with no condition met.
+     *
+     * @param listener The listener of the changes.
+     */
+    RenderGate(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reports a condition.
+     *
+     * @param condition One of the condition constants.
+     * @param met       true if the condition is met.
+     */
+    void set(int condition, boolean met) {
+        boolean wasOpen = isOpen();
+        conditions = met ? conditions | condition : conditions & ~condition;
+        if (isOpen() != wasOpen) {
+            listener.onGateChanged(!wasOpen);
+        }
+    }
+
+    /**
+     * @return true if all conditions are met.
+     */
+    boolean isOpen() {
+        return conditions == ALL;
+    }
+}
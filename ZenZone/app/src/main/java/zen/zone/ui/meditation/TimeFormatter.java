@@ -0,0 +1,21 @@
+package zen.zone.ui.meditation;
+
+import java.util.Locale;
+
+/**
+ * The TimeFormatter class formats the remaining time of a meditation for display.
+ */
+public class TimeFormatter {
+
+    /**
+     * Formats a duration as minutes and seconds, e.g. "09:59".
+     *
+     * @param millis The duration in milliseconds.
+     * @return The formatted duration.
+     */
+    public static String formatMinutesSeconds(long millis) {
+        int minutes = (int) (millis / 1000) / 60;
+        int seconds = (int) (millis / 1000) % 60;
+        return String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds);
+    }
+}
@@ -0,0 +1,60 @@
+package zen.zone.ui.meditation;
+
+/**
+ * The TimerDigits class renders the remaining time of a meditation as "mm:ss" into a reused
+ * char buffer. It tells the caller which characters changed, so only those have to be redrawn,
+ * and it never allocates after construction.
+ */
+public class TimerDigits {
+
+    /**
+     * Number of characters of the rendered time.
+     */
+    public static final int LENGTH = 5;
+
+    /**
+     * Bit mask with a bit set for every character.
+     */
+    public static final int ALL_CHANGED = (1 << LENGTH) - 1;
+
+    private static final int MAX_MINUTES = 99;
+
+    private final char[] chars = {'0', '0', ':', '0', '0'};
+
+    /**
+     * Renders the given duration into the buffer.
+     *
+     * @param millis The duration in milliseconds. Durations of 100 minutes or more show as 99:59.
+     * @return A bit mask with bit i set if character i changed.
+     */
+    public int update(long millis) {
+        long totalSeconds = Math.max(0, millis / 1000);
+        int minutes = (int) Math.min(MAX_MINUTES, totalSeconds / 60);
+        int seconds = totalSeconds / 60 > MAX_MINUTES ? 59 : (int) (totalSeconds % 60);
+
+        int changed = 0;
+        changed |= set(0, minutes / 10);
+        changed |= set(1, minutes % 10);
+        changed |= set(3, seconds / 10);
+        changed |= set(4, seconds % 10);
+        return changed;
+    }
+
+    /**
+     * Returns the buffer holding the rendered time. It is updated in place by {@link #update}.
+     *
+     * @return The characters of the rendered time.
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    private int set(int index, int digit) {
+        char c = (char) ('0' + digit);
+        if (chars[index] == c) {
+            return 0;
+        }
+        chars[index] = c;
+        return 1 << index;
+    }
+}
@@ -0,0 +1,183 @@
+package zen.zone.ui.meditation;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * The TimerDisplayView class shows the remaining time of a meditation as fixed-width "mm:ss"
+ * glyphs. Updating it allocates nothing and never requests a layout, since its size does not
+ * depend on the digits shown. On hardware-accelerated canvases each glyph is kept in its own
+ * display list, and only the glyphs that changed are recorded again.
+ */
+public class TimerDisplayView extends View {
+
+    private static final int[] ATTRS = {android.R.attr.textSize, android.R.attr.textColor};
+
+    private final TimerDigits digits = new TimerDigits();
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float[] glyphCenters = new float[TimerDigits.LENGTH];
+    private final float[] glyphWidths = new float[TimerDigits.LENGTH];
+    private GlyphNodes glyphNodes;
+    private int dirtyGlyphs = TimerDigits.ALL_CHANGED;
+    private float baseline;
+    private boolean themeTextColor;
+
+    public TimerDisplayView(Context context) {
+        this(context, null);
+    }
+
+    public TimerDisplayView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        TypedArray array = context.obtainStyledAttributes(attrs, ATTRS);
+        float defaultSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 48, getResources().getDisplayMetrics());
+        paint.setTextSize(array.getDimension(0, defaultSize));
+        themeTextColor = !array.hasValue(1);
+        paint.setColor(array.getColor(1, resolveDefaultTextColor(context)));
+        array.recycle();
+        paint.setTextAlign(Paint.Align.CENTER);
+
+        // Every digit gets a cell as wide as the widest digit, so the time never jumps around
+        float digitWidth = 0;
+        for (char c = '0'; c <= '9'; c++) {
+            digitWidth = Math.max(digitWidth, paint.measureText(String.valueOf(c)));
+        }
+        float colonWidth = paint.measureText(":");
+        float x = 0;
+        for (int i = 0; i < TimerDigits.LENGTH; i++) {
+            glyphWidths[i] = i == 2 ? colonWidth : digitWidth;
+            glyphCenters[i] = x + glyphWidths[i] / 2;
+            x += glyphWidths[i];
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            glyphNodes = new GlyphNodes();
+        }
+        digits.update(0);
+    }
+
+    /**
+     * Shows the given remaining time. Only redraws the view if a glyph actually changed.
+     *
+     * @param millis The remaining time in milliseconds.
+     */
+    public void setRemainingMillis(long millis) {
+        int changed = digits.update(millis);
+        if (changed != 0) {
+            dirtyGlyphs |= changed;
+            invalidate();
+        }
+    }
+
+    /**
+     * Changes the colour of the glyphs.
+     *
+     * @param color The new colour.
+     */
+    public void setTextColor(int color) {
+        themeTextColor = false;
+        applyTextColor(color);
+    }
+
+    private void applyTextColor(int color) {
+        if (paint.getColor() != color) {
+            paint.setColor(color);
+            dirtyGlyphs = TimerDigits.ALL_CHANGED;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // The night mode may have changed without recreating the activity
+        if (themeTextColor) {
+            applyTextColor(resolveDefaultTextColor(getContext()));
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        float textWidth = glyphCenters[TimerDigits.LENGTH - 1] + glyphWidths[TimerDigits.LENGTH - 1] / 2;
+        int width = (int) Math.ceil(textWidth) + getPaddingLeft() + getPaddingRight();
+        int height = (int) Math.ceil(metrics.descent - metrics.ascent) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        baseline = getPaddingTop() - metrics.ascent;
+        dirtyGlyphs = TimerDigits.ALL_CHANGED;
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        char[] chars = digits.getChars();
+        float left = getPaddingLeft();
+        if (glyphNodes != null && canvas.isHardwareAccelerated()) {
+            glyphNodes.draw(canvas, chars, left);
+        } else {
+            for (int i = 0; i < TimerDigits.LENGTH; i++) {
+                canvas.drawText(chars, i, 1, left + glyphCenters[i], baseline, paint);
+            }
+        }
+        dirtyGlyphs = 0;
+    }
+
+    private static int resolveDefaultTextColor(Context context) {
+        TypedValue value = new TypedValue();
+        if (context.getTheme().resolveAttribute(android.R.attr.textColorPrimary, value, true)) {
+            return value.resourceId != 0
+                    ? context.getColorStateList(value.resourceId).getDefaultColor()
+                    : value.data;
+        }
+        return Color.BLACK;
+    }
+
+    /**
+     * One display list per glyph, recorded again only when the glyph changes.
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private final class GlyphNodes {
+        private final RenderNode[] nodes = new RenderNode[TimerDigits.LENGTH];
+
+        GlyphNodes() {
+            for (int i = 0; i < TimerDigits.LENGTH; i++) {
+                nodes[i] = new RenderNode("TimerGlyph" + i);
+            }
+        }
+
+        void draw(Canvas canvas, char[] chars, float left) {
+            int height = getHeight();
+            for (int i = 0; i < TimerDigits.LENGTH; i++) {
+                RenderNode node = nodes[i];
+                if ((dirtyGlyphs & (1 << i)) != 0 || !node.hasDisplayList()) {
+                    int glyphLeft = (int) (left + glyphCenters[i] - glyphWidths[i] / 2);
+                    int glyphWidth = (int) Math.ceil(glyphWidths[i]);
+                    node.setPosition(glyphLeft, 0, glyphLeft + glyphWidth, height);
+                    RecordingCanvas recordingCanvas = node.beginRecording(glyphWidth, height);
+                    recordingCanvas.drawText(chars, i, 1, glyphWidths[i] / 2, baseline, paint);
+                    node.endRecording();
+                }
+                canvas.drawRenderNode(node);
+            }
+        }
+    }
+}
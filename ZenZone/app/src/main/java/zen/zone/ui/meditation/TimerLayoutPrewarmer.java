@@ -0,0 +1,117 @@
+package zen.zone.ui.meditation;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+import android.view.InflateException;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import zen.zone.R;
+
+/**
+ * The TimerLayoutPrewarmer class inflates the layout of the timer screen on a background thread
+ * while the user is still choosing the settings of the session, so pressing Start does not wait
+ * for it. The inflater of the settings screen is cloned, so the views are created by the same
+ * factories (e.g. Material buttons) as when inflated on the main thread.
+ *
+ * At most one inflated layout is kept. It is only handed out to the activity it was inflated
+ * for, in the configuration it was inflated in, and dropped when that activity is destroyed.
+ * All methods are called on the main thread.
+ */
+final class TimerLayoutPrewarmer {
+
+    private static final String TAG = TimerLayoutPrewarmer.class.getName();
+
+    private static HandlerThread thread;
+    private static Handler handler;
+    private static Context pendingContext;
+    private static View prewarmed;
+    private static Configuration prewarmedConfiguration;
+
+    private TimerLayoutPrewarmer() {
+    }
+
+    /**
+     * Starts inflating the timer screen in the background, unless it is already inflated or
+     * being inflated for the same activity.
+     *
+     * @param inflater  The inflater of the settings screen.
+     * @param container The container the timer screen will be shown in.
+     * @param owner     The activity, whose destruction drops the inflated layout.
+     */
+    static void prewarm(LayoutInflater inflater, ViewGroup container, LifecycleOwner owner) {
+        Context context = inflater.getContext();
+        if (pendingContext == context) {
+            return;
+        }
+        discard();
+        pendingContext = context;
+        LayoutInflater clone = inflater.cloneInContext(context);
+        Configuration configuration = new Configuration(context.getResources().getConfiguration());
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        getHandler().post(() -> {
+            View view;
+            try {
+                view = clone.inflate(R.layout.fragment_meditation_timer, container, false);
+            } catch (InflateException | IllegalStateException e) {
+                // The timer screen is then inflated on the main thread, as before
+                Log.w(TAG, "Cannot inflate the timer screen in the background", e);
+                return;
+            }
+            mainHandler.post(() -> {
+                if (pendingContext == context) {
+                    prewarmed = view;
+                    prewarmedConfiguration = configuration;
+                }
+            });
+        });
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner destroyed) {
+                if (pendingContext == context) {
+                    discard();
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands out the inflated timer screen, once.
+     *
+     * @param inflater The inflater of the timer screen.
+     * @return The inflated layout, or null if none was inflated for this activity and its
+     * current configuration.
+     */
+    static View take(LayoutInflater inflater) {
+        Context context = inflater.getContext();
+        View view = prewarmed;
+        boolean usable = view != null && pendingContext == context
+                && prewarmedConfiguration.equals(context.getResources().getConfiguration());
+        discard();
+        return usable ? view : null;
+    }
+
+    private static void discard() {
+        pendingContext = null;
+        prewarmed = null;
+        prewarmedConfiguration = null;
+    }
+
+    private static Handler getHandler() {
+        if (handler == null) {
+            thread = new HandlerThread("layout-prewarm");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+}
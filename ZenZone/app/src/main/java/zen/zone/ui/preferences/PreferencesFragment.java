@@ -1,11 +1,6 @@
 package zen.zone.ui.preferences;
 
 import android.annotation.SuppressLint;
-import android.content.Context;
-import android.content.Intent;
-import android.content.SharedPreferences;
-import android.content.res.Configuration;
-import android.content.res.Resources;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -18,37 +13,28 @@ import android.widget.RadioGroup;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
-import androidx.appcompat.app.AppCompatDelegate;
 import androidx.fragment.app.Fragment;
 
-import com.google.android.gms.ads.AdRequest;
-import com.google.android.gms.ads.AdView;
-import com.google.android.gms.ads.MobileAds;
-import com.google.android.gms.ads.RequestConfiguration;
-import com.google.android.gms.ads.initialization.InitializationStatus;
-import com.google.android.gms.ads.initialization.OnInitializationCompleteListener;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Locale;
-
 import zen.zone.R;
+import zen.zone.ads.AdsManager;
+import zen.zone.appearance.AppearanceManager;
 import zen.zone.databinding.FragmentPreferencesBinding;
+import zen.zone.settings.Settings;
+import zen.zone.settings.SettingsRepository;
 
 
 /**
  * The PreferencesFragment class is responsible for managing and rendering
  * user preferences in the ZenZone app. This includes theme selection,
- * language selection, and setting up reminders. The fragment also manages
- * ad displays using the Google Mobile Ads SDK.
+ * language selection, and setting up reminders. The fragment also shows
+ * the banner preloaded by the AdsManager.
  */
 public class PreferencesFragment extends Fragment {
 
     private FragmentPreferencesBinding binding;
     private CheckBox[] dayCheckBoxes;
     private EditText timeEditText;
-    private AdView adView;
+    private boolean remindersShown;
 
     /**
      * Android system calls this when creating the fragment. We use this to setup
@@ -68,219 +54,159 @@ public class PreferencesFragment extends Fragment {
                              ViewGroup container, Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_preferences, container, false);
 
-        loadThemeAndCreateChangeListener(view);
+        createThemeChangeListener(view);
         loadLanguageAndCreateChangeListener(view);
-        loadRemindersAndCreateChangeListener(view);
-
-        createAds(view);
+        createReminderViews(view);
 
         return view;
     }
 
     /**
-     * This method restarts the activity to apply the changes in user settings like
-     * theme or language preference.
+     * The system calls this once the view is created, which is when its lifecycle, followed
+     * by the settings and the banner, exists.
      */
-    private void restartFragment() {
-        requireActivity().recreate();
+    @Override
+    public void onViewCreated(@NonNull View view, Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        SettingsRepository.getInstance(requireContext()).getLiveData()
+                .observe(getViewLifecycleOwner(), this::showSettings);
+        createAds(view);
     }
 
     /**
-     * This method saves the reminder settings configured by the user including the
-     * selected days and time for the reminders.
+     * This method shows the settings once they are loaded, and again whenever they change.
+     * The reminders are only filled in once, so a change made elsewhere does not overwrite
+     * what the user is typing.
      */
-    private void saveReminderSettings() {
-        List<String> selectedDays = new ArrayList<>();
-        for (CheckBox checkBox : dayCheckBoxes) {
-            if (checkBox.isChecked()) {
-                selectedDays.add(checkBox.getText().toString());
-            }
+    private void showSettings(Settings settings) {
+        RadioGroup radioGroup = requireView().findViewById(R.id.radioGroup_motive);
+        if (settings.getTheme().equals(Settings.THEME_LIGHT)) {
+            radioGroup.check(R.id.radioButton_light);
+        } else if (settings.getTheme().equals(Settings.THEME_DARK)) {
+            radioGroup.check(R.id.radioButton_dark);
         }
-        String time = timeEditText.getText().toString();
-
-        if (selectedDays.size() == 0) {
-            Toast.makeText(requireContext(), "You have to choose at least one day", Toast.LENGTH_LONG).show();
-        } else {
-            if (TimeValidator.isValidTime(time)) {
-                SharedPreferences sharedPreferences = this.requireContext().getSharedPreferences("ReminderPrefs", Context.MODE_PRIVATE);
-                SharedPreferences.Editor editor = sharedPreferences.edit();
 
-                StringBuilder daysStringBuilder = new StringBuilder();
-                for (String day : selectedDays) {
-                    daysStringBuilder.append(day).append(",");
+        if (remindersShown) {
+            return;
+        }
+        remindersShown = true;
+        ReminderPlan plan = settings.getReminderPlan();
+        if (!plan.isEmpty()) {
+            StringBuilder times = new StringBuilder();
+            for (int minuteOfDay : plan.getMinutesOfDay()) {
+                if (times.length() > 0) {
+                    times.append(", ");
                 }
-                editor.putString("selectedDays", daysStringBuilder.toString());
-                editor.putString("selectedTime", time);
-                editor.apply();
-
-                Context context = requireContext();
-                Intent intent = new Intent(context, ReminderService.class);
-                context.startForegroundService(intent);
-
-                Toast.makeText(getContext(), "Reminders were set-up!", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(getContext(), "Time format should be HH:MM", Toast.LENGTH_LONG).show();
+                times.append(ReminderPlan.formatMinuteOfDay(minuteOfDay));
             }
+            timeEditText.setText(times);
+        }
+        int dayMask = plan.getDayMask();
+        for (int day = 0; day < dayCheckBoxes.length; day++) {
+            dayCheckBoxes[day].setChecked((dayMask & 1 << day) != 0);
         }
     }
 
     /**
-     * System calls this method as the first indication that the user is leaving the fragment.
-     * Here, we pause the AdView to ensure it doesn't remain active when not in view.
+     * This method saves the reminder settings configured by the user: the selected days and
+     * one or more comma-separated times, each reminding on all selected days.
      */
-    @Override
-    public void onPause() {
-        if (adView != null) {
-            adView.pause();
+    private void saveReminderSettings() {
+        int dayMask = 0;
+        for (int day = 0; day < dayCheckBoxes.length; day++) {
+            if (dayCheckBoxes[day].isChecked()) {
+                dayMask |= 1 << day;
+            }
         }
-        super.onPause();
-    }
 
-    /**
-     * The system calls this method as the first indication that the user is interacting
-     * with the fragment. Here, we resume the AdView if it was previously paused.
-     */
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (adView != null) {
-            adView.resume();
+        String[] times = timeEditText.getText().toString().split(",");
+        int[] minutesOfDay = new int[times.length];
+        for (int i = 0; i < times.length; i++) {
+            String time = times[i].trim();
+            minutesOfDay[i] = TimeValidator.isValidTime(time) ? ReminderPlan.parseMinuteOfDay(time) : -1;
+            if (minutesOfDay[i] < 0) {
+                Toast.makeText(getContext(), "Time format should be HH:MM, separate times with commas", Toast.LENGTH_LONG).show();
+                return;
+            }
         }
-    }
 
-    /**
-     * This method is called when the fragment is no longer in use. This is the place
-     * to finalise all changes and save to permanent storage if required. Here, we
-     * also destroy the AdView.
-     */
-    @Override
-    public void onDestroy() {
-        if (adView != null) {
-            adView.destroy();
+        if (dayMask == 0) {
+            Toast.makeText(requireContext(), "You have to choose at least one day", Toast.LENGTH_LONG).show();
+        } else {
+            ReminderScheduler.setPlan(requireContext(), ReminderPlan.of(dayMask, minutesOfDay));
+            Toast.makeText(getContext(), "Reminders were set-up!", Toast.LENGTH_SHORT).show();
         }
-        super.onDestroy();
     }
 
     /**
      * This method changes the language of the app based on the languageCode provided.
+     * The activity is updated in place, see AppearanceManager.
      */
     private void changeLanguage(String languageCode) {
-        Locale locale = new Locale(languageCode);
-        Resources resources = getResources();
-        Configuration configuration = resources.getConfiguration();
-        configuration.setLocale(locale);
-        resources.updateConfiguration(configuration, resources.getDisplayMetrics());
-
-        restartFragment();
+        AppearanceManager.getInstance(requireContext()).setLanguage(languageCode);
     }
 
     /**
-     * This method loads the language preference from the shared preferences and sets
-     * the onClick listeners for the language buttons.
+     * This method sets the onClick listeners for the language buttons.
      */
     private void loadLanguageAndCreateChangeListener(View view) {
-        SharedPreferences sharedPref = getActivity().getSharedPreferences("LanguagePref", Context.MODE_PRIVATE);
-
         ImageButton plButton = view.findViewById(R.id.imageButton_pl);
-        plButton.setOnClickListener(v -> {
-            SharedPreferences.Editor editor = sharedPref.edit();
-            editor.putString("language", "pl");
-            editor.apply();
-            changeLanguage("pl");
-        });
+        plButton.setOnClickListener(v -> changeLanguage(AppearanceManager.LANGUAGE_POLISH));
 
         ImageButton engButton = view.findViewById(R.id.imageButton_gb);
-        engButton.setOnClickListener(v -> {
-            SharedPreferences.Editor editor = sharedPref.edit();
-            editor.putString("language", "en");
-            editor.apply();
-            changeLanguage("en");
-        });
+        engButton.setOnClickListener(v -> changeLanguage(AppearanceManager.LANGUAGE_ENGLISH));
     }
 
     /**
-     * This method loads the theme preference from the shared preferences and sets
-     * the onCheckedChangeListener for the theme radio buttons.
+     * This method sets the onCheckedChangeListener for the theme radio buttons. The saved
+     * theme is checked by showSettings().
      */
-    private void loadThemeAndCreateChangeListener(View view) {
+    private void createThemeChangeListener(View view) {
         RadioGroup radioGroup = view.findViewById(R.id.radioGroup_motive);
-        SharedPreferences sharedPref = getActivity().getSharedPreferences("ThemePref", Context.MODE_PRIVATE);
+        AppearanceManager appearanceManager = AppearanceManager.getInstance(requireContext());
 
         radioGroup.setOnCheckedChangeListener(new RadioGroup.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(RadioGroup group, int checkedId) {
-                SharedPreferences.Editor editor = sharedPref.edit();
                 if (checkedId == R.id.radioButton_light) {
-                    AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
-                    editor.putString("theme", "light");
+                    appearanceManager.setTheme(AppearanceManager.THEME_LIGHT);
                 } else if (checkedId == R.id.radioButton_dark) {
-                    AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_YES);
-                    editor.putString("theme", "dark");
+                    appearanceManager.setTheme(AppearanceManager.THEME_DARK);
                 }
-                editor.apply();
             }
         });
-
-        String savedTheme = sharedPref.getString("theme", "light"); // default is light theme
-        if (savedTheme.equals("light")) {
-            radioGroup.check(R.id.radioButton_light);
-        } else if (savedTheme.equals("dark")) {
-            radioGroup.check(R.id.radioButton_dark);
-        }
     }
 
 
     /**
-     * This method loads the reminder preferences from the shared preferences and sets
-     * the onClick listener for the reminder button.
+     * This method finds the reminder views and sets the onClick listener for the reminder
+     * button. The saved reminders are filled in by showSettings().
      */
-    private void loadRemindersAndCreateChangeListener(View view) {
-        SharedPreferences sharedPreferences = getActivity().getSharedPreferences("ReminderPrefs", Context.MODE_PRIVATE);
-
-        String selectedDaysString = sharedPreferences.getString("selectedDays", "");
-        String[] selectedDaysArray = selectedDaysString.split(",");
-        List<String> selectedDays = Arrays.asList(selectedDaysArray);  // Konwersja tablicy do listy
-
-        String selectedTime = sharedPreferences.getString("selectedTime", "");
-
+    private void createReminderViews(View view) {
         timeEditText = view.findViewById(R.id.text_reminder);
-        timeEditText.setText(selectedTime);  // Ustawienie wybranego czasu
-
-        CheckBox monday = view.findViewById(R.id.checkBox_monday);
-        monday.setChecked(selectedDays.contains("M") || selectedDays.contains("Pn"));  // Ustawienie statusu CheckBoxa
-
-        CheckBox tuesday = view.findViewById(R.id.checkBox_tuesday);
-        tuesday.setChecked(selectedDays.contains("T") || selectedDays.contains("Wt"));
+        remindersShown = false;
+
+        // In the order of the day bits of the plan, Monday first
+        dayCheckBoxes = new CheckBox[]{
+                view.findViewById(R.id.checkBox_monday),
+                view.findViewById(R.id.checkBox_tuesday),
+                view.findViewById(R.id.checkBox_wednesday),
+                view.findViewById(R.id.checkBox_thursday),
+                view.findViewById(R.id.checkBox_friday),
+                view.findViewById(R.id.checkBox_saturday),
+                view.findViewById(R.id.checkBox_sunday)};
 
-        CheckBox wednesday = view.findViewById(R.id.checkBox_wednesday);
-        wednesday.setChecked(selectedDays.contains("W") || selectedDays.contains("Śr"));
-
-        CheckBox thursday = view.findViewById(R.id.checkBox_thursday);
-        thursday.setChecked(selectedDays.contains("Th") || selectedDays.contains("Czw"));
-
-        CheckBox friday = view.findViewById(R.id.checkBox_friday);
-        friday.setChecked(selectedDays.contains("F") || selectedDays.contains("Pt"));
-
-        CheckBox saturday = view.findViewById(R.id.checkBox_saturday);
-        saturday.setChecked(selectedDays.contains("S") || selectedDays.contains("Sob"));
-
-        CheckBox sunday = view.findViewById(R.id.checkBox_sunday);
-        sunday.setChecked(selectedDays.contains("Su") || selectedDays.contains("Nd"));
-
-        dayCheckBoxes = new CheckBox[]{monday, tuesday, wednesday, thursday, friday, saturday, sunday};
         Button reminderButton = view.findViewById(R.id.button_reminder);
         reminderButton.setOnClickListener(v -> saveReminderSettings());
     }
 
     /**
-     * This method initializes the MobileAds SDK and creates an AdRequest to load an ad.
+     * This method attaches the preloaded banner of the AdsManager to the ad container.
+     * The container reserves the height of a banner, so the layout does not shift when the
+     * banner arrives, and the banner is paused, resumed and detached with the view.
      */
     private void createAds(View view) {
-        MobileAds.initialize(requireContext(), initializationStatus -> {
-        });
-        adView = view.findViewById(R.id.adView);
-        AdRequest adRequest = new AdRequest.Builder().build();
-        adView.loadAd(adRequest);
-        new RequestConfiguration.Builder().setTestDeviceIds(Arrays.asList("FEE379885695322A91C7073603A68825"));
+        ViewGroup adContainer = view.findViewById(R.id.adContainer);
+        AdsManager.getInstance(requireContext()).attach(adContainer, getViewLifecycleOwner());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package zen.zone.ui.preferences;
+
+import java.util.Calendar;
+
+/**
+ * The ReminderDays class parses the localized day labels older versions stored the reminder
+ * days as. It is only needed to migrate those reminders to a {@link ReminderPlan}.
+ */
+public class ReminderDays {
+
+    /**
+     * This method converts the day of week string to a Calendar.DAY_OF_WEEK int value.
+     *
+     * @param day The localized day label, e.g. "M" or "Pn".
+     * @return The Calendar.DAY_OF_WEEK value, or -1 if the label is not known.
+     */
+    public static int getReminderDayOfWeek(String day) {
+        switch (day) {
+            case "Pn":
+            case "M":
+                return Calendar.MONDAY;
+            case "Wt":
+            case "T":
+                return Calendar.TUESDAY;
+            case "Śr":
+            case "W":
+                return Calendar.WEDNESDAY;
+            case "Czw":
+            case "Th":
+                return Calendar.THURSDAY;
+            case "Pt":
+            case "F":
+                return Calendar.FRIDAY;
+            case "Sob":
+            case "S":
+                return Calendar.SATURDAY;
+            case "Nd":
+            case "Su":
+                return Calendar.SUNDAY;
+            default:
+                return -1;
+        }
+    }
+}
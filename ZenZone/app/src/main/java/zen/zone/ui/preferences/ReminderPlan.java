@@ -0,0 +1,303 @@
+package zen.zone.ui.preferences;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The ReminderPlan class holds the reminders of the user as time slots. A slot is a set of
+ * weekdays (a 7-bit mask, Monday is bit 0) and a time of day (minutes since midnight), so the
+ * plan does not depend on the display language. The slots are indexed by weekday when the plan
+ * is created, so finding the next reminder looks at most at one week of slots.
+ *
+ * Plans are immutable and are stored as a short string, see {@link #encode()}.
+ */
+public class ReminderPlan {
+
+    public static final int MONDAY = 1;
+    public static final int TUESDAY = 1 << 1;
+    public static final int WEDNESDAY = 1 << 2;
+    public static final int THURSDAY = 1 << 3;
+    public static final int FRIDAY = 1 << 4;
+    public static final int SATURDAY = 1 << 5;
+    public static final int SUNDAY = 1 << 6;
+    public static final int EVERY_DAY = (1 << 7) - 1;
+
+    /**
+     * A plan without reminders.
+     */
+    public static final ReminderPlan EMPTY = new ReminderPlan(new int[0]);
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MINUTE_BITS = 11;
+    private static final int MINUTE_MASK = (1 << MINUTE_BITS) - 1;
+
+    // Slots packed as (day mask << MINUTE_BITS | minute of day), sorted
+    private final int[] slots;
+    // Sorted minutes of day of every weekday, index 0 is Monday
+    private final int[][] minutesByDay = new int[7][];
+
+    private ReminderPlan(int[] slots) {
+        this.slots = slots;
+        for (int day = 0; day < 7; day++) {
+            int[] minutes = new int[slots.length];
+            int count = 0;
+            for (int slot : slots) {
+                if ((slot >>> MINUTE_BITS & 1 << day) != 0) {
+                    minutes[count++] = slot & MINUTE_MASK;
+                }
+            }
+            minutesByDay[day] = Arrays.copyOf(minutes, count);
+            Arrays.sort(minutesByDay[day]);
+        }
+    }
+
+    /**
+     * Creates a plan reminding on the same days at each of the given times.
+     *
+     * @param dayMask      The days, a combination of MONDAY ... SUNDAY.
+     * @param minutesOfDay The times, in minutes since midnight.
+     * @return The plan.
+     */
+    public static ReminderPlan of(int dayMask, int... minutesOfDay) {
+        int[] slots = new int[minutesOfDay.length];
+        for (int i = 0; i < minutesOfDay.length; i++) {
+            slots[i] = slot(dayMask, minutesOfDay[i]);
+        }
+        return fromSlots(slots);
+    }
+
+    /**
+     * Packs a slot.
+     *
+     * @param dayMask     The days, a combination of MONDAY ... SUNDAY.
+     * @param minuteOfDay The time, in minutes since midnight.
+     * @return The packed slot.
+     */
+    public static int slot(int dayMask, int minuteOfDay) {
+        if ((dayMask & ~EVERY_DAY) != 0 || minuteOfDay < 0 || minuteOfDay >= MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Invalid slot: " + dayMask + " " + minuteOfDay);
+        }
+        return dayMask << MINUTE_BITS | minuteOfDay;
+    }
+
+    /**
+     * Creates a plan from packed slots. Slots without days and duplicates are dropped.
+     *
+     * @param slots The packed slots, see {@link #slot(int, int)}.
+     * @return The plan.
+     */
+    public static ReminderPlan fromSlots(int[] slots) {
+        int[] sorted = slots.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] >>> MINUTE_BITS != 0 && (count == 0 || sorted[i] != sorted[count - 1])) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return count == 0 ? EMPTY : new ReminderPlan(Arrays.copyOf(sorted, count));
+    }
+
+    /**
+     * Converts the reminder of older versions: comma-joined localized day labels and a single
+     * time in HH:mm format.
+     *
+     * @param selectedDays The stored day labels, e.g. "M,T,Th," or "Pn,Wt,Czw,".
+     * @param selectedTime The stored time, e.g. "16:00".
+     * @return The plan, empty if the old reminder was not set or not valid.
+     */
+    public static ReminderPlan fromLegacy(String selectedDays, String selectedTime) {
+        int minuteOfDay = parseMinuteOfDay(selectedTime);
+        if (minuteOfDay < 0) {
+            return EMPTY;
+        }
+        int dayMask = 0;
+        for (String day : selectedDays.split(",")) {
+            int dayOfWeek = ReminderDays.getReminderDayOfWeek(day);
+            if (dayOfWeek != -1) {
+                // Calendar starts the week on Sunday (1), the mask on Monday
+                dayMask |= 1 << (dayOfWeek + 5) % 7;
+            }
+        }
+        return of(dayMask, minuteOfDay);
+    }
+
+    /**
+     * Parses a time in H:mm or HH:mm format.
+     *
+     * @param time The time, e.g. "7:30" or "16:00".
+     * @return The minutes since midnight, or -1 if the time is not valid.
+     */
+    public static int parseMinuteOfDay(String time) {
+        String trimmed = time.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon < 1 || colon > 2 || trimmed.length() != colon + 3) {
+            return -1;
+        }
+        int hour = parseDigits(trimmed, 0, colon);
+        int minute = parseDigits(trimmed, colon + 1, trimmed.length());
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return -1;
+        }
+        return hour * 60 + minute;
+    }
+
+    /**
+     * Formats a time of day in HH:mm format.
+     *
+     * @param minuteOfDay The minutes since midnight.
+     * @return The formatted time, e.g. "07:30".
+     */
+    public static String formatMinuteOfDay(int minuteOfDay) {
+        return String.format(Locale.US, "%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+    }
+
+    /**
+     * Restores a plan stored by {@link #encode()}.
+     *
+     * @param encoded The stored plan.
+     * @return The plan, empty if the string is empty or not valid.
+     */
+    public static ReminderPlan decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return EMPTY;
+        }
+        String[] parts = encoded.split(",");
+        int[] slots = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                slots[i] = Integer.parseInt(parts[i], 16);
+                slot(slots[i] >>> MINUTE_BITS, slots[i] & MINUTE_MASK);
+            }
+        } catch (IllegalArgumentException e) {
+            return EMPTY;
+        }
+        return fromSlots(slots);
+    }
+
+    /**
+     * Encodes the plan for storage, as comma-separated hexadecimal slots.
+     *
+     * @return The encoded plan, empty if the plan has no slots.
+     */
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        for (int slot : slots) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(Integer.toHexString(slot));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return true if the plan has no reminders.
+     */
+    public boolean isEmpty() {
+        return slots.length == 0;
+    }
+
+    /**
+     * @return The packed slots, see {@link #slot(int, int)}.
+     */
+    public int[] getSlots() {
+        return slots.clone();
+    }
+
+    /**
+     * @return The days of all slots together.
+     */
+    public int getDayMask() {
+        int dayMask = 0;
+        for (int slot : slots) {
+            dayMask |= slot >>> MINUTE_BITS;
+        }
+        return dayMask;
+    }
+
+    /**
+     * @return The distinct times of all slots, sorted, in minutes since midnight.
+     */
+    public int[] getMinutesOfDay() {
+        int[] minutes = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            minutes[i] = slots[i] & MINUTE_MASK;
+        }
+        Arrays.sort(minutes);
+        int count = 0;
+        for (int i = 0; i < minutes.length; i++) {
+            if (count == 0 || minutes[i] != minutes[count - 1]) {
+                minutes[count++] = minutes[i];
+            }
+        }
+        return Arrays.copyOf(minutes, count);
+    }
+
+    /**
+     * Finds the moment of the first reminder strictly after the current minute. Times which do
+     * not exist on a day because of a DST transition fire right after the transition, times
+     * which exist twice fire once.
+     *
+     * @param nowMillis The current time, in milliseconds since the epoch.
+     * @param zone      The time zone of the user.
+     * @return The moment of the next reminder in milliseconds since the epoch, or -1 if the
+     * plan is empty.
+     */
+    public long nextFireMillis(long nowMillis, ZoneId zone) {
+        if (slots.length == 0) {
+            return -1;
+        }
+        ZonedDateTime now = Instant.ofEpochMilli(nowMillis).atZone(zone);
+        LocalDate date = now.toLocalDate();
+        int afterMinute = now.getHour() * 60 + now.getMinute();
+        // Today, the next six days and today a week later
+        for (int offset = 0; offset <= 7; offset++) {
+            int[] minutes = minutesByDay[date.getDayOfWeek().getValue() - 1];
+            int from = offset == 0 ? firstGreater(minutes, afterMinute) : 0;
+            for (int i = from; i < minutes.length; i++) {
+                long fireMillis = ZonedDateTime.of(date, LocalTime.of(minutes[i] / 60, minutes[i] % 60), zone)
+                        .toInstant().toEpochMilli();
+                if (fireMillis > nowMillis) {
+                    return fireMillis;
+                }
+            }
+            date = date.plusDays(1);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first value greater than the key in a sorted array.
+     */
+    private static int firstGreater(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package zen.zone.ui.preferences;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import androidx.core.app.NotificationCompat;
+
+import zen.zone.MainActivity;
+import zen.zone.R;
+import zen.zone.ZenZoneApplication;
+
+/**
+ * The ReminderReceiver class shows the reminder notification when the reminder alarm fires and
+ * arms the alarm of the next reminder. It also re-arms the alarm after a reboot, an app update
+ * or a change of the clock or the time zone, so no process has to stay alive between reminders.
+ * How late every reminder fires is measured in the "reminder.lateness_ms" histogram.
+ */
+public class ReminderReceiver extends BroadcastReceiver {
+
+    private static final int REMINDER_NOTIFICATION_ID = 1;
+    private static final String CHANNEL_ID = "reminders";
+    private static final String LEGACY_CHANNEL_ID = "reminder_channel";
+
+    /**
+     * Called when the reminder alarm fires, or when the system broadcasts one of the events
+     * after which alarms have to be armed again.
+     */
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (ReminderScheduler.ACTION_REMIND.equals(action)) {
+            long scheduledAtMillis = intent.getLongExtra(ReminderScheduler.EXTRA_SCHEDULED_AT, -1);
+            if (scheduledAtMillis > 0) {
+                ZenZoneApplication application = ZenZoneApplication.from(context);
+                application.getMetrics().histogram("reminder.lateness_ms")
+                        .record(Math.max(0, System.currentTimeMillis() - scheduledAtMillis));
+                // The app is usually not running when a reminder fires
+                application.dumpMetrics();
+            }
+            showNotification(context);
+        } else if (Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            ReminderScheduler.cancelLegacyAlarm(context);
+            context.getSystemService(NotificationManager.class).deleteNotificationChannel(LEGACY_CHANNEL_ID);
+        }
+        ReminderScheduler.scheduleNext(context);
+    }
+
+    /**
+     * This method shows a notification to inform the user that it's time for their reminder.
+     */
+    private void showNotification(Context context) {
+        NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+        createNotificationChannel(context, notificationManager);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notifications_black_24dp)
+                .setContentTitle(context.getString(R.string.reminder))
+                .setContentText(context.getString(R.string.reminder_text))
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+                .setAutoCancel(true);
+
+        Intent intent = new Intent(context, MainActivity.class);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+        builder.setContentIntent(contentIntent);
+
+        notificationManager.notify(REMINDER_NOTIFICATION_ID, builder.build());
+    }
+
+    /**
+     * This method creates the notification channel of the reminders.
+     * This is required for notifications on Android 8.0 (API level 26) and higher.
+     */
+    private void createNotificationChannel(Context context, NotificationManager notificationManager) {
+        NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID,
+                context.getString(R.string.reminder_channel),
+                NotificationManager.IMPORTANCE_DEFAULT
+        );
+        notificationManager.createNotificationChannel(channel);
+    }
+}
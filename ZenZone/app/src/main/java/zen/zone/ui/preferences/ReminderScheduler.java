@@ -0,0 +1,107 @@
+package zen.zone.ui.preferences;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import java.time.ZoneId;
+
+import zen.zone.settings.SettingsRepository;
+
+/**
+ * The ReminderScheduler class stores the {@link ReminderPlan} and arms the alarm of the next due
+ * reminder. It keeps no state of its own: every call reads the plan from the settings and replaces
+ * the single pending alarm, so it can be called whenever the reminders or the clock change.
+ */
+public class ReminderScheduler {
+
+    /**
+     * The action of the alarm firing a reminder.
+     */
+    static final String ACTION_REMIND = "zen.zone.action.REMIND";
+
+    /**
+     * Intent extra of the reminder alarm holding the moment it was set for, in epoch milliseconds.
+     */
+    static final String EXTRA_SCHEDULED_AT = "scheduledAt";
+
+    private static final String TAG = ReminderScheduler.class.getName();
+    private static final String LEGACY_SERVICE = "zen.zone.ui.preferences.ReminderService";
+
+    /**
+     * This method reads the reminder plan. Reminders stored by older versions are converted
+     * by the settings migration, see SettingsRepository.
+     *
+     * @param context Any context of the application.
+     * @return The plan, empty if no reminder is set.
+     */
+    public static ReminderPlan getPlan(Context context) {
+        return SettingsRepository.getInstance(context).get().getReminderPlan();
+    }
+
+    /**
+     * This method stores the reminder plan and arms the alarm of its next reminder.
+     *
+     * @param context Any context of the application.
+     * @param plan    The new plan.
+     */
+    public static void setPlan(Context context, ReminderPlan plan) {
+        SettingsRepository.getInstance(context).update(settings -> settings.withReminderPlan(plan));
+        scheduleNext(context);
+    }
+
+    /**
+     * This method arms an alarm for the next due reminder, or cancels the pending alarm if no
+     * reminder is set. Exact alarms are used when the app may schedule them; otherwise the
+     * alarm may be delayed a little, but still fires in Doze.
+     *
+     * @param context Any context of the application.
+     */
+    public static void scheduleNext(Context context) {
+        AlarmManager alarmManager = context.getSystemService(AlarmManager.class);
+
+        long triggerAtMillis = getPlan(context).nextFireMillis(System.currentTimeMillis(), ZoneId.systemDefault());
+        PendingIntent operation = reminderIntent(context, triggerAtMillis);
+        if (triggerAtMillis < 0) {
+            alarmManager.cancel(operation);
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+        } else {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+        }
+        Log.i(TAG, "Next reminder at " + triggerAtMillis);
+    }
+
+    /**
+     * This method cancels the alarm left behind by the reminder service of older versions,
+     * which would otherwise target a component that no longer exists.
+     *
+     * @param context Any context of the application.
+     */
+    public static void cancelLegacyAlarm(Context context) {
+        Intent intent = new Intent().setClassName(context, LEGACY_SERVICE);
+        PendingIntent legacy = PendingIntent.getService(context, 0, intent,
+                PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE);
+        if (legacy != null) {
+            context.getSystemService(AlarmManager.class).cancel(legacy);
+            legacy.cancel();
+        }
+    }
+
+    /**
+     * This method returns the single reminder alarm. The moment it is set for travels with it,
+     * so the receiver can measure how late the alarm fired.
+     */
+    private static PendingIntent reminderIntent(Context context, long triggerAtMillis) {
+        Intent intent = new Intent(context, ReminderReceiver.class).setAction(ACTION_REMIND)
+                .putExtra(EXTRA_SCHEDULED_AT, triggerAtMillis);
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
@@ -0,0 +1,408 @@
+package zen.zone.ui.stats;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.util.LruCache;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.OverScroller;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+import zen.zone.R;
+import zen.zone.history.DailyMinutesIndex;
+
+/**
+ * The CalendarHeatmapView class shows the minutes meditated on every day as a scrollable
+ * calendar, three months per row with the most recent months on top. Every month is rendered
+ * once into a tile bitmap on a background thread, querying only the days of that month from the
+ * {@link DailyMinutesIndex}; drawing the view then only copies the visible tiles, so scrolling
+ * through years of history costs the same as scrolling through one.
+ *
+ * Tiles live in an LRU cache bounded to a few screens of tiles, and the bitmaps of evicted tiles
+ * are reused for the next ones. Months whose tile is not ready yet are drawn as an empty frame.
+ */
+public class CalendarHeatmapView extends View {
+
+    private static final int MONTHS_PER_ROW = 3;
+    private static final int WEEKS_PER_MONTH = 6;
+    private static final int MIN_MONTHS = 12;
+    private static final int MAX_POOLED_BITMAPS = MONTHS_PER_ROW;
+    // Screens of tiles kept in the cache, including the prefetched rows
+    private static final int CACHED_SCREENS = 3;
+    // Lowest minutes of a day of each color level above 0
+    private static final int[] LEVEL_MINUTES = {1, 10, 20, 40};
+    private static final int[] ATTRS = {android.R.attr.colorBackground, android.R.attr.textColorSecondary};
+
+    private final OverScroller scroller;
+    private final GestureDetector gestureDetector;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<Integer> pendingTiles = new HashSet<>();
+    private final ArrayDeque<Bitmap> bitmapPool = new ArrayDeque<>();
+    private final LruCache<Integer, Bitmap> tileCache;
+    private final Paint placeholderPaint = new Paint();
+    private TileRenderer renderer;
+    private HandlerThread renderThread;
+    private Handler renderHandler;
+
+    private DailyMinutesIndex index = DailyMinutesIndex.EMPTY;
+    private YearMonth currentMonth = YearMonth.now();
+    private int monthCount = MIN_MONTHS;
+    private int tileWidth;
+    private int tileHeight;
+    // Incremented whenever the tiles become stale, tiles of older generations are dropped
+    private int generation;
+
+    public CalendarHeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public CalendarHeatmapView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        renderer = createRenderer();
+        placeholderPaint.setColor(Color.LTGRAY);
+        placeholderPaint.setStyle(Paint.Style.STROKE);
+
+        tileCache = new LruCache<Integer, Bitmap>(1) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue, Bitmap newValue) {
+                recycleTile(oldValue);
+            }
+        };
+
+        scroller = new OverScroller(context);
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(@NonNull MotionEvent e) {
+                scroller.forceFinished(true);
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float distanceX, float distanceY) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+                scrollTo(0, clampScroll(getScrollY() + Math.round(distanceY)));
+                return true;
+            }
+
+            @Override
+            public boolean onFling(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float velocityX, float velocityY) {
+                scroller.fling(0, getScrollY(), 0, Math.round(-velocityY), 0, 0, 0, getMaxScroll());
+                postInvalidateOnAnimation();
+                return true;
+            }
+        });
+        setVerticalScrollBarEnabled(true);
+    }
+
+    /**
+     * Shows the given history. The calendar reaches back to the month of the first session,
+     * and at least one year.
+     *
+     * @param index The minutes of every day.
+     * @param today The current day of the user.
+     */
+    public void setData(DailyMinutesIndex index, LocalDate today) {
+        this.index = index;
+        currentMonth = YearMonth.from(today);
+        monthCount = MIN_MONTHS;
+        if (index.getDayCount() > 0) {
+            YearMonth firstMonth = YearMonth.from(LocalDate.ofEpochDay(index.getFirstDay()));
+            monthCount = Math.max(MIN_MONTHS, (int) ChronoUnit.MONTHS.between(firstMonth, currentMonth) + 1);
+        }
+        invalidateTiles();
+        scrollTo(0, clampScroll(getScrollY()));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        int width = w - getPaddingLeft() - getPaddingRight();
+        tileWidth = Math.max(1, width / MONTHS_PER_ROW);
+        tileHeight = renderer.getTileHeight(tileWidth);
+        int visibleRows = h / tileHeight + 2;
+        tileCache.resize(Math.max(1, CACHED_SCREENS * visibleRows * MONTHS_PER_ROW * tileWidth * tileHeight * 2));
+        invalidateTiles();
+        scrollTo(0, clampScroll(getScrollY()));
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // The language or the night mode changed without recreating the activity
+        renderer = createRenderer();
+        invalidateTiles();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        renderThread = new HandlerThread("heatmap-tiles", Process.THREAD_PRIORITY_BACKGROUND);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        renderThread.quit();
+        renderThread = null;
+        renderHandler = null;
+        invalidateTiles();
+        synchronized (bitmapPool) {
+            for (Bitmap bitmap : bitmapPool) {
+                bitmap.recycle();
+            }
+            bitmapPool.clear();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    public void computeScroll() {
+        if (scroller.computeScrollOffset()) {
+            scrollTo(0, scroller.getCurrY());
+            postInvalidateOnAnimation();
+        }
+    }
+
+    @Override
+    protected int computeVerticalScrollRange() {
+        return getRowCount() * tileHeight;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (tileHeight <= 0) {
+            return;
+        }
+        int scrollY = getScrollY();
+        int firstRow = scrollY / tileHeight;
+        int lastRow = Math.min(getRowCount() - 1, (scrollY + getHeight() - 1) / tileHeight);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = 0; column < MONTHS_PER_ROW; column++) {
+                // Months go from left to right within a row, the newest row is on top
+                int month = row * MONTHS_PER_ROW + MONTHS_PER_ROW - 1 - column;
+                if (month >= monthCount) {
+                    continue;
+                }
+                float left = getPaddingLeft() + column * tileWidth;
+                float top = row * tileHeight;
+                Bitmap tile = tileCache.get(month);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, left, top, null);
+                } else {
+                    canvas.drawRect(left + 1, top + 1, left + tileWidth - 1, top + tileHeight - 1, placeholderPaint);
+                    requestTile(month);
+                }
+            }
+        }
+        // The rows right above and below are prepared ahead of the scrolling
+        prefetchRow(firstRow - 1);
+        prefetchRow(lastRow + 1);
+    }
+
+    private void prefetchRow(int row) {
+        if (row < 0 || row >= getRowCount()) {
+            return;
+        }
+        for (int month = row * MONTHS_PER_ROW; month < Math.min(monthCount, (row + 1) * MONTHS_PER_ROW); month++) {
+            if (tileCache.get(month) == null) {
+                requestTile(month);
+            }
+        }
+    }
+
+    /**
+     * This method creates the tile renderer with the colours of the current theme and the
+     * month names of the current locale.
+     */
+    private TileRenderer createRenderer() {
+        Context context = getContext();
+        TypedArray array = context.getTheme().obtainStyledAttributes(ATTRS);
+        int backgroundColor = array.getColor(0, Color.WHITE);
+        int textColor = array.getColor(1, Color.GRAY);
+        array.recycle();
+        float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 12, getResources().getDisplayMetrics());
+        return new TileRenderer(backgroundColor, textColor, textSize,
+                ContextCompat.getColor(context, R.color.colorPrimaryDark),
+                DateTimeFormatter.ofPattern("LLL yyyy", getResources().getConfiguration().getLocales().get(0)));
+    }
+
+    /**
+     * This method asks the render thread for the tile of a month, unless it was already asked.
+     */
+    private void requestTile(int month) {
+        if (renderHandler == null || !pendingTiles.add(month)) {
+            return;
+        }
+        int requestGeneration = generation;
+        DailyMinutesIndex requestIndex = index;
+        TileRenderer requestRenderer = renderer;
+        YearMonth yearMonth = currentMonth.minusMonths(month);
+        int width = tileWidth;
+        int height = tileHeight;
+        renderHandler.post(() -> {
+            Bitmap tile = obtainBitmap(width, height);
+            requestRenderer.render(tile, yearMonth, requestIndex);
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) {
+                    recycleTile(tile);
+                    return;
+                }
+                pendingTiles.remove(month);
+                tileCache.put(month, tile);
+                invalidate();
+            });
+        });
+    }
+
+    /**
+     * This method drops every tile, e.g. because the data or the size changed.
+     */
+    private void invalidateTiles() {
+        generation++;
+        pendingTiles.clear();
+        if (renderHandler != null) {
+            renderHandler.removeCallbacksAndMessages(null);
+        }
+        tileCache.evictAll();
+        invalidate();
+    }
+
+    private Bitmap obtainBitmap(int width, int height) {
+        synchronized (bitmapPool) {
+            Bitmap bitmap;
+            while ((bitmap = bitmapPool.poll()) != null) {
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                    return bitmap;
+                }
+                bitmap.recycle();
+            }
+        }
+        // Tiles are opaque, 16 bits per pixel are enough
+        return Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+    }
+
+    private void recycleTile(Bitmap bitmap) {
+        synchronized (bitmapPool) {
+            if (bitmapPool.size() < MAX_POOLED_BITMAPS) {
+                bitmapPool.push(bitmap);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    private int getRowCount() {
+        return (monthCount + MONTHS_PER_ROW - 1) / MONTHS_PER_ROW;
+    }
+
+    private int getMaxScroll() {
+        return Math.max(0, getRowCount() * tileHeight - getHeight());
+    }
+
+    private int clampScroll(int scrollY) {
+        return Math.max(0, Math.min(scrollY, getMaxScroll()));
+    }
+
+    /**
+     * Draws month tiles. Used on the render thread only, so its paints and buffers are not shared.
+     */
+    private static final class TileRenderer {
+
+        private final int backgroundColor;
+        private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final Paint cellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final int[] levelColors = new int[LEVEL_MINUTES.length + 1];
+        private final DateTimeFormatter labelFormatter;
+        // Minutes of the days of a month, one buffer per month length (28 to 31 days)
+        private final int[][] minutesByLength = new int[4][];
+
+        TileRenderer(int backgroundColor, int textColor, float textSize, int accentColor,
+                     DateTimeFormatter labelFormatter) {
+            this.backgroundColor = backgroundColor;
+            this.labelFormatter = labelFormatter;
+            labelPaint.setColor(textColor);
+            labelPaint.setTextSize(textSize);
+            levelColors[0] = Color.argb(40, Color.red(textColor), Color.green(textColor), Color.blue(textColor));
+            for (int level = 1; level < levelColors.length; level++) {
+                int alpha = 255 * level / LEVEL_MINUTES.length;
+                levelColors[level] = Color.argb(alpha, Color.red(accentColor), Color.green(accentColor),
+                        Color.blue(accentColor));
+            }
+            for (int i = 0; i < minutesByLength.length; i++) {
+                minutesByLength[i] = new int[28 + i];
+            }
+        }
+
+        int getTileHeight(int tileWidth) {
+            float cell = tileWidth / 7f;
+            return Math.round(labelPaint.getFontSpacing() * 1.5f + cell * WEEKS_PER_MONTH);
+        }
+
+        void render(Bitmap tile, YearMonth month, DailyMinutesIndex index) {
+            Canvas canvas = new Canvas(tile);
+            canvas.drawColor(backgroundColor);
+            float cell = tile.getWidth() / 7f;
+            float labelHeight = labelPaint.getFontSpacing() * 1.5f;
+            canvas.drawText(month.format(labelFormatter), cell * 0.2f, labelPaint.getFontSpacing(), labelPaint);
+
+            int[] minutes = minutesByLength[month.lengthOfMonth() - 28];
+            LocalDate first = month.atDay(1);
+            index.getMinutes(first.toEpochDay(), minutes);
+            // Weeks start on Monday
+            int offset = first.getDayOfWeek().getValue() - 1;
+            float gap = cell * 0.1f;
+            float radius = cell * 0.15f;
+            for (int day = 0; day < minutes.length; day++) {
+                int position = offset + day;
+                float left = position % 7 * cell;
+                float top = labelHeight + position / 7 * cell;
+                cellPaint.setColor(levelColors[level(minutes[day])]);
+                canvas.drawRoundRect(left + gap, top + gap, left + cell - gap, top + cell - gap, radius, radius, cellPaint);
+            }
+        }
+
+        private static int level(int minutes) {
+            int level = 0;
+            while (level < LEVEL_MINUTES.length && minutes >= LEVEL_MINUTES[level]) {
+                level++;
+            }
+            return level;
+        }
+    }
+}
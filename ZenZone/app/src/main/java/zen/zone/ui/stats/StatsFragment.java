@@ -1,8 +1,8 @@
 package zen.zone.ui.stats;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
+import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -14,29 +14,47 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatTextView;
 import androidx.fragment.app.Fragment;
 
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
-
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import zen.zone.MainActivity;
 import zen.zone.R;
+import zen.zone.ZenZoneApplication;
 import zen.zone.databinding.FragmentStatsBinding;
+import zen.zone.history.DailyMinutesIndex;
+import zen.zone.history.SessionHistory;
+import zen.zone.metrics.Histogram;
+import zen.zone.startup.StartupTasks;
+import zen.zone.streak.StreakSnapshot;
+import zen.zone.streak.StreakTracker;
+import zen.zone.upload.UploadScheduler;
 
 /**
  * A Fragment that represents the statistics screen in the application.
- * It shows statistics related to the user's meditation streaks and provides a button
- * for capturing a screenshot of the statistics and uploading it to Firebase Storage.
+ * It shows statistics related to the user's meditation streaks, a calendar heatmap of
+ * the minutes meditated every day, and provides a button
+ * for sending a compact snapshot of the statistics to Firebase Storage through the
+ * upload outbox.
  */
 public class StatsFragment extends Fragment {
 
+    /**
+     * The number of days of daily statistics in a sent snapshot.
+     */
+    private static final int SNAPSHOT_DAYS = 365;
+
+    /**
+     * The file extension of sent snapshots, see {@link StatsSnapshot#toByteArray()}.
+     */
+    private static final String SNAPSHOT_EXTENSION = "zzs";
+
     private FragmentStatsBinding binding;
     private AppCompatTextView currentStreakTV;
     private AppCompatTextView longestStreakTV;
-    private Bitmap screenshot;
+    private CalendarHeatmapView heatmapView;
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -50,39 +68,24 @@ public class StatsFragment extends Fragment {
         Button screenshotButton = root.findViewById(R.id.btn_sendStats);
         currentStreakTV = root.findViewById(R.id.tv_currentStreak);
         longestStreakTV = root.findViewById(R.id.tv_longestStreak);
+        heatmapView = root.findViewById(R.id.heatmap);
 
-        // Set the click listener for the screenshot button
+        // Set the click listener for the send button
         screenshotButton.setOnClickListener(v -> {
-            // Capture a screenshot of the fragment's root view
-            screenshot = takeScreenshot(root);
-
-            // Create a Firebase Storage reference for the screenshot
-            FirebaseStorage storage = FirebaseStorage.getInstance();
-            StorageReference storageRef = storage.getReference();
-
-            // Get the current date to use as part of the filename
-            LocalDate currentDate = LocalDate.now();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-            String formattedDate = currentDate.format(formatter);
-
-            // Create a reference to the screenshot in Firebase Storage
-            StorageReference screenshotRef = storageRef.child("statistics/" + formattedDate + ".png");
-
-            // Convert the screenshot Bitmap to a byte array
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            screenshot.compress(Bitmap.CompressFormat.PNG, 100, baos);
-            byte[] screenshotData = baos.toByteArray();
-
-            // Upload the screenshot to Firebase Storage
-            UploadTask uploadTask = screenshotRef.putBytes(screenshotData);
-            uploadTask.addOnSuccessListener(taskSnapshot -> {
-                // Screenshot upload successful
-                Log.d("Stats", "Screenshot uploaded successfully");
-                // TODO: Handle any further actions or notifications
-            }).addOnFailureListener(e -> {
-                // Error occurred while uploading screenshot
-                Log.e("Stats", "Screenshot upload failed: " + e.getMessage());
-                // TODO: Handle error case or display a message to the user
+            // The statistics are sent as a snapshot of a few hundred bytes rather than an image
+            Context context = v.getContext().getApplicationContext();
+            Histogram exportDuration = ZenZoneApplication.from(context).getMetrics().histogram("stats.export_ms");
+            exportExecutor.execute(() -> {
+                long start = SystemClock.elapsedRealtime();
+                try {
+                    StatsSnapshot snapshot = StatsSnapshot.fromHistory(SessionHistory.getInstance(context).getStore(),
+                            StreakTracker.getInstance(context).getSnapshot(), LocalDate.now().toEpochDay(),
+                            SNAPSHOT_DAYS, ZoneId.systemDefault());
+                    UploadScheduler.enqueueStatistics(context, snapshot.toByteArray(), SNAPSHOT_EXTENSION);
+                    exportDuration.record(SystemClock.elapsedRealtime() - start);
+                } catch (IOException e) {
+                    Log.e("Stats", "Could not read the session history: " + e.getMessage());
+                }
             });
         });
 
@@ -92,12 +95,46 @@ public class StatsFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        // Get the streaks data from MainActivity
-        int[] streaksArray = MainActivity.getDaysStreaks();
+        // The streak state is loaded in the background during startup
+        StartupTasks startupTasks = ZenZoneApplication.from(requireContext()).getStartupTasks();
+        startupTasks.whenReady(ZenZoneApplication.TASK_STREAK, requireContext().getMainExecutor(), this::showStreaks);
+        loadHeatmap();
+    }
+
+    /**
+     * Indexes the session history in the background and shows it in the heatmap.
+     */
+    private void loadHeatmap() {
+        Context context = requireContext().getApplicationContext();
+        exportExecutor.execute(() -> {
+            DailyMinutesIndex index;
+            try {
+                index = DailyMinutesIndex.fromHistory(SessionHistory.getInstance(context).getStore(), ZoneId.systemDefault());
+            } catch (IOException e) {
+                Log.e("Stats", "Could not read the session history: " + e.getMessage());
+                return;
+            }
+            context.getMainExecutor().execute(() -> {
+                if (heatmapView != null) {
+                    heatmapView.setData(index, LocalDate.now());
+                }
+            });
+        });
+    }
 
-        // Update the TextViews with the values from streaksArray
-        currentStreakTV.setText(String.valueOf(streaksArray[0]));
-        longestStreakTV.setText(String.valueOf(streaksArray[1]));
+    /**
+     * Shows the cached streaks, they are kept up to date as sessions end.
+     */
+    private void showStreaks() {
+        if (currentStreakTV == null) {
+            // The view was destroyed in the meantime
+            return;
+        }
+        StreakSnapshot streaks = StreakTracker.getInstance(requireContext()).getSnapshot();
+
+        // Update the TextViews with the values from the snapshot
+        currentStreakTV.setText(String.valueOf(streaks.getCurrentStreak()));
+        longestStreakTV.setText(String.valueOf(streaks.getLongestStreak()));
     }
 
     @Override
@@ -107,23 +144,12 @@ public class StatsFragment extends Fragment {
         binding = null;
         currentStreakTV = null;
         longestStreakTV = null;
+        heatmapView = null;
     }
 
-    /**
-     * Takes a screenshot of the provided View and returns it as a Bitmap.
-     * @param view The view to capture a screenshot of.
-     * @return The captured screenshot as a Bitmap.
-     */
-    private Bitmap takeScreenshot(View view) {
-        Bitmap screenshot = null;
-        try {
-            // Create a Bitmap with the same dimensions as the View
-            screenshot = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(screenshot);
-            view.draw(canvas);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return screenshot;
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        exportExecutor.shutdown();
     }
 }
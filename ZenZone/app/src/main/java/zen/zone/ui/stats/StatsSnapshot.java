@@ -0,0 +1,321 @@
+package zen.zone.ui.stats;
+
+import java.io.ByteArrayOutputStream;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import zen.zone.history.SessionHistoryStore;
+import zen.zone.streak.StreakEngine;
+import zen.zone.streak.StreakSnapshot;
+
+/**
+ * The StatsSnapshot class holds the statistics of the user at a given day: the streaks, the
+ * all-time totals and the minutes and sessions of every day of a recent window. It is what the
+ * stats screen exports instead of a screenshot.
+ *
+ * Snapshots are immutable, compare by value and are stored in a compact binary form, see
+ * {@link #toByteArray()}: a year of daily statistics typically takes a few hundred bytes.
+ */
+public final class StatsSnapshot {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    private final int currentStreak;
+    private final int longestStreak;
+    private final long lastMeditationDay;
+    private final int totalSessions;
+    private final long totalMinutes;
+    private final long firstDay;
+    private final int[] minutesByDay;
+    private final int[] sessionsByDay;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param streaks       The streaks of the user.
+     * @param totalSessions The number of sessions ever recorded.
+     * @param totalMinutes  The minutes ever spent meditating.
+     * @param firstDay      The local epoch day of the first day of the window.
+     * @param minutesByDay  The minutes spent meditating on each day of the window.
+     * @param sessionsByDay The number of sessions on each day of the window.
+     */
+    public StatsSnapshot(StreakSnapshot streaks, int totalSessions, long totalMinutes, long firstDay,
+                         int[] minutesByDay, int[] sessionsByDay) {
+        this(streaks.getCurrentStreak(), streaks.getLongestStreak(), streaks.getLastMeditationDay(),
+                totalSessions, totalMinutes, firstDay, minutesByDay.clone(), sessionsByDay.clone());
+    }
+
+    private StatsSnapshot(int currentStreak, int longestStreak, long lastMeditationDay, int totalSessions,
+                          long totalMinutes, long firstDay, int[] minutesByDay, int[] sessionsByDay) {
+        if (minutesByDay.length != sessionsByDay.length) {
+            throw new IllegalArgumentException("The daily minutes and sessions differ in length");
+        }
+        this.currentStreak = currentStreak;
+        this.longestStreak = longestStreak;
+        this.lastMeditationDay = lastMeditationDay;
+        this.totalSessions = totalSessions;
+        this.totalMinutes = totalMinutes;
+        this.firstDay = firstDay;
+        this.minutesByDay = minutesByDay;
+        this.sessionsByDay = sessionsByDay;
+    }
+
+    /**
+     * Builds the snapshot of the given day from the session history.
+     *
+     * @param store    The session history.
+     * @param streaks  The streaks of the user.
+     * @param today    The local epoch day of the snapshot, the last day of the window.
+     * @param dayCount The number of days of the window.
+     * @param zone     The time zone of the user.
+     * @return The snapshot.
+     */
+    public static StatsSnapshot fromHistory(SessionHistoryStore store, StreakSnapshot streaks, long today,
+                                            int dayCount, ZoneId zone) {
+        long firstDay = today - dayCount + 1;
+        long[] millisByDay = new long[dayCount];
+        int[] sessionsByDay = new int[dayCount];
+        long totalMillis = 0;
+        int size = store.size();
+        for (int i = 0; i < size; i++) {
+            long actualMillis = store.getActualDuration(i);
+            totalMillis += actualMillis;
+            long day = StreakEngine.toLocalEpochDay(store.getStartTime(i), zone);
+            if (day >= firstDay && day <= today) {
+                millisByDay[(int) (day - firstDay)] += actualMillis;
+                sessionsByDay[(int) (day - firstDay)]++;
+            }
+        }
+        int[] minutesByDay = new int[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            minutesByDay[i] = (int) ((millisByDay[i] + MILLIS_PER_MINUTE / 2) / MILLIS_PER_MINUTE);
+        }
+        return new StatsSnapshot(streaks.getCurrentStreak(), streaks.getLongestStreak(),
+                streaks.getLastMeditationDay(), size, (totalMillis + MILLIS_PER_MINUTE / 2) / MILLIS_PER_MINUTE,
+                firstDay, minutesByDay, sessionsByDay);
+    }
+
+    /**
+     * @return The number of consecutive days with a session, up to the snapshot day or the day before.
+     */
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    /**
+     * @return The longest streak ever reached.
+     */
+    public int getLongestStreak() {
+        return longestStreak;
+    }
+
+    /**
+     * @return The local epoch day of the last completed session, or StreakEngine.NO_DAY.
+     */
+    public long getLastMeditationDay() {
+        return lastMeditationDay;
+    }
+
+    /**
+     * @return The number of sessions ever recorded.
+     */
+    public int getTotalSessions() {
+        return totalSessions;
+    }
+
+    /**
+     * @return The minutes ever spent meditating.
+     */
+    public long getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    /**
+     * @return The local epoch day of the first day of the window.
+     */
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * @return The number of days of the window.
+     */
+    public int getDayCount() {
+        return minutesByDay.length;
+    }
+
+    /**
+     * @param index The index of the day in the window, 0 is the first day.
+     * @return The minutes spent meditating on that day.
+     */
+    public int getMinutes(int index) {
+        return minutesByDay[index];
+    }
+
+    /**
+     * @param index The index of the day in the window, 0 is the first day.
+     * @return The number of sessions on that day.
+     */
+    public int getSessions(int index) {
+        return sessionsByDay[index];
+    }
+
+    /**
+     * Serializes the snapshot. All numbers are written as variable-length integers; the daily
+     * minutes as the zigzag-encoded difference to the day before, so regular practice and
+     * days without sessions both take a single byte per day.
+     *
+     * @return The serialized snapshot.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + minutesByDay.length * 2);
+        out.write(FORMAT_VERSION);
+        writeVarint(out, currentStreak);
+        writeVarint(out, longestStreak);
+        writeVarint(out, totalSessions);
+        writeVarint(out, totalMinutes);
+        writeVarint(out, zigzag(firstDay));
+        // 0 when the user never completed a session, the day relative to the window otherwise
+        writeVarint(out, lastMeditationDay == StreakEngine.NO_DAY ? 0 : zigzag(lastMeditationDay - firstDay) + 1);
+        writeVarint(out, minutesByDay.length);
+        int previous = 0;
+        for (int minutes : minutesByDay) {
+            writeVarint(out, zigzag(minutes - previous));
+            previous = minutes;
+        }
+        for (int sessions : sessionsByDay) {
+            writeVarint(out, sessions);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Restores a snapshot serialized by {@link #toByteArray()}.
+     *
+     * @param bytes The serialized snapshot.
+     * @return The snapshot.
+     * @throws IllegalArgumentException If the bytes are not a valid snapshot.
+     */
+    public static StatsSnapshot fromByteArray(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        if (reader.readByte() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown snapshot format");
+        }
+        int currentStreak = reader.readInt();
+        int longestStreak = reader.readInt();
+        int totalSessions = reader.readInt();
+        long totalMinutes = reader.readVarint();
+        long firstDay = unzigzag(reader.readVarint());
+        long lastDay = reader.readVarint();
+        long lastMeditationDay = lastDay == 0 ? StreakEngine.NO_DAY : firstDay + unzigzag(lastDay - 1);
+        int dayCount = reader.readInt();
+        // Every day takes at least two bytes, this also guards the allocations below
+        if (dayCount > reader.remaining() / 2) {
+            throw new IllegalArgumentException("Invalid day count: " + dayCount);
+        }
+        int[] minutesByDay = new int[dayCount];
+        int previous = 0;
+        for (int i = 0; i < dayCount; i++) {
+            previous += (int) unzigzag(reader.readVarint());
+            minutesByDay[i] = previous;
+        }
+        int[] sessionsByDay = new int[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            sessionsByDay[i] = reader.readInt();
+        }
+        return new StatsSnapshot(currentStreak, longestStreak, lastMeditationDay, totalSessions, totalMinutes,
+                firstDay, minutesByDay, sessionsByDay);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StatsSnapshot)) {
+            return false;
+        }
+        StatsSnapshot other = (StatsSnapshot) o;
+        return currentStreak == other.currentStreak
+                && longestStreak == other.longestStreak
+                && lastMeditationDay == other.lastMeditationDay
+                && totalSessions == other.totalSessions
+                && totalMinutes == other.totalMinutes
+                && firstDay == other.firstDay
+                && Arrays.equals(minutesByDay, other.minutesByDay)
+                && Arrays.equals(sessionsByDay, other.sessionsByDay);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = currentStreak;
+        result = 31 * result + longestStreak;
+        result = 31 * result + Long.hashCode(lastMeditationDay);
+        result = 31 * result + totalSessions;
+        result = 31 * result + Long.hashCode(totalMinutes);
+        result = 31 * result + Long.hashCode(firstDay);
+        result = 31 * result + Arrays.hashCode(minutesByDay);
+        result = 31 * result + Arrays.hashCode(sessionsByDay);
+        return result;
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads the fields of a serialized snapshot, failing on truncated or malformed input.
+     */
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int remaining() {
+            return bytes.length - position;
+        }
+
+        byte readByte() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Truncated snapshot");
+            }
+            return bytes[position++];
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        int readInt() {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Value out of range: " + value);
+            }
+            return (int) value;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package zen.zone.upload;
+
+import android.net.Uri;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The FirebaseUploadBackend class stores uploads in Firebase Storage. The file is streamed
+ * from disk by the Firebase SDK, and the upload session URI serves as the resume token.
+ * Firebase has to be initialized before the first upload.
+ */
+public class FirebaseUploadBackend implements UploadBackend {
+
+    // Upload listeners must not run on the main thread, which the worker may be waiting on
+    private final Executor listenerExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    public void upload(String key, File file, String resumeToken, ResumeListener listener) throws IOException {
+        UploadTask task = FirebaseStorage.getInstance().getReference().child(key).putFile(
+                Uri.fromFile(file), new StorageMetadata.Builder().build(),
+                resumeToken != null ? Uri.parse(resumeToken) : null);
+
+        String[] lastToken = {resumeToken};
+        task.addOnProgressListener(listenerExecutor, snapshot -> {
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            if (sessionUri != null && !sessionUri.toString().equals(lastToken[0])) {
+                lastToken[0] = sessionUri.toString();
+                listener.onResumeToken(lastToken[0]);
+            }
+        });
+
+        try {
+            Tasks.await(task);
+        } catch (ExecutionException e) {
+            throw new IOException("Upload of " + key + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            task.cancel();
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload of " + key + " interrupted", e);
+        }
+    }
+}
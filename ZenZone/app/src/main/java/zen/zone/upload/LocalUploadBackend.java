@@ -0,0 +1,73 @@
+package zen.zone.upload;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The LocalUploadBackend class stores uploads in a local directory. It stands in for the remote
+ * storage in tests and debug builds. An upload is first written to a ".part" file, which is
+ * also its resume token, and renamed once complete.
+ */
+public class LocalUploadBackend implements UploadBackend {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final File root;
+
+    /**
+     * Creates a backend storing uploads below the given directory.
+     *
+     * @param root The directory receiving the uploads.
+     */
+    public LocalUploadBackend(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the stored upload with the given key.
+     *
+     * @param key The name of the upload.
+     * @return The file, which exists only once the upload completed.
+     */
+    public File getFile(String key) {
+        return new File(root, key);
+    }
+
+    @Override
+    public void upload(String key, File file, String resumeToken, ResumeListener listener) throws IOException {
+        File target = getFile(key);
+        File part = new File(target.getPath() + ".part");
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        boolean resume = part.getPath().equals(resumeToken) && part.length() <= file.length();
+        long offset = resume ? part.length() : 0;
+        listener.onResumeToken(part.getPath());
+
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new FileOutputStream(part, resume)) {
+            long skipped = 0;
+            while (skipped < offset) {
+                long count = in.skip(offset - skipped);
+                if (count <= 0) {
+                    throw new IOException("Could not resume " + key);
+                }
+                skipped += count;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+        }
+        if (!part.renameTo(target)) {
+            throw new IOException("Could not complete " + key);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package zen.zone.upload;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The UploadBackend interface hides the remote storage from the {@link UploadOutbox}. Uploads
+ * are resumable: a backend hands out a resume token as soon as an upload session exists, and
+ * an interrupted upload continues from where it stopped when the token is passed back.
+ * Implementations are called on a background thread and may block.
+ */
+public interface UploadBackend {
+
+    /**
+     * Receives the resume token of an upload in progress.
+     */
+    interface ResumeListener {
+
+        /**
+         * Called when the backend has a token to resume the upload with.
+         *
+         * @param token The opaque resume token.
+         */
+        void onResumeToken(String token);
+    }
+
+    /**
+     * Uploads a file, blocking until it is stored.
+     *
+     * @param key         The unique name of the upload in the remote storage.
+     * @param file        The file to upload.
+     * @param resumeToken The token of an earlier, interrupted attempt, or null.
+     * @param listener    The listener receiving the resume token of this attempt.
+     * @throws IOException If the upload failed; it can be retried later.
+     */
+    void upload(String key, File file, String resumeToken, ResumeListener listener) throws IOException;
+}
@@ -0,0 +1,50 @@
+package zen.zone.upload;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.Log;
+
+import java.util.concurrent.Future;
+
+import zen.zone.ZenZoneApplication;
+
+/**
+ * The UploadJobService class drains the {@link UploadOutbox} when the system lets it: with a
+ * network and enough battery. Each run uploads one batch; if uploads are left, the job is
+ * scheduled again for the earliest moment one of them may be retried.
+ */
+public class UploadJobService extends JobService {
+
+    private static final String TAG = UploadJobService.class.getName();
+    private static final int BATCH_SIZE = 5;
+
+    private Future<?> drain;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        drain = UploadScheduler.getWorker().submit(() -> {
+            try {
+                // Firebase is initialized lazily by a startup task
+                ZenZoneApplication.from(this).getStartupTasks().await(ZenZoneApplication.TASK_FIREBASE);
+            } catch (InterruptedException e) {
+                return;
+            }
+            UploadOutbox.DrainResult result = UploadScheduler.getOutbox(this).drain(BATCH_SIZE);
+            Log.i(TAG, "Uploaded " + result.getUploaded() + ", failed " + result.getFailed()
+                    + ", pending " + result.getPending());
+            jobFinished(params, false);
+            // Scheduled after finishing, scheduling the same job while it runs would stop it
+            if (result.getPending() > 0) {
+                UploadScheduler.schedule(this, result.getNextAttemptAtMillis() - System.currentTimeMillis());
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Interrupted uploads keep their resume token and continue on the next run
+        drain.cancel(true);
+        return true;
+    }
+}
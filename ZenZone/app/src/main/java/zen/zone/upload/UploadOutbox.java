@@ -0,0 +1,402 @@
+package zen.zone.upload;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * The UploadOutbox class keeps the uploads which still have to reach the remote storage in a
+ * directory, so they survive being offline and the process being killed. Every upload is named
+ * after the SHA-256 of its content: enqueuing the same content twice, or content which was
+ * already uploaded, does nothing. The outbox is drained in batches; an upload which fails is
+ * retried later with exponential backoff and resumed where it stopped.
+ *
+ * The outbox is not thread-safe; it is meant to be used from a single worker thread.
+ */
+public class UploadOutbox {
+
+    /**
+     * The outcome of a {@link #drain(int)}.
+     */
+    public static final class DrainResult {
+        private final int uploaded;
+        private final int failed;
+        private final int pending;
+        private final long nextAttemptAtMillis;
+
+        DrainResult(int uploaded, int failed, int pending, long nextAttemptAtMillis) {
+            this.uploaded = uploaded;
+            this.failed = failed;
+            this.pending = pending;
+            this.nextAttemptAtMillis = nextAttemptAtMillis;
+        }
+
+        /**
+         * @return The number of uploads which completed.
+         */
+        public int getUploaded() {
+            return uploaded;
+        }
+
+        /**
+         * @return The number of uploads which failed and were put back.
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return The number of uploads still in the outbox.
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return The earliest moment a pending upload may be attempted, or -1 if none is pending.
+         */
+        public long getNextAttemptAtMillis() {
+            return nextAttemptAtMillis;
+        }
+    }
+
+    /**
+     * The delay before the first retry of a failed upload.
+     */
+    public static final long INITIAL_BACKOFF_MILLIS = 30 * 1000;
+
+    /**
+     * The longest delay between two attempts of an upload.
+     */
+    public static final long MAX_BACKOFF_MILLIS = 6 * 60 * 60 * 1000;
+
+    private static final String META_SUFFIX = ".meta";
+    private static final String UPLOADED_LOG = "uploaded.log";
+    private static final String KEY_KEY = "key";
+    private static final String KEY_CREATED = "created";
+    private static final String KEY_ATTEMPTS = "attempts";
+    private static final String KEY_NEXT_ATTEMPT = "nextAttempt";
+    private static final String KEY_RESUME_TOKEN = "resumeToken";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final File directory;
+    private final UploadBackend backend;
+    private final LongSupplier clock;
+    private Set<String> uploadedHashes;
+
+    /**
+     * Creates an outbox kept in the given directory, which is created if needed.
+     *
+     * @param directory The directory holding the pending uploads.
+     * @param backend   The storage receiving the uploads.
+     * @param clock     A clock returning milliseconds since the epoch.
+     */
+    public UploadOutbox(File directory, UploadBackend backend, LongSupplier clock) {
+        this.directory = directory;
+        this.backend = backend;
+        this.clock = clock;
+    }
+
+    /**
+     * Copies a file into the outbox, unless the same content is already pending or uploaded.
+     * The key of the upload is made unique by the content hash, so uploads never overwrite
+     * each other in the remote storage.
+     *
+     * @param source    The file to upload; it can be deleted or reused once this returns.
+     * @param keyPrefix The start of the key of the upload, e.g. "statistics/2023-06-04".
+     * @param extension The file extension of the upload, e.g. "webp".
+     * @return true if the file was added, false if it was a duplicate.
+     * @throws IOException If the file cannot be copied.
+     */
+    public boolean enqueue(File source, String keyPrefix, String extension) throws IOException {
+        try (InputStream in = new FileInputStream(source)) {
+            return enqueue(in, keyPrefix, extension);
+        }
+    }
+
+    /**
+     * Adds the given content to the outbox, unless the same content is already pending or
+     * uploaded.
+     *
+     * @param content   The content to upload.
+     * @param keyPrefix The start of the key of the upload, e.g. "statistics/2023-06-04".
+     * @param extension The file extension of the upload, e.g. "zzs".
+     * @return true if the content was added, false if it was a duplicate.
+     * @throws IOException If the content cannot be written.
+     */
+    public boolean enqueue(byte[] content, String keyPrefix, String extension) throws IOException {
+        return enqueue(new ByteArrayInputStream(content), keyPrefix, extension);
+    }
+
+    /**
+     * This method copies a stream into the outbox, hashing it on the way.
+     */
+    private boolean enqueue(InputStream in, String keyPrefix, String extension) throws IOException {
+        ensureDirectory();
+        File temporary = new File(directory, "enqueue.tmp");
+        String hash;
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            // Hash while copying, so the content is read only once
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+                out.write(buffer, 0, count);
+            }
+            hash = toHex(digest.digest());
+        }
+
+        File content = contentFile(hash);
+        if (content.exists() || getUploadedHashes().contains(hash)) {
+            delete(temporary);
+            return false;
+        }
+
+        long now = clock.getAsLong();
+        Properties meta = new Properties();
+        meta.setProperty(KEY_KEY, keyPrefix + "-" + hash.substring(0, 12) + "." + extension);
+        meta.setProperty(KEY_CREATED, Long.toString(now));
+        meta.setProperty(KEY_ATTEMPTS, "0");
+        meta.setProperty(KEY_NEXT_ATTEMPT, Long.toString(now));
+        // The content is moved in place last, a crash before leaves no half-written entry
+        writeMeta(hash, meta);
+        if (!temporary.renameTo(content)) {
+            delete(metaFile(hash));
+            throw new IOException("Could not add " + hash + " to the outbox");
+        }
+        return true;
+    }
+
+    /**
+     * Uploads up to batchSize due uploads, the oldest first. Failed uploads stay in the outbox
+     * and are retried after a delay which doubles with every failure.
+     *
+     * @param batchSize The largest number of uploads attempted.
+     * @return The outcome of the drain.
+     */
+    public DrainResult drain(int batchSize) {
+        List<String> due = new ArrayList<>();
+        List<Long> created = new ArrayList<>();
+        long now = clock.getAsLong();
+        for (String hash : pendingHashes()) {
+            Properties meta = readMeta(hash);
+            if (meta != null && getLong(meta, KEY_NEXT_ATTEMPT) <= now) {
+                // Keep the due uploads sorted by creation time
+                long createdAt = getLong(meta, KEY_CREATED);
+                int index = Collections.binarySearch(created, createdAt);
+                index = index < 0 ? -index - 1 : index;
+                created.add(index, createdAt);
+                due.add(index, hash);
+            }
+        }
+
+        int uploaded = 0;
+        int failed = 0;
+        for (String hash : due.subList(0, Math.min(batchSize, due.size()))) {
+            if (upload(hash)) {
+                uploaded++;
+            } else {
+                failed++;
+            }
+        }
+
+        int pending = 0;
+        long nextAttempt = -1;
+        for (String hash : pendingHashes()) {
+            Properties meta = readMeta(hash);
+            if (meta != null) {
+                pending++;
+                long attemptAt = getLong(meta, KEY_NEXT_ATTEMPT);
+                nextAttempt = nextAttempt < 0 ? attemptAt : Math.min(nextAttempt, attemptAt);
+            }
+        }
+        return new DrainResult(uploaded, failed, pending, nextAttempt);
+    }
+
+    /**
+     * @return The number of uploads in the outbox.
+     */
+    public int size() {
+        return pendingHashes().size();
+    }
+
+    /**
+     * Returns the delay before the next attempt of an upload which failed the given number
+     * of times.
+     *
+     * @param attempts The number of failed attempts, at least 1.
+     * @return The delay in milliseconds.
+     */
+    public static long backoffMillis(int attempts) {
+        int doublings = Math.min(attempts - 1, 30);
+        return Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << doublings);
+    }
+
+    /**
+     * This method attempts a single upload and updates the outbox with its outcome.
+     */
+    private boolean upload(String hash) {
+        Properties meta = readMeta(hash);
+        if (meta == null) {
+            return false;
+        }
+        try {
+            backend.upload(meta.getProperty(KEY_KEY), contentFile(hash), meta.getProperty(KEY_RESUME_TOKEN), token -> {
+                // Kept right away, so even a killed process resumes the upload
+                synchronized (meta) {
+                    meta.setProperty(KEY_RESUME_TOKEN, token);
+                    writeMetaQuietly(hash, meta);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            synchronized (meta) {
+                int attempts = (int) getLong(meta, KEY_ATTEMPTS) + 1;
+                meta.setProperty(KEY_ATTEMPTS, Integer.toString(attempts));
+                meta.setProperty(KEY_NEXT_ATTEMPT, Long.toString(clock.getAsLong() + backoffMillis(attempts)));
+                writeMetaQuietly(hash, meta);
+            }
+            return false;
+        }
+
+        recordUploaded(hash);
+        delete(contentFile(hash));
+        delete(metaFile(hash));
+        return true;
+    }
+
+    private List<String> pendingHashes() {
+        List<String> hashes = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(META_SUFFIX)) {
+                    String hash = name.substring(0, name.length() - META_SUFFIX.length());
+                    if (contentFile(hash).exists()) {
+                        hashes.add(hash);
+                    }
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private Set<String> getUploadedHashes() {
+        if (uploadedHashes == null) {
+            uploadedHashes = new HashSet<>();
+            File log = new File(directory, UPLOADED_LOG);
+            if (log.exists()) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(log))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        uploadedHashes.add(line.trim());
+                    }
+                } catch (IOException e) {
+                    // Worst case a duplicate is uploaded once more
+                }
+            }
+        }
+        return uploadedHashes;
+    }
+
+    private void recordUploaded(String hash) {
+        getUploadedHashes().add(hash);
+        try (Writer writer = new FileWriter(new File(directory, UPLOADED_LOG), true)) {
+            writer.write(hash);
+            writer.write('\n');
+        } catch (IOException e) {
+            // Worst case a duplicate is uploaded once more
+        }
+    }
+
+    private File contentFile(String hash) {
+        return new File(directory, hash);
+    }
+
+    private File metaFile(String hash) {
+        return new File(directory, hash + META_SUFFIX);
+    }
+
+    private Properties readMeta(String hash) {
+        Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(metaFile(hash))) {
+            meta.load(in);
+            return meta;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeMeta(String hash, Properties meta) throws IOException {
+        // Written aside and renamed, so the metadata is never half-written
+        File temporary = new File(directory, hash + META_SUFFIX + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            meta.store(out, null);
+        }
+        if (!temporary.renameTo(metaFile(hash))) {
+            throw new IOException("Could not write the metadata of " + hash);
+        }
+    }
+
+    private void writeMetaQuietly(String hash, Properties meta) {
+        try {
+            writeMeta(hash, meta);
+        } catch (IOException e) {
+            // The previous metadata is still intact
+        }
+    }
+
+    private void ensureDirectory() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+    }
+
+    private static long getLong(Properties meta, String key) {
+        try {
+            return Long.parseLong(meta.getProperty(key, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(digits[b >> 4 & 0xF]).append(digits[b & 0xF]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package zen.zone.upload;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The UploadScheduler class owns the {@link UploadOutbox} of the application and the job
+ * draining it. Uploads are only attempted by {@link UploadJobService}, which the system runs
+ * when the network is available and the battery is not low; the outbox itself is only touched
+ * from a single worker thread.
+ */
+public class UploadScheduler {
+
+    private static final String TAG = UploadScheduler.class.getName();
+    private static final int JOB_ID = 1300;
+    private static final String OUTBOX_DIRECTORY = "outbox";
+    private static final String STATISTICS_PREFIX = "statistics/";
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private static UploadOutbox outbox;
+
+    /**
+     * This method returns the single worker thread the outbox is used on.
+     *
+     * @return The worker.
+     */
+    static ExecutorService getWorker() {
+        return worker;
+    }
+
+    /**
+     * This method returns the outbox, creating it on first use. Must be called on the worker.
+     *
+     * @param context Any context of the application.
+     * @return The outbox.
+     */
+    static UploadOutbox getOutbox(Context context) {
+        if (outbox == null) {
+            Context appContext = context.getApplicationContext();
+            outbox = new UploadOutbox(new File(appContext.getFilesDir(), OUTBOX_DIRECTORY),
+                    new FirebaseUploadBackend(), System::currentTimeMillis);
+        }
+        return outbox;
+    }
+
+    /**
+     * This method adds a statistics snapshot to the outbox and schedules its upload. Snapshots
+     * already uploaded or pending are skipped.
+     *
+     * @param context   Any context of the application.
+     * @param content   The serialized snapshot.
+     * @param extension The file extension of the snapshot format.
+     */
+    public static void enqueueStatistics(Context context, byte[] content, String extension) {
+        Context appContext = context.getApplicationContext();
+        worker.execute(() -> {
+            try {
+                String prefix = STATISTICS_PREFIX + LocalDate.now();
+                if (getOutbox(appContext).enqueue(content, prefix, extension)) {
+                    schedule(appContext, 0);
+                } else {
+                    Log.d(TAG, "Skipped a snapshot which was already sent");
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not add the snapshot to the outbox: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * This method schedules the upload job, replacing the pending one. The job survives
+     * reboots.
+     *
+     * @param context     Any context of the application.
+     * @param delayMillis The least time before the job runs, in milliseconds.
+     */
+    static void schedule(Context context, long delayMillis) {
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, UploadJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setRequiresBatteryNotLow(true)
+                .setMinimumLatency(Math.max(0, delayMillis))
+                .setPersisted(true)
+                .build();
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        if (jobScheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(TAG, "Could not schedule the upload job");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package zen.zone.widget;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+import zen.zone.session.SessionTimeline;
+import zen.zone.settings.Settings;
+
+/**
+ * The QuickStart class describes the sessions the home screen widget starts with one tap: a
+ * few fixed lengths, with the background sound of the last session and nothing else.
+ */
+public final class QuickStart {
+
+    /**
+     * The lengths offered by the widget, in minutes.
+     */
+    public static final int[] PRESET_MINUTES = {5, 10, 20};
+
+    private QuickStart() {
+    }
+
+    /**
+     * Builds the session of a preset.
+     *
+     * @param minutes  The length of the session, in minutes.
+     * @param settings The settings holding the sound of the last session.
+     * @return The session.
+     * @throws IllegalArgumentException If the length is not a preset.
+     */
+    public static SessionTimeline timeline(int minutes, Settings settings) {
+        if (!isPreset(minutes)) {
+            throw new IllegalArgumentException("Not a quick start preset: " + minutes);
+        }
+        return new SessionTimeline.Builder(minutes * 60_000L)
+                .soundLayer(settings.getLastSoundId(), settings.getLastSoundVolume())
+                .build();
+    }
+
+    /**
+     * @param minutes A length in minutes.
+     * @return true if the widget offers that length.
+     */
+    public static boolean isPreset(int minutes) {
+        for (int preset : PRESET_MINUTES) {
+            if (preset == minutes) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the next local midnight, when the streak shown by the widget may change without
+     * any session.
+     *
+     * @param nowMillis The current time, in epoch milliseconds.
+     * @param zone      The time zone of the user.
+     * @return The start of the next local day, in epoch milliseconds.
+     */
+    public static long nextDayStartMillis(long nowMillis, ZoneId zone) {
+        return Instant.ofEpochMilli(nowMillis).atZone(zone).toLocalDate().plusDays(1)
+                .atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,109 @@
+package zen.zone.widget;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+
+import java.time.ZoneId;
+
+import zen.zone.QuickStartActivity;
+import zen.zone.R;
+import zen.zone.streak.StreakTracker;
+
+/**
+ * The QuickStartWidget class is the home screen widget: it shows the current streak and starts
+ * a session of one of the {@link QuickStart#PRESET_MINUTES} lengths with one tap, through the
+ * lightweight {@link QuickStartActivity}.
+ *
+ * The widget never polls. It is redrawn when a session ends, see {@link #update(Context)}, and
+ * when the day rolls over, as a missed day breaks the streak: an inexact alarm which does not
+ * wake the device is armed for the next local midnight, and re-armed when the clock or the
+ * time zone change.
+ */
+public class QuickStartWidget extends AppWidgetProvider {
+
+    private static final String ACTION_DAY_CHANGED = "zen.zone.widget.action.DAY_CHANGED";
+    private static final int[] BUTTON_IDS = {R.id.btn_quick_start_1, R.id.btn_quick_start_2, R.id.btn_quick_start_3};
+
+    /**
+     * Redraws the widgets and arms the alarm of the next day.
+     */
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        render(context, appWidgetManager, appWidgetIds);
+        scheduleDayChange(context);
+    }
+
+    /**
+     * Handles the day change alarm and the changes of the clock, besides the widget broadcasts.
+     */
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        super.onReceive(context, intent);
+        String action = intent.getAction();
+        if (ACTION_DAY_CHANGED.equals(action) || Intent.ACTION_TIME_CHANGED.equals(action)
+                || Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            update(context);
+        }
+    }
+
+    /**
+     * Cancels the day change alarm once the last widget was removed.
+     */
+    @Override
+    public void onDisabled(Context context) {
+        context.getSystemService(AlarmManager.class).cancel(dayChangeIntent(context));
+    }
+
+    /**
+     * Redraws every widget on the home screen, e.g. after a session ended. Does nothing if the
+     * user has no widget.
+     *
+     * @param context Any context of the application.
+     */
+    public static void update(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, QuickStartWidget.class));
+        if (appWidgetIds.length == 0) {
+            return;
+        }
+        render(context, appWidgetManager, appWidgetIds);
+        scheduleDayChange(context);
+    }
+
+    private static void render(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_quick_start);
+        int streak = StreakTracker.getInstance(context).getSnapshot().getCurrentStreak();
+        views.setTextViewText(R.id.tv_widget_streak, context.getString(R.string.widget_streak, streak));
+        for (int i = 0; i < BUTTON_IDS.length; i++) {
+            int minutes = QuickStart.PRESET_MINUTES[i];
+            views.setTextViewText(BUTTON_IDS[i], context.getString(R.string.quick_start_minutes, minutes));
+            Intent intent = new Intent(context, QuickStartActivity.class)
+                    .putExtra(QuickStartActivity.EXTRA_MINUTES, minutes)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            // One request code per preset, so the intents do not replace each other
+            views.setOnClickPendingIntent(BUTTON_IDS[i], PendingIntent.getActivity(context, minutes, intent,
+                    PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT));
+        }
+        appWidgetManager.updateAppWidget(appWidgetIds, views);
+    }
+
+    /**
+     * This method arms the alarm of the next local midnight. It is delivered whenever the device
+     * is awake after midnight, which is soon enough for a widget nobody looks at in the dark.
+     */
+    private static void scheduleDayChange(Context context) {
+        long triggerAtMillis = QuickStart.nextDayStartMillis(System.currentTimeMillis(), ZoneId.systemDefault());
+        context.getSystemService(AlarmManager.class).set(AlarmManager.RTC, triggerAtMillis, dayChangeIntent(context));
+    }
+
+    private static PendingIntent dayChangeIntent(Context context) {
+        Intent intent = new Intent(context, QuickStartWidget.class).setAction(ACTION_DAY_CHANGED);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -0,0 +1,192 @@
+package zen.zone.audio;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the ambient mixer core and its ring buffer.
+ */
+public class MixerCoreTest {
+
+    private static final int RATE = 48_000;
+    private static final int FRAMES = 64;
+
+    @Test
+    public void layers_areSummedWithTheirVolumes() {
+        MixerCore mixer = new MixerCore(RATE, FRAMES);
+        mixer.setSource(0, new ConstantSource(RATE, 1000));
+        mixer.setSource(1, new ConstantSource(RATE, 2000));
+        mixer.setVolume(0, 1f);
+        mixer.setVolume(1, 0.5f);
+        short[] out = new short[FRAMES * 2];
+
+        // The first buffer fades the layers in
+        mixer.render(out);
+        assertTrue(out[2] < out[out.length - 2]);
+        mixer.render(out);
+
+        for (short sample : out) {
+            assertEquals(2000, sample);
+        }
+    }
+
+    @Test
+    public void volumeChange_isRampedOverOneBuffer() {
+        MixerCore mixer = new MixerCore(RATE, FRAMES);
+        mixer.setSource(0, new ConstantSource(RATE, 10_000));
+        mixer.setVolume(0, 1f);
+        short[] out = new short[FRAMES * 2];
+        mixer.render(out);
+        mixer.render(out);
+
+        mixer.setVolume(0, 0f);
+        mixer.render(out);
+        for (int i = 2; i < out.length; i += 2) {
+            assertTrue(out[i] <= out[i - 2]);
+            assertTrue(out[i - 2] - out[i] < 10_000 / FRAMES + 2);
+        }
+        assertEquals(0, out[out.length - 1]);
+        mixer.render(out);
+        assertTrue(Arrays.equals(new short[out.length], out));
+    }
+
+    @Test
+    public void loudLayers_areClipped() {
+        MixerCore mixer = new MixerCore(RATE, FRAMES);
+        for (int layer = 0; layer < MixerCore.LAYER_COUNT; layer++) {
+            mixer.setSource(layer, new ConstantSource(RATE, 30_000));
+            mixer.setVolume(layer, 1f);
+        }
+        short[] out = new short[FRAMES * 2];
+        mixer.render(out);
+        mixer.render(out);
+
+        assertEquals(Short.MAX_VALUE, out[0]);
+    }
+
+    @Test
+    public void replacedSource_fadesOutFirst() {
+        MixerCore mixer = new MixerCore(RATE, FRAMES);
+        ConstantSource first = new ConstantSource(RATE, 1000);
+        ConstantSource second = new ConstantSource(RATE, 3000);
+        mixer.setSource(0, first);
+        mixer.setVolume(0, 1f);
+        short[] out = new short[FRAMES * 2];
+        mixer.render(out);
+
+        mixer.setSource(0, second);
+        mixer.render(out);
+        assertEquals(0, second.framesRead);
+        assertTrue(out[0] <= 1000 && out[out.length - 1] == 0);
+        mixer.render(out);
+        mixer.render(out);
+        assertEquals(3000, out[0]);
+    }
+
+    @Test
+    public void otherRates_areResampled() {
+        MixerCore mixer = new MixerCore(RATE, FRAMES);
+        RampSource source = new RampSource(RATE / 2);
+        mixer.setSource(0, source);
+        mixer.setVolume(0, 1f);
+        short[] out = new short[FRAMES * 2];
+        mixer.render(out);
+        mixer.render(out);
+
+        // Half the rate: every input frame lasts two output frames, interpolated in between
+        assertEquals(FRAMES, source.framesRead);
+        for (int i = 1; i < FRAMES; i++) {
+            assertEquals(out[(i - 1) * 2] + 5, out[i * 2]);
+            // Mono is played on both channels
+            assertEquals(out[i * 2], out[i * 2 + 1]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooHighRate_isRejected() {
+        new MixerCore(RATE, FRAMES).setSource(0, new RampSource(RATE * MixerCore.MAX_RATE_RATIO + 1));
+    }
+
+    @Test
+    public void ringBuffer_wrapsAroundWithoutLosingFrames() {
+        PcmRingBuffer ring = new PcmRingBuffer(5, RATE, 2);
+        short[] frames = {1, 2, 3, 4, 5, 6, 7, 8};
+        short[] read = new short[10];
+
+        assertEquals(4, ring.write(frames, 0, 4));
+        assertEquals(1, ring.write(frames, 0, 4));
+        assertEquals(0, ring.getFreeFrames());
+        assertEquals(3, ring.read(read, 0, 3));
+        assertArrayEquals(new short[]{1, 2, 3, 4, 5, 6, 0, 0, 0, 0}, read);
+        assertEquals(3, ring.write(frames, 2, 3));
+        assertEquals(5, ring.read(read, 0, 8));
+        assertArrayEquals(new short[]{7, 8, 1, 2, 3, 4, 5, 6, 7, 8}, read);
+        assertEquals(0, ring.read(read, 0, 1));
+    }
+
+    /**
+     * A stereo source with the same value in every sample.
+     */
+    private static class ConstantSource implements MixerCore.Source {
+
+        private final int sampleRate;
+        private final short value;
+        int framesRead;
+
+        ConstantSource(int sampleRate, int value) {
+            this.sampleRate = sampleRate;
+            this.value = (short) value;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        @Override
+        public int getChannelCount() {
+            return 2;
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int frames) {
+            Arrays.fill(buffer, offset, offset + frames * 2, value);
+            framesRead += frames;
+            return frames;
+        }
+    }
+
+    /**
+     * A mono source rising by 10 every frame.
+     */
+    private static class RampSource implements MixerCore.Source {
+
+        private final int sampleRate;
+        int framesRead;
+
+        RampSource(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        @Override
+        public int getChannelCount() {
+            return 1;
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int frames) {
+            for (int i = 0; i < frames; i++) {
+                buffer[offset + i] = (short) (10 * framesRead++);
+            }
+            return frames;
+        }
+    }
+}
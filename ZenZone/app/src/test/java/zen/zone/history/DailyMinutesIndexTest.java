@@ -0,0 +1,99 @@
+package zen.zone.history;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZoneOffset;
+
+import zen.zone.streak.StreakEngine;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the per-day minutes index.
+ */
+public class DailyMinutesIndexTest {
+
+    private static final long DAY = 19_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sessionsOfADay_areSummed() throws IOException {
+        try (SessionHistoryStore store = open()) {
+            append(store, DAY, 600_000);
+            append(store, DAY, 300_000);
+            append(store, DAY + 2, 1_200_000);
+
+            DailyMinutesIndex index = DailyMinutesIndex.fromHistory(store, ZoneOffset.UTC);
+
+            assertEquals(2, index.getDayCount());
+            assertEquals(DAY, index.getFirstDay());
+            assertEquals(15, index.getMinutes(DAY));
+            assertEquals(0, index.getMinutes(DAY + 1));
+            assertEquals(20, index.getMinutes(DAY + 2));
+        }
+    }
+
+    @Test
+    public void rangeQuery_fillsOnlyTheRange() throws IOException {
+        try (SessionHistoryStore store = open()) {
+            for (int i = 0; i < 1000; i++) {
+                append(store, DAY + i, (i % 30 + 1) * 60_000L);
+            }
+
+            DailyMinutesIndex index = DailyMinutesIndex.fromHistory(store, ZoneOffset.UTC);
+            int[] month = new int[31];
+            index.getMinutes(DAY + 995, month);
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals((995 + i) % 30 + 1, month[i]);
+            }
+            for (int i = 5; i < month.length; i++) {
+                assertEquals(0, month[i]);
+            }
+            index.getMinutes(DAY - 40, month);
+            assertArrayEquals(new int[31], month);
+        }
+    }
+
+    @Test
+    public void outOfOrderSessions_areSorted() throws IOException {
+        try (SessionHistoryStore store = open()) {
+            append(store, DAY + 5, 60_000);
+            append(store, DAY, 120_000);
+            append(store, DAY + 5, 60_000);
+
+            DailyMinutesIndex index = DailyMinutesIndex.fromHistory(store, ZoneOffset.UTC);
+
+            assertEquals(DAY, index.getFirstDay());
+            assertEquals(2, index.getMinutes(DAY));
+            assertEquals(2, index.getMinutes(DAY + 5));
+        }
+    }
+
+    @Test
+    public void emptyHistory_hasNoFirstDay() throws IOException {
+        try (SessionHistoryStore store = open()) {
+            DailyMinutesIndex index = DailyMinutesIndex.fromHistory(store, ZoneOffset.UTC);
+
+            assertEquals(StreakEngine.NO_DAY, index.getFirstDay());
+            assertEquals(0, index.getMinutes(DAY));
+        }
+    }
+
+    private SessionHistoryStore open() throws IOException {
+        return SessionHistoryStore.open(new File(folder.getRoot(), "sessions.zzh"));
+    }
+
+    private static void append(SessionHistoryStore store, long day, long actualMillis) throws IOException {
+        SessionRecord record = new SessionRecord();
+        record.startTimeMillis = day * 86_400_000L + 7 * 3_600_000L;
+        record.actualDurationMillis = actualMillis;
+        store.append(record);
+    }
+}
@@ -0,0 +1,77 @@
+package zen.zone.history;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the memory-mapped session history store.
+ */
+public class SessionHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendedSessions_surviveReopening() throws IOException {
+        File path = new File(folder.getRoot(), "sessions.zzh");
+        SessionRecord record = new SessionRecord();
+
+        try (SessionHistoryStore store = SessionHistoryStore.open(path)) {
+            for (int i = 0; i < 1000; i++) {
+                record.clear();
+                record.startTimeMillis = 1_600_000_000_000L + i * 86_400_000L;
+                record.plannedDurationMillis = 600_000;
+                record.actualDurationMillis = 600_000 - i;
+                record.pauseCount = i % 3;
+                record.soundId = i % 4;
+                record.bellCount = 1;
+                record.flags = i % 2 == 0 ? SessionRecord.FLAG_COMPLETED : 0;
+                assertEquals(i, store.append(record));
+            }
+        }
+
+        try (SessionHistoryStore store = SessionHistoryStore.open(path)) {
+            assertEquals(1000, store.size());
+            assertEquals(1_600_000_000_000L + 999 * 86_400_000L, store.getStartTime(999));
+            assertEquals(600_000 - 500, store.getActualDuration(500));
+
+            store.read(7, record);
+            assertEquals(1, record.pauseCount);
+            assertEquals(3, record.soundId);
+            assertFalse(record.isCompleted());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readingPastTheEnd_throws() throws IOException {
+        try (SessionHistoryStore store = SessionHistoryStore.open(new File(folder.getRoot(), "empty.zzh"))) {
+            store.getStartTime(0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void openingForeignFile_throws() throws IOException {
+        File path = folder.newFile("foreign.bin");
+        Files.write(path.toPath(), new byte[64]);
+        SessionHistoryStore.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void openingNewerVersion_throws() throws IOException {
+        File path = new File(folder.getRoot(), "sessions.zzh");
+        SessionHistoryStore.open(path).close();
+        byte[] bytes = Files.readAllBytes(path.toPath());
+        // The version follows the magic number, little-endian
+        bytes[4]++;
+        Files.write(path.toPath(), bytes);
+
+        SessionHistoryStore.open(path);
+    }
+}
@@ -0,0 +1,112 @@
+package zen.zone.metrics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the metrics registry, its histograms and its dump.
+ */
+public class MetricsRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void histogram_estimatesPercentilesFromItsBuckets() {
+        Histogram histogram = new MetricsRegistry().histogram("tick.jitter_ms");
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(150);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(90 * 3 + 10 * 150, histogram.getSum());
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(5, histogram.getPercentile(90));
+        assertEquals(150, histogram.getPercentile(95));
+        assertEquals(150, histogram.getMax());
+        assertEquals(0, new MetricsRegistry().histogram("empty").getPercentile(50));
+    }
+
+    @Test
+    public void histogram_keepsTheMostRecentValues() {
+        Histogram histogram = new MetricsRegistry().histogram("bell.latency_ms");
+        for (int i = 0; i < Histogram.RECENT_CAPACITY + 5; i++) {
+            histogram.record(i);
+        }
+
+        long[] recent = histogram.getRecent();
+        assertEquals(Histogram.RECENT_CAPACITY, recent.length);
+        assertEquals(5, recent[0]);
+        assertEquals(Histogram.RECENT_CAPACITY + 4, recent[recent.length - 1]);
+    }
+
+    @Test
+    public void metrics_areCreatedOnceByName() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("ambient.underruns").add(2);
+        registry.counter("ambient.underruns").increment();
+
+        assertEquals(3, registry.counter("ambient.underruns").get());
+        assertSame(registry.histogram("a"), registry.histogram("a", new long[]{1}));
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("concurrent");
+        Counter counter = registry.counter("concurrent");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i % 100);
+                    counter.increment();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(40_000, counter.get());
+        assertEquals(99, histogram.getMax());
+    }
+
+    @Test
+    public void dump_isCompactAndSorted() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("bell.latency_ms").record(4);
+        registry.histogram("bell.latency_ms").record(70_000);
+        registry.histogram("b", new long[]{10, 20}).record(15);
+        registry.counter("ambient.underruns").add(3);
+
+        StringWriter out = new StringWriter();
+        registry.dump(out, 1234);
+
+        assertEquals("metrics 1 1234\n"
+                + "c ambient.underruns 3\n"
+                + "h b 1 15 15 | 20:1\n"
+                + "h bell.latency_ms 2 70004 70000 | 5:1 inf:1\n", out.toString());
+
+        File file = new File(folder.getRoot(), "metrics/metrics.txt");
+        registry.dumpTo(file, 1234);
+        assertEquals(out.toString(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+}
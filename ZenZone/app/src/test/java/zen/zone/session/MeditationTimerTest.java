@@ -0,0 +1,187 @@
+package zen.zone.session;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the deadline based meditation timer, driven by a fake clock.
+ */
+public class MeditationTimerTest {
+
+    /**
+     * A clock and scheduler advanced by hand. Every run can be made late on purpose, to
+     * simulate a busy main thread.
+     */
+    private static class FakeScheduler implements TickScheduler {
+        long now;
+        long lateness;
+        Runnable pending;
+        long dueAt;
+        int wakeups;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            pending = task;
+            dueAt = now + delayMillis;
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            if (pending == task) {
+                pending = null;
+            }
+        }
+
+        void advanceTo(long time) {
+            while (pending != null && dueAt + lateness <= time) {
+                now = dueAt + lateness;
+                Runnable task = pending;
+                pending = null;
+                wakeups++;
+                task.run();
+            }
+            now = time;
+        }
+    }
+
+    private FakeScheduler scheduler;
+    private List<Long> ticks;
+    private List<Long> events;
+    private long finishedAt;
+    private MeditationTimer timer;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        ticks = new ArrayList<>();
+        events = new ArrayList<>();
+        finishedAt = -1;
+        timer = createTimer(new SessionTimeline.Builder(60_000).build());
+    }
+
+    private MeditationTimer createTimer(SessionTimeline timeline) {
+        return new MeditationTimer(timeline, () -> scheduler.now, scheduler, new MeditationTimer.Listener() {
+            @Override
+            public void onTick(long remainingMillis) {
+                ticks.add(remainingMillis);
+            }
+
+            @Override
+            public void onEvent(int index) {
+                events.add(scheduler.now);
+            }
+
+            @Override
+            public void onFinish() {
+                finishedAt = scheduler.now;
+            }
+        });
+    }
+
+    @Test
+    public void timer_wakesOncePerSecondAndEndsOnTheDeadline() {
+        timer.start();
+        scheduler.advanceTo(120_000);
+
+        assertEquals(60_000, finishedAt);
+        assertEquals(60, ticks.size());
+        // The first tick runs from start(), the last wakeup is the end of the session
+        assertEquals(60, scheduler.wakeups);
+        assertEquals(60_000, (long) ticks.get(0));
+        assertEquals(1_000, (long) ticks.get(59));
+    }
+
+    @Test
+    public void lateTicks_doNotMakeTheTimerDrift() {
+        scheduler.lateness = 300;
+        timer.start();
+        scheduler.advanceTo(120_000);
+
+        // Every tick is 300 ms late, the session still ends 300 ms after its deadline at most
+        assertTrue(finishedAt >= 60_000 && finishedAt <= 60_300);
+    }
+
+    @Test
+    public void pauseAndResume_keepTheExactRemainingTime() {
+        timer.start();
+        scheduler.advanceTo(10_400);
+        timer.pause();
+        assertEquals(49_600, timer.getRemainingMillis());
+
+        scheduler.advanceTo(100_000);
+        assertEquals(49_600, timer.getRemainingMillis());
+
+        timer.start();
+        // The first tick after resuming is aligned to the next displayed second
+        assertEquals(600, scheduler.dueAt - scheduler.now);
+        scheduler.advanceTo(200_000);
+        assertEquals(149_600, finishedAt);
+    }
+
+    @Test
+    public void cancel_neverCallsFinish() {
+        timer.start();
+        scheduler.advanceTo(5_000);
+        timer.cancel();
+        scheduler.advanceTo(120_000);
+
+        assertEquals(-1, finishedAt);
+        assertTrue(timer.isFinished());
+    }
+
+    @Test
+    public void withoutTicking_timerOnlyWakesForEventsAndTheEnd() {
+        timer = createTimer(new SessionTimeline.Builder(60_000).intervalBells(20_000).halfTimeBell().build());
+        timer.start();
+        scheduler.advanceTo(10_000);
+        int wakeups = scheduler.wakeups;
+        timer.setTicking(false);
+        assertEquals(10_000, timer.getMillisToNextWakeUp());
+        scheduler.advanceTo(70_000);
+
+        // Bells at 20 s, 30 s and 40 s, then the end of the session
+        assertEquals(wakeups + 4, scheduler.wakeups);
+        assertEquals(3, events.size());
+        assertEquals(20_000, (long) events.get(0));
+        assertEquals(30_000, (long) events.get(1));
+        assertEquals(40_000, (long) events.get(2));
+        assertEquals(60_000, finishedAt);
+    }
+
+    @Test
+    public void eventsBetweenSeconds_areDispatchedOnTime() {
+        timer = createTimer(new SessionTimeline.Builder(60_000).bellAt(10_500).build());
+        timer.start();
+        scheduler.advanceTo(120_000);
+
+        assertEquals(1, events.size());
+        assertEquals(10_500, (long) events.get(0));
+        assertEquals(61, scheduler.wakeups);
+    }
+
+    @Test
+    public void update_dispatchesEventsMissedWhileAsleep() {
+        timer = createTimer(new SessionTimeline.Builder(60_000).bellAt(5_000).bellAt(7_000).build());
+        timer.setTicking(false);
+        timer.start();
+        // The device slept through both bells, the alarm wakes it up late
+        scheduler.now = 8_000;
+        timer.update();
+
+        assertEquals(2, events.size());
+        assertEquals(52_000, timer.getMillisToNextWakeUp());
+    }
+
+    @Test
+    public void roundUpToSecond_showsFullDurationAndZeroOnlyAtTheEnd() {
+        assertEquals(60_000, MeditationTimer.roundUpToSecond(60_000));
+        assertEquals(60_000, MeditationTimer.roundUpToSecond(59_001));
+        assertEquals(1_000, MeditationTimer.roundUpToSecond(1));
+        assertEquals(0, MeditationTimer.roundUpToSecond(0));
+    }
+}
@@ -0,0 +1,52 @@
+package zen.zone.session;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the resume points of guided meditations.
+ */
+public class ResumePointsTest {
+
+    @Test
+    public void positions_surviveEncoding() {
+        ResumePoints points = ResumePoints.EMPTY.with(40, 120_000).with(41, 5_000).with(40, 180_000);
+
+        ResumePoints restored = ResumePoints.decode(points.encode());
+
+        assertEquals("40:180000,41:5000", restored.encode());
+        assertEquals(180_000, restored.get(40));
+        assertEquals(5_000, restored.get(41));
+        assertEquals(0, restored.get(42));
+    }
+
+    @Test
+    public void zeroPosition_forgetsTheMeditation() {
+        ResumePoints points = ResumePoints.EMPTY.with(40, 120_000);
+
+        assertTrue(points.with(40, 0).isEmpty());
+        assertSame(points, points.with(41, 0));
+        assertSame(points, points.with(40, 120_000));
+    }
+
+    @Test
+    public void oldestMeditations_areForgotten() {
+        ResumePoints points = ResumePoints.EMPTY;
+        for (int id = 1; id <= ResumePoints.MAX_ENTRIES + 2; id++) {
+            points = points.with(id, id * 1000L);
+        }
+
+        assertEquals(0, points.get(1));
+        assertEquals(0, points.get(2));
+        assertEquals(3000, points.get(3));
+        assertEquals((ResumePoints.MAX_ENTRIES + 2) * 1000L, points.get(ResumePoints.MAX_ENTRIES + 2));
+    }
+
+    @Test
+    public void invalidString_decodesEmpty() {
+        assertTrue(ResumePoints.decode("40:abc").isEmpty());
+        assertTrue(ResumePoints.decode("40").isEmpty());
+        assertTrue(ResumePoints.decode("40:-5").isEmpty());
+    }
+}
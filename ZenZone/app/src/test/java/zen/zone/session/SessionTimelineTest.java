@@ -0,0 +1,117 @@
+package zen.zone.session;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the compiled session timeline.
+ */
+public class SessionTimelineTest {
+
+    @Test
+    public void build_sortsEventsAndMergesDuplicates() {
+        SessionTimeline timeline = new SessionTimeline.Builder(10 * 60_000)
+                .bellAt(7 * 60_000)
+                .intervalBells(5 * 60_000)
+                .halfTimeBell()
+                .stage(SessionTimeline.STAGE_SILENCE, 5 * 60_000)
+                .stage(SessionTimeline.STAGE_SETTLE, 0)
+                .bellAt(10 * 60_000)
+                .build();
+
+        // The interval bell and the half-time bell fall on the same moment, the bell at the
+        // very end of the session is dropped
+        assertEquals(4, timeline.getEventCount());
+        assertEquals(0, timeline.getEventOffset(0));
+        assertEquals(SessionTimeline.EVENT_STAGE, timeline.getEventKind(0));
+        assertEquals(SessionTimeline.STAGE_SETTLE, timeline.getEventArgument(0));
+        assertEquals(5 * 60_000, timeline.getEventOffset(1));
+        assertEquals(SessionTimeline.EVENT_BELL, timeline.getEventKind(1));
+        assertEquals(5 * 60_000, timeline.getEventOffset(2));
+        assertEquals(SessionTimeline.EVENT_STAGE, timeline.getEventKind(2));
+        assertEquals(7 * 60_000, timeline.getEventOffset(3));
+        assertTrue(timeline.hasBells());
+    }
+
+    @Test
+    public void intervalBells_ringEveryIntervalUntilTheEnd() {
+        SessionTimeline timeline = new SessionTimeline.Builder(60 * 60_000).intervalBells(60_000).build();
+
+        assertEquals(59, timeline.getEventCount());
+        assertEquals(59 * 60_000, timeline.getEventOffset(58));
+    }
+
+    @Test
+    public void firstEventAfter_findsTheNextEvent() {
+        SessionTimeline timeline = new SessionTimeline.Builder(60_000).intervalBells(10_000).build();
+
+        assertEquals(0, timeline.firstEventAfter(0));
+        assertEquals(1, timeline.firstEventAfter(10_000));
+        assertEquals(2, timeline.firstEventAfter(29_999));
+        assertEquals(5, timeline.firstEventAfter(59_999));
+    }
+
+    @Test
+    public void serializedTimeline_isCompactAndRestoresEqually() {
+        SessionTimeline timeline = new SessionTimeline.Builder(20 * 60_000)
+                .backgroundSound(2)
+                .standardStages()
+                .intervalBells(5 * 60_000)
+                .build();
+
+        byte[] bytes = timeline.toByteArray();
+        SessionTimeline restored = SessionTimeline.fromByteArray(bytes);
+
+        assertEquals(19 + 2 + 7 * 6, bytes.length);
+        assertEquals(timeline.getDurationMillis(), restored.getDurationMillis());
+        assertEquals(2, restored.getSoundId());
+        assertEquals(timeline.getEventCount(), restored.getEventCount());
+        for (int i = 0; i < timeline.getEventCount(); i++) {
+            assertEquals(timeline.getEventOffset(i), restored.getEventOffset(i));
+            assertEquals(timeline.getEventKind(i), restored.getEventKind(i));
+            assertEquals(timeline.getEventArgument(i), restored.getEventArgument(i));
+        }
+    }
+
+    @Test
+    public void soundLayers_keepTheirOrderAndVolumes() {
+        SessionTimeline timeline = new SessionTimeline.Builder(60_000)
+                .soundLayer(2, 80)
+                .soundLayer(0, 100)
+                .soundLayer(200, 35)
+                .build();
+
+        SessionTimeline restored = SessionTimeline.fromByteArray(timeline.toByteArray());
+
+        assertEquals(2, restored.getSoundLayerCount());
+        assertEquals(2, restored.getSoundId());
+        assertEquals(80, restored.getLayerVolume(0));
+        assertEquals(200, restored.getLayerSoundId(1));
+        assertEquals(35, restored.getLayerVolume(1));
+        assertEquals(0, new SessionTimeline.Builder(60_000).build().getSoundId());
+    }
+
+    @Test
+    public void narration_followsTheElapsedTime() {
+        SessionTimeline timeline = new SessionTimeline.Builder(25 * 60_000)
+                .narration(40, 5 * 60_000)
+                .build();
+
+        SessionTimeline restored = SessionTimeline.fromByteArray(timeline.toByteArray());
+
+        assertTrue(restored.hasNarration());
+        assertEquals(40, restored.getNarrationId());
+        assertEquals(5 * 60_000, restored.getNarrationStartMillis());
+        assertEquals(5 * 60_000 + 1500, restored.getNarrationPosition(1500));
+        assertFalse(new SessionTimeline.Builder(60_000).build().hasNarration());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedBytes_areRejected() {
+        byte[] bytes = new SessionTimeline.Builder(60_000).halfTimeBell().build().toByteArray();
+        SessionTimeline.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+}
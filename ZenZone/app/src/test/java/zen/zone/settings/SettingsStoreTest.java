@@ -0,0 +1,121 @@
+package zen.zone.settings;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import zen.zone.session.ResumePoints;
+import zen.zone.ui.preferences.ReminderPlan;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the settings store and its coalesced writes.
+ */
+public class SettingsStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Runnable> queuedWrites = new ArrayList<>();
+
+    @Test
+    public void missingFile_loadsDefaults() throws IOException {
+        SettingsStore store = new SettingsStore(new File(folder.getRoot(), "settings.properties"), queuedWrites::add);
+
+        assertFalse(store.exists());
+        assertSame(Settings.DEFAULT, store.load());
+    }
+
+    @Test
+    public void settings_surviveRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), "settings.properties");
+        SettingsStore store = new SettingsStore(file, Runnable::run);
+        ReminderPlan plan = ReminderPlan.of(ReminderPlan.MONDAY | ReminderPlan.FRIDAY, 7 * 60, 21 * 60 + 30);
+
+        store.update(settings -> settings.withLanguage(Settings.LANGUAGE_POLISH)
+                .withTheme(Settings.THEME_DARK)
+                .withReminderPlan(plan)
+                .withStreak(19_000, 4, 12)
+                .withResumePoints(ResumePoints.EMPTY.with(40, 600_000))
+                .withLastSound(3, 60)
+                .withSilentSession(false));
+
+        Settings restored = new SettingsStore(file, Runnable::run).load();
+        assertEquals(Settings.LANGUAGE_POLISH, restored.getLanguage());
+        assertEquals(Settings.THEME_DARK, restored.getTheme());
+        assertEquals(plan.encode(), restored.getReminderPlan().encode());
+        assertEquals(19_000, restored.getLastMeditationDay());
+        assertEquals(4, restored.getCurrentStreak());
+        assertEquals(12, restored.getLongestStreak());
+        assertEquals(600_000, restored.getResumePoints().get(40));
+        assertEquals(3, restored.getLastSoundId());
+        assertEquals(60, restored.getLastSoundVolume());
+        assertFalse(restored.isSilentSession());
+    }
+
+    @Test
+    public void updates_areCoalescedIntoOneWrite() throws IOException {
+        File file = new File(folder.getRoot(), "settings.properties");
+        SettingsStore store = new SettingsStore(file, queuedWrites::add);
+
+        store.update(settings -> settings.withTheme(Settings.THEME_DARK));
+        store.update(settings -> settings.withLanguage(Settings.LANGUAGE_POLISH));
+        store.update(settings -> settings.withStreak(19_000, 1, 1));
+
+        // Readers see the changes at once, the file is written later
+        assertEquals(Settings.THEME_DARK, store.get().getTheme());
+        assertFalse(file.exists());
+        assertEquals(1, queuedWrites.size());
+
+        queuedWrites.get(0).run();
+
+        Settings restored = new SettingsStore(file, Runnable::run).load();
+        assertEquals(Settings.THEME_DARK, restored.getTheme());
+        assertEquals(Settings.LANGUAGE_POLISH, restored.getLanguage());
+        assertEquals(1, restored.getCurrentStreak());
+    }
+
+    @Test
+    public void unchangedSettings_areNotWritten() {
+        SettingsStore store = new SettingsStore(new File(folder.getRoot(), "settings.properties"), queuedWrites::add);
+
+        store.update(settings -> settings.withTheme(Settings.DEFAULT.getTheme()));
+
+        assertTrue(queuedWrites.isEmpty());
+    }
+
+    @Test
+    public void flushedSettings_areNotWrittenAgain() throws IOException {
+        File file = new File(folder.getRoot(), "settings.properties");
+        SettingsStore store = new SettingsStore(file, queuedWrites::add);
+        store.update(settings -> settings.withTheme(Settings.THEME_DARK));
+
+        store.flush();
+        try (FileWriter writer = new FileWriter(file, true)) {
+            writer.write("marker=1\n");
+        }
+        queuedWrites.get(0).run();
+
+        // The queued write found nothing newer than the flushed settings
+        assertTrue(new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1).contains("marker=1"));
+    }
+
+    @Test(expected = IOException.class)
+    public void newerFormat_isRejected() throws IOException {
+        File file = new File(folder.getRoot(), "settings.properties");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("version=" + (SettingsStore.VERSION + 1) + "\n");
+        }
+
+        new SettingsStore(file, Runnable::run).load();
+    }
+}
@@ -0,0 +1,178 @@
+package zen.zone.sound;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the sound catalog, the pack source and the sound cache.
+ */
+public class SoundCatalogTest {
+
+    private static final String BUNDLED = "packs=nature\n"
+            + "sounds=none,chimes\n"
+            + "none.id=0\nnone.label.en=None\nnone.label.pl=Brak\n"
+            + "chimes.id=3\nchimes.raw=chimes\nchimes.label.en=Chimes\nchimes.label.pl=Dzwonki\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long now = 1_000_000;
+
+    @Test
+    public void packSounds_followBundledSounds() throws IOException {
+        SoundCatalog catalog = SoundCatalog.parse(new StringReader(BUNDLED), null)
+                .merge(SoundCatalog.parse(new StringReader(manifest("birds", 1, "birds.ogg", new byte[10])), "nature"));
+
+        assertEquals(Arrays.asList("nature"), catalog.getPacks());
+        assertArrayEquals(new String[]{"Brak", "Dzwonki", "Ptaki"}, catalog.getLabels("pl"));
+        assertArrayEquals(new String[]{"None", "Chimes", "Birds"}, catalog.getLabels("de"));
+        assertTrue(catalog.get(SoundCatalog.SOUND_NONE).isNone());
+        assertTrue(catalog.get(3).isBundled());
+        assertEquals("nature/birds.ogg", catalog.get(1).getPath());
+    }
+
+    @Test
+    public void packs_cannotReplaceAppSounds() throws IOException {
+        SoundCatalog catalog = SoundCatalog.parse(new StringReader(BUNDLED), null)
+                .merge(SoundCatalog.parse(new StringReader(manifest("fake", 3, "fake.ogg", new byte[10])), "nature"));
+
+        assertEquals("chimes", catalog.get(3).getKey());
+        assertEquals(2, catalog.getSounds().size());
+    }
+
+    @Test
+    public void guidedMeditations_areListedApart() throws IOException {
+        SoundCatalog catalog = SoundCatalog.parse(new StringReader(BUNDLED), null)
+                .merge(SoundCatalog.parse(new StringReader(manifest("birds", 1, "birds.ogg", new byte[10])), "nature"))
+                .merge(SoundCatalog.parse(new StringReader(manifest("scan", 40, "scan.ogg", new byte[10])
+                        + "scan.duration=1800\n"), "guided"));
+
+        assertArrayEquals(new String[]{"None", "Chimes", "Birds"}, catalog.backgroundSounds().getLabels("en"));
+        assertArrayEquals(new String[]{"None", "Scan"}, catalog.guidedMeditations().getLabels("en"));
+        assertTrue(catalog.get(40).isGuided());
+        assertEquals(1_800_000, catalog.get(40).getDurationMillis());
+        assertFalse(catalog.get(1).isGuided());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidManifest_isRejected() throws IOException {
+        SoundCatalog.parse(new StringReader("sounds=rain\nrain.id=2\nrain.file=../rain.ogg\n"), "nature");
+    }
+
+    @Test(expected = IOException.class)
+    public void soundIdAboveOneByte_isRejected() throws IOException {
+        SoundCatalog.parse(new StringReader(manifest("birds", 256, "birds.ogg", new byte[10])), "nature");
+    }
+
+    @Test
+    public void downloadedSound_isCheckedAndCached() throws IOException {
+        byte[] content = new byte[1000];
+        Arrays.fill(content, (byte) 7);
+        File packs = folder.newFolder("packs");
+        Sound sound = publish(packs, "rain", 2, content);
+        SoundCache cache = new SoundCache(folder.newFolder("cache"), 10_000, () -> now);
+
+        assertNull(cache.get(sound));
+        File part = cache.newDownloadFile(sound);
+        new LocalPackSource(packs).download(sound.getPath(), part);
+        File cached = cache.put(sound, part);
+
+        assertFalse(part.exists());
+        assertEquals(cached, cache.get(sound));
+        assertEquals(1000, cache.getTotalBytes());
+    }
+
+    @Test
+    public void corruptDownload_isRejected() throws IOException {
+        File packs = folder.newFolder("packs");
+        Sound sound = publish(packs, "rain", 2, new byte[100]);
+        // The pack changed after the manifest was read
+        writeFile(new File(packs, "nature/rain.ogg"), new byte[]{1, 2, 3});
+        SoundCache cache = new SoundCache(folder.newFolder("cache"), 10_000, () -> now);
+
+        File part = cache.newDownloadFile(sound);
+        new LocalPackSource(packs).download(sound.getPath(), part);
+        try {
+            cache.put(sound, part);
+            fail("Corrupt download was cached");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        assertFalse(part.exists());
+        assertNull(cache.get(sound));
+    }
+
+    @Test
+    public void leastRecentlyUsedSounds_areEvicted() throws IOException {
+        File packs = folder.newFolder("packs");
+        File cacheDir = folder.newFolder("cache");
+        Sound birds = publish(packs, "birds", 1, new byte[400]);
+        Sound rain = publish(packs, "rain", 2, new byte[401]);
+        Sound waves = publish(packs, "waves", 4, new byte[402]);
+        SoundCache cache = new SoundCache(cacheDir, 1000, () -> now);
+
+        download(cache, packs, birds);
+        download(cache, packs, rain);
+        now += 60_000;
+        assertNotNull(cache.get(birds));
+        download(cache, packs, waves);
+
+        assertNotNull(cache.get(birds));
+        assertNull(cache.get(rain));
+        assertNotNull(cache.get(waves));
+        assertEquals(802, cache.getTotalBytes());
+
+        // The order of use survives reopening the cache
+        now += 60_000;
+        assertNotNull(cache.get(birds));
+        SoundCache reopened = new SoundCache(cacheDir, 1000, () -> now);
+        download(reopened, packs, rain);
+        assertNotNull(reopened.get(birds));
+        assertNull(reopened.get(waves));
+    }
+
+    private void download(SoundCache cache, File packs, Sound sound) throws IOException {
+        File part = cache.newDownloadFile(sound);
+        new LocalPackSource(packs).download(sound.getPath(), part);
+        cache.put(sound, part);
+    }
+
+    private static Sound publish(File packs, String key, int id, byte[] content) throws IOException {
+        writeFile(new File(packs, "nature/" + key + ".ogg"), content);
+        return SoundCatalog.parse(new StringReader(manifest(key, id, key + ".ogg", content)), "nature").get(id);
+    }
+
+    private static String manifest(String key, int id, String file, byte[] content) throws IOException {
+        File temp = File.createTempFile("sound", ".ogg");
+        try {
+            writeFile(temp, content);
+            return "sounds=" + key + "\n"
+                    + key + ".id=" + id + "\n"
+                    + key + ".file=" + file + "\n"
+                    + key + ".size=" + content.length + "\n"
+                    + key + ".sha256=" + SoundCache.sha256(temp) + "\n"
+                    + key + ".label.en=" + Character.toUpperCase(key.charAt(0)) + key.substring(1) + "\n"
+                    + key + ".label.pl=" + ("birds".equals(key) ? "Ptaki" : key) + "\n";
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static void writeFile(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+    }
+}
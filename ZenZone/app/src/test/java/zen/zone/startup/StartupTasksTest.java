@@ -0,0 +1,65 @@
+package zen.zone.startup;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the deferred startup tasks.
+ */
+public class StartupTasksTest {
+
+    @Test
+    public void tasks_runLazilyAndOnce() throws InterruptedException {
+        List<String> runs = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        StartupTrace trace = new StartupTrace();
+        StartupTasks tasks = new StartupTasks(executor, trace);
+        tasks.add("streak", () -> runs.add("streak"));
+        tasks.add("ads", () -> runs.add("ads"));
+
+        assertTrue(runs.isEmpty());
+
+        tasks.start("streak");
+        tasks.await("streak");
+        tasks.await("streak");
+
+        assertEquals(Collections.singletonList("streak"), runs);
+        assertFalse(tasks.isDone("ads"));
+        assertTrue(trace.getDurationNanos("streak") >= 0);
+        assertEquals(-1, trace.getDurationNanos("ads"));
+        executor.shutdown();
+    }
+
+    @Test
+    public void failingTask_stillReleasesItsCallbacks() {
+        StartupTasks tasks = new StartupTasks(Runnable::run, new StartupTrace());
+        List<String> callbacks = new ArrayList<>();
+        tasks.add("firebase", () -> {
+            throw new IllegalStateException("offline");
+        });
+
+        tasks.whenReady("firebase", Runnable::run, () -> callbacks.add("ready"));
+
+        assertEquals(Collections.singletonList("ready"), callbacks);
+        assertNotNull(tasks.getError("firebase"));
+        // Callbacks registered after the task is done run right away
+        tasks.whenReady("firebase", Runnable::run, () -> callbacks.add("late"));
+        assertEquals("late", callbacks.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateTask_isRejected() {
+        StartupTasks tasks = new StartupTasks(Runnable::run, new StartupTrace());
+        tasks.add("streak", () -> {
+        });
+        tasks.add("streak", () -> {
+        });
+    }
+}
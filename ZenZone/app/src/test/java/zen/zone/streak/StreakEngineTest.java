@@ -0,0 +1,88 @@
+package zen.zone.streak;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the session based streak engine.
+ */
+public class StreakEngineTest {
+
+    private static final ZoneId WARSAW = ZoneId.of("Europe/Warsaw");
+    private static final int TEN_YEARS_IN_DAYS = 3653;
+
+    @Test
+    public void tenYearsOfDailySessions_countEveryDayOnce() {
+        StreakEngine engine = new StreakEngine();
+        LocalDate firstDay = LocalDate.of(2015, 1, 1);
+
+        for (int day = 0; day < TEN_YEARS_IN_DAYS; day++) {
+            // Alternate between right after midnight and right before midnight, so every
+            // DST transition in between would show up as a broken or doubled day
+            LocalTime time = day % 2 == 0 ? LocalTime.of(0, 5) : LocalTime.of(23, 55);
+            long epochMillis = ZonedDateTime.of(firstDay.plusDays(day), time, WARSAW).toInstant().toEpochMilli();
+            engine.onSessionCompleted(epochMillis, WARSAW);
+            // A second session on the same day never counts twice
+            engine.onSessionCompleted(epochMillis + 60_000, WARSAW);
+        }
+
+        assertEquals(TEN_YEARS_IN_DAYS, engine.getCurrentStreak());
+        assertEquals(TEN_YEARS_IN_DAYS, engine.getLongestStreak());
+    }
+
+    @Test
+    public void missedDay_breaksCurrentStreakButKeepsLongest() {
+        StreakEngine engine = new StreakEngine();
+        long day = LocalDate.of(2023, 3, 1).toEpochDay();
+
+        for (int i = 0; i < 5; i++) {
+            engine.onSessionCompleted(day + i);
+        }
+        assertTrue(engine.onSessionCompleted(day + 6));
+
+        assertEquals(1, engine.getCurrentStreak());
+        assertEquals(5, engine.getLongestStreak());
+    }
+
+    @Test
+    public void snapshot_keepsStreakAliveUntilTheDayAfter() {
+        StreakEngine engine = new StreakEngine();
+        long day = LocalDate.of(2023, 3, 1).toEpochDay();
+        engine.onSessionCompleted(day);
+        engine.onSessionCompleted(day + 1);
+
+        assertEquals(2, engine.snapshot(day + 1).getCurrentStreak());
+        assertEquals(2, engine.snapshot(day + 2).getCurrentStreak());
+        assertEquals(0, engine.snapshot(day + 3).getCurrentStreak());
+        assertEquals(2, engine.snapshot(day + 3).getLongestStreak());
+    }
+
+    @Test
+    public void localDay_followsDstTransitions() {
+        // Clocks go forward at 02:00 on 2023-03-26 and back at 03:00 on 2023-10-29 in Warsaw
+        long beforeSpring = ZonedDateTime.of(2023, 3, 25, 23, 30, 0, 0, WARSAW).toInstant().toEpochMilli();
+        long afterSpring = ZonedDateTime.of(2023, 3, 26, 23, 30, 0, 0, WARSAW).toInstant().toEpochMilli();
+        long afterAutumn = ZonedDateTime.of(2023, 10, 29, 0, 30, 0, 0, WARSAW).toInstant().toEpochMilli();
+
+        assertEquals(LocalDate.of(2023, 3, 25).toEpochDay(), StreakEngine.toLocalEpochDay(beforeSpring, WARSAW));
+        assertEquals(LocalDate.of(2023, 3, 26).toEpochDay(), StreakEngine.toLocalEpochDay(afterSpring, WARSAW));
+        assertEquals(LocalDate.of(2023, 10, 29).toEpochDay(), StreakEngine.toLocalEpochDay(afterAutumn, WARSAW));
+    }
+
+    @Test
+    public void restoredState_continuesStreak() {
+        long day = LocalDate.of(2023, 3, 1).toEpochDay();
+        StreakEngine engine = new StreakEngine(day, 4, 10);
+
+        assertTrue(engine.onSessionCompleted(day + 1));
+
+        assertEquals(5, engine.getCurrentStreak());
+        assertEquals(10, engine.getLongestStreak());
+    }
+}
@@ -0,0 +1,49 @@
+package zen.zone.ui.meditation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the gate deciding when the timer screen renders.
+ */
+public class RenderGateTest {
+
+    private final List<Boolean> changes = new ArrayList<>();
+    private final RenderGate gate = new RenderGate(changes::add);
+
+    @Test
+    public void gate_opensOnlyWhenEveryConditionIsMet() {
+        gate.set(RenderGate.STARTED, true);
+        gate.set(RenderGate.BOUND, true);
+        gate.set(RenderGate.DISPLAY_ON, true);
+        assertFalse(gate.isOpen());
+
+        gate.set(RenderGate.WINDOW_FOCUSED, true);
+
+        assertTrue(gate.isOpen());
+        assertEquals(Arrays.asList(true), changes);
+    }
+
+    @Test
+    public void listener_hearsOnlyTransitions() {
+        gate.set(RenderGate.STARTED, true);
+        gate.set(RenderGate.BOUND, true);
+        gate.set(RenderGate.DISPLAY_ON, true);
+        gate.set(RenderGate.WINDOW_FOCUSED, true);
+
+        // The screen turns off, then the activity stops: one close
+        gate.set(RenderGate.DISPLAY_ON, false);
+        gate.set(RenderGate.STARTED, false);
+        gate.set(RenderGate.DISPLAY_ON, false);
+        gate.set(RenderGate.STARTED, true);
+        assertFalse(gate.isOpen());
+        gate.set(RenderGate.DISPLAY_ON, true);
+
+        assertEquals(Arrays.asList(true, false, true), changes);
+    }
+}
@@ -0,0 +1,42 @@
+package zen.zone.ui.meditation;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the allocation-free timer digits.
+ */
+public class TimerDigitsTest {
+
+    @Test
+    public void update_reportsOnlyChangedCharacters() {
+        TimerDigits digits = new TimerDigits();
+        // The buffer starts as 00:00
+        assertEquals(0b00001, digits.update(10 * 60_000));
+        assertEquals("10:00", new String(digits.getChars()));
+
+        // 10:00 -> 09:59 changes every digit, 09:59 -> 09:58 only the last one
+        assertEquals(0b11011, digits.update(599_000));
+        assertEquals(0b10000, digits.update(598_000));
+        assertEquals("09:58", new String(digits.getChars()));
+        assertEquals(0, digits.update(598_500));
+    }
+
+    @Test
+    public void update_clampsLongDurations() {
+        TimerDigits digits = new TimerDigits();
+        digits.update(200 * 60_000);
+        assertEquals("99:59", new String(digits.getChars()));
+    }
+
+    @Test
+    public void durationLabels_areReusedForTheSameLocale() {
+        String[] labels = DurationLabels.forLocale(Locale.US, "min", 59);
+        assertEquals("1 min", labels[0]);
+        assertEquals("59 min", labels[58]);
+        assertSame(labels, DurationLabels.forLocale(Locale.US, "min", 59));
+    }
+}
@@ -0,0 +1,125 @@
+package zen.zone.ui.preferences;
+
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the reminder plan and its next-fire calculation.
+ */
+public class ReminderPlanTest {
+
+    private static final ZoneId WARSAW = ZoneId.of("Europe/Warsaw");
+
+    private static long millis(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, WARSAW).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void fiveYearsOfFires_matchEverySlotOnce() {
+        int weekdays = ReminderPlan.MONDAY | ReminderPlan.WEDNESDAY | ReminderPlan.FRIDAY;
+        ReminderPlan plan = ReminderPlan.fromSlots(new int[]{
+                ReminderPlan.slot(weekdays, 7 * 60),
+                ReminderPlan.slot(weekdays, 21 * 60 + 30),
+                // Does not exist on the spring DST day and exists twice on the autumn one
+                ReminderPlan.slot(ReminderPlan.SUNDAY, 2 * 60 + 30)});
+        LocalDate first = LocalDate.of(2023, 1, 1);
+        LocalDate end = first.plusYears(5);
+
+        int expected = 0;
+        for (LocalDate date = first; date.isBefore(end); date = date.plusDays(1)) {
+            DayOfWeek day = date.getDayOfWeek();
+            expected += day == DayOfWeek.SUNDAY ? 1
+                    : day == DayOfWeek.MONDAY || day == DayOfWeek.WEDNESDAY || day == DayOfWeek.FRIDAY ? 2 : 0;
+        }
+
+        long now = first.atStartOfDay(WARSAW).toInstant().toEpochMilli();
+        long endMillis = end.atStartOfDay(WARSAW).toInstant().toEpochMilli();
+        int fires = 0;
+        while (true) {
+            long fire = plan.nextFireMillis(now, WARSAW);
+            assertTrue(fire > now);
+            if (fire >= endMillis) {
+                break;
+            }
+            LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(fire), WARSAW);
+            int minuteOfDay = local.getHour() * 60 + local.getMinute();
+            if (local.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                // 02:30 is moved to 03:30 when the clocks go forward
+                assertTrue(minuteOfDay == 150 || minuteOfDay == 210);
+            } else {
+                assertTrue(minuteOfDay == 420 || minuteOfDay == 1290);
+            }
+            fires++;
+            now = fire;
+        }
+
+        assertEquals(expected, fires);
+    }
+
+    @Test
+    public void sundayEvening_rollsOverToMonday() {
+        ReminderPlan plan = ReminderPlan.of(ReminderPlan.MONDAY, 16 * 60);
+
+        // Sunday 2023-06-04 at 20:00
+        assertEquals(millis(2023, 6, 5, 16, 0), plan.nextFireMillis(millis(2023, 6, 4, 20, 0), WARSAW));
+    }
+
+    @Test
+    public void reminderDueRightNow_firesAgainNextWeek() {
+        ReminderPlan plan = ReminderPlan.of(ReminderPlan.MONDAY, 16 * 60);
+
+        assertEquals(millis(2023, 6, 12, 16, 0), plan.nextFireMillis(millis(2023, 6, 5, 16, 0), WARSAW));
+    }
+
+    @Test
+    public void autumnOverlap_firesOnce() {
+        ReminderPlan plan = ReminderPlan.of(ReminderPlan.EVERY_DAY, 2 * 60 + 30);
+        // 2023-10-29, 02:30 happens twice in Warsaw
+        long firstFire = plan.nextFireMillis(millis(2023, 10, 29, 0, 0), WARSAW);
+        long secondFire = plan.nextFireMillis(firstFire, WARSAW);
+
+        assertEquals(LocalDate.of(2023, 10, 30),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(secondFire), WARSAW).toLocalDate());
+    }
+
+    @Test
+    public void legacyReminder_isMigratedInAnyLanguage() {
+        ReminderPlan english = ReminderPlan.fromLegacy("M,T,Th,Su,", "16:00");
+        ReminderPlan polish = ReminderPlan.fromLegacy("Pn,Wt,Czw,Nd,", "16:00");
+
+        int expectedDays = ReminderPlan.MONDAY | ReminderPlan.TUESDAY | ReminderPlan.THURSDAY | ReminderPlan.SUNDAY;
+        assertEquals(expectedDays, english.getDayMask());
+        assertArrayEquals(english.getSlots(), polish.getSlots());
+        assertArrayEquals(new int[]{16 * 60}, english.getMinutesOfDay());
+        assertTrue(ReminderPlan.fromLegacy("M,", "").isEmpty());
+        assertTrue(ReminderPlan.fromLegacy("", "16:00").isEmpty());
+    }
+
+    @Test
+    public void encodedPlan_restoresEqually() {
+        ReminderPlan plan = ReminderPlan.fromSlots(new int[]{
+                ReminderPlan.slot(ReminderPlan.EVERY_DAY, 7 * 60),
+                ReminderPlan.slot(ReminderPlan.SATURDAY, 10 * 60 + 15)});
+
+        assertArrayEquals(plan.getSlots(), ReminderPlan.decode(plan.encode()).getSlots());
+        assertTrue(ReminderPlan.decode("zz").isEmpty());
+        assertTrue(ReminderPlan.decode("").isEmpty());
+    }
+
+    @Test
+    public void parseMinuteOfDay_acceptsOnlyValidTimes() {
+        assertEquals(7 * 60 + 5, ReminderPlan.parseMinuteOfDay(" 7:05 "));
+        assertEquals(23 * 60 + 59, ReminderPlan.parseMinuteOfDay("23:59"));
+        assertEquals(-1, ReminderPlan.parseMinuteOfDay("24:00"));
+        assertEquals(-1, ReminderPlan.parseMinuteOfDay("16:00abc"));
+        assertEquals(-1, ReminderPlan.parseMinuteOfDay("7:5"));
+    }
+}
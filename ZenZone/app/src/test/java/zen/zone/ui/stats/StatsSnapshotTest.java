@@ -0,0 +1,130 @@
+package zen.zone.ui.stats;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import zen.zone.history.SessionHistoryStore;
+import zen.zone.history.SessionRecord;
+import zen.zone.streak.StreakEngine;
+import zen.zone.streak.StreakSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the statistics snapshot and its binary format.
+ */
+public class StatsSnapshotTest {
+
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final long TODAY = LocalDate.of(2023, 6, 4).toEpochDay();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshot_survivesRoundTrip() {
+        int[] minutes = new int[365];
+        int[] sessions = new int[365];
+        for (int i = 0; i < minutes.length; i++) {
+            if (i % 3 != 0) {
+                minutes[i] = 10 + i % 20;
+                sessions[i] = 1 + i % 2;
+            }
+        }
+        StatsSnapshot snapshot = new StatsSnapshot(new StreakSnapshot(2, 40, TODAY - 1), 500, 7_000,
+                TODAY - 364, minutes, sessions);
+
+        StatsSnapshot restored = StatsSnapshot.fromByteArray(snapshot.toByteArray());
+
+        assertEquals(snapshot, restored);
+        assertEquals(snapshot.hashCode(), restored.hashCode());
+        assertEquals(TODAY - 1, restored.getLastMeditationDay());
+        assertEquals(14, restored.getMinutes(364));
+    }
+
+    @Test
+    public void yearOfDailyStats_fitsInAFewHundredBytes() {
+        int[] minutes = new int[365];
+        Arrays.fill(minutes, 20);
+        int[] sessions = new int[365];
+        Arrays.fill(sessions, 1);
+        StatsSnapshot snapshot = new StatsSnapshot(new StreakSnapshot(365, 365, TODAY), 365, 7_300,
+                TODAY - 364, minutes, sessions);
+
+        // Steady practice: one byte per day for the minutes and one for the sessions
+        assertTrue(snapshot.toByteArray().length < 2 * 365 + 20);
+    }
+
+    @Test
+    public void userWithoutSessions_keepsNoLastDay() {
+        StatsSnapshot snapshot = new StatsSnapshot(StreakSnapshot.EMPTY, 0, 0, TODAY, new int[1], new int[1]);
+
+        StatsSnapshot restored = StatsSnapshot.fromByteArray(snapshot.toByteArray());
+
+        assertEquals(StreakEngine.NO_DAY, restored.getLastMeditationDay());
+        assertEquals(1, restored.getDayCount());
+    }
+
+    @Test
+    public void invalidBytes_areRejected() {
+        byte[] bytes = new StatsSnapshot(new StreakSnapshot(1, 1, TODAY), 1, 10, TODAY - 6,
+                new int[]{0, 0, 0, 0, 0, 0, 10}, new int[]{0, 0, 0, 0, 0, 0, 1}).toByteArray();
+
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                StatsSnapshot.fromByteArray(Arrays.copyOf(bytes, length));
+                fail("Truncated snapshot of " + length + " bytes was accepted");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+        bytes[0] = 99;
+        try {
+            StatsSnapshot.fromByteArray(bytes);
+            fail("Unknown version was accepted");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void fromHistory_sumsSessionsPerDay() throws IOException {
+        File path = new File(folder.getRoot(), "sessions.zzh");
+        try (SessionHistoryStore store = SessionHistoryStore.open(path)) {
+            // Two sessions today, one yesterday and one before the window
+            append(store, TODAY, 600_000);
+            append(store, TODAY, 300_000);
+            append(store, TODAY - 1, 1_200_000);
+            append(store, TODAY - 30, 600_000);
+
+            StatsSnapshot snapshot = StatsSnapshot.fromHistory(store, new StreakSnapshot(2, 2, TODAY), TODAY, 7, UTC);
+
+            assertEquals(TODAY - 6, snapshot.getFirstDay());
+            assertEquals(15, snapshot.getMinutes(6));
+            assertEquals(2, snapshot.getSessions(6));
+            assertEquals(20, snapshot.getMinutes(5));
+            assertEquals(1, snapshot.getSessions(5));
+            assertEquals(0, snapshot.getMinutes(0));
+            assertEquals(4, snapshot.getTotalSessions());
+            assertEquals(45, snapshot.getTotalMinutes());
+            assertEquals(2, snapshot.getCurrentStreak());
+        }
+    }
+
+    private static void append(SessionHistoryStore store, long day, long actualMillis) throws IOException {
+        SessionRecord record = new SessionRecord();
+        record.startTimeMillis = day * 86_400_000L + 8 * 3_600_000L;
+        record.plannedDurationMillis = actualMillis;
+        record.actualDurationMillis = actualMillis;
+        record.flags = SessionRecord.FLAG_COMPLETED;
+        store.append(record);
+    }
+}
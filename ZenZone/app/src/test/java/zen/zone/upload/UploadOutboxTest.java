@@ -0,0 +1,187 @@
+package zen.zone.upload;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the upload outbox, against a backend writing to a local directory.
+ */
+public class UploadOutboxTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final long[] now = {1_700_000_000_000L};
+    private File outboxDirectory;
+    private File storeDirectory;
+
+    @Before
+    public void setUp() {
+        outboxDirectory = new File(folder.getRoot(), "outbox");
+        storeDirectory = new File(folder.getRoot(), "store");
+    }
+
+    @Test
+    public void enqueuedFile_isUploadedUnderItsHash() throws IOException {
+        LocalUploadBackend backend = new LocalUploadBackend(storeDirectory);
+        UploadOutbox outbox = new UploadOutbox(outboxDirectory, backend, () -> now[0]);
+        File source = write("a.webp", "first");
+
+        assertTrue(outbox.enqueue(source, "statistics/2023-06-04", "webp"));
+        // The source can be reused right away
+        writeTo(source, "changed");
+        UploadOutbox.DrainResult result = outbox.drain(10);
+
+        assertEquals(1, result.getUploaded());
+        assertEquals(0, result.getPending());
+        assertEquals(-1, result.getNextAttemptAtMillis());
+        File[] uploads = new File(storeDirectory, "statistics").listFiles();
+        assertNotNull(uploads);
+        assertEquals(1, uploads.length);
+        assertTrue(uploads[0].getName().matches("2023-06-04-[0-9a-f]{12}\\.webp"));
+        assertEquals("first", read(uploads[0]));
+    }
+
+    @Test
+    public void duplicates_areSkippedBeforeAndAfterUpload() throws IOException {
+        UploadOutbox outbox = new UploadOutbox(outboxDirectory, new LocalUploadBackend(storeDirectory), () -> now[0]);
+
+        assertTrue(outbox.enqueue(write("a.png", "same"), "statistics/a", "png"));
+        assertFalse(outbox.enqueue(write("b.png", "same"), "statistics/b", "png"));
+        assertEquals(1, outbox.size());
+        outbox.drain(10);
+
+        // Also after a restart of the process
+        UploadOutbox reopened = new UploadOutbox(outboxDirectory, new LocalUploadBackend(storeDirectory), () -> now[0]);
+        assertFalse(reopened.enqueue(write("c.png", "same"), "statistics/c", "png"));
+        assertTrue(reopened.enqueue(write("d.png", "other"), "statistics/d", "png"));
+    }
+
+    @Test
+    public void drain_uploadsOldestFirstInBatches() throws IOException {
+        List<String> keys = new ArrayList<>();
+        UploadBackend backend = (key, file, resumeToken, listener) -> keys.add(key);
+        UploadOutbox outbox = new UploadOutbox(outboxDirectory, backend, () -> now[0]);
+        for (int i = 0; i < 5; i++) {
+            now[0] += 1000;
+            outbox.enqueue(write("s" + i, "content " + i), "k" + i, "png");
+        }
+
+        UploadOutbox.DrainResult first = outbox.drain(2);
+        assertEquals(2, first.getUploaded());
+        assertEquals(3, first.getPending());
+        outbox.drain(10);
+
+        assertEquals(5, keys.size());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(keys.get(i).startsWith("k" + i + "-"));
+        }
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void failedUpload_isRetriedWithExponentialBackoff() throws IOException {
+        int[] failures = {3};
+        UploadBackend backend = (key, file, resumeToken, listener) -> {
+            if (failures[0]-- > 0) {
+                throw new IOException("offline");
+            }
+        };
+        UploadOutbox outbox = new UploadOutbox(outboxDirectory, backend, () -> now[0]);
+        outbox.enqueue(write("a", "a"), "a", "png");
+
+        UploadOutbox.DrainResult result = outbox.drain(10);
+        assertEquals(1, result.getFailed());
+        assertEquals(now[0] + UploadOutbox.INITIAL_BACKOFF_MILLIS, result.getNextAttemptAtMillis());
+
+        // Not due yet: nothing is attempted
+        now[0] += UploadOutbox.INITIAL_BACKOFF_MILLIS - 1;
+        assertEquals(0, outbox.drain(10).getFailed());
+
+        now[0] += 1;
+        result = outbox.drain(10);
+        assertEquals(1, result.getFailed());
+        assertEquals(now[0] + 2 * UploadOutbox.INITIAL_BACKOFF_MILLIS, result.getNextAttemptAtMillis());
+
+        now[0] = result.getNextAttemptAtMillis();
+        result = outbox.drain(10);
+        assertEquals(now[0] + 4 * UploadOutbox.INITIAL_BACKOFF_MILLIS, result.getNextAttemptAtMillis());
+
+        now[0] = result.getNextAttemptAtMillis();
+        result = outbox.drain(10);
+        assertEquals(1, result.getUploaded());
+        assertEquals(0, result.getPending());
+    }
+
+    @Test
+    public void backoff_isCapped() {
+        assertEquals(UploadOutbox.INITIAL_BACKOFF_MILLIS, UploadOutbox.backoffMillis(1));
+        assertEquals(8 * UploadOutbox.INITIAL_BACKOFF_MILLIS, UploadOutbox.backoffMillis(4));
+        assertEquals(UploadOutbox.MAX_BACKOFF_MILLIS, UploadOutbox.backoffMillis(20));
+        assertEquals(UploadOutbox.MAX_BACKOFF_MILLIS, UploadOutbox.backoffMillis(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void interruptedUpload_resumesWithItsToken() throws IOException {
+        LocalUploadBackend local = new LocalUploadBackend(storeDirectory);
+        List<String> tokens = new ArrayList<>();
+        boolean[] fail = {true};
+        UploadBackend backend = (key, file, resumeToken, listener) -> {
+            tokens.add(resumeToken);
+            if (fail[0]) {
+                // Half of the file reaches the storage, then the connection drops
+                File part = new File(local.getFile(key).getPath() + ".part");
+                assertTrue(part.getParentFile().mkdirs());
+                writeTo(part, "0123");
+                listener.onResumeToken(part.getPath());
+                throw new IOException("connection lost");
+            }
+            local.upload(key, file, resumeToken, listener);
+        };
+        UploadOutbox outbox = new UploadOutbox(outboxDirectory, backend, () -> now[0]);
+        outbox.enqueue(write("a", "01234567"), "statistics/a", "png");
+        outbox.drain(10);
+
+        // The token was persisted, a new process resumes the upload
+        fail[0] = false;
+        now[0] += UploadOutbox.INITIAL_BACKOFF_MILLIS;
+        UploadOutbox reopened = new UploadOutbox(outboxDirectory, backend, () -> now[0]);
+        assertEquals(1, reopened.drain(10).getUploaded());
+
+        assertNull(tokens.get(0));
+        assertNotNull(tokens.get(1));
+        File[] uploads = new File(storeDirectory, "statistics").listFiles();
+        assertNotNull(uploads);
+        assertEquals(1, uploads.length);
+        assertEquals("01234567", read(uploads[0]));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        writeTo(file, content);
+        return file;
+    }
+
+    private static void writeTo(File file, String content) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package zen.zone.widget;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import zen.zone.session.SessionTimeline;
+import zen.zone.settings.Settings;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the quick start sessions of the widget.
+ */
+public class QuickStartTest {
+
+    @Test
+    public void preset_usesTheLastSound() {
+        SessionTimeline timeline = QuickStart.timeline(10, Settings.DEFAULT.withLastSound(3, 60));
+
+        assertEquals(10 * 60_000, timeline.getDurationMillis());
+        assertEquals(3, timeline.getSoundId());
+        assertEquals(60, timeline.getLayerVolume(0));
+        assertFalse(timeline.hasBells());
+        assertEquals(0, QuickStart.timeline(5, Settings.DEFAULT).getSoundLayerCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherLength_isRejected() {
+        QuickStart.timeline(7, Settings.DEFAULT);
+    }
+
+    @Test
+    public void nextDay_startsAtLocalMidnight() {
+        ZoneId warsaw = ZoneId.of("Europe/Warsaw");
+        long now = ZonedDateTime.of(2024, 3, 30, 23, 59, 0, 0, warsaw).toInstant().toEpochMilli();
+        // The night the clocks move forward
+        long midnight = ZonedDateTime.of(2024, 3, 31, 0, 0, 0, 0, warsaw).toInstant().toEpochMilli();
+
+        assertEquals(midnight, QuickStart.nextDayStartMillis(now, warsaw));
+        assertEquals(midnight + 24 * 3_600_000L - 3_600_000L, QuickStart.nextDayStartMillis(midnight, warsaw));
+    }
+}
@@ -0,0 +1,69 @@
+package zen.zone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+
+import zen.zone.sound.Sound;
+import zen.zone.sound.SoundCatalog;
+import zen.zone.ui.meditation.DurationLabels;
+import zen.zone.ui.meditation.TimeFormatter;
+import zen.zone.ui.meditation.TimerDigits;
+
+/**
+ * Measures the work done on the meditation screens: formatting the remaining time on every
+ * timer tick and resolving the selected background sound.
+ */
+@State(Scope.Thread)
+public class MeditationBenchmark {
+
+    private static final String CATALOG = "sounds=none,chimes\n"
+            + "none.id=0\nnone.label.en=None\nnone.label.pl=Brak\n"
+            + "chimes.id=3\nchimes.raw=chimes\nchimes.label.en=Chimes\nchimes.label.pl=Dzwonki\n";
+    private static final String PACK = "sounds=birds,rain,waves\n"
+            + pack("birds", 1) + pack("rain", 2) + pack("waves", 4);
+
+    private final TimerDigits timerDigits = new TimerDigits();
+    private long remainingMillis = 599_000;
+    private SoundCatalog catalog;
+    private int soundId = 4;
+    private int sliderProgress = 9;
+
+    @Setup
+    public void setUp() throws IOException {
+        catalog = SoundCatalog.parse(new StringReader(CATALOG), null)
+                .merge(SoundCatalog.parse(new StringReader(PACK), "nature"));
+    }
+
+    @Benchmark
+    public String formatRemainingTime() {
+        return TimeFormatter.formatMinutesSeconds(remainingMillis);
+    }
+
+    @Benchmark
+    public int renderRemainingTimeDigits() {
+        remainingMillis = remainingMillis > 1_000 ? remainingMillis - 1_000 : 3_599_000;
+        return timerDigits.update(remainingMillis);
+    }
+
+    @Benchmark
+    public String durationLabel() {
+        return DurationLabels.forLocale(Locale.getDefault(), "min", 60)[sliderProgress];
+    }
+
+    @Benchmark
+    public Sound soundLookup() {
+        return catalog.get(soundId);
+    }
+
+    private static String pack(String key, int id) {
+        return key + ".id=" + id + "\n" + key + ".file=" + key + ".ogg\n" + key + ".size=1843200\n"
+                + key + ".sha256=9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08\n"
+                + key + ".label.en=" + key + "\n";
+    }
+}
@@ -0,0 +1,48 @@
+package zen.zone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import zen.zone.ui.preferences.ReminderPlan;
+
+/**
+ * Measures the reminder calculations run every time a reminder alarm fires.
+ */
+@State(Scope.Thread)
+public class ReminderBenchmark {
+
+    @Param({"1", "6"})
+    public int timesPerDay;
+
+    private final ZoneId zone = ZoneId.of("Europe/Warsaw");
+    // Sunday evening, the next reminder is in the following week
+    private final long now = ZonedDateTime.of(2023, 6, 4, 22, 0, 0, 0, zone).toInstant().toEpochMilli();
+    private ReminderPlan plan;
+    private String encodedPlan;
+
+    @Setup
+    public void setUp() {
+        int[] minutesOfDay = new int[timesPerDay];
+        for (int i = 0; i < timesPerDay; i++) {
+            minutesOfDay[i] = 7 * 60 + i * 120;
+        }
+        plan = ReminderPlan.of(ReminderPlan.MONDAY | ReminderPlan.THURSDAY, minutesOfDay);
+        encodedPlan = plan.encode();
+    }
+
+    @Benchmark
+    public long nextFire() {
+        return plan.nextFireMillis(now, zone);
+    }
+
+    @Benchmark
+    public ReminderPlan planDecoding() {
+        return ReminderPlan.decode(encodedPlan);
+    }
+}
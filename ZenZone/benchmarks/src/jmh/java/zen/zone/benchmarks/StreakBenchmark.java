@@ -0,0 +1,41 @@
+package zen.zone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZoneId;
+
+import zen.zone.streak.StreakEngine;
+import zen.zone.streak.StreakSnapshot;
+
+/**
+ * Measures the streak engine: registering a completed session and taking a snapshot.
+ */
+@State(Scope.Thread)
+public class StreakBenchmark {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final ZoneId zone = ZoneId.of("Europe/Warsaw");
+    private StreakEngine engine;
+    private long sessionMillis;
+
+    @Setup
+    public void setUp() {
+        engine = new StreakEngine();
+        sessionMillis = 1_600_000_000_000L;
+    }
+
+    @Benchmark
+    public boolean sessionCompleted() {
+        sessionMillis += MILLIS_PER_DAY;
+        return engine.onSessionCompleted(sessionMillis, zone);
+    }
+
+    @Benchmark
+    public StreakSnapshot snapshot() {
+        return engine.snapshot(engine.getLastDay());
+    }
+}
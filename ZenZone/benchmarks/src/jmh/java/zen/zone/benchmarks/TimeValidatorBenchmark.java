@@ -0,0 +1,27 @@
+package zen.zone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import zen.zone.ui.preferences.TimeValidator;
+
+/**
+ * Measures the validation of the reminder time typed by the user.
+ */
+@State(Scope.Thread)
+public class TimeValidatorBenchmark {
+
+    private String validTime = "16:00";
+    private String invalidTime = "25:61";
+
+    @Benchmark
+    public boolean validTime() {
+        return TimeValidator.isValidTime(validTime);
+    }
+
+    @Benchmark
+    public boolean invalidTime() {
+        return TimeValidator.isValidTime(invalidTime);
+    }
+}